@@ -107,6 +107,7 @@ public class AiProviderProperties {
         private boolean enabled = true;
         private String baseUrl = "http://localhost:11434";
         private String chatModel = "llama3.2";
+        private Pool pool = new Pool();
 
         public boolean isEnabled() {
             return enabled;
@@ -131,6 +132,66 @@ public class AiProviderProperties {
         public void setChatModel(String chatModel) {
             this.chatModel = chatModel;
         }
+
+        public Pool getPool() {
+            return pool;
+        }
+
+        public void setPool(Pool pool) {
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Connection pool of a provider's HTTP client. A negative {@code pendingAcquireMaxCount} leaves the
+     * acquire queue unbounded.
+     */
+    public static class Pool {
+        private int maxConnections = 50;
+        private int pendingAcquireMaxCount = 500;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration evictionInterval = Duration.ofSeconds(30);
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getPendingAcquireMaxCount() {
+            return pendingAcquireMaxCount;
+        }
+
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        }
+
+        public Duration getPendingAcquireTimeout() {
+            return pendingAcquireTimeout;
+        }
+
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+        }
+
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+
+        public Duration getEvictionInterval() {
+            return evictionInterval;
+        }
+
+        public void setEvictionInterval(Duration evictionInterval) {
+            this.evictionInterval = evictionInterval;
+        }
     }
 
     public static class OpenAiCompatible {
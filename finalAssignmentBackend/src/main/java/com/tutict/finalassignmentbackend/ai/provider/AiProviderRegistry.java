@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
@@ -155,9 +156,16 @@ public class AiProviderRegistry {
             return fallbackStream(fallback, prompt, options, "circuit_open");
         }
         Timer.Sample sample = Timer.start(meterRegistry);
+        Timer.Sample firstToken = Timer.start(meterRegistry);
+        AtomicBoolean firstTokenSeen = new AtomicBoolean();
         return primary.stream(prompt, options)
                 .timeout(options.streamingTimeout())
                 .retry(options.retryAttempts())
+                .doOnNext(token -> {
+                    if (!token.text().isEmpty() && firstTokenSeen.compareAndSet(false, true)) {
+                        recordFirstToken(firstToken, primary.providerName());
+                    }
+                })
                 .map(token -> token.withMetadata("provider", primary.providerName()))
                 .doOnComplete(() -> {
                     resetFailures(primary);
@@ -236,6 +244,13 @@ public class AiProviderRegistry {
         ));
     }
 
+    private void recordFirstToken(Timer.Sample sample, String providerName) {
+        sample.stop(meterRegistry.timer(
+                "ai.stream.first_token",
+                "provider", providerName
+        ));
+    }
+
     private record CachedHealth(ProviderHealth health, Instant createdAt) {
     }
 }
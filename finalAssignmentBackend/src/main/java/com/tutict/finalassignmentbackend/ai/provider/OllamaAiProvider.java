@@ -2,30 +2,70 @@ package com.tutict.finalassignmentbackend.ai.provider;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Ollama chat provider. All calls share one WebClient on a bounded connection pool configured by
+ * {@code ai.ollama.pool}, and streamed NDJSON is decoded from the raw body buffers by
+ * {@link OllamaNdjsonDecoder}.
+ */
 @Component
 public class OllamaAiProvider implements AiProvider {
 
     private final AiProviderProperties properties;
-    private final WebClient.Builder webClientBuilder;
     private final ObjectMapper objectMapper;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient client;
+    private final DistributionSummary allocationPerToken;
 
     public OllamaAiProvider(
             AiProviderProperties properties,
             WebClient.Builder webClientBuilder,
             ObjectMapper objectMapper
+    ) {
+        this(properties, webClientBuilder, objectMapper, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public OllamaAiProvider(
+            AiProviderProperties properties,
+            WebClient.Builder webClientBuilder,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
     ) {
         this.properties = properties;
-        this.webClientBuilder = webClientBuilder;
         this.objectMapper = objectMapper;
+        this.connectionProvider = connectionProvider(properties.getOllama().getPool());
+        this.client = webClientBuilder.clone()
+                .baseUrl(properties.getOllama().getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+        this.allocationPerToken = DistributionSummary.builder("ai.stream.token.allocation")
+                .description("Heap bytes allocated while decoding streamed tokens, per token")
+                .baseUnit("bytes")
+                .tag("provider", providerName())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connectionProvider.dispose();
     }
 
     @Override
@@ -43,16 +83,20 @@ public class OllamaAiProvider implements AiProvider {
         if (!properties.getOllama().isEnabled()) {
             return Flux.error(new IllegalStateException("Ollama provider is disabled"));
         }
-        return client()
-                .post()
-                .uri("/api/chat")
-                .bodyValue(requestBody(prompt, true))
-                .retrieve()
-                .bodyToFlux(String.class)
-                .flatMapIterable(this::parseStreamChunk)
-                .timeout(options.streamingTimeout())
-                .doOnCancel(() -> {
-                });
+        return Flux.using(
+                        () -> new OllamaNdjsonDecoder(objectMapper.getFactory(), allocationPerToken),
+                        decoder -> client
+                                .post()
+                                .uri("/api/chat")
+                                .bodyValue(requestBody(prompt, true))
+                                .retrieve()
+                                .bodyToFlux(DataBuffer.class)
+                                .concatMapIterable(decoder::decode)
+                                .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.finish()))),
+                        OllamaNdjsonDecoder::close)
+                // 取消时预取队列里未解码的缓冲区需要释放
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .timeout(options.streamingTimeout());
     }
 
     @Override
@@ -60,7 +104,7 @@ public class OllamaAiProvider implements AiProvider {
         if (!properties.getOllama().isEnabled()) {
             return Mono.error(new IllegalStateException("Ollama provider is disabled"));
         }
-        return client()
+        return client
                 .post()
                 .uri("/api/chat")
                 .bodyValue(requestBody(prompt, false))
@@ -76,7 +120,7 @@ public class OllamaAiProvider implements AiProvider {
         if (!properties.getOllama().isEnabled()) {
             return Mono.just(ProviderHealth.down("ollama provider disabled"));
         }
-        return client()
+        return client
                 .get()
                 .uri("/api/tags")
                 .retrieve()
@@ -86,8 +130,14 @@ public class OllamaAiProvider implements AiProvider {
                 .onErrorResume(error -> Mono.just(ProviderHealth.down(error.getMessage())));
     }
 
-    private WebClient client() {
-        return webClientBuilder.baseUrl(properties.getOllama().getBaseUrl()).build();
+    private static ConnectionProvider connectionProvider(AiProviderProperties.Pool pool) {
+        return ConnectionProvider.builder("ollama")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .evictInBackground(pool.getEvictionInterval())
+                .build();
     }
 
     private Map<String, Object> requestBody(AiChatPrompt prompt, boolean stream) {
@@ -98,19 +148,6 @@ public class OllamaAiProvider implements AiProvider {
         );
     }
 
-    private List<AiToken> parseStreamChunk(String chunk) {
-        List<AiToken> tokens = new ArrayList<>();
-        for (String line : chunk.split("\\R")) {
-            if (line.isBlank()) {
-                continue;
-            }
-            JsonNode node = readJson(line);
-            boolean finished = node.path("done").asBoolean(false);
-            tokens.add(new AiToken(extractText(node), finished, Map.of()));
-        }
-        return tokens;
-    }
-
     private JsonNode readJson(String json) {
         try {
             return objectMapper.readTree(json);
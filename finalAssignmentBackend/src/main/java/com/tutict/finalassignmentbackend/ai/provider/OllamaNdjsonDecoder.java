@@ -0,0 +1,176 @@
+package com.tutict.finalassignmentbackend.ai.provider;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import io.micrometer.core.instrument.DistributionSummary;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes an Ollama {@code /api/chat} NDJSON body into {@link AiToken}s straight from the network
+ * buffers with Jackson's non-blocking parser, so a JSON object split across buffers is simply
+ * continued in the next one. Only {@code message.content}, {@code response}, {@code done} and
+ * {@code error} are read; everything else is skipped by depth. One instance per response, not
+ * thread-safe.
+ */
+final class OllamaNdjsonDecoder implements AutoCloseable {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final DistributionSummary allocationPerToken;
+
+    private int depth;
+    private String field;
+    private boolean inMessage;
+    private String content;
+    private String response;
+    private String error;
+    private boolean done;
+
+    OllamaNdjsonDecoder(JsonFactory jsonFactory, DistributionSummary allocationPerToken) {
+        try {
+            this.parser = jsonFactory.createNonBlockingByteBufferParser();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to create Ollama stream parser", ex);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        this.allocationPerToken = allocationPerToken;
+    }
+
+    /**
+     * Feeds one body buffer and returns the tokens it completed. The buffer is always released.
+     */
+    List<AiToken> decode(DataBuffer buffer) {
+        long allocatedBefore = allocatedBytes();
+        List<AiToken> tokens = new ArrayList<>(2);
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer input = iterator.next();
+                feeder.feedInput(input);
+                // feeder 要求上一段输入读完才能继续喂入
+                drain(tokens);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to parse Ollama response", ex);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        recordAllocation(allocatedBefore, tokens.size());
+        return tokens;
+    }
+
+    /**
+     * Signals end of body and returns any trailing token; a body cut off mid-object is an error.
+     */
+    List<AiToken> finish() {
+        List<AiToken> tokens = new ArrayList<>(1);
+        try {
+            feeder.endOfInput();
+            drain(tokens);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to parse Ollama response", ex);
+        }
+        if (depth != 0) {
+            throw new IllegalStateException("Ollama stream ended inside a JSON object");
+        }
+        return tokens;
+    }
+
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // 解析器只持有内存缓冲，关闭失败无需处理
+        }
+    }
+
+    private void drain(List<AiToken> tokens) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    if (token == JsonToken.START_OBJECT && depth == 1 && "message".equals(field)) {
+                        inMessage = true;
+                    }
+                    depth++;
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    depth--;
+                    if (depth == 1) {
+                        inMessage = false;
+                    } else if (depth == 0) {
+                        tokens.add(completeObject());
+                    }
+                }
+                case FIELD_NAME -> field = parser.currentName();
+                case VALUE_STRING -> readString();
+                case VALUE_TRUE -> {
+                    if (depth == 1 && "done".equals(field)) {
+                        done = true;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void readString() throws IOException {
+        if (depth == 2 && inMessage && "content".equals(field)) {
+            content = parser.getText();
+        } else if (depth == 1 && "response".equals(field)) {
+            response = parser.getText();
+        } else if (depth == 1 && "error".equals(field)) {
+            error = parser.getText();
+        }
+    }
+
+    private AiToken completeObject() {
+        if (error != null) {
+            throw new IllegalStateException("Ollama returned an error: " + error);
+        }
+        String text = content != null ? content : response;
+        AiToken token = new AiToken(text, done, Map.of());
+        field = null;
+        content = null;
+        response = null;
+        done = false;
+        return token;
+    }
+
+    private void recordAllocation(long allocatedBefore, int tokenCount) {
+        if (allocatedBefore < 0 || tokenCount == 0 || allocationPerToken == null) {
+            return;
+        }
+        long allocatedAfter = allocatedBytes();
+        if (allocatedAfter >= allocatedBefore) {
+            allocationPerToken.record((double) (allocatedAfter - allocatedBefore) / tokenCount);
+        }
+    }
+
+    private static long allocatedBytes() {
+        // 虚拟线程或不支持的 JVM 返回 -1，此时不记录
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
@@ -4,12 +4,20 @@ import com.tutict.finalassignmentbackend.rag.config.RagProperties;
 import org.springframework.stereotype.Component;
 
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 @Component
 public class RagChunkIndexMapping {
 
     public static final String CURRENT_ALIAS = "rag_chunk_current";
+    private static final Set<String> VECTOR_INDEX_TYPES = Set.of(
+            "hnsw", "int8_hnsw", "int4_hnsw", "bbq_hnsw", "flat", "int8_flat", "int4_flat", "bbq_flat"
+    );
+    // bbq 要求维度不少于 64，int4 要求维度为偶数
+    private static final int BBQ_MIN_DIMENSIONS = 64;
     private final RagProperties properties;
 
     public RagChunkIndexMapping(RagProperties properties) {
@@ -45,13 +53,38 @@ public class RagChunkIndexMapping {
         propertiesMap.put("embedding_provider", keyword());
         propertiesMap.put("embedding_model", keyword());
         propertiesMap.put("metadata", Map.of("type", "object", "enabled", true));
-        propertiesMap.put("embedding", Map.of(
-                "type", "dense_vector",
-                "dims", dimensions,
-                "index", true,
-                "similarity", "cosine"
-        ));
-        return Map.of("properties", propertiesMap);
+        Map<String, Object> embedding = new LinkedHashMap<>();
+        embedding.put("type", "dense_vector");
+        embedding.put("dims", dimensions);
+        embedding.put("index", true);
+        embedding.put("similarity", "cosine");
+        embedding.put("index_options", Map.of("type", vectorIndexType(dimensions)));
+        propertiesMap.put("embedding", embedding);
+        Map<String, Object> mapping = new LinkedHashMap<>();
+        if (!properties.getIndex().isVectorInSource()) {
+            mapping.put("_source", Map.of("excludes", List.of("embedding")));
+        }
+        mapping.put("properties", propertiesMap);
+        return mapping;
+    }
+
+    /**
+     * Quantized types only change how the HNSW graph stores vectors; the raw floats are still kept
+     * for rescoring. Switching type on an existing index needs a migration to a new index.
+     */
+    public String vectorIndexType(int dimensions) {
+        String configured = properties.getIndex().getVectorIndexType();
+        String type = configured == null || configured.isBlank() ? "hnsw" : configured.trim().toLowerCase(Locale.ROOT);
+        if (!VECTOR_INDEX_TYPES.contains(type)) {
+            throw new IllegalStateException("Unsupported rag.index.vector-index-type: " + configured);
+        }
+        if (type.startsWith("bbq") && dimensions < BBQ_MIN_DIMENSIONS) {
+            throw new IllegalStateException("bbq vector index types need at least " + BBQ_MIN_DIMENSIONS + " dimensions");
+        }
+        if (type.startsWith("int4") && dimensions % 2 != 0) {
+            throw new IllegalStateException("int4 vector index types need an even number of dimensions");
+        }
+        return type;
     }
 
     public Map<String, Object> settings() {
@@ -3,6 +3,8 @@ package com.tutict.finalassignmentbackend.ai.rag.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @ConfigurationProperties(prefix = "rag.retrieval")
 public class RagRetrievalProperties {
@@ -16,6 +18,14 @@ public class RagRetrievalProperties {
     private int rrfRankConstant = 60;
     private boolean rerankEnabled = true;
     private double rerankLexicalWeight = 0.15;
+    // BM25 与 embedding+向量两路并行，各自超时后按已返回的部分结果融合
+    private Duration bm25Timeout = Duration.ofSeconds(1);
+    private Duration vectorTimeout = Duration.ofSeconds(2);
+    private int queryEmbeddingCacheSize = 1000;
+    private Duration queryEmbeddingCacheTtl = Duration.ofHours(1);
+    // elasticsearch | local：local 时向量召回走进程内 HNSW 索引，BM25 仍走 Elasticsearch
+    private String backend = "elasticsearch";
+    private Local local = new Local();
 
     public boolean isEnabled() {
         return enabled;
@@ -88,4 +98,153 @@ public class RagRetrievalProperties {
     public void setRerankLexicalWeight(double rerankLexicalWeight) {
         this.rerankLexicalWeight = rerankLexicalWeight;
     }
+
+    public Duration getBm25Timeout() {
+        return bm25Timeout;
+    }
+
+    public void setBm25Timeout(Duration bm25Timeout) {
+        this.bm25Timeout = bm25Timeout;
+    }
+
+    public Duration getVectorTimeout() {
+        return vectorTimeout;
+    }
+
+    public void setVectorTimeout(Duration vectorTimeout) {
+        this.vectorTimeout = vectorTimeout;
+    }
+
+    public int getQueryEmbeddingCacheSize() {
+        return queryEmbeddingCacheSize;
+    }
+
+    public void setQueryEmbeddingCacheSize(int queryEmbeddingCacheSize) {
+        this.queryEmbeddingCacheSize = queryEmbeddingCacheSize;
+    }
+
+    public Duration getQueryEmbeddingCacheTtl() {
+        return queryEmbeddingCacheTtl;
+    }
+
+    public void setQueryEmbeddingCacheTtl(Duration queryEmbeddingCacheTtl) {
+        this.queryEmbeddingCacheTtl = queryEmbeddingCacheTtl;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
+    public boolean isLocalBackend() {
+        return "local".equalsIgnoreCase(backend);
+    }
+
+    public Local getLocal() {
+        return local;
+    }
+
+    public void setLocal(Local local) {
+        this.local = local;
+    }
+
+    public static class Local {
+        // 为空时只在内存中建索引，重启后需重新入队 embedding
+        private String directory = "";
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 100;
+        // ACL 过滤后候选数不超过该值时直接精确扫描
+        private int exactSearchThreshold = 2000;
+        private int initialCapacity = 10000;
+        private long flushIntervalMs = 60000;
+        // 墓碑节点占比达到该值且不少于 compactMinTombstones 时重建图
+        private double compactTombstoneRatio = 0.3;
+        private int compactMinTombstones = 1000;
+        // 本地索引只属于一个节点：持有 Redis 租约的实例才能启动
+        private long leaseTtlMs = 30000;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getM() {
+            return m;
+        }
+
+        public void setM(int m) {
+            this.m = m;
+        }
+
+        public int getEfConstruction() {
+            return efConstruction;
+        }
+
+        public void setEfConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+        }
+
+        public int getEfSearch() {
+            return efSearch;
+        }
+
+        public void setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+        }
+
+        public int getExactSearchThreshold() {
+            return exactSearchThreshold;
+        }
+
+        public void setExactSearchThreshold(int exactSearchThreshold) {
+            this.exactSearchThreshold = exactSearchThreshold;
+        }
+
+        public int getInitialCapacity() {
+            return initialCapacity;
+        }
+
+        public void setInitialCapacity(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public double getCompactTombstoneRatio() {
+            return compactTombstoneRatio;
+        }
+
+        public void setCompactTombstoneRatio(double compactTombstoneRatio) {
+            this.compactTombstoneRatio = compactTombstoneRatio;
+        }
+
+        public int getCompactMinTombstones() {
+            return compactMinTombstones;
+        }
+
+        public void setCompactMinTombstones(int compactMinTombstones) {
+            this.compactMinTombstones = compactMinTombstones;
+        }
+
+        public long getLeaseTtlMs() {
+            return leaseTtlMs;
+        }
+
+        public void setLeaseTtlMs(long leaseTtlMs) {
+            this.leaseTtlMs = leaseTtlMs;
+        }
+    }
 }
@@ -4,6 +4,7 @@ import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -46,6 +47,26 @@ public class AclFilterService {
         };
     }
 
+    /**
+     * Grant keys carried by a chunk. A filter matches the chunk when {@link AclFilter#grantKeys()}
+     * shares at least one key, the same rule the index ACL query applies.
+     */
+    public static Set<String> grantKeys(
+            String aclScope,
+            Collection<String> roles,
+            Collection<String> userIds,
+            Collection<String> departments
+    ) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (aclScope != null && !aclScope.isBlank()) {
+            keys.add("scope:" + aclScope.trim());
+        }
+        normalizeSet(roles).forEach(role -> keys.add("role:" + role));
+        normalizeSet(userIds).forEach(userId -> keys.add("user:" + userId));
+        normalizeSet(departments).forEach(department -> keys.add("department:" + department));
+        return keys;
+    }
+
     private static boolean intersects(Set<String> left, Set<String> right) {
         return left.stream().anyMatch(right::contains);
     }
@@ -109,5 +130,12 @@ public class AclFilterService {
         public AclFilter {
             roles = roles == null ? Set.of() : Set.copyOf(roles);
         }
+
+        public Set<String> grantKeys() {
+            Set<String> keys = AclFilterService.grantKeys(null, roles, userId == null ? null : List.of(userId),
+                    department == null ? null : List.of(department));
+            keys.add("scope:PUBLIC");
+            return keys;
+        }
     }
 }
@@ -1,5 +1,8 @@
 package com.tutict.finalassignmentbackend.ai.rag.retrieval;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface EmbeddingProvider {
 
     default String providerName() {
@@ -13,4 +16,16 @@ public interface EmbeddingProvider {
     int dimensions();
 
     float[] embed(String text);
+
+    /**
+     * Embeds several texts, returning vectors in input order. Providers with a multi-input
+     * endpoint override this to make a single request.
+     */
+    default List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
 }
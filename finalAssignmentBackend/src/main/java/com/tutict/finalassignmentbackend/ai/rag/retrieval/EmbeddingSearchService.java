@@ -4,7 +4,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tutict.finalassignmentbackend.ai.rag.config.RagChunkIndexMapping;
+import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
 import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw.LocalVectorIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.ObjectProvider;
@@ -36,16 +38,22 @@ public class EmbeddingSearchService {
             ObjectProvider<ElasticsearchOperations> elasticsearchOperations,
             RagChunkIndexMapping mapping,
             ObjectMapper objectMapper,
-            @Value("${spring.elasticsearch.uris:http://localhost:9200}") String elasticsearchUris
+            @Value("${spring.elasticsearch.uris:http://localhost:9200}") String elasticsearchUris,
+            RagRetrievalProperties retrievalProperties,
+            ObjectProvider<LocalVectorIndex> localVectorIndex
     ) {
         this(
                 embeddingProvider,
-                new ElasticsearchRagSearchBackend(
-                        elasticsearchOperations.getIfAvailable(),
-                        mapping.aliasName(),
-                        mapping.indexName(),
-                        objectMapper,
-                        elasticsearchUris
+                searchBackend(
+                        new ElasticsearchRagSearchBackend(
+                                elasticsearchOperations.getIfAvailable(),
+                                mapping.aliasName(),
+                                mapping.indexName(),
+                                objectMapper,
+                                elasticsearchUris
+                        ),
+                        retrievalProperties,
+                        localVectorIndex
                 )
         );
     }
@@ -55,6 +63,17 @@ public class EmbeddingSearchService {
         this.searchBackend = searchBackend;
     }
 
+    private static RagSearchBackend searchBackend(
+            ElasticsearchRagSearchBackend elasticsearch,
+            RagRetrievalProperties retrievalProperties,
+            ObjectProvider<LocalVectorIndex> localVectorIndex
+    ) {
+        if (!retrievalProperties.isLocalBackend()) {
+            return elasticsearch;
+        }
+        return new LocalRagSearchBackend(localVectorIndex.getObject(), elasticsearch);
+    }
+
     public float[] embedQuery(String normalizedQuery) {
         return embeddingProvider.embed(normalizedQuery);
     }
@@ -91,6 +110,39 @@ interface RagSearchBackend {
     List<RetrievalResult> vectorSearch(float[] queryVector, AclFilterService.AclFilter aclFilter, int limit);
 }
 
+/**
+ * Vector recall from the in-process HNSW index; BM25 keeps using Elasticsearch, which returns nothing
+ * when no cluster is configured.
+ */
+class LocalRagSearchBackend implements RagSearchBackend {
+
+    private final LocalVectorIndex vectorIndex;
+    private final RagSearchBackend lexicalBackend;
+
+    LocalRagSearchBackend(LocalVectorIndex vectorIndex, RagSearchBackend lexicalBackend) {
+        this.vectorIndex = vectorIndex;
+        this.lexicalBackend = lexicalBackend;
+    }
+
+    @Override
+    public List<RetrievalResult> bm25Search(
+            String normalizedQuery,
+            AclFilterService.AclFilter aclFilter,
+            int limit
+    ) {
+        return lexicalBackend.bm25Search(normalizedQuery, aclFilter, limit);
+    }
+
+    @Override
+    public List<RetrievalResult> vectorSearch(
+            float[] queryVector,
+            AclFilterService.AclFilter aclFilter,
+            int limit
+    ) {
+        return vectorIndex.search(queryVector, aclFilter, limit);
+    }
+}
+
 class ElasticsearchRagSearchBackend implements RagSearchBackend {
 
     private final ElasticsearchOperations operations;
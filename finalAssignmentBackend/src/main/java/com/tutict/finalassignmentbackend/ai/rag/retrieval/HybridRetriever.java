@@ -1,15 +1,34 @@
 package com.tutict.finalassignmentbackend.ai.rag.retrieval;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
 import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
 import com.tutict.finalassignmentbackend.ai.rag.rerank.RerankProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 @ConditionalOnProperty(prefix = "rag.retrieval", name = "enabled", havingValue = "true")
@@ -19,35 +38,73 @@ public class HybridRetriever {
     private final AclFilterService aclFilterService;
     private final RerankProvider rerankProvider;
     private final RagRetrievalProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, float[]> queryEmbeddings;
+    private final Map<String, CompletableFuture<float[]>> pendingEmbeddings = new ConcurrentHashMap<>();
+    private final ExecutorService legExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rag-retrieval-", 0).factory());
 
     public HybridRetriever(
             EmbeddingSearchService embeddingSearchService,
             AclFilterService aclFilterService,
             RerankProvider rerankProvider,
             RagRetrievalProperties properties
+    ) {
+        this(embeddingSearchService, aclFilterService, rerankProvider, properties, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public HybridRetriever(
+            EmbeddingSearchService embeddingSearchService,
+            AclFilterService aclFilterService,
+            RerankProvider rerankProvider,
+            RagRetrievalProperties properties,
+            MeterRegistry meterRegistry
     ) {
         this.embeddingSearchService = embeddingSearchService;
         this.aclFilterService = aclFilterService;
         this.rerankProvider = rerankProvider;
         this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.queryEmbeddings = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, properties.getQueryEmbeddingCacheSize()))
+                .expireAfterWrite(properties.getQueryEmbeddingCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, queryEmbeddings, "rag.query.embedding");
     }
 
+    /**
+     * Runs the BM25 leg and the embed-then-vector leg concurrently. A leg that fails or misses its
+     * timeout contributes no candidates, so the answer degrades to the other leg instead of waiting;
+     * a timed-out leg's thread is interrupted so the underlying call is abandoned.
+     */
     public List<RetrievalResult> retrieve(RetrievalQuery query) {
+        Timer.Sample total = Timer.start(meterRegistry);
         AclFilterService.AclFilter aclFilter = aclFilterService.buildFilter(query.accessContext());
         int candidateLimit = Math.max(
                 query.topK(),
                 query.topK() * Math.max(1, properties.getCandidateMultiplier())
         );
-        List<RetrievalResult> bm25Results = embeddingSearchService.bm25Search(
+        CompletableFuture<List<RetrievalResult>> bm25Leg = leg("bm25", properties.getBm25Timeout(),
+                () -> timed("bm25", () -> embeddingSearchService.bm25Search(
+                        query.normalizedQuery(),
+                        aclFilter,
+                        candidateLimit
+                )));
+        CompletableFuture<List<RetrievalResult>> vectorLeg = leg("vector", properties.getVectorTimeout(),
+                () -> vectorResults(query, aclFilter, candidateLimit));
+        List<RetrievalResult> results = rerankProvider.rerank(
                 query.normalizedQuery(),
-                aclFilter,
-                candidateLimit
-        );
-        List<RetrievalResult> vectorResults = vectorResults(query, aclFilter, candidateLimit);
-        return rerankProvider.rerank(
-                query.normalizedQuery(),
-                fuseResults(bm25Results, vectorResults, query.accessContext(), query.topK())
+                fuseResults(bm25Leg.join(), vectorLeg.join(), query.accessContext(), query.topK())
         );
+        total.stop(stageTimer("total"));
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        legExecutor.shutdownNow();
     }
 
     private List<RetrievalResult> vectorResults(
@@ -55,12 +112,101 @@ public class HybridRetriever {
             AclFilterService.AclFilter aclFilter,
             int candidateLimit
     ) {
+        float[] queryVector = queryEmbeddings.getIfPresent(query.normalizedQuery());
+        if (queryVector == null) {
+            try {
+                queryVector = embedQuery(query.normalizedQuery()).get();
+            } catch (InterruptedException interrupted) {
+                // 向量检索腿超时被取消：只放弃等待，嵌入调用继续在后台完成并写入缓存
+                Thread.currentThread().interrupt();
+                return List.of();
+            } catch (ExecutionException error) {
+                throw error.getCause() instanceof RuntimeException runtime
+                        ? runtime
+                        : new IllegalStateException("Query embedding failed", error.getCause());
+            }
+            if (queryVector == null || queryVector.length == 0) {
+                return List.of();
+            }
+        }
+        float[] vector = queryVector;
+        return timed("vector", () -> embeddingSearchService.vectorSearch(vector, aclFilter, candidateLimit));
+    }
+
+    /**
+     * Embeds the query on its own task, shared by concurrent identical queries. The task is never
+     * cancelled with the vector leg, so a slow embedding still lands in the cache for the next query.
+     */
+    private CompletableFuture<float[]> embedQuery(String normalizedQuery) {
+        CompletableFuture<float[]> created = new CompletableFuture<>();
+        CompletableFuture<float[]> pending = pendingEmbeddings.putIfAbsent(normalizedQuery, created);
+        if (pending != null) {
+            return pending;
+        }
         try {
-            float[] queryVector = embeddingSearchService.embedQuery(query.normalizedQuery());
-            return embeddingSearchService.vectorSearch(queryVector, aclFilter, candidateLimit);
-        } catch (RuntimeException error) {
-            return List.of();
+            legExecutor.execute(() -> {
+                try {
+                    float[] vector = timed("embedding", () -> embeddingSearchService.embedQuery(normalizedQuery));
+                    if (vector != null && vector.length > 0) {
+                        queryEmbeddings.put(normalizedQuery, vector);
+                    }
+                    created.complete(vector);
+                } catch (Throwable error) {
+                    created.completeExceptionally(error);
+                } finally {
+                    pendingEmbeddings.remove(normalizedQuery, created);
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            pendingEmbeddings.remove(normalizedQuery, created);
+            created.completeExceptionally(rejected);
         }
+        return created;
+    }
+
+    private CompletableFuture<List<RetrievalResult>> leg(
+            String name,
+            Duration timeout,
+            Supplier<List<RetrievalResult>> search
+    ) {
+        CompletableFuture<List<RetrievalResult>> result = new CompletableFuture<>();
+        Future<?> call = legExecutor.submit(() -> {
+            try {
+                result.complete(search.get());
+            } catch (Throwable error) {
+                result.completeExceptionally(error);
+            }
+        });
+        return result
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                // 超时后中断仍在执行的检索线程，释放其占用的连接而不是让它在后台跑完
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        call.cancel(true);
+                    }
+                })
+                .exceptionally(error -> {
+                    String outcome = error instanceof TimeoutException
+                            || error.getCause() instanceof TimeoutException ? "timeout" : "error";
+                    meterRegistry.counter("rag.retrieval.leg.dropped", "leg", name, "outcome", outcome).increment();
+                    return List.of();
+                });
+    }
+
+    private <T> T timed(String stage, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return call.get();
+        } finally {
+            sample.stop(stageTimer(stage));
+        }
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("rag.retrieval.latency")
+                .description("Hybrid retrieval latency per stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
     }
 
     public List<RetrievalResult> fuseResults(
@@ -14,6 +14,8 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -24,6 +26,7 @@ public class OllamaEmbeddingProvider implements EmbeddingProvider {
     private final AiProviderProperties aiProviderProperties;
     private final ObjectMapper objectMapper;
     private final HttpClient httpClient;
+    private volatile boolean multiInputSupported = true;
 
     public OllamaEmbeddingProvider(
             RagProperties properties,
@@ -74,7 +77,45 @@ public class OllamaEmbeddingProvider implements EmbeddingProvider {
                     "input", prompt
             ));
         }
-        float[] vector = parseVector(response);
+        return normalize(checkDimensions(parseVector(response)));
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        if (texts.size() <= 1 || !multiInputSupported) {
+            return EmbeddingProvider.super.embedAll(texts);
+        }
+        if (!aiProviderProperties.getOllama().isEnabled()) {
+            throw new IllegalStateException("Ollama provider is disabled");
+        }
+        List<String> inputs = texts.stream().map(text -> text == null ? "" : text).toList();
+        JsonNode response;
+        try {
+            response = requestEmbedding("/api/embed", Map.of(
+                    "model", modelName(),
+                    "input", inputs
+            ));
+        } catch (RuntimeException error) {
+            if (!shouldTryEmbedEndpoint(error)) {
+                throw error;
+            }
+            // 旧版 Ollama 没有 /api/embed，之后一律逐条走 /api/embeddings
+            multiInputSupported = false;
+            return EmbeddingProvider.super.embedAll(texts);
+        }
+        JsonNode embeddings = response == null ? null : response.get("embeddings");
+        if (embeddings == null || !embeddings.isArray() || embeddings.size() != inputs.size()) {
+            throw new IllegalStateException("Ollama embedding response did not contain "
+                    + inputs.size() + " embeddings");
+        }
+        List<float[]> vectors = new ArrayList<>(inputs.size());
+        for (JsonNode embedding : embeddings) {
+            vectors.add(normalize(checkDimensions(toVector(embedding))));
+        }
+        return vectors;
+    }
+
+    private float[] checkDimensions(float[] vector) {
         if (vector.length != dimensions()) {
             throw new IllegalStateException(
                     "Embedding dimension mismatch for model " + modelName()
@@ -83,10 +124,10 @@ public class OllamaEmbeddingProvider implements EmbeddingProvider {
                             + ". Set RAG_EMBEDDING_DIMENSIONS to the model output size."
             );
         }
-        return normalize(vector);
+        return vector;
     }
 
-    private JsonNode requestEmbedding(String uri, Map<String, String> payload) {
+    private JsonNode requestEmbedding(String uri, Map<String, ?> payload) {
         try {
             HttpRequest request = HttpRequest.newBuilder(resolveUri(uri))
                     .timeout(aiProviderProperties.getProvider().getTimeout())
@@ -142,6 +183,10 @@ public class OllamaEmbeddingProvider implements EmbeddingProvider {
         if (embedding == null) {
             throw new IllegalStateException("Ollama embedding response did not contain an embedding array");
         }
+        return toVector(embedding);
+    }
+
+    private static float[] toVector(JsonNode embedding) {
         float[] vector = new float[embedding.size()];
         for (int i = 0; i < embedding.size(); i++) {
             vector[i] = (float) embedding.get(i).asDouble();
@@ -0,0 +1,359 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over cosine similarity (Malkov &amp; Yashunin). Vectors
+ * are normalised on insert and live in a {@link VectorStore}; adjacency lists stay on the heap.
+ * Not thread safe: callers serialise inserts against searches.
+ */
+public final class HnswGraph {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int[] NO_LINKS = new int[0];
+
+    private final VectorStore vectors;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswGraph(VectorStore vectors, int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.vectors = vectors;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(m, efConstruction);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.links = new int[Math.max(16, vectors.capacity())][][];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimensions() {
+        return vectors.dimensions();
+    }
+
+    /**
+     * Inserts a vector and links it into every layer up to its randomly drawn level.
+     *
+     * @return the new node id, which is always the previous {@link #size()}
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        int node = size;
+        vectors.set(node, normalized);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        if (node == links.length) {
+            links = Arrays.copyOf(links, links.length * 2);
+        }
+        int[][] nodeLinks = new int[level + 1][];
+        Arrays.fill(nodeLinks, NO_LINKS);
+        links[node] = nodeLinks;
+        size++;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(normalized, current, layer);
+        }
+        int[] entryPoints = {current};
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Neighbor> candidates = drainDescending(
+                    searchLayer(normalized, entryPoints, efConstruction, layer, null, new BitSet(size)));
+            int[] selected = selectNeighbors(candidates, m);
+            links[node][layer] = selected;
+            int maxConnections = layer == 0 ? maxM0 : m;
+            for (int neighbor : selected) {
+                link(neighbor, node, layer, maxConnections);
+            }
+            entryPoints = new int[candidates.size()];
+            for (int i = 0; i < entryPoints.length; i++) {
+                entryPoints[i] = candidates.get(i).node();
+            }
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+        return node;
+    }
+
+    /**
+     * Approximate top-k by cosine similarity. Nodes rejected by {@code accept} are still traversed so
+     * filtering does not disconnect the graph, but are never returned.
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (size == 0 || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = normalize(query);
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedyClosest(normalized, current, layer);
+        }
+        NodeHeap results = searchLayer(normalized, new int[]{current}, Math.max(ef, k), 0, accept, new BitSet(size));
+        while (results.size() > k) {
+            results.pop();
+        }
+        return drainDescending(results);
+    }
+
+    /**
+     * Exact top-k over the given candidate nodes; used when a filter leaves too few nodes for the
+     * graph walk to find them reliably.
+     */
+    public List<Neighbor> exactSearch(float[] query, int k, BitSet candidates) {
+        if (k <= 0) {
+            return List.of();
+        }
+        float[] normalized = normalize(query);
+        NodeHeap results = new NodeHeap(k + 1);
+        for (int node = candidates.nextSetBit(0); node >= 0 && node < size; node = candidates.nextSetBit(node + 1)) {
+            float similarity = vectors.dot(node, normalized);
+            if (results.size() < k) {
+                results.push(node, similarity);
+            } else if (similarity > results.topKey()) {
+                results.pop();
+                results.push(node, similarity);
+            }
+        }
+        return drainDescending(results);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(vectors.dimensions());
+        out.writeInt(m);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            int[][] nodeLinks = links[node];
+            out.writeByte(nodeLinks.length);
+            for (int[] layer : nodeLinks) {
+                out.writeShort(layer.length);
+                for (int neighbor : layer) {
+                    out.writeInt(neighbor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores a graph written by {@link #write}; {@code vectors} must be the store it was built on.
+     */
+    public static HnswGraph read(DataInput in, VectorStore vectors, int efConstruction, long seed) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not an HNSW graph file");
+        }
+        int dimensions = in.readInt();
+        if (dimensions != vectors.dimensions()) {
+            throw new IOException("Graph has " + dimensions + " dimensions but the vector store has "
+                    + vectors.dimensions());
+        }
+        HnswGraph graph = new HnswGraph(vectors, in.readInt(), efConstruction, seed);
+        int size = in.readInt();
+        if (size > vectors.capacity()) {
+            throw new IOException("Graph has " + size + " nodes but the vector store only holds " + vectors.capacity());
+        }
+        graph.entryPoint = in.readInt();
+        graph.maxLevel = in.readInt();
+        graph.links = new int[Math.max(16, vectors.capacity())][][];
+        for (int node = 0; node < size; node++) {
+            int[][] nodeLinks = new int[in.readUnsignedByte()][];
+            for (int layer = 0; layer < nodeLinks.length; layer++) {
+                int[] neighbors = new int[in.readUnsignedShort()];
+                for (int i = 0; i < neighbors.length; i++) {
+                    neighbors[i] = in.readInt();
+                }
+                nodeLinks[layer] = neighbors;
+            }
+            graph.links[node] = nodeLinks;
+        }
+        graph.size = size;
+        return graph;
+    }
+
+    /**
+     * The stored (normalised) vector of a node.
+     */
+    float[] vector(int node) {
+        return vectors.get(node);
+    }
+
+    /**
+     * Copies the vectors of every node into slots {@code 0..size-1} of {@code target} and returns a
+     * graph with the same links over it. Overwrites whatever {@code target} held in those slots; the
+     * adjacency lists are shared, so this graph must not be modified afterwards.
+     */
+    HnswGraph copyTo(VectorStore target) {
+        HnswGraph copy = new HnswGraph(target, m, efConstruction, random.nextLong());
+        for (int node = 0; node < size; node++) {
+            target.set(node, vectors.get(node));
+        }
+        copy.links = links.clone();
+        copy.size = size;
+        copy.entryPoint = entryPoint;
+        copy.maxLevel = maxLevel;
+        return copy;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = vectors.dot(current, query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : links[current][layer]) {
+                float similarity = vectors.dot(neighbor, query);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer.
+     *
+     * @return min-heap of at most {@code ef} accepted nodes keyed by similarity
+     */
+    private NodeHeap searchLayer(float[] query, int[] entryPoints, int ef, int layer,
+                                 IntPredicate accept, BitSet visited) {
+        // candidates 以相似度取负作键，堆顶即最相似的待扩展节点
+        NodeHeap candidates = new NodeHeap(ef * 2);
+        NodeHeap results = new NodeHeap(ef + 1);
+        for (int entry : entryPoints) {
+            visited.set(entry);
+            float similarity = vectors.dot(entry, query);
+            candidates.push(entry, -similarity);
+            offer(results, entry, similarity, ef, accept);
+        }
+        while (candidates.size() > 0) {
+            float closest = -candidates.topKey();
+            if (results.size() >= ef && closest < results.topKey()) {
+                break;
+            }
+            int current = candidates.pop();
+            for (int neighbor : links[current][layer]) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = vectors.dot(neighbor, query);
+                if (results.size() < ef || similarity > results.topKey()) {
+                    candidates.push(neighbor, -similarity);
+                    offer(results, neighbor, similarity, ef, accept);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void offer(NodeHeap results, int node, float similarity, int ef, IntPredicate accept) {
+        if (accept != null && !accept.test(node)) {
+            return;
+        }
+        results.push(node, similarity);
+        if (results.size() > ef) {
+            results.pop();
+        }
+    }
+
+    /**
+     * Neighbour selection heuristic: a candidate is kept only when it is closer to the base node than
+     * to every neighbour already kept, which preserves links across clusters.
+     */
+    private int[] selectNeighbors(List<Neighbor> candidatesDescending, int limit) {
+        int[] selected = new int[Math.min(limit, candidatesDescending.size())];
+        int count = 0;
+        for (Neighbor candidate : candidatesDescending) {
+            if (count == selected.length) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                if (vectors.dot(candidate.node(), selected[i]) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node();
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private void link(int node, int neighbor, int layer, int maxConnections) {
+        int[] current = links[node][layer];
+        if (current.length < maxConnections) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = neighbor;
+            links[node][layer] = grown;
+            return;
+        }
+        // 邻居已满：对原邻居加新节点重新做一次启发式筛选
+        List<Neighbor> candidates = new ArrayList<>(current.length + 1);
+        for (int existing : current) {
+            candidates.add(new Neighbor(existing, vectors.dot(node, existing)));
+        }
+        candidates.add(new Neighbor(neighbor, vectors.dot(node, neighbor)));
+        candidates.sort((left, right) -> Float.compare(right.similarity(), left.similarity()));
+        links[node][layer] = selectNeighbors(candidates, maxConnections);
+    }
+
+    private static List<Neighbor> drainDescending(NodeHeap heap) {
+        Neighbor[] drained = new Neighbor[heap.size()];
+        for (int i = drained.length - 1; i >= 0; i--) {
+            float similarity = heap.topKey();
+            drained[i] = new Neighbor(heap.pop(), similarity);
+        }
+        return Arrays.asList(drained);
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+
+    public record Neighbor(int node, float similarity) {
+    }
+}
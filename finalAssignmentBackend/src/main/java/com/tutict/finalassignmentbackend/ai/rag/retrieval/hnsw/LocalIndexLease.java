@@ -0,0 +1,160 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Redis lease that keeps {@link LocalVectorIndex} on a single node. Only the embedding worker of the
+ * node that claims a task inserts its vectors, so a second node would serve an index that never sees
+ * those writes; instead it fails to start while another instance holds the lease. The lease is renewed
+ * on its own thread, and the index refuses reads and writes whenever this node cannot prove it still
+ * holds it, including while Redis is unreachable.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rag.retrieval", name = "backend", havingValue = "local")
+public class LocalIndexLease {
+
+    private static final Logger log = Logger.getLogger(LocalIndexLease.class.getName());
+    static final String KEY = "rag:local-index:owner";
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration ttl;
+    private final String owner;
+    private final ScheduledExecutorService renewer;
+    // 本地认为租约有效的截止时刻（System.nanoTime），0 表示未持有；按请求发出前的时间计算，偏保守
+    private volatile long heldUntil;
+
+    public LocalIndexLease(StringRedisTemplate redisTemplate, RagRetrievalProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofMillis(Math.max(1000, properties.getLocal().getLeaseTtlMs()));
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+        // 独立线程续约，不与 @Scheduled 的压缩、落盘任务抢同一个调度线程
+        this.renewer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("rag-local-index-lease").factory());
+    }
+
+    public boolean isHeld() {
+        long until = heldUntil;
+        return until != 0 && System.nanoTime() - until < 0;
+    }
+
+    /**
+     * @throws IllegalStateException when the lease was never taken, was lost to another node, or could
+     *                               not be renewed before it expired
+     */
+    public void checkHeld() {
+        if (!isHeld()) {
+            throw new IllegalStateException("Local RAG vector index lease is not held by this node; "
+                    + "rag.retrieval.backend=local supports a single application node");
+        }
+    }
+
+    /**
+     * Takes the lease, waiting at most one TTL for a crashed previous owner's lease to expire.
+     *
+     * @throws IllegalStateException when another running instance still holds it
+     */
+    public void acquire() {
+        long deadline = System.nanoTime() + ttl.toNanos();
+        while (true) {
+            String holder;
+            long requestedAt = System.nanoTime();
+            try {
+                if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(KEY, owner, ttl))) {
+                    heldUntil = requestedAt + ttl.toNanos();
+                    startRenewing();
+                    return;
+                }
+                holder = redisTemplate.opsForValue().get(KEY);
+            } catch (RuntimeException ex) {
+                // Redis 不可用时无法判断归属：照常启动，但索引在续约线程拿到租约前拒绝读写
+                log.log(Level.WARNING, "Cannot verify local RAG index lease, retrying in background", ex);
+                startRenewing();
+                return;
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new IllegalStateException("Local RAG vector index is already in use by " + holder
+                        + "; rag.retrieval.backend=local supports a single application node");
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(Math.max(100, ttl.toMillis() / 10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for local RAG index lease", ex);
+            }
+        }
+    }
+
+    /**
+     * Extends the lease, or takes it if it is free. A lease found in another node's hands is dropped
+     * locally at once; when Redis cannot be reached the local deadline simply runs out.
+     */
+    void renew() {
+        long requestedAt = System.nanoTime();
+        try {
+            if (heldUntil != 0) {
+                Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(KEY), owner, String.valueOf(ttl.toMillis()));
+                if (renewed != null && renewed == 1L) {
+                    heldUntil = requestedAt + ttl.toNanos();
+                    return;
+                }
+                heldUntil = 0;
+            }
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(KEY, owner, ttl))) {
+                heldUntil = requestedAt + ttl.toNanos();
+                return;
+            }
+            log.severe(() -> "Local RAG vector index lease is held by " + redisTemplate.opsForValue().get(KEY)
+                    + "; this node refuses local index reads and writes until it is released");
+        } catch (RuntimeException ex) {
+            log.log(Level.WARNING, "Failed to renew local RAG index lease", ex);
+        }
+    }
+
+    private void startRenewing() {
+        long period = Math.max(100, ttl.toMillis() / 3);
+        renewer.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void release() {
+        renewer.shutdownNow();
+        if (heldUntil == 0) {
+            return;
+        }
+        heldUntil = 0;
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(KEY), owner);
+        } catch (RuntimeException ex) {
+            log.log(Level.WARNING, "Failed to release local RAG index lease; it expires after " + ttl, ex);
+        }
+    }
+}
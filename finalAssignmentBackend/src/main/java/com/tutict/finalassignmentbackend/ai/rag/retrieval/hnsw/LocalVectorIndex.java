@@ -0,0 +1,453 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
+import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.AclFilterService;
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process vector index for RAG chunks: an {@link HnswGraph} over memory-mapped vectors plus the
+ * chunk payloads and one posting bitset per ACL grant key. Searches run concurrently; upserts take
+ * the write lock. Replaced chunks are tombstoned rather than unlinked from the graph, and the graph
+ * is rebuilt from live chunks once tombstones pass the configured share.
+ * <p>
+ * The index only sees vectors embedded on this node, so it is single-node by design;
+ * {@link LocalIndexLease} keeps a second instance from starting with it, and reads and writes are
+ * refused while this node does not hold the lease. Compaction runs on its own thread.
+ */
+@Component
+@ConditionalOnProperty(prefix = "rag.retrieval", name = "backend", havingValue = "local")
+public class LocalVectorIndex {
+
+    private static final Logger log = Logger.getLogger(LocalVectorIndex.class.getName());
+    private static final String VECTOR_FILE = "vectors.f32";
+    private static final String GRAPH_FILE = "graph.bin";
+    private static final long SEED = 42L;
+
+    private final RagRetrievalProperties.Local settings;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int dimensions;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final VectorStore vectors;
+    private final LocalIndexLease lease;
+    // 重建整张图耗时较长，放在独立线程，避免占住 Spring 的默认调度线程
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("rag-local-compact").daemon(true).factory());
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    private Segment segment;
+    // 压缩期间的写入同时记在这里，换入新图前重放；仅在写锁内读写
+    private List<Consumer<Segment>> pendingChanges;
+    private volatile boolean dirty;
+
+    public LocalVectorIndex(RagRetrievalProperties retrievalProperties, RagProperties ragProperties, ObjectMapper objectMapper) {
+        this(retrievalProperties, ragProperties, objectMapper, null);
+    }
+
+    @Autowired
+    public LocalVectorIndex(RagRetrievalProperties retrievalProperties, RagProperties ragProperties, ObjectMapper objectMapper,
+                            LocalIndexLease lease) {
+        if (lease != null) {
+            // 先拿到租约再打开文件，避免两个实例写同一个索引
+            lease.acquire();
+        }
+        this.lease = lease;
+        this.settings = retrievalProperties.getLocal();
+        this.objectMapper = objectMapper;
+        this.directory = settings.getDirectory() == null || settings.getDirectory().isBlank()
+                ? null
+                : Path.of(settings.getDirectory());
+        this.dimensions = ragProperties.getEmbedding().getDimensions();
+        if (directory == null) {
+            vectors = VectorStore.inMemory(dimensions, settings.getInitialCapacity());
+            segment = new Segment(newGraph(vectors));
+            return;
+        }
+        vectors = VectorStore.mapped(directory.resolve(VECTOR_FILE), dimensions, settings.getInitialCapacity());
+        segment = load();
+    }
+
+    /**
+     * Adds or replaces chunks. A chunk id seen before is tombstoned and re-inserted as a new node.
+     */
+    public void upsert(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        checkLease();
+        lock.writeLock().lock();
+        try {
+            segment.upsert(entries);
+            if (pendingChanges != null) {
+                pendingChanges.add(target -> target.upsert(entries));
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstones the given chunks; unknown ids are ignored.
+     */
+    public void delete(Collection<String> chunkIds) {
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        checkLease();
+        lock.writeLock().lock();
+        try {
+            if (segment.delete(chunkIds)) {
+                dirty = true;
+            }
+            if (pendingChanges != null) {
+                List<String> ids = List.copyOf(chunkIds);
+                pendingChanges.add(target -> target.delete(ids));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Top-k chunks visible to {@code aclFilter}. The filter is resolved to a bitset before the graph
+     * walk, so hidden chunks never take result slots.
+     *
+     * @return results with {@code vectorScore} on the same {@code (1 + cosine) / 2} scale as the
+     * Elasticsearch knn query
+     */
+    public List<RetrievalResult> search(float[] queryVector, AclFilterService.AclFilter aclFilter, int limit) {
+        if (queryVector.length != dimensions) {
+            throw new IllegalArgumentException("expected " + dimensions + " dimensions but got "
+                    + queryVector.length);
+        }
+        checkLease();
+        lock.readLock().lock();
+        try {
+            BitSet allowed = segment.allowed(aclFilter);
+            int candidates = allowed.cardinality();
+            if (candidates == 0) {
+                return List.of();
+            }
+            List<HnswGraph.Neighbor> neighbors = candidates <= Math.max(settings.getExactSearchThreshold(), limit)
+                    ? segment.graph.exactSearch(queryVector, limit, allowed)
+                    : segment.graph.search(queryVector, limit, settings.getEfSearch(), allowed::get);
+            List<RetrievalResult> results = new ArrayList<>(neighbors.size());
+            for (HnswGraph.Neighbor neighbor : neighbors) {
+                results.add(segment.chunks.get(neighbor.node()).result()
+                        .withScores(0, (1 + neighbor.similarity()) / 2, 0));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment.nodeByChunk.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Graph nodes including tombstones.
+     */
+    int nodes() {
+        lock.readLock().lock();
+        try {
+            return segment.graph.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rag.retrieval.local.flush-interval-ms:60000}")
+    public void scheduleCompaction() {
+        if (compactionQueued.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compactionQueued.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Rebuilds the graph from live chunks when tombstones reach {@code compact-tombstone-ratio} of all
+     * nodes. The new graph is built in scratch memory while searches and writes continue on the old
+     * one; writes made in the meantime are replayed before the swap.
+     */
+    void compact() {
+        List<Entry> live;
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null || !needsCompaction()) {
+                return;
+            }
+            live = segment.liveEntries();
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        boolean swapped = false;
+        try (VectorStore scratch = VectorStore.inMemory(dimensions, Math.max(1, live.size()))) {
+            Segment rebuilt = new Segment(newGraph(scratch));
+            rebuilt.upsert(live);
+            lock.writeLock().lock();
+            try {
+                pendingChanges.forEach(change -> change.accept(rebuilt));
+                int before = segment.graph.size();
+                if (directory != null) {
+                    // 向量文件即将按新编号覆盖：先删旧图文件，中途崩溃时重启得到空索引而不是错位的索引
+                    Files.deleteIfExists(directory.resolve(GRAPH_FILE));
+                }
+                segment = rebuilt.moveTo(vectors);
+                dirty = true;
+                swapped = true;
+                log.info(() -> "Compacted local RAG vector index from " + before + " to " + segment.graph.size() + " nodes");
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException error) {
+            log.log(Level.WARNING, "Failed to compact local RAG vector index", error);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendingChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (swapped) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rag.retrieval.local.flush-interval-ms:60000}")
+    public void flush() {
+        if (directory == null || !dirty) {
+            return;
+        }
+        // 读锁即可：阻止写入但不阻塞检索
+        lock.readLock().lock();
+        try {
+            vectors.force();
+            Path temporary = directory.resolve(GRAPH_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                segment.graph.write(out);
+                for (StoredChunk chunk : segment.chunks) {
+                    byte[] json = objectMapper.writeValueAsBytes(chunk);
+                    out.writeInt(json.length);
+                    out.write(json);
+                }
+            }
+            Files.move(temporary, directory.resolve(GRAPH_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException error) {
+            log.log(Level.WARNING, "Failed to persist local RAG vector index to " + directory, error);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        compactor.shutdownNow();
+        try {
+            if (!compactor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warning("Local RAG vector index compaction did not stop within 30s");
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        lock.writeLock().lock();
+        try {
+            vectors.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkLease() {
+        if (lease != null) {
+            lease.checkHeld();
+        }
+    }
+
+    private boolean needsCompaction() {
+        int tombstones = segment.graph.size() - segment.nodeByChunk.size();
+        return tombstones > 0
+                && tombstones >= settings.getCompactMinTombstones()
+                && tombstones >= settings.getCompactTombstoneRatio() * segment.graph.size();
+    }
+
+    private Segment load() {
+        Path graphFile = directory.resolve(GRAPH_FILE);
+        if (!Files.exists(graphFile)) {
+            return new Segment(newGraph(vectors));
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile)))) {
+            Segment loaded = new Segment(HnswGraph.read(in, vectors, settings.getEfConstruction(), SEED));
+            for (int node = 0; node < loaded.graph.size(); node++) {
+                byte[] json = new byte[in.readInt()];
+                in.readFully(json);
+                StoredChunk chunk = objectMapper.readValue(json, StoredChunk.class);
+                loaded.chunks.add(chunk);
+                if (chunk.result() != null) {
+                    loaded.index(node, chunk);
+                }
+            }
+            log.info(() -> "Loaded local RAG vector index with " + loaded.nodeByChunk.size() + " chunks from " + directory);
+            return loaded;
+        } catch (IOException error) {
+            // 文件损坏时从空索引开始，由 embedding 重新入队回填
+            log.log(Level.WARNING, "Discarding unreadable local RAG vector index at " + graphFile, error);
+            return new Segment(newGraph(vectors));
+        }
+    }
+
+    private HnswGraph newGraph(VectorStore store) {
+        return new HnswGraph(store, settings.getM(), settings.getEfConstruction(), SEED);
+    }
+
+    public record Entry(RetrievalResult result, Set<String> grantKeys, float[] vector) {
+    }
+
+    record StoredChunk(RetrievalResult result, List<String> grantKeys) {
+    }
+
+    /**
+     * One graph with its payloads and postings; node ids index {@link #chunks}.
+     */
+    private static final class Segment {
+
+        private final HnswGraph graph;
+        private final List<StoredChunk> chunks;
+        private final Map<String, Integer> nodeByChunk;
+        private final Map<String, BitSet> grants;
+
+        private Segment(HnswGraph graph) {
+            this(graph, new ArrayList<>(), new HashMap<>(), new HashMap<>());
+        }
+
+        private Segment(HnswGraph graph, List<StoredChunk> chunks, Map<String, Integer> nodeByChunk,
+                        Map<String, BitSet> grants) {
+            this.graph = graph;
+            this.chunks = chunks;
+            this.nodeByChunk = nodeByChunk;
+            this.grants = grants;
+        }
+
+        void upsert(List<Entry> entries) {
+            for (Entry entry : entries) {
+                Integer previous = nodeByChunk.get(entry.result().chunkId());
+                int node = graph.add(entry.vector());
+                if (previous != null) {
+                    remove(previous);
+                }
+                StoredChunk chunk = new StoredChunk(entry.result(), List.copyOf(entry.grantKeys()));
+                chunks.add(chunk);
+                index(node, chunk);
+            }
+        }
+
+        boolean delete(Collection<String> chunkIds) {
+            boolean removed = false;
+            for (String chunkId : chunkIds) {
+                Integer node = nodeByChunk.remove(chunkId);
+                if (node != null) {
+                    remove(node);
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * Live chunks in node order, with their stored (normalised) vectors.
+         */
+        List<Entry> liveEntries() {
+            List<Entry> live = new ArrayList<>(nodeByChunk.size());
+            for (int node = 0; node < chunks.size(); node++) {
+                StoredChunk chunk = chunks.get(node);
+                if (chunk.result() != null) {
+                    live.add(new Entry(chunk.result(), Set.copyOf(chunk.grantKeys()), graph.vector(node)));
+                }
+            }
+            return live;
+        }
+
+        /**
+         * The same segment over {@code target}; node ids are unchanged.
+         */
+        Segment moveTo(VectorStore target) {
+            return new Segment(graph.copyTo(target), chunks, nodeByChunk, grants);
+        }
+
+        void index(int node, StoredChunk chunk) {
+            nodeByChunk.put(chunk.result().chunkId(), node);
+            for (String key : chunk.grantKeys()) {
+                grants.computeIfAbsent(key, ignored -> new BitSet()).set(node);
+            }
+        }
+
+        BitSet allowed(AclFilterService.AclFilter aclFilter) {
+            BitSet allowed = new BitSet(graph.size());
+            for (String key : aclFilter.grantKeys()) {
+                BitSet posting = grants.get(key);
+                if (posting != null) {
+                    allowed.or(posting);
+                }
+            }
+            return allowed;
+        }
+
+        private void remove(int node) {
+            StoredChunk chunk = chunks.get(node);
+            for (String key : chunk.grantKeys()) {
+                BitSet posting = grants.get(key);
+                if (posting != null) {
+                    posting.clear(node);
+                }
+            }
+            chunks.set(node, new StoredChunk(null, List.of()));
+        }
+    }
+}
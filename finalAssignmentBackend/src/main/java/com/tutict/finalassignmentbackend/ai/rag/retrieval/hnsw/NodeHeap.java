@@ -0,0 +1,78 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of node ids keyed by a float, backed by primitive arrays so graph traversal does
+ * not allocate per visited node.
+ */
+final class NodeHeap {
+
+    private int[] nodes;
+    private float[] keys;
+    private int size;
+
+    NodeHeap(int initialCapacity) {
+        nodes = new int[Math.max(4, initialCapacity)];
+        keys = new float[nodes.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    float topKey() {
+        return keys[0];
+    }
+
+    void push(int node, float key) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            nodes[index] = nodes[parent];
+            keys[index] = keys[parent];
+            index = parent;
+        }
+        nodes[index] = node;
+        keys[index] = key;
+    }
+
+    int pop() {
+        int top = nodes[0];
+        size--;
+        if (size > 0) {
+            int node = nodes[size];
+            float key = keys[size];
+            int index = 0;
+            while (true) {
+                int child = index * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                nodes[index] = nodes[child];
+                keys[index] = keys[child];
+                index = child;
+            }
+            nodes[index] = node;
+            keys[index] = key;
+        }
+        return top;
+    }
+}
@@ -0,0 +1,150 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-width float vectors kept outside the Java heap, either in anonymous memory or in a
+ * memory-mapped file. Not thread safe: growth remaps the segment, so callers must keep readers out
+ * while writing.
+ */
+public final class VectorStore implements AutoCloseable {
+
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT;
+
+    private final int dimensions;
+    private final long vectorBytes;
+    private final FileChannel channel;
+    private Arena arena;
+    private MemorySegment segment;
+    private int capacity;
+
+    private VectorStore(int dimensions, FileChannel channel, int capacity) {
+        if (dimensions <= 0) {
+            throw new IllegalArgumentException("dimensions must be positive");
+        }
+        this.dimensions = dimensions;
+        this.vectorBytes = (long) dimensions * Float.BYTES;
+        this.channel = channel;
+        remap(Math.max(1, capacity));
+    }
+
+    public static VectorStore inMemory(int dimensions, int initialCapacity) {
+        return new VectorStore(dimensions, null, initialCapacity);
+    }
+
+    /**
+     * Opens or creates {@code file}; existing vectors are kept and the mapping covers at least
+     * {@code initialCapacity} slots.
+     */
+    public static VectorStore mapped(Path file, int dimensions, int initialCapacity) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long existing = channel.size() / ((long) dimensions * Float.BYTES);
+            return new VectorStore(dimensions, channel, (int) Math.max(initialCapacity, existing));
+        } catch (IOException error) {
+            throw new UncheckedIOException("Failed to open vector file " + file, error);
+        }
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void set(int node, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        if (node >= capacity) {
+            remap(Math.max(node + 1, capacity * 2));
+        }
+        MemorySegment.copy(vector, 0, segment, FLOAT, node * vectorBytes, dimensions);
+    }
+
+    public float[] get(int node) {
+        float[] vector = new float[dimensions];
+        MemorySegment.copy(segment, FLOAT, node * vectorBytes, vector, 0, dimensions);
+        return vector;
+    }
+
+    public float dot(int node, float[] query) {
+        long base = (long) node * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += segment.getAtIndex(FLOAT, base + i) * query[i];
+        }
+        return sum;
+    }
+
+    public float dot(int left, int right) {
+        long leftBase = (long) left * dimensions;
+        long rightBase = (long) right * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += segment.getAtIndex(FLOAT, leftBase + i) * segment.getAtIndex(FLOAT, rightBase + i);
+        }
+        return sum;
+    }
+
+    /**
+     * Flushes dirty pages of a mapped store to disk; no-op for in-memory stores.
+     */
+    public void force() {
+        if (channel != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException error) {
+                throw new UncheckedIOException("Failed to close vector file", error);
+            }
+        }
+    }
+
+    private void remap(int newCapacity) {
+        Arena newArena = Arena.ofShared();
+        MemorySegment newSegment;
+        try {
+            if (channel != null) {
+                // 映射超出文件长度时 FileChannel 会自动扩展文件
+                newSegment = channel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity * vectorBytes, newArena);
+            } else {
+                newSegment = newArena.allocate(newCapacity * vectorBytes, Float.BYTES);
+                if (segment != null) {
+                    MemorySegment.copy(segment, 0, newSegment, 0, segment.byteSize());
+                }
+            }
+        } catch (IOException error) {
+            newArena.close();
+            throw new UncheckedIOException("Failed to map vector file", error);
+        }
+        if (arena != null) {
+            arena.close();
+        }
+        arena = newArena;
+        segment = newSegment;
+        capacity = newCapacity;
+    }
+}
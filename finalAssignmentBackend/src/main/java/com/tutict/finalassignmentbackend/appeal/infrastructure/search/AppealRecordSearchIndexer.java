@@ -3,6 +3,8 @@ package com.tutict.finalassignmentbackend.appeal.infrastructure.search;
 import com.tutict.finalassignmentbackend.entity.appeal.AppealRecord;
 import com.tutict.finalassignmentbackend.entity.elastic.AppealRecordDocument;
 import com.tutict.finalassignmentbackend.repository.AppealRecordSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
@@ -14,16 +16,31 @@ import java.util.Objects;
 public class AppealRecordSearchIndexer {
 
     private final AppealRecordSearchRepository appealRecordSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
 
     public AppealRecordSearchIndexer(AppealRecordSearchRepository appealRecordSearchRepository) {
+        this(appealRecordSearchRepository, CdcIndexCoverage.disabled());
+    }
+
+    @Autowired
+    public AppealRecordSearchIndexer(AppealRecordSearchRepository appealRecordSearchRepository,
+                                     CdcIndexCoverage cdcIndexCoverage) {
         this.appealRecordSearchRepository = appealRecordSearchRepository;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     public void indexAfterCommit(AppealRecord appealRecord) {
+        // 由 binlog 索引时不再双写；index/indexAll 仍用于回填
+        if (cdcIndexCoverage.covers(AppealRecordDocument.class)) {
+            return;
+        }
         runAfterCommit(() -> index(appealRecord));
     }
 
     public void deleteAfterCommit(Long appealId) {
+        if (cdcIndexCoverage.covers(AppealRecordDocument.class)) {
+            return;
+        }
         runAfterCommit(() -> appealRecordSearchRepository.deleteById(appealId));
     }
 
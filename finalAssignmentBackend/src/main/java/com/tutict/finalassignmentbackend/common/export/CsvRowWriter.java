@@ -0,0 +1,93 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV. Columns come from the first row's JSON properties so the output matches
+ * what the NDJSON export and the regular endpoints return.
+ */
+class CsvRowWriter implements ExportRowWriter {
+
+    private final ObjectMapper objectMapper;
+    private final Writer writer;
+    private List<String> columns;
+
+    CsvRowWriter(ObjectMapper objectMapper, OutputStream out) {
+        this.objectMapper = objectMapper;
+        this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(List<?> rows) throws IOException {
+        for (Object row : rows) {
+            JsonNode node = objectMapper.valueToTree(row);
+            if (!(node instanceof ObjectNode object)) {
+                continue;
+            }
+            if (columns == null) {
+                columns = new ArrayList<>();
+                Iterator<String> names = object.fieldNames();
+                names.forEachRemaining(columns::add);
+                writeLine(columns);
+            }
+            List<String> values = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                values.add(text(object.get(column)));
+            }
+            writeLine(values);
+        }
+        // 只刷到底层流，由调用方决定何时 flush 响应
+        writer.flush();
+    }
+
+    private void writeLine(List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    private String text(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return "";
+        }
+        if (value.isTextual()) {
+            return neutralizeFormula(value.asText());
+        }
+        return value.isValueNode() ? value.asText() : value.toString();
+    }
+
+    // 防止表格软件把文本单元格当公式执行；数字列保持原样
+    static String neutralizeFormula(String value) {
+        if (value.isEmpty()) {
+            return value;
+        }
+        char first = value.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            return "'" + value;
+        }
+        return value;
+    }
+
+    static String escape(String value) {
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,42 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.OutputStream;
+
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv;charset=UTF-8", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    ExportRowWriter newWriter(ObjectMapper objectMapper, OutputStream out) {
+        return this == CSV ? new CsvRowWriter(objectMapper, out) : new NdjsonRowWriter(objectMapper, out);
+    }
+
+    public static ExportFormat from(String value) {
+        if (value == null || value.isBlank()) {
+            return NDJSON;
+        }
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(value.trim()) || format.extension.equalsIgnoreCase(value.trim())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + value);
+    }
+}
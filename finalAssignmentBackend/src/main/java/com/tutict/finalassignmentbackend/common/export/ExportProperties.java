@@ -0,0 +1,32 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.export")
+public class ExportProperties {
+
+    // 每次从数据库/索引取的行数，也是响应每次 flush 的粒度
+    private int pageSize = 1000;
+    // 两次 search_after 请求之间 PIT 的保活时间
+    private Duration pitKeepAlive = Duration.ofMinutes(1);
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = Math.max(pageSize, 1);
+    }
+
+    public Duration getPitKeepAlive() {
+        return pitKeepAlive;
+    }
+
+    public void setPitKeepAlive(Duration pitKeepAlive) {
+        this.pitKeepAlive = pitKeepAlive == null ? Duration.ofMinutes(1) : pitKeepAlive;
+    }
+}
@@ -0,0 +1,12 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Serializes export rows batch by batch; nothing beyond the current batch is held.
+ */
+interface ExportRowWriter {
+
+    void write(List<?> rows) throws IOException;
+}
@@ -0,0 +1,114 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Walks a whole table or index in fixed-size pages without offsets, handing each page to a
+ * sink before fetching the next one. Memory stays at one page regardless of table size.
+ */
+@Component
+public class ExportScanner {
+
+    private static final Logger log = Logger.getLogger(ExportScanner.class.getName());
+
+    private final ExportProperties properties;
+    private final ObjectProvider<ElasticsearchOperations> elasticsearchOperations;
+
+    public ExportScanner(ExportProperties properties, ObjectProvider<ElasticsearchOperations> elasticsearchOperations) {
+        this.properties = properties;
+        this.elasticsearchOperations = elasticsearchOperations;
+    }
+
+    /**
+     * Keyset pagination on the primary key: {@code WHERE id > :last ORDER BY id LIMIT n}.
+     * Each page is its own short query, so no connection or snapshot is held for the whole export.
+     */
+    public <T> void scanTable(BaseMapper<T> mapper, Class<T> entityClass, Consumer<List<T>> sink) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        if (tableInfo == null || !tableInfo.havePK()) {
+            throw new IllegalStateException("Keyset export needs a primary key on " + entityClass.getName());
+        }
+        String keyColumn = tableInfo.getKeyColumn();
+        String keyProperty = tableInfo.getKeyProperty();
+        int pageSize = properties.getPageSize();
+        Object lastKey = null;
+        while (true) {
+            QueryWrapper<T> wrapper = new QueryWrapper<>();
+            wrapper.gt(lastKey != null, keyColumn, lastKey)
+                    .orderByAsc(keyColumn)
+                    .last("LIMIT " + pageSize);
+            List<T> page = mapper.selectList(wrapper);
+            if (page == null || page.isEmpty()) {
+                return;
+            }
+            sink.accept(page);
+            if (page.size() < pageSize) {
+                return;
+            }
+            lastKey = tableInfo.getPropertyValue(page.get(page.size() - 1), keyProperty);
+        }
+    }
+
+    /**
+     * Point-in-time + {@code search_after} over {@code _shard_doc}, the cheapest stable sort for
+     * a full walk. The PIT is always closed, including when the sink fails mid-export.
+     */
+    public <D> void scanIndex(Class<D> documentClass, Consumer<List<D>> sink) {
+        ElasticsearchOperations operations = elasticsearchOperations.getIfAvailable();
+        if (operations == null) {
+            throw new IllegalStateException("Elasticsearch is not configured");
+        }
+        int pageSize = properties.getPageSize();
+        String pitId = operations.openPointInTime(operations.getIndexCoordinatesFor(documentClass),
+                properties.getPitKeepAlive());
+        try {
+            List<Object> searchAfter = null;
+            while (true) {
+                NativeQuery query = NativeQuery.builder()
+                        .withQuery(q -> q.matchAll(m -> m))
+                        .withPointInTime(new Query.PointInTime(pitId, properties.getPitKeepAlive()))
+                        .withSort(Sort.by(Sort.Direction.ASC, "_shard_doc"))
+                        .withSearchAfter(searchAfter)
+                        .withMaxResults(pageSize)
+                        .withTrackTotalHits(false)
+                        .build();
+                SearchHits<D> hits = operations.search(query, documentClass);
+                if (hits.getPointInTimeId() != null) {
+                    // ES 可能在每次响应中返回新的 PIT id
+                    pitId = hits.getPointInTimeId();
+                }
+                List<SearchHit<D>> page = hits.getSearchHits();
+                if (page.isEmpty()) {
+                    return;
+                }
+                sink.accept(page.stream().map(SearchHit::getContent).toList());
+                if (page.size() < pageSize) {
+                    return;
+                }
+                searchAfter = page.get(page.size() - 1).getSortValues();
+            }
+        } finally {
+            try {
+                operations.closePointInTime(pitId);
+            } catch (RuntimeException ex) {
+                log.log(Level.FINE, "Failed to close point in time, it will expire on its own", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+/**
+ * Where an export reads its rows from. The database is authoritative; the index is only
+ * as fresh as the last sync but keeps the scan off the primary.
+ */
+public enum ExportSource {
+    DATABASE,
+    INDEX;
+
+    public static ExportSource from(String value) {
+        if (value == null || value.isBlank()) {
+            return DATABASE;
+        }
+        for (ExportSource source : values()) {
+            if (source.name().equalsIgnoreCase(value.trim())) {
+                return source;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported export source: " + value);
+    }
+}
@@ -0,0 +1,27 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+class NdjsonRowWriter implements ExportRowWriter {
+
+    private final ObjectMapper objectMapper;
+    private final OutputStream out;
+
+    NdjsonRowWriter(ObjectMapper objectMapper, OutputStream out) {
+        this.objectMapper = objectMapper;
+        this.out = out;
+    }
+
+    @Override
+    public void write(List<?> rows) throws IOException {
+        for (Object row : rows) {
+            // writeValueAsBytes 不会关闭底层流
+            out.write(objectMapper.writeValueAsBytes(row));
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Builds chunked export responses. Rows are written and flushed one scan page at a time, so
+ * the client starts receiving data immediately and the server never buffers the full result.
+ */
+@Component
+public class StreamingExportResponses {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final ObjectMapper objectMapper;
+
+    public StreamingExportResponses(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param scan   pushes successive pages into the given sink, e.g. a service's {@code exportAll}
+     * @param mapper converts one page of entities into the rows that are actually written
+     */
+    public <T> ResponseEntity<StreamingResponseBody> stream(String baseName,
+                                                            ExportFormat format,
+                                                            Consumer<Consumer<List<T>>> scan,
+                                                            Function<List<T>, ? extends List<?>> mapper) {
+        StreamingResponseBody body = out -> {
+            ExportRowWriter writer = format.newWriter(objectMapper, out);
+            try {
+                scan.accept(page -> {
+                    try {
+                        writer.write(mapper.apply(page));
+                        out.flush();
+                    } catch (IOException ex) {
+                        // 客户端断开时中止扫描，释放游标/PIT
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
+        String fileName = baseName + "-" + LocalDateTime.now().format(FILE_TIMESTAMP) + "." + format.getExtension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Writes the same {@code {"success":true,"data":[...]}} body as {@code ApiResponse.ok(list)}, one scan
+     * page at a time, for list endpoints whose clients still expect the whole table in one JSON response.
+     */
+    public <T> ResponseEntity<StreamingResponseBody> streamList(Consumer<Consumer<List<T>>> scan,
+                                                                Function<List<T>, ? extends List<?>> mapper) {
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            // 由容器关闭响应流
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeArrayFieldStart("data");
+            try {
+                scan.accept(page -> {
+                    try {
+                        for (Object row : mapper.apply(page)) {
+                            generator.writeObject(row);
+                        }
+                        generator.flush();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.close();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,209 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Batch counterpart of {@link IdempotentKafkaMessageProcessor}. A poll is deserialized, keys that
+ * already completed are dropped with one {@link IdempotencyStore#findCompleted} lookup and the rest
+ * is written by a single batch handler call. If the grouped write fails each record is applied on
+ * its own; records that still fail are marked failed and sent to {@code <topic>.DLT}, where the
+ * {@code DeadLetterListener} picks them up. The poll is acknowledged once at the end.
+ * Dead letters are published in batch order, and a failure midway throws a
+ * {@link BatchListenerFailedException} at the failing record: the container commits the records before
+ * it, so none of the records already dead-lettered is redelivered and dead-lettered again.
+ */
+@Component
+public class BatchKafkaMessageProcessor {
+
+    private static final Logger LOG = Logger.getLogger(BatchKafkaMessageProcessor.class.getName());
+
+    private final IdempotencyStore idempotencyStore;
+    private final IdempotentKafkaMessageProcessor messageProcessor;
+    private final ConsumerRecordRecoverer deadLetterRecoverer;
+
+    @Autowired
+    public BatchKafkaMessageProcessor(IdempotencyStore idempotencyStore,
+                                      IdempotentKafkaMessageProcessor messageProcessor,
+                                      KafkaTemplate<String, String> kafkaTemplate) {
+        this(idempotencyStore, messageProcessor, new DeadLetterPublishingRecoverer(
+                kafkaTemplate,
+                (record, ex) -> new TopicPartition(record.topic() + ".DLT", record.partition())
+        ));
+    }
+
+    BatchKafkaMessageProcessor(IdempotencyStore idempotencyStore,
+                               IdempotentKafkaMessageProcessor messageProcessor,
+                               ConsumerRecordRecoverer deadLetterRecoverer) {
+        this.idempotencyStore = idempotencyStore;
+        this.messageProcessor = messageProcessor;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+    }
+
+    /**
+     * @param batchHandler writes all payloads at once and returns the stored records in payload order
+     * @param recordHandler writes one payload; used when the grouped write fails
+     * @param businessId    id recorded on the history row; a null result or id leaves the key unmarked
+     * @param onDuplicate   called for every payload whose key already completed
+     */
+    public <T> void process(
+            List<ConsumerRecord<String, String>> records,
+            Acknowledgment acknowledgment,
+            String entityName,
+            String action,
+            Class<T> payloadType,
+            IdempotentKafkaMessageProcessor.ThrowingFunction<List<T>, List<T>> batchHandler,
+            RecordHandler<T> recordHandler,
+            Function<T, Long> businessId,
+            BiConsumer<String, T> onDuplicate
+    ) {
+        Map<String, PendingRecord<T>> byKey = new LinkedHashMap<>();
+        Deque<Undecodable> undecodable = new ArrayDeque<>();
+        for (int position = 0; position < records.size(); position++) {
+            ConsumerRecord<String, String> record = records.get(position);
+            String idempotencyKey = record.key();
+            if (!StringUtils.hasText(idempotencyKey)) {
+                LOG.log(Level.WARNING, "Received {0} event without idempotency key, skipping", entityName);
+                continue;
+            }
+            if (byKey.containsKey(idempotencyKey)) {
+                // 同一批内的重投只处理一次
+                continue;
+            }
+            try {
+                byKey.put(idempotencyKey, new PendingRecord<>(idempotencyKey, position, record,
+                        messageProcessor.deserialize(record.value(), payloadType)));
+            } catch (IllegalArgumentException ex) {
+                // 无法解析的消息重试也不会成功，按批内顺序在其位置被处理时进入 DLT
+                undecodable.add(new Undecodable(position, record, ex));
+            }
+        }
+
+        Set<String> completed = byKey.isEmpty() ? Set.of() : idempotencyStore.findCompleted(byKey.keySet());
+        List<PendingRecord<T>> pending = new ArrayList<>(byKey.size());
+        for (PendingRecord<T> item : byKey.values()) {
+            if (completed.contains(item.idempotencyKey())) {
+                LOG.log(Level.INFO, "Skipping duplicate {0} message: key={1}, action={2}",
+                        new Object[]{entityName, item.idempotencyKey(), action});
+                if (onDuplicate != null) {
+                    onDuplicate.accept(item.idempotencyKey(), item.payload());
+                }
+            } else {
+                pending.add(item);
+            }
+        }
+        if (!pending.isEmpty()) {
+            apply(pending, undecodable, entityName, action, payloadType, batchHandler, recordHandler, businessId);
+        }
+        deadLetterUndecodable(undecodable, Integer.MAX_VALUE);
+        if (acknowledgment != null) {
+            acknowledgment.acknowledge();
+        }
+    }
+
+    private <T> void apply(List<PendingRecord<T>> pending,
+                           Deque<Undecodable> undecodable,
+                           String entityName,
+                           String action,
+                           Class<T> payloadType,
+                           IdempotentKafkaMessageProcessor.ThrowingFunction<List<T>, List<T>> batchHandler,
+                           RecordHandler<T> recordHandler,
+                           Function<T, Long> businessId) {
+        List<T> results;
+        try {
+            results = batchHandler.apply(pending.stream().map(PendingRecord::payload).toList());
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, String.format("Grouped %s %s of %d records failed, applying them one by one: %s",
+                    entityName, action, pending.size(), ex.getMessage()), ex);
+            applyOneByOne(pending, undecodable, entityName, action, payloadType, recordHandler, businessId);
+            return;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            markSuccess(pending.get(i).idempotencyKey(), results.get(i), businessId);
+        }
+    }
+
+    private <T> void applyOneByOne(List<PendingRecord<T>> pending,
+                                   Deque<Undecodable> undecodable,
+                                   String entityName,
+                                   String action,
+                                   Class<T> payloadType,
+                                   RecordHandler<T> recordHandler,
+                                   Function<T, Long> businessId) {
+        for (PendingRecord<T> item : pending) {
+            deadLetterUndecodable(undecodable, item.position());
+            try {
+                // 重新解析：批量写入可能已改写了实体（主键回填、乐观锁版本号）
+                T payload = messageProcessor.deserialize(item.record().value(), payloadType);
+                markSuccess(item.idempotencyKey(), recordHandler.apply(item.idempotencyKey(), payload), businessId);
+            } catch (TransientDataAccessException | DataAccessResourceFailureException ex) {
+                // 数据库不可用时从本条记录起由容器重投；之前的记录已写库或已进入 DLT，随位点一起提交
+                throw new BatchListenerFailedException(entityName + " " + action + " failed, database unavailable",
+                        ex, item.position());
+            } catch (Exception ex) {
+                idempotencyStore.markFailure(item.idempotencyKey(), ex.getMessage());
+                LOG.log(Level.SEVERE, String.format("%s Kafka message processing failed (key=%s, action=%s)",
+                        entityName, item.idempotencyKey(), action), ex);
+                deadLetter(item.position(), item.record(), ex);
+            }
+        }
+    }
+
+    private <T> void markSuccess(String idempotencyKey, T result, Function<T, Long> businessId) {
+        Long id = result == null ? null : businessId.apply(result);
+        if (id != null) {
+            idempotencyStore.markSuccess(idempotencyKey, id);
+        }
+    }
+
+    // 送出位于 position 之前、尚未送出的无法解析消息
+    private void deadLetterUndecodable(Deque<Undecodable> undecodable, int position) {
+        while (!undecodable.isEmpty() && undecodable.peekFirst().position() < position) {
+            Undecodable item = undecodable.pollFirst();
+            deadLetter(item.position(), item.record(), item.cause());
+        }
+    }
+
+    private void deadLetter(int position, ConsumerRecord<String, String> record, Exception cause) {
+        try {
+            deadLetterRecoverer.accept(record, cause);
+        } catch (RuntimeException ex) {
+            // 发送 DLT 失败时从本条记录起重投，之前已进入 DLT 的记录不会再次发送
+            throw new BatchListenerFailedException("Failed to dead-letter Kafka record", ex, position);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler<T> {
+        T apply(String idempotencyKey, T payload) throws Exception;
+    }
+
+    private record PendingRecord<T>(String idempotencyKey, int position, ConsumerRecord<String, String> record,
+                                    T payload) {
+    }
+
+    private record Undecodable(int position, ConsumerRecord<String, String> record, IllegalArgumentException cause) {
+    }
+}
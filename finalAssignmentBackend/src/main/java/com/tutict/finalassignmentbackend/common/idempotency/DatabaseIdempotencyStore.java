@@ -0,0 +1,126 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
+import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Synchronous store on {@code sys_request_history}: every call reads or writes the row inside the
+ * caller's transaction. Used when {@code app.idempotency.store=database} and as the Redis fallback.
+ */
+@Component
+public class DatabaseIdempotencyStore implements IdempotencyStore {
+
+    private static final Logger LOG = Logger.getLogger(DatabaseIdempotencyStore.class.getName());
+
+    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+
+    public DatabaseIdempotencyStore(SysRequestHistoryMapper sysRequestHistoryMapper) {
+        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+    }
+
+    @Override
+    public boolean claim(String idempotencyKey, SysRequestHistory details) {
+        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+            return false;
+        }
+        return insert(idempotencyKey, details);
+    }
+
+    @Override
+    public boolean isClaimed(String idempotencyKey) {
+        return sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null;
+    }
+
+    @Override
+    public boolean isCompleted(String idempotencyKey) {
+        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
+        return history != null
+                && SUCCESS.equalsIgnoreCase(history.getBusinessStatus())
+                && DONE.equalsIgnoreCase(history.getRequestParams());
+    }
+
+    @Override
+    public Set<String> findCompleted(Collection<String> idempotencyKeys) {
+        if (idempotencyKeys.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(sysRequestHistoryMapper.selectCompletedKeys(idempotencyKeys));
+    }
+
+    @Override
+    public void markPending(String idempotencyKey, Long businessId) {
+        update(idempotencyKey, SUCCESS, businessId, PENDING, "pending success");
+    }
+
+    @Override
+    public void markSuccess(String idempotencyKey, Long businessId) {
+        update(idempotencyKey, SUCCESS, businessId, DONE, "success");
+    }
+
+    @Override
+    public void markFailure(String idempotencyKey, String reason) {
+        update(idempotencyKey, FAILED, null, IdempotencyStore.truncateReason(reason), "failure");
+    }
+
+    /**
+     * Inserts the history row without looking it up first; {@code uk_idempotency_key} rejects duplicates.
+     */
+    boolean insert(String idempotencyKey, SysRequestHistory details) {
+        try {
+            sysRequestHistoryMapper.insert(newHistory(idempotencyKey, details));
+            return true;
+        } catch (DataIntegrityViolationException ex) {
+            // uk_idempotency_key：并发请求或更早的请求已插入
+            return false;
+        }
+    }
+
+    /**
+     * Moves the row forward with a single UPDATE; returns false when the key has no row or is already past that state.
+     */
+    boolean advance(String idempotencyKey, String status, Long businessId, String requestParams) {
+        return sysRequestHistoryMapper.advanceState(idempotencyKey, status, businessId, requestParams) > 0;
+    }
+
+    static SysRequestHistory newHistory(String idempotencyKey, SysRequestHistory details) {
+        SysRequestHistory history = new SysRequestHistory();
+        if (details != null) {
+            history.setRequestMethod(details.getRequestMethod());
+            history.setRequestUrl(details.getRequestUrl());
+            history.setRequestParams(details.getRequestParams());
+            history.setBusinessType(details.getBusinessType());
+            history.setBusinessId(details.getBusinessId());
+            history.setUserId(details.getUserId());
+            history.setRequestIp(details.getRequestIp());
+        }
+        history.setIdempotencyKey(idempotencyKey);
+        history.setBusinessStatus(PROCESSING);
+        history.setCreatedAt(LocalDateTime.now());
+        history.setUpdatedAt(LocalDateTime.now());
+        return history;
+    }
+
+    private void update(String idempotencyKey, String status, Long businessId, String requestParams, String label) {
+        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
+        if (history == null) {
+            LOG.log(Level.WARNING, "Cannot mark {0} for missing idempotency key {1}", new Object[]{label, idempotencyKey});
+            return;
+        }
+        history.setBusinessStatus(status);
+        if (businessId != null) {
+            history.setBusinessId(businessId);
+        }
+        history.setRequestParams(requestParams);
+        history.setUpdatedAt(LocalDateTime.now());
+        sysRequestHistoryMapper.updateById(history);
+    }
+}
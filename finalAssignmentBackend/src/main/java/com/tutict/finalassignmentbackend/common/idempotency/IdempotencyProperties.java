@@ -0,0 +1,56 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "app.idempotency")
+public class IdempotencyProperties {
+
+    // redis: SET NX PX filter in Redis in front of the sys_request_history unique key.
+    // database: select/insert/update against sys_request_history on every call (previous behaviour).
+    private Store store = Store.REDIS;
+    private String keyPrefix = "idempotency:";
+    // Redis 快速拒绝重复请求的时长；超过后的重放由数据库唯一键拒绝
+    private Duration ttl = Duration.ofDays(7);
+    private long completedCacheSize = 100_000;
+
+    public Store getStore() {
+        return store;
+    }
+
+    public void setStore(Store store) {
+        this.store = store == null ? Store.REDIS : store;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix == null ? "" : keyPrefix;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl == null || ttl.isNegative() || ttl.isZero() ? Duration.ofDays(7) : ttl;
+    }
+
+    public long getCompletedCacheSize() {
+        return completedCacheSize;
+    }
+
+    public void setCompletedCacheSize(long completedCacheSize) {
+        this.completedCacheSize = Math.max(0, completedCacheSize);
+    }
+
+    public enum Store {
+        REDIS,
+        DATABASE
+    }
+}
@@ -0,0 +1,72 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Lifecycle of an idempotency key: claimed ({@code PROCESSING}), event published ({@code SUCCESS/PENDING}),
+ * completed ({@code SUCCESS/DONE}) or {@code FAILED}. Every state is recorded in {@code sys_request_history};
+ * implementations differ in where the claim is decided and when the row is written.
+ */
+public interface IdempotencyStore {
+
+    String PROCESSING = "PROCESSING";
+    String SUCCESS = "SUCCESS";
+    String FAILED = "FAILED";
+    String PENDING = "PENDING";
+    String DONE = "DONE";
+    int MAX_REASON_LENGTH = 500;
+
+    /**
+     * Atomically claims the key.
+     *
+     * @return false when the key has been claimed before
+     */
+    default boolean claim(String idempotencyKey) {
+        return claim(idempotencyKey, null);
+    }
+
+    /**
+     * Claims the key and records the request columns of {@code details} (business type, method, url,
+     * business id) on the history row. Inside a transaction the claim is released on rollback.
+     */
+    boolean claim(String idempotencyKey, SysRequestHistory details);
+
+    boolean isClaimed(String idempotencyKey);
+
+    /**
+     * @return true once the key reached {@code SUCCESS/DONE}; replays of such keys are skipped
+     */
+    boolean isCompleted(String idempotencyKey);
+
+    /**
+     * Batch form of {@link #isCompleted(String)} for a poll of Kafka records.
+     *
+     * @return the keys that reached {@code SUCCESS/DONE}
+     */
+    default Set<String> findCompleted(Collection<String> idempotencyKeys) {
+        Set<String> completed = new LinkedHashSet<>();
+        for (String idempotencyKey : idempotencyKeys) {
+            if (isCompleted(idempotencyKey)) {
+                completed.add(idempotencyKey);
+            }
+        }
+        return completed;
+    }
+
+    void markPending(String idempotencyKey, Long businessId);
+
+    void markSuccess(String idempotencyKey, Long businessId);
+
+    void markFailure(String idempotencyKey, String reason);
+
+    static String truncateReason(String reason) {
+        if (reason == null || reason.length() <= MAX_REASON_LENGTH) {
+            return reason;
+        }
+        return reason.substring(0, MAX_REASON_LENGTH);
+    }
+}
@@ -0,0 +1,269 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uses Redis as a fast-path filter in front of {@code sys_request_history}. {@code SET NX PX} rejects
+ * duplicates without touching the database; a key Redis lets through is inserted directly, and
+ * {@code uk_idempotency_key} stays the authority, so replays after the Redis TTL or during a Redis
+ * outage are still rejected. Keys that completed on this node are remembered locally, so Kafka
+ * redeliveries are skipped without a round trip.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(prefix = "app.idempotency", name = "store", havingValue = "redis", matchIfMissing = true)
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final Logger LOG = Logger.getLogger(RedisIdempotencyStore.class.getName());
+
+    // 状态只前进：PROCESSING -> PENDING:id -> DONE:id / FAILED；消费端可能先于生产端事务提交完成
+    private static final RedisScript<Long> ADVANCE_SCRIPT = new DefaultRedisScript<>("""
+            local function stage(v)
+              if v == 'PROCESSING' then return 0 end
+              if string.sub(v, 1, 7) == 'PENDING' then return 1 end
+              return 2
+            end
+            local current = redis.call('GET', KEYS[1])
+            if not current then return 0 end
+            if stage(current) <= stage(ARGV[1]) then
+              redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final DatabaseIdempotencyStore databaseStore;
+    private final String keyPrefix;
+    private final Duration ttl;
+    private final Cache<String, Boolean> completedKeys;
+
+    public RedisIdempotencyStore(StringRedisTemplate redisTemplate,
+                                 DatabaseIdempotencyStore databaseStore,
+                                 IdempotencyProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.databaseStore = databaseStore;
+        this.keyPrefix = properties.getKeyPrefix();
+        this.ttl = properties.getTtl();
+        this.completedKeys = Caffeine.newBuilder()
+                .maximumSize(properties.getCompletedCacheSize())
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public boolean claim(String idempotencyKey, SysRequestHistory details) {
+        if (completedKeys.getIfPresent(idempotencyKey) != null) {
+            return false;
+        }
+        String redisKey = redisKey(idempotencyKey);
+        boolean redisClaimed = false;
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey, PROCESSING, ttl))) {
+                return false;
+            }
+            redisClaimed = true;
+        } catch (RuntimeException ex) {
+            LOG.log(Level.WARNING, "Redis claim failed for idempotency key {0}, using database only: {1}",
+                    new Object[]{idempotencyKey, ex.getMessage()});
+        }
+        // 唯一键是最终裁决：Redis 键过期后的重放或 Redis 不可用期间的重复请求都会在这里被拒绝
+        if (!databaseStore.insert(idempotencyKey, details)) {
+            if (redisClaimed) {
+                deleteQuietly(idempotencyKey);
+            }
+            return false;
+        }
+        if (redisClaimed) {
+            // 事务回滚时释放占位，与随事务回滚的历史行一致
+            onRollback(() -> release(idempotencyKey));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isClaimed(String idempotencyKey) {
+        if (completedKeys.getIfPresent(idempotencyKey) != null) {
+            return true;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(redisKey(idempotencyKey)))) {
+                return true;
+            }
+        } catch (RuntimeException ex) {
+            LOG.log(Level.FINE, "Redis lookup failed for idempotency key {0}: {1}",
+                    new Object[]{idempotencyKey, ex.getMessage()});
+        }
+        return databaseStore.isClaimed(idempotencyKey);
+    }
+
+    @Override
+    public boolean isCompleted(String idempotencyKey) {
+        if (completedKeys.getIfPresent(idempotencyKey) != null) {
+            return true;
+        }
+        String state;
+        try {
+            state = redisTemplate.opsForValue().get(redisKey(idempotencyKey));
+        } catch (RuntimeException ex) {
+            LOG.log(Level.FINE, "Redis lookup failed for idempotency key {0}: {1}",
+                    new Object[]{idempotencyKey, ex.getMessage()});
+            state = null;
+        }
+        if (state != null) {
+            return state.startsWith(DONE);
+        }
+        // Redis 中已过期或不可用：以数据库为准
+        return databaseStore.isCompleted(idempotencyKey);
+    }
+
+    @Override
+    public Set<String> findCompleted(Collection<String> idempotencyKeys) {
+        Set<String> completed = new HashSet<>();
+        List<String> unresolved = new ArrayList<>();
+        for (String idempotencyKey : new LinkedHashSet<>(idempotencyKeys)) {
+            if (completedKeys.getIfPresent(idempotencyKey) != null) {
+                completed.add(idempotencyKey);
+            } else {
+                unresolved.add(idempotencyKey);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return completed;
+        }
+        List<String> states;
+        try {
+            states = redisTemplate.opsForValue().multiGet(unresolved.stream().map(this::redisKey).toList());
+        } catch (RuntimeException ex) {
+            LOG.log(Level.FINE, "Redis batch lookup failed for {0} idempotency keys: {1}",
+                    new Object[]{unresolved.size(), ex.getMessage()});
+            states = null;
+        }
+        List<String> fromDatabase = new ArrayList<>();
+        for (int i = 0; i < unresolved.size(); i++) {
+            String idempotencyKey = unresolved.get(i);
+            String state = states == null ? null : states.get(i);
+            if (state != null) {
+                if (state.startsWith(DONE)) {
+                    completed.add(idempotencyKey);
+                }
+                continue;
+            }
+            fromDatabase.add(idempotencyKey);
+        }
+        // 剩余的键一次 IN 查询
+        if (!fromDatabase.isEmpty()) {
+            completed.addAll(databaseStore.findCompleted(fromDatabase));
+        }
+        return completed;
+    }
+
+    @Override
+    public void markPending(String idempotencyKey, Long businessId) {
+        advance(idempotencyKey, SUCCESS, businessId, PENDING, PENDING + ":" + idOrEmpty(businessId));
+    }
+
+    @Override
+    public void markSuccess(String idempotencyKey, Long businessId) {
+        if (advance(idempotencyKey, SUCCESS, businessId, DONE, DONE + ":" + idOrEmpty(businessId))) {
+            afterCommit(() -> completedKeys.put(idempotencyKey, Boolean.TRUE));
+        }
+    }
+
+    @Override
+    public void markFailure(String idempotencyKey, String reason) {
+        advance(idempotencyKey, FAILED, null, IdempotencyStore.truncateReason(reason), FAILED);
+    }
+
+    /**
+     * Updates the history row in the caller's transaction and mirrors the state into Redis after commit.
+     * Like the row update it replaces, a key that was never claimed is only logged.
+     */
+    private boolean advance(String idempotencyKey, String status, Long businessId, String requestParams, String redisValue) {
+        if (!databaseStore.advance(idempotencyKey, status, businessId, requestParams)) {
+            // 行不存在，或已处于更靠后的状态（消费端先于生产端事务提交完成）
+            LOG.log(Level.WARNING, "Cannot mark {0} for missing or already finished idempotency key {1}",
+                    new Object[]{requestParams, idempotencyKey});
+            return false;
+        }
+        afterCommit(() -> {
+            try {
+                redisTemplate.execute(ADVANCE_SCRIPT, List.of(redisKey(idempotencyKey)),
+                        redisValue, String.valueOf(ttl.toMillis()));
+            } catch (RuntimeException ex) {
+                // Redis 只是过滤层，数据库行已是最新状态
+                LOG.log(Level.WARNING, "Redis update failed for idempotency key {0}: {1}",
+                        new Object[]{idempotencyKey, ex.getMessage()});
+            }
+        });
+        return true;
+    }
+
+    private void release(String idempotencyKey) {
+        completedKeys.invalidate(idempotencyKey);
+        deleteQuietly(idempotencyKey);
+    }
+
+    private void deleteQuietly(String idempotencyKey) {
+        try {
+            redisTemplate.delete(redisKey(idempotencyKey));
+        } catch (RuntimeException ex) {
+            LOG.log(Level.WARNING, "Failed to release idempotency key {0}: {1}",
+                    new Object[]{idempotencyKey, ex.getMessage()});
+        }
+    }
+
+    private String redisKey(String idempotencyKey) {
+        return keyPrefix + idempotencyKey;
+    }
+
+    private static String idOrEmpty(Long businessId) {
+        return businessId == null ? "" : businessId.toString();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
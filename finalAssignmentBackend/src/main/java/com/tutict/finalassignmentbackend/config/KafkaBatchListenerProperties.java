@@ -0,0 +1,56 @@
+package com.tutict.finalassignmentbackend.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Per-topic switch between the record listener and the batch listener of a topic. Both listeners
+ * share the consumer group, so exactly one of them is started; listeners read the decision through
+ * {@code autoStartup = "#{@kafkaBatchListenerProperties...}"}.
+ */
+@Component
+@ConfigurationProperties(prefix = "kafka.batch")
+public class KafkaBatchListenerProperties {
+
+    private final boolean listenerAutoStartup;
+    // 以批量模式消费的主题名
+    private Set<String> topics = new LinkedHashSet<>();
+    // 每次 poll 的最大记录数，也是一次多行插入和一次 _bulk 的上限
+    private int maxPollRecords = 500;
+
+    // @Autowired 让 Boot 按 JavaBean setter 绑定 kafka.batch.*，而不是把该构造器当作构造器绑定
+    @Autowired
+    public KafkaBatchListenerProperties(
+            @Value("${spring.kafka.listener.auto-startup:true}") boolean listenerAutoStartup) {
+        this.listenerAutoStartup = listenerAutoStartup;
+    }
+
+    public boolean recordListenerStartup(String topic) {
+        return listenerAutoStartup && !topics.contains(topic);
+    }
+
+    public boolean batchListenerStartup(String topic) {
+        return listenerAutoStartup && topics.contains(topic);
+    }
+
+    public Set<String> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(Set<String> topics) {
+        this.topics = topics == null ? new LinkedHashSet<>() : topics;
+    }
+
+    public int getMaxPollRecords() {
+        return maxPollRecords;
+    }
+
+    public void setMaxPollRecords(int maxPollRecords) {
+        this.maxPollRecords = Math.max(1, maxPollRecords);
+    }
+}
@@ -1,7 +1,9 @@
 package com.tutict.finalassignmentbackend.config;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.tutict.finalassignmentbackend.observability.TraceIdBatchInterceptor;
 import com.tutict.finalassignmentbackend.observability.TraceIdRecordInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -14,6 +16,8 @@ import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
 
+import java.util.Properties;
+
 @Configuration
 public class KafkaErrorHandlerConfig {
 
@@ -52,4 +56,32 @@ public class KafkaErrorHandlerConfig {
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         return factory;
     }
+
+    /**
+     * The one batch factory, shared by the topic batch listeners and the CDC indexer; a listener that
+     * needs a different poll size sets {@code max.poll.records} in its own {@code properties}.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory,
+            DefaultErrorHandler kafkaErrorHandler,
+            KafkaBatchListenerProperties properties,
+            @Value("${spring.kafka.listener.auto-startup:true}") boolean autoStartup) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setAutoStartup(autoStartup);
+        factory.setBatchInterceptor(new TraceIdBatchInterceptor());
+        // 整批抛出的异常由公共错误处理器整批重试，耗尽后逐条进入 DLT
+        factory.setCommonErrorHandler(kafkaErrorHandler);
+        ContainerProperties containerProperties = factory.getContainerProperties();
+        // 批内每条记录都已写库或进入 DLT 后才提交位点
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        Properties consumerOverrides = new Properties();
+        consumerOverrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+                String.valueOf(properties.getMaxPollRecords()));
+        containerProperties.setKafkaConsumerProperties(consumerOverrides);
+        return factory;
+    }
 }
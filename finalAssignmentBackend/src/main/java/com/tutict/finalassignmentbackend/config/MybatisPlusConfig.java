@@ -1,7 +1,10 @@
 package com.tutict.finalassignmentbackend.config;
 
+import com.baomidou.mybatisplus.core.config.GlobalConfig;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
 import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
 import com.tutict.finalassignmentbackend.common.PageLimits;
+import com.tutict.finalassignmentbackend.config.mybatis.BatchInsertSqlInjector;
 import com.tutict.finalassignmentbackend.config.mybatis.SlowSqlLoggingInterceptor;
 import javax.sql.DataSource;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -37,6 +40,9 @@ public class MybatisPlusConfig {
         MybatisSqlSessionFactoryBean factory = new MybatisSqlSessionFactoryBean();
         factory.setDataSource(dataSource);
         factory.setPlugins(mybatisPlusInterceptor, slowSqlLoggingInterceptor);
+        GlobalConfig globalConfig = GlobalConfigUtils.defaults();
+        globalConfig.setSqlInjector(new BatchInsertSqlInjector());
+        factory.setGlobalConfig(globalConfig);
         return factory.getObject();
     }
 }
@@ -1,10 +1,14 @@
 package com.tutict.finalassignmentbackend.config;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.config.login.jwt.TokenPrincipal;
 import com.tutict.finalassignmentbackend.config.login.jwt.TokenProvider;
+import com.tutict.finalassignmentbackend.config.vertx.NetworkProxyProperties;
+import com.tutict.finalassignmentbackend.config.vertx.StreamingHttpProxy;
+import com.tutict.finalassignmentbackend.config.websocket.WsActionDispatcher;
 import com.tutict.finalassignmentbackend.config.websocket.WsActionRegistry;
+import com.tutict.finalassignmentbackend.config.websocket.WsFrameDecoder;
 import com.tutict.finalassignmentbackend.config.websocket.WsTicketService;
 import com.tutict.finalassignmentbackend.dto.response.ApiResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -23,7 +27,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -33,6 +36,8 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static io.vertx.core.Vertx.vertx;
@@ -53,22 +58,32 @@ public class NetWorkHandler extends AbstractVerticle {
     private final TokenProvider tokenProvider;
     private final WsActionRegistry wsActionRegistry;
     private final WsTicketService wsTicketService;
+    private final WsActionDispatcher wsActionDispatcher;
+    private final WsFrameDecoder wsFrameDecoder;
 
     private final ObjectMapper objectMapper;
     private final CorsProperties corsProperties;
+    private final NetworkProxyProperties proxyProperties;
     private final Map<String, Set<ServerWebSocket>> webSocketsByUsername = new ConcurrentHashMap<>();
     private WebClient webClient;
+    private StreamingHttpProxy streamingProxy;
 
     public NetWorkHandler(TokenProvider tokenProvider,
                           @Lazy WsActionRegistry wsActionRegistry,
                           WsTicketService wsTicketService,
+                          WsActionDispatcher wsActionDispatcher,
+                          WsFrameDecoder wsFrameDecoder,
                           ObjectMapper objectMapper,
-                          CorsProperties corsProperties) {
+                          CorsProperties corsProperties,
+                          NetworkProxyProperties proxyProperties) {
         this.tokenProvider = tokenProvider;
         this.wsActionRegistry = wsActionRegistry;
         this.wsTicketService = wsTicketService;
+        this.wsActionDispatcher = wsActionDispatcher;
+        this.wsFrameDecoder = wsFrameDecoder;
         this.objectMapper = objectMapper;
         this.corsProperties = corsProperties;
+        this.proxyProperties = proxyProperties;
     }
 
     @PostConstruct
@@ -80,6 +95,7 @@ public class NetWorkHandler extends AbstractVerticle {
     @Override
     public void start() {
         this.webClient = WebClient.create(vertx);
+        this.streamingProxy = new StreamingHttpProxy(StreamingHttpProxy.createClient(vertx, proxyProperties));
 
         Router router = Router.router(vertx);
         configureCors(router);
@@ -90,14 +106,12 @@ public class NetWorkHandler extends AbstractVerticle {
         router.post("/api/ws-ticket").handler(ctx -> {
             HttpServerRequest request = ctx.request();
             String token = extractBearerToken(request);
-            if (token == null || !tokenProvider.validateToken(token)) {
+            TokenPrincipal principal = token == null ? null : tokenProvider.verify(token).orElse(null);
+            if (principal == null) {
                 ctx.response().setStatusCode(401).setStatusMessage("Unauthorized").end();
                 return;
             }
-            WsTicketService.Ticket ticket = wsTicketService.issue(
-                    tokenProvider.getUsernameFromToken(token),
-                    tokenProvider.extractRoles(token)
-            );
+            WsTicketService.Ticket ticket = wsTicketService.issue(principal.username(), principal.roles());
             writeJsonResponse(ctx.response(), ApiResponse.ok(Map.of(
                     "ticket", ticket.value(),
                     "expiresAt", ticket.expiresAt().toString()
@@ -172,11 +186,9 @@ public class NetWorkHandler extends AbstractVerticle {
 
     private HandshakePrincipal authenticateWebSocketHandshake(HttpServerRequest request) {
         String token = extractBearerToken(request);
-        if (token != null && tokenProvider.validateToken(token)) {
-            return new HandshakePrincipal(
-                    tokenProvider.getUsernameFromToken(token),
-                    tokenProvider.extractRoles(token)
-            );
+        TokenPrincipal verified = token == null ? null : tokenProvider.verify(token).orElse(null);
+        if (verified != null) {
+            return new HandshakePrincipal(verified.username(), verified.roles());
         }
 
         WsTicketService.Ticket ticket = wsTicketService.consume(request.params().get("ws_ticket"));
@@ -196,66 +208,72 @@ public class NetWorkHandler extends AbstractVerticle {
     }
     private void handleWebSocketConnection(ServerWebSocket ws, String username, List<String> roles) {
         registerWebSocket(username, ws);
+        AtomicInteger inFlight = new AtomicInteger();
         ws.frameHandler(frame -> {
             if (frame.isText()) {
                 String message = frame.textData();
                 String requestId = null;
                 try {
-                    JsonNode root = objectMapper.readTree(message);
-
-                    requestId = root.path("requestId").asText(null);
-                    String service = root.path("service").asText(null);
-                    String action = root.path("action").asText(null);
-                    String idempotencyKey = root.path("idempotencyKey").asText(null);
-
-                    JsonNode argsArray = root.path("args");
-                    if (argsArray.isMissingNode() || !argsArray.isArray()) {
-                        log.warn("Invalid or missing 'args' array");
-                        writeWsError(ws, requestId, "Missing or invalid 'args' array");
+                    WsFrameDecoder.WsFrame request = wsFrameDecoder.decode(message,
+                            handler -> isActionAllowed(handler, roles));
+                    requestId = request.requestId();
+                    String service = request.service();
+                    String action = request.action();
+
+                    if (request.rejection() != null) {
+                        switch (request.rejection()) {
+                            case INVALID_ARGS -> {
+                                log.warn("Invalid or missing 'args' array");
+                                writeWsError(ws, requestId, "Missing or invalid 'args' array");
+                            }
+                            case UNKNOWN_ACTION -> writeWsError(ws, requestId, "No such WsAction for " + service + "#" + action);
+                            case FORBIDDEN -> {
+                                log.warn("Rejected unauthorized WsAction service={}, action={}, user={}, roles={}",
+                                        service, action, username, roles);
+                                writeWsError(ws, requestId, "Forbidden");
+                            }
+                            case PARAM_MISMATCH -> writeWsError(ws, requestId, "Param mismatch, method expects "
+                                    + request.handler().getParameterCount() + " but got " + request.argCount());
+                        }
                         return;
                     }
 
                     log.info("Received service={}, action={}, idempotencyKey={}, argsCount={}, user={}",
-                            service, action, idempotencyKey, argsArray.size(), username);
+                            service, action, request.idempotencyKey(), request.argCount(), username);
 
-                    WsActionRegistry.HandlerMethod handler = wsActionRegistry.getHandler(service, action);
-                    if (handler == null) {
-                        writeWsError(ws, requestId, "No such WsAction for " + service + "#" + action);
-                        return;
-                    }
+                    WsActionRegistry.HandlerMethod handler = request.handler();
+                    Object[] invokeArgs = request.args();
 
-                    if (!isActionAllowed(handler, roles)) {
-                        log.warn("Rejected unauthorized WsAction service={}, action={}, user={}, roles={}",
-                                service, action, username, roles);
-                        writeWsError(ws, requestId, "Forbidden");
+                    if (inFlight.get() >= wsActionDispatcher.maxInFlightPerConnection()) {
+                        log.warn("Rejected WsAction service={}, action={}, user={}: too many in-flight requests",
+                                service, action, username);
+                        writeWsError(ws, requestId, "Too many in-flight requests");
                         return;
                     }
 
-                    Method method = handler.getMethod();
-                    Class<?>[] paramTypes = method.getParameterTypes();
-                    Object bean = handler.getBean();
-                    int paramCount = paramTypes.length;
-
-                    if (argsArray.size() != paramCount) {
-                        writeWsError(ws, requestId, "Param mismatch, method expects "
-                                + paramCount + " but got " + argsArray.size());
-                        return;
-                    }
-
-                    Object[] invokeArgs = new Object[paramCount];
-                    for (int i = 0; i < paramCount; i++) {
-                        Class<?> pt = paramTypes[i];
-                        JsonNode argNode = argsArray.get(i);
-                        invokeArgs[i] = convertJsonToParam(argNode, pt);
-                    }
-
-                    Object result = method.invoke(bean, invokeArgs);
-
-                    if (method.getReturnType() != void.class && result != null) {
-                        writeWsResult(ws, requestId, result);
-                    } else {
-                        writeWsStatus(ws, requestId, "OK");
-                    }
+                    // Handlers may hit MySQL/ES, so run them on the dispatcher and reply on this socket's context.
+                    String replyRequestId = requestId;
+                    inFlight.incrementAndGet();
+                    wsActionDispatcher.dispatch(vertx.getOrCreateContext(), service, action,
+                                    () -> handler.invoke(invokeArgs))
+                            .onComplete(ar -> {
+                                inFlight.decrementAndGet();
+                                if (ar.succeeded()) {
+                                    Object result = ar.result();
+                                    if (!handler.isReturnsVoid() && result != null) {
+                                        writeWsResult(ws, replyRequestId, result);
+                                    } else {
+                                        writeWsStatus(ws, replyRequestId, "OK");
+                                    }
+                                } else if (ar.cause() instanceof RejectedExecutionException) {
+                                    log.warn("Rejected WsAction service={}, action={}, user={}: {}",
+                                            service, action, username, ar.cause().getMessage());
+                                    writeWsError(ws, replyRequestId, "Server busy, please retry later");
+                                } else {
+                                    log.error("WsAction invocation failed service={}, action={}", service, action, ar.cause());
+                                    writeWsError(ws, replyRequestId, "Invalid JSON or reflect error");
+                                }
+                            });
 
                 } catch (Exception e) {
                     log.error("JSON parsing or reflection error", e);
@@ -397,20 +415,6 @@ public class NetWorkHandler extends AbstractVerticle {
         }
     }
 
-    private Object convertJsonToParam(JsonNode node, Class<?> targetType) throws JsonProcessingException {
-        if (targetType == String.class) {
-            return node.asText();
-        } else if (targetType == int.class || targetType == Integer.class) {
-            return node.asInt();
-        } else if (targetType == long.class || targetType == Long.class) {
-            return node.asLong();
-        } else if (targetType == boolean.class || targetType == Boolean.class) {
-            return node.asBoolean();
-        } else {
-            return objectMapper.treeToValue(node, targetType);
-        }
-    }
-
     private void forwardHttpRequest(HttpServerRequest request) {
         String requestId = UUID.randomUUID().toString();
         String path = request.path();
@@ -432,6 +436,11 @@ public class NetWorkHandler extends AbstractVerticle {
         });
         log.debug("[{}] Forward headers: {}", requestId, sanitizeHeaders(headers));
 
+        if (proxyProperties.getMode() == NetworkProxyProperties.Mode.STREAM) {
+            streamingProxy.forward(request, targetUrl, headers, requestId);
+            return;
+        }
+
         MultiMap queryParams = request.params();
         log.debug("[{}] Query params: {}", requestId, sanitizeParameters(queryParams));
 
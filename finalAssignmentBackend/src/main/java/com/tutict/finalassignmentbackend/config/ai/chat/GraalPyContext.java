@@ -3,7 +3,7 @@ package com.tutict.finalassignmentbackend.config.ai.chat;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.graalvm.polyglot.Context;
-import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.Engine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -12,12 +12,18 @@ import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+/**
+ * Creates GraalPy contexts for the bundled venv. All contexts share one polyglot {@link Engine}, so
+ * parsed Python code and compiled ASTs are reused between them and extra contexts are cheap to warm.
+ */
 @Component
 public class GraalPyContext {
 
     private static final Logger log = LoggerFactory.getLogger(GraalPyContext.class);
 
-    private Context context;
+    private Engine engine;
+    private String pythonHome;
+    private String pythonPath;
     private volatile boolean initialized = false;
 
     @PostConstruct
@@ -31,50 +37,55 @@ public class GraalPyContext {
             }
 
             Path venvPath = Paths.get(venvUrl.toURI());
-            Context.Builder builder = Context.newBuilder("python")
-                    .allowAllAccess(true)
-                    .option("python.PythonHome", venvPath.toString());
-
+            pythonHome = venvPath.toString();
             URL pythonUrl = getClass().getClassLoader().getResource("python");
             if (pythonUrl != null) {
-                builder.option("python.PythonPath", Paths.get(pythonUrl.toURI()).toString());
+                pythonPath = Paths.get(pythonUrl.toURI()).toString();
             }
 
-            context = builder.build();
+            engine = Engine.newBuilder("python")
+                    .option("engine.WarnInterpreterOnly", "false")
+                    .build();
             initialized = true;
-            log.info("GraalPyContext initialized successfully");
+            log.info("GraalPy engine initialized successfully");
         } catch (Exception e) {
             initialized = false;
-            context = null;
-            log.error("GraalPyContext initialization failed, web search disabled: {}", e.getMessage());
+            engine = null;
+            log.error("GraalPy engine initialization failed, web search disabled: {}", e.getMessage());
         }
     }
 
     @PreDestroy
     public void destroy() {
-        if (context == null) {
+        if (engine == null) {
             return;
         }
         try {
-            context.close();
-            log.info("GraalPyContext closed");
+            engine.close(true);
+            log.info("GraalPy engine closed");
         } catch (Exception e) {
-            log.warn("GraalPyContext close failed", e);
+            log.warn("GraalPy engine close failed", e);
         }
     }
 
     public boolean isAvailable() {
-        return initialized && context != null;
+        return initialized && engine != null;
     }
 
-    public Context getContext() {
+    /**
+     * A new context on the shared engine. Contexts are single-threaded; the caller owns and closes it.
+     */
+    public Context newContext() {
         if (!isAvailable()) {
             throw new IllegalStateException("GraalPy is not available. Web search is disabled.");
         }
-        return context;
-    }
-
-    public Value eval(String source) {
-        return getContext().eval("python", source);
+        Context.Builder builder = Context.newBuilder("python")
+                .engine(engine)
+                .allowAllAccess(true)
+                .option("python.PythonHome", pythonHome);
+        if (pythonPath != null) {
+            builder.option("python.PythonPath", pythonPath);
+        }
+        return builder.build();
     }
 }
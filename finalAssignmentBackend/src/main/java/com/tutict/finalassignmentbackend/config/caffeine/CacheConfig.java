@@ -11,7 +11,6 @@ import org.springframework.context.annotation.Configuration;
 
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,16 +21,22 @@ public class CacheConfig implements CachingConfigurer {
     private static final Logger LOG = Logger.getLogger(CacheConfig.class.getName());
 
     @Bean(name = "caffeineCacheManager")
-    public CacheManager caffeineCacheManager() {
+    public CacheManager caffeineCacheManager(TieredCacheProperties cacheProperties) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        // 配置 Caffeine 设置
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-                .expireAfterWrite(5, TimeUnit.MINUTES) // 设置缓存有效期为 5 分钟
-                .maximumSize(100) // 每个缓存的最大条目数为 100
-                .recordStats()); // 启用缓存统计以便监控
+        // 默认规格来自 app.cache.defaults，app.cache.caches 中的缓存使用各自的容量和有效期
+        cacheManager.setCaffeine(l1Builder(cacheProperties.getDefaults()));
+        cacheProperties.getCaches().keySet().forEach(cacheName -> cacheManager.registerCustomCache(
+                cacheName, l1Builder(cacheProperties.resolve(cacheName)).build()));
         return cacheManager;
     }
 
+    public static Caffeine<Object, Object> l1Builder(TieredCacheProperties.Spec spec) {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(spec.getL1Ttl())
+                .maximumSize(spec.getL1MaximumSize())
+                .recordStats(); // 启用缓存统计以便监控
+    }
+
     @Override
     public CacheErrorHandler errorHandler() {
         return new FailOpenCacheErrorHandler();
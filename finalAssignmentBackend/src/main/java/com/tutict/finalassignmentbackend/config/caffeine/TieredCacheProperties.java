@@ -0,0 +1,118 @@
+package com.tutict.finalassignmentbackend.config.caffeine;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-cache sizing for the Caffeine L1 and Redis L2 tiers.
+ * Unset fields in app.cache.caches.&lt;name&gt; inherit from app.cache.defaults.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class TieredCacheProperties {
+
+    private String invalidationChannel = "app-cache:invalidation";
+    private Spec defaults = Spec.defaultSpec();
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+
+    public Spec resolve(String cacheName) {
+        Spec override = caches.get(cacheName);
+        return override == null ? defaults : override.inherit(defaults);
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    public void setInvalidationChannel(String invalidationChannel) {
+        this.invalidationChannel = invalidationChannel;
+    }
+
+    public Spec getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Spec defaults) {
+        this.defaults = defaults == null ? Spec.defaultSpec() : defaults.inherit(Spec.defaultSpec());
+    }
+
+    public Map<String, Spec> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(Map<String, Spec> caches) {
+        this.caches = caches == null ? new LinkedHashMap<>() : new LinkedHashMap<>(caches);
+    }
+
+    public static class Spec {
+        private Long l1MaximumSize;
+        private Duration l1Ttl;
+        private Duration l2Ttl;
+        private Duration l2TtlJitter;
+        // Refresh-ahead: L1 entries older than this are reloaded from L2 in the background on read.
+        private Duration refreshAfterWrite;
+
+        static Spec defaultSpec() {
+            Spec spec = new Spec();
+            spec.l1MaximumSize = 1000L;
+            spec.l1Ttl = Duration.ofMinutes(5);
+            spec.l2Ttl = Duration.ofMinutes(10);
+            spec.l2TtlJitter = Duration.ofMinutes(3);
+            return spec;
+        }
+
+        Spec inherit(Spec parent) {
+            Spec merged = new Spec();
+            merged.l1MaximumSize = l1MaximumSize != null ? l1MaximumSize : parent.l1MaximumSize;
+            merged.l1Ttl = l1Ttl != null ? l1Ttl : parent.l1Ttl;
+            merged.l2Ttl = l2Ttl != null ? l2Ttl : parent.l2Ttl;
+            merged.l2TtlJitter = l2TtlJitter != null ? l2TtlJitter : parent.l2TtlJitter;
+            merged.refreshAfterWrite = refreshAfterWrite != null ? refreshAfterWrite : parent.refreshAfterWrite;
+            return merged;
+        }
+
+        public Long getL1MaximumSize() {
+            return l1MaximumSize;
+        }
+
+        public void setL1MaximumSize(Long l1MaximumSize) {
+            this.l1MaximumSize = l1MaximumSize;
+        }
+
+        public Duration getL1Ttl() {
+            return l1Ttl;
+        }
+
+        public void setL1Ttl(Duration l1Ttl) {
+            this.l1Ttl = l1Ttl;
+        }
+
+        public Duration getL2Ttl() {
+            return l2Ttl;
+        }
+
+        public void setL2Ttl(Duration l2Ttl) {
+            this.l2Ttl = l2Ttl;
+        }
+
+        public Duration getL2TtlJitter() {
+            return l2TtlJitter;
+        }
+
+        public void setL2TtlJitter(Duration l2TtlJitter) {
+            this.l2TtlJitter = l2TtlJitter;
+        }
+
+        public Duration getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+    }
+}
@@ -61,9 +61,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        if (jwt != null && tokenProvider.validateToken(jwt)) {
-            String username = tokenProvider.getUsernameFromToken(jwt);
-            List<String> roles = tokenProvider.extractRoles(jwt);
+        TokenPrincipal principal = jwt == null ? null : tokenProvider.verify(jwt).orElse(null);
+        if (principal != null) {
+            String username = principal.username();
+            List<String> roles = principal.roles();
             logger.debug("JWT validated. Username: {}, Roles: {}", username, roles);
 
             List<SimpleGrantedAuthority> authorities = roles.stream()
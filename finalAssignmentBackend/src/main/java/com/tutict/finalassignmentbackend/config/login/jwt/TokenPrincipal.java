@@ -0,0 +1,27 @@
+package com.tutict.finalassignmentbackend.config.login.jwt;
+
+import com.tutict.finalassignmentbackend.enums.DataScope;
+import com.tutict.finalassignmentbackend.enums.RoleType;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable result of a single signature verification.
+ * roles carry the Spring "ROLE_" prefix, matching {@link TokenProvider#extractRoles(String)}.
+ */
+public record TokenPrincipal(String username,
+                             List<String> roles,
+                             List<RoleType> roleTypes,
+                             DataScope dataScope,
+                             Instant expiresAt) {
+
+    public TokenPrincipal {
+        roles = roles == null ? List.of() : List.copyOf(roles);
+        roleTypes = roleTypes == null ? List.of() : List.copyOf(roleTypes);
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
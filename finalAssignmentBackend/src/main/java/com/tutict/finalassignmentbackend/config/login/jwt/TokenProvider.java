@@ -2,6 +2,9 @@ package com.tutict.finalassignmentbackend.config.login.jwt;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.tutict.finalassignmentbackend.config.security.pqc.PqcProviderInitializer;
 import com.tutict.finalassignmentbackend.enums.DataScope;
 import com.tutict.finalassignmentbackend.enums.RoleType;
@@ -22,11 +25,15 @@ import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
@@ -36,6 +43,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -80,6 +88,9 @@ public class TokenProvider {
     @Value("${jwt.access-token-expiration:3600}")
     private long accessTokenExpirationSeconds;
 
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize = 10_000L;
+
     private JwtAlgorithm algorithm;
     private SecretKey secretKey;
     private PrivateKey privateKey;
@@ -87,6 +98,8 @@ public class TokenProvider {
     private PrivateKey mlDsaPrivateKey;
     private PublicKey mlDsaPublicKey;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    // SHA-256(token) -> principal; each entry expires at the token's own exp.
+    private Cache<String, TokenPrincipal> verifiedTokens;
 
     private static final Map<String, RoleMetadata> ROLE_SCHEMA;
 
@@ -112,6 +125,10 @@ public class TokenProvider {
             case ML_DSA_65 -> initMlDsaKeys();
             default -> initHmacSecret();
         }
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(Math.max(0L, verifiedCacheMaxSize))
+                .expireAfter(new TokenExpiry())
+                .build();
         LOG.info(() -> String.format("TokenProvider initialized with %s, access token ttl=%ss",
                 algorithm, accessTokenExpirationSeconds));
     }
@@ -131,8 +148,8 @@ public class TokenProvider {
     }
 
     public long getExpirationMs(String token) {
-        Map<String, Object> claims = claims(token);
-        long expMs = claimExpMs(claims);
+        Instant expiresAt = principal(token).expiresAt();
+        long expMs = expiresAt == null ? 0L : expiresAt.toEpochMilli();
         return Math.max(expMs - System.currentTimeMillis(), 0L);
     }
 
@@ -140,27 +157,31 @@ public class TokenProvider {
         return accessTokenExpirationSeconds;
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Verifies the signature once and returns every claim the security layer needs.
+     * Results are cached by token digest until the token's exp, so repeated calls for the
+     * same bearer token skip HMAC/RSA/ML-DSA verification entirely.
+     */
+    public Optional<TokenPrincipal> verify(String token) {
         try {
-            claims(token);
-            LOG.log(Level.FINE, "Token validated successfully");
-            return true;
+            return Optional.of(principal(token));
         } catch (JwtException | IllegalArgumentException e) {
             LOG.log(Level.WARNING, "Invalid token: " + e.getMessage(), e);
-            return false;
+            return Optional.empty();
+        }
+    }
+
+    public boolean validateToken(String token) {
+        boolean valid = verify(token).isPresent();
+        if (valid) {
+            LOG.log(Level.FINE, "Token validated successfully");
         }
+        return valid;
     }
 
     public List<String> extractRoles(String token) {
         try {
-            String roles = claimStr(claims(token), "roles");
-            if (roles != null && !roles.isEmpty()) {
-                return normalizeRoleCodes(roles).stream()
-                        .filter(this::isRoleDefined)
-                        .map(role -> "ROLE_" + role)
-                        .collect(Collectors.toList());
-            }
-            return List.of();
+            return principal(token).roles();
         } catch (JwtException | IllegalArgumentException e) {
             LOG.log(Level.WARNING, "Failed to extract roles from token: " + e.getMessage(), e);
             return List.of();
@@ -168,20 +189,12 @@ public class TokenProvider {
     }
 
     public String getUsernameFromToken(String token) {
-        return claimStr(claims(token), "sub");
+        return principal(token).username();
     }
 
     public List<RoleType> extractRoleTypes(String token) {
         try {
-            String roleTypes = claimStr(claims(token), "roleTypes");
-            if (roleTypes != null && !roleTypes.isEmpty()) {
-                return Arrays.stream(roleTypes.split(","))
-                        .map(String::trim)
-                        .map(RoleType::fromCode)
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toList());
-            }
-            return List.of();
+            return principal(token).roleTypes();
         } catch (JwtException | IllegalArgumentException e) {
             LOG.log(Level.WARNING, "Failed to extract role types from token: " + e.getMessage(), e);
             return List.of();
@@ -190,8 +203,7 @@ public class TokenProvider {
 
     public DataScope extractDataScope(String token) {
         try {
-            String dataScope = claimStr(claims(token), "dataScope");
-            return DataScope.fromCode(dataScope);
+            return principal(token).dataScope();
         } catch (JwtException | IllegalArgumentException e) {
             LOG.log(Level.WARNING, "Failed to extract data scope from token: " + e.getMessage(), e);
             return null;
@@ -351,6 +363,68 @@ public class TokenProvider {
         return signer.sign();
     }
 
+    private TokenPrincipal principal(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Token must not be blank");
+        }
+        String key = digest(token);
+        TokenPrincipal cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && !cached.isExpired(Instant.now())) {
+            return cached;
+        }
+        TokenPrincipal principal = parsePrincipal(token);
+        verifiedTokens.put(key, principal);
+        return principal;
+    }
+
+    // Uncached single verification; package-private for benchmarks.
+    TokenPrincipal parsePrincipal(String token) {
+        Map<String, Object> claims = claims(token);
+        long expMs = claimExpMs(claims);
+        Instant expiresAt = expMs > 0 ? Instant.ofEpochMilli(expMs) : null;
+        // JJWT rejects expired tokens itself; the hand-rolled ML-DSA path needs the same check.
+        if (expiresAt != null && !expiresAt.isAfter(Instant.now())) {
+            throw new IllegalArgumentException("Token has expired");
+        }
+        return new TokenPrincipal(
+                claimStr(claims, "sub"),
+                rolesFromClaim(claimStr(claims, "roles")),
+                roleTypesFromClaim(claimStr(claims, "roleTypes")),
+                DataScope.fromCode(claimStr(claims, "dataScope")),
+                expiresAt
+        );
+    }
+
+    private List<String> rolesFromClaim(String roles) {
+        if (roles == null || roles.isEmpty()) {
+            return List.of();
+        }
+        return normalizeRoleCodes(roles).stream()
+                .filter(this::isRoleDefined)
+                .map(role -> "ROLE_" + role)
+                .collect(Collectors.toList());
+    }
+
+    private List<RoleType> roleTypesFromClaim(String roleTypes) {
+        if (roleTypes == null || roleTypes.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(roleTypes.split(","))
+                .map(String::trim)
+                .map(RoleType::fromCode)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return base64UrlEncode(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     private Map<String, Object> claims(String token) {
         if (algorithm == JwtAlgorithm.ML_DSA_65) {
             return parseMlDsaClaims(token);
@@ -561,6 +635,27 @@ public class TokenProvider {
         }
     }
 
+    private static final class TokenExpiry implements Expiry<String, TokenPrincipal> {
+
+        @Override
+        public long expireAfterCreate(String key, TokenPrincipal value, long currentTime) {
+            if (value.expiresAt() == null) {
+                return 0L;
+            }
+            return Math.max(0L, Duration.between(Instant.now(), value.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, TokenPrincipal value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, TokenPrincipal value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     @Getter
     private static final class RoleMetadata {
         private final RoleType roleType;
@@ -0,0 +1,19 @@
+package com.tutict.finalassignmentbackend.config.mybatis;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+
+/**
+ * Mapper with a multi-row insert injected by {@link BatchInsertSqlInjector}.
+ */
+public interface BatchInsertMapper<T> extends BaseMapper<T> {
+
+    /**
+     * Inserts all entities with one {@code INSERT ... VALUES (...), (...)} statement. Like
+     * {@link #insert(Object)}, null properties leave the column at its default; generated ids are
+     * written back to the entities.
+     */
+    int insertBatch(@Param("list") Collection<T> entities);
+}
@@ -0,0 +1,26 @@
+package com.tutict.finalassignmentbackend.config.mybatis;
+
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.injector.DefaultSqlInjector;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds {@link InsertBatchWithDefaults} to mappers that extend {@link BatchInsertMapper}.
+ */
+public class BatchInsertSqlInjector extends DefaultSqlInjector {
+
+    @Override
+    public List<AbstractMethod> getMethodList(Configuration configuration, Class<?> mapperClass, TableInfo tableInfo) {
+        List<AbstractMethod> methods = super.getMethodList(configuration, mapperClass, tableInfo);
+        if (!BatchInsertMapper.class.isAssignableFrom(mapperClass)) {
+            return methods;
+        }
+        List<AbstractMethod> extended = new ArrayList<>(methods);
+        extended.add(new InsertBatchWithDefaults());
+        return extended;
+    }
+}
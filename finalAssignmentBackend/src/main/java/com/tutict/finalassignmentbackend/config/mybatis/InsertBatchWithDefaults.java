@@ -0,0 +1,66 @@
+package com.tutict.finalassignmentbackend.config.mybatis;
+
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.sql.SqlScriptUtils;
+import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+
+import java.util.StringJoiner;
+
+/**
+ * Multi-row insert for {@link BatchInsertMapper#insertBatch}. Unlike MyBatis-Plus'
+ * {@code InsertBatchSomeColumn}, a null property is written as {@code DEFAULT} instead of
+ * {@code NULL}, so rows get the same column defaults as a single {@code insert}.
+ */
+public class InsertBatchWithDefaults extends AbstractMethod {
+
+    public InsertBatchWithDefaults() {
+        super("insertBatch");
+    }
+
+    @Override
+    public MappedStatement injectMappedStatement(Class<?> mapperClass, Class<?> modelClass, TableInfo tableInfo) {
+        StringJoiner columns = new StringJoiner(",", "(", ")");
+        StringJoiner values = new StringJoiner(",", "(", ")");
+        boolean autoId = tableInfo.havePK() && tableInfo.getIdType() == IdType.AUTO;
+        if (tableInfo.havePK() && !autoId) {
+            columns.add(tableInfo.getKeyColumn());
+            values.add(valueOrDefault(tableInfo.getKeyProperty(), tableInfo.getKeyProperty()));
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            if (field.getInsertStrategy() == FieldStrategy.NEVER) {
+                continue;
+            }
+            columns.add(field.getColumn());
+            values.add(valueOrDefault(field.getProperty(), field.getEl()));
+        }
+        String sql = "<script>INSERT INTO " + tableInfo.getTableName() + " " + columns + " VALUES "
+                + SqlScriptUtils.convertForeach(values.toString(), "list", null, ENTITY, COMMA)
+                + "</script>";
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, sql, modelClass);
+
+        KeyGenerator keyGenerator = NoKeyGenerator.INSTANCE;
+        String keyProperty = null;
+        String keyColumn = null;
+        if (autoId) {
+            // MySQL 按行顺序返回多行插入的自增主键
+            keyGenerator = Jdbc3KeyGenerator.INSTANCE;
+            keyProperty = tableInfo.getKeyProperty();
+            keyColumn = tableInfo.getKeyColumn();
+        }
+        return addInsertMappedStatement(mapperClass, modelClass, methodName, sqlSource, keyGenerator, keyProperty, keyColumn);
+    }
+
+    private static String valueOrDefault(String property, String el) {
+        return "<choose><when test=\"" + ENTITY_DOT + property + " != null\">"
+                + SqlScriptUtils.safeParam(ENTITY_DOT + el)
+                + "</when><otherwise>DEFAULT</otherwise></choose>";
+    }
+}
@@ -0,0 +1,89 @@
+package com.tutict.finalassignmentbackend.config.redis;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Redis pub/sub fan-out of L1 invalidations between nodes.
+ * Messages are {"origin","cache","key"}; a null key clears the whole cache.
+ * Publishing is best effort: a lost message only means another node serves its L1 copy until the L1 TTL.
+ */
+public class CacheInvalidationBroadcaster implements MessageListener {
+
+    private static final Logger LOG = Logger.getLogger(CacheInvalidationBroadcaster.class.getName());
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String channel;
+    private volatile TieredCacheManager cacheManager;
+
+    public CacheInvalidationBroadcaster(StringRedisTemplate redisTemplate, ObjectMapper objectMapper, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+    }
+
+    void bind(TieredCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public void publishEvict(String cacheName, String key) {
+        publish(cacheName, key);
+    }
+
+    public void publishClear(String cacheName) {
+        publish(cacheName, null);
+    }
+
+    private void publish(String cacheName, String key) {
+        try {
+            ObjectNode message = objectMapper.createObjectNode()
+                    .put("origin", nodeId)
+                    .put("cache", cacheName)
+                    .put("key", key);
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to publish cache invalidation for " + cacheName, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        TieredCacheManager manager = cacheManager;
+        if (manager == null) {
+            return;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(new String(message.getBody(), StandardCharsets.UTF_8));
+            if (nodeId.equals(node.path("origin").asText())) {
+                return;
+            }
+            String cacheName = node.path("cache").asText(null);
+            if (cacheName == null) {
+                return;
+            }
+            JsonNode key = node.get("key");
+            if (key == null || key.isNull()) {
+                manager.clearLocal(cacheName);
+            } else {
+                manager.evictLocal(cacheName, key.asText());
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Ignoring malformed cache invalidation message", e);
+        }
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+}
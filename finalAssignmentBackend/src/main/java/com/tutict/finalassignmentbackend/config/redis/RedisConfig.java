@@ -4,6 +4,9 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.tutict.finalassignmentbackend.config.caffeine.TieredCacheProperties;
+import com.tutict.finalassignmentbackend.service.auth.TokenBlacklistService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
@@ -12,11 +15,15 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.repository.configuration.EnableRedisRepositories;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
@@ -24,6 +31,7 @@ import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -59,33 +67,70 @@ public class RedisConfig {
     }
 
     @Bean
-    @Primary
     @ConditionalOnProperty(name = "app.redis.cache.enabled", havingValue = "true", matchIfMissing = true)
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory,
+                                               TieredCacheProperties cacheProperties) {
         RedisSerializer<Object> valueSerializer = cacheValueSerializer();
 
-        RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(randomTtl())
+        RedisCacheConfiguration baseConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer))
                 .disableCachingNullValues()
                 .prefixCacheNameWith("app-cache:");
 
-        Map<String, RedisCacheConfiguration> cacheConfigs = Map.of(
-                "vehicleInfo", defaultConfig.entryTtl(randomTtl()),
-                "vehicleInfoList", defaultConfig.entryTtl(Duration.ofMinutes(5)),
-                "sysUserCache", defaultConfig.entryTtl(randomTtl()),
-                "auditLoginLogCache", defaultConfig.entryTtl(Duration.ofMinutes(5)),
-                "auditOperationLogCache", defaultConfig.entryTtl(Duration.ofMinutes(5))
-        );
+        // L2 TTL 按缓存单独配置，抖动在每次写入时计算，避免同一批 key 同时过期
+        Map<String, RedisCacheConfiguration> cacheConfigs = new HashMap<>();
+        cacheProperties.getCaches().keySet().forEach(cacheName -> cacheConfigs.put(cacheName,
+                baseConfig.entryTtl(jitteredTtl(cacheProperties.resolve(cacheName)))));
 
+        // 事务感知由外层 TieredCacheManager 负责
         return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(defaultConfig)
+                .cacheDefaults(baseConfig.entryTtl(jitteredTtl(cacheProperties.getDefaults())))
                 .withInitialCacheConfigurations(cacheConfigs)
-                .transactionAware()
                 .build();
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "app.redis.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CacheInvalidationBroadcaster cacheInvalidationBroadcaster(RedisConnectionFactory connectionFactory,
+                                                                     ObjectMapper objectMapper,
+                                                                     TieredCacheProperties cacheProperties) {
+        return new CacheInvalidationBroadcaster(new StringRedisTemplate(connectionFactory), objectMapper,
+                cacheProperties.getInvalidationChannel());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.redis.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            CacheInvalidationBroadcaster broadcaster,
+                                                                            TieredCacheProperties cacheProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(broadcaster, new ChannelTopic(cacheProperties.getInvalidationChannel()));
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.security.token-blacklist.local-filter.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer tokenRevocationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                          TokenBlacklistService tokenBlacklistService) {
+        // 订阅建立后 TokenBlacklistService 会全量加载黑名单，断开期间回退到逐次查询 Redis
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(tokenBlacklistService, new ChannelTopic(tokenBlacklistService.getRevocationChannel()));
+        return container;
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "app.redis.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public TieredCacheManager cacheManager(RedisCacheManager redisCacheManager,
+                                           TieredCacheProperties cacheProperties,
+                                           CacheInvalidationBroadcaster broadcaster,
+                                           MeterRegistry meterRegistry) {
+        return new TieredCacheManager(redisCacheManager, cacheProperties, broadcaster, meterRegistry);
+    }
+
     @Bean
     public RedisConnectionFactory redisConnectionFactory() {
         RedisStandaloneConfiguration redisConfig = new RedisStandaloneConfiguration();
@@ -116,9 +161,12 @@ public class RedisConfig {
         return new GenericJackson2JsonRedisSerializer(mapper);
     }
 
-    private Duration randomTtl() {
-        long base = 600;
-        long jitter = ThreadLocalRandom.current().nextLong(60, 181);
-        return Duration.ofSeconds(base + jitter);
+    private static RedisCacheWriter.TtlFunction jitteredTtl(TieredCacheProperties.Spec spec) {
+        Duration base = spec.getL2Ttl();
+        long jitterMillis = spec.getL2TtlJitter() == null ? 0 : spec.getL2TtlJitter().toMillis();
+        if (jitterMillis <= 0) {
+            return RedisCacheWriter.TtlFunction.just(base);
+        }
+        return (key, value) -> base.plusMillis(ThreadLocalRandom.current().nextLong(jitterMillis + 1));
     }
 }
@@ -0,0 +1,165 @@
+package com.tutict.finalassignmentbackend.config.redis;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caffeine L1 in front of a Redis L2.
+ * Reads fall through L1 -> L2 and back-fill L1; writes go to L2 first, then L1,
+ * and are broadcast so other nodes drop their stale L1 copy.
+ * Keys are normalized once to the string form Redis uses and that same key addresses both levels,
+ * so 42L and "42" are one entry and remote invalidations can address it.
+ */
+public class TieredCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> l1;
+    private final Cache l2;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Timer l2Load;
+    private final Counter l1Evictions;
+    private final Counter l2Evictions;
+
+    public TieredCache(String name,
+                       Caffeine<Object, Object> l1Builder,
+                       Duration refreshAfterWrite,
+                       Cache l2,
+                       CacheInvalidationBroadcaster broadcaster,
+                       MeterRegistry meterRegistry) {
+        super(false);
+        this.name = name;
+        this.l2 = l2;
+        this.broadcaster = broadcaster;
+        this.l1 = refreshAfterWrite == null
+                ? l1Builder.build()
+                : l1Builder.refreshAfterWrite(refreshAfterWrite).build(this::reloadFromL2);
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, name, Tags.of("level", "l1"));
+        this.l2Hits = meterRegistry.counter("cache.tiered.gets", "cache", name, "level", "l2", "result", "hit");
+        this.l2Misses = meterRegistry.counter("cache.tiered.gets", "cache", name, "level", "l2", "result", "miss");
+        this.l2Load = Timer.builder("cache.tiered.load")
+                .tags("cache", name, "level", "l2")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.l1Evictions = meterRegistry.counter("cache.tiered.evictions", "cache", name, "level", "l1");
+        this.l2Evictions = meterRegistry.counter("cache.tiered.evictions", "cache", name, "level", "l2");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l1;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String cacheKey = cacheKey(key);
+        Object value = l1.getIfPresent(cacheKey);
+        if (value != null) {
+            return value;
+        }
+        Object loaded = loadFromL2(cacheKey);
+        if (loaded != null) {
+            l1.put(cacheKey, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String cacheKey = cacheKey(key);
+        return (T) l1.get(cacheKey, ignored -> {
+            Object cached = loadFromL2(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            try {
+                T loaded = valueLoader.call();
+                if (loaded != null) {
+                    l2.put(cacheKey, loaded);
+                }
+                return loaded;
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        String cacheKey = cacheKey(key);
+        l2.put(cacheKey, value);
+        l1.put(cacheKey, value);
+        // 本节点无法得知其他节点 L1 中的版本，写入后总是广播失效
+        broadcaster.publishEvict(name, cacheKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = cacheKey(key);
+        l2.evict(cacheKey);
+        l2Evictions.increment();
+        evictLocal(cacheKey);
+        broadcaster.publishEvict(name, cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        l2Evictions.increment();
+        clearLocal();
+        broadcaster.publishClear(name);
+    }
+
+    // Called for invalidations received from other nodes; L2 is already up to date.
+    void evictLocal(String key) {
+        l1.invalidate(key);
+        l1Evictions.increment();
+    }
+
+    void clearLocal() {
+        l1.invalidateAll();
+        l1Evictions.increment();
+    }
+
+    // Background refresh-ahead hook: reload an L1 entry straight from L2.
+    Object reloadFromL2(Object cacheKey) {
+        return loadFromL2((String) cacheKey);
+    }
+
+    private Object loadFromL2(String key) {
+        long start = System.nanoTime();
+        ValueWrapper wrapper = l2.get(key);
+        l2Load.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (wrapper == null || wrapper.get() == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        return wrapper.get();
+    }
+
+    static String cacheKey(Object key) {
+        return key instanceof String stringKey ? stringKey : String.valueOf(key);
+    }
+}
@@ -0,0 +1,83 @@
+package com.tutict.finalassignmentbackend.config.redis;
+
+import com.tutict.finalassignmentbackend.config.caffeine.CacheConfig;
+import com.tutict.finalassignmentbackend.config.caffeine.TieredCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+
+import java.util.Collection;
+
+/**
+ * Builds a {@link TieredCache} per cache name, each with its own L1 size/TTL and L2 TTL
+ * from {@link TieredCacheProperties}. Names not listed under app.cache.caches use the defaults.
+ */
+public class TieredCacheManager extends AbstractTransactionSupportingCacheManager {
+
+    private final CacheManager l2CacheManager;
+    private final TieredCacheProperties properties;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final MeterRegistry meterRegistry;
+
+    public TieredCacheManager(CacheManager l2CacheManager,
+                              TieredCacheProperties properties,
+                              CacheInvalidationBroadcaster broadcaster,
+                              MeterRegistry meterRegistry) {
+        this.l2CacheManager = l2CacheManager;
+        this.properties = properties;
+        this.broadcaster = broadcaster;
+        this.meterRegistry = meterRegistry;
+        setTransactionAware(true);
+        broadcaster.bind(this);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return properties.getCaches().keySet().stream()
+                .map(this::createCache)
+                .toList();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name);
+    }
+
+    void evictLocal(String cacheName, String key) {
+        TieredCache cache = lookupTieredCache(cacheName);
+        if (cache != null) {
+            cache.evictLocal(key);
+        }
+    }
+
+    void clearLocal(String cacheName) {
+        TieredCache cache = lookupTieredCache(cacheName);
+        if (cache != null) {
+            cache.clearLocal();
+        }
+    }
+
+    private TieredCache lookupTieredCache(String cacheName) {
+        // 只处理本节点已创建的缓存，不为远端消息新建缓存
+        Cache cache = lookupCache(cacheName);
+        if (cache instanceof TransactionAwareCacheDecorator decorator) {
+            cache = decorator.getTargetCache();
+        }
+        if (cache instanceof TieredCache tieredCache) {
+            return tieredCache;
+        }
+        return null;
+    }
+
+    private Cache createCache(String name) {
+        TieredCacheProperties.Spec spec = properties.resolve(name);
+        Cache l2 = l2CacheManager.getCache(name);
+        if (l2 == null) {
+            throw new IllegalStateException("No L2 cache available for " + name);
+        }
+        return new TieredCache(name, CacheConfig.l1Builder(spec), spec.getRefreshAfterWrite(),
+                l2, broadcaster, meterRegistry);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tutict.finalassignmentbackend.config.vertx;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "network.proxy")
+public class NetworkProxyProperties {
+
+    // stream: pipe bodies through with backpressure. buffered: legacy WebClient path, kept for rollback.
+    private Mode mode = Mode.STREAM;
+    private int maxPoolSize = 64;
+    private boolean http2 = false;
+    private int http2MaxPoolSize = 4;
+    private int maxWaitQueueSize = 1024;
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration idleTimeout = Duration.ofSeconds(60);
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode == null ? Mode.STREAM : mode;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = Math.max(1, maxPoolSize);
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public int getHttp2MaxPoolSize() {
+        return http2MaxPoolSize;
+    }
+
+    public void setHttp2MaxPoolSize(int http2MaxPoolSize) {
+        this.http2MaxPoolSize = Math.max(1, http2MaxPoolSize);
+    }
+
+    public int getMaxWaitQueueSize() {
+        return maxWaitQueueSize;
+    }
+
+    public void setMaxWaitQueueSize(int maxWaitQueueSize) {
+        this.maxWaitQueueSize = maxWaitQueueSize;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public enum Mode {
+        STREAM,
+        BUFFERED
+    }
+}
@@ -0,0 +1,132 @@
+package com.tutict.finalassignmentbackend.config.vertx;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Pipe-through half of the /api proxy: the inbound body is sent upstream with backpressure and the
+ * upstream response is piped back unbuffered. End-to-end headers and the status pass through;
+ * hop-by-hop headers are dropped. When the client goes away mid-response the upstream request is
+ * reset so the backend stops producing and the pooled connection is not left half-read.
+ */
+@Slf4j
+public class StreamingHttpProxy {
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-connection", "proxy-authenticate", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade");
+
+    private final HttpClient client;
+
+    public StreamingHttpProxy(HttpClient client) {
+        this.client = client;
+    }
+
+    public static HttpClient createClient(Vertx vertx, NetworkProxyProperties properties) {
+        HttpClientOptions clientOptions = new HttpClientOptions()
+                .setKeepAlive(true)
+                .setKeepAliveTimeout((int) properties.getIdleTimeout().toSeconds())
+                .setIdleTimeout((int) properties.getIdleTimeout().toSeconds())
+                .setConnectTimeout((int) properties.getConnectTimeout().toMillis());
+        if (properties.isHttp2()) {
+            // h2c with prior knowledge; the backend must accept cleartext HTTP/2.
+            clientOptions.setProtocolVersion(HttpVersion.HTTP_2).setHttp2ClearTextUpgrade(false);
+        }
+        PoolOptions poolOptions = new PoolOptions()
+                .setHttp1MaxSize(properties.getMaxPoolSize())
+                .setHttp2MaxSize(properties.getHttp2MaxPoolSize())
+                .setMaxWaitQueueSize(properties.getMaxWaitQueueSize());
+        log.info("Proxy client mode={}, maxPoolSize={}, http2={}",
+                properties.getMode(), properties.getMaxPoolSize(), properties.isHttp2());
+        return vertx.createHttpClient(clientOptions, poolOptions);
+    }
+
+    public void forward(HttpServerRequest request, String targetUrl, MultiMap headers, String requestId) {
+        // Hold the body until the upstream request exists; send(ReadStream) resumes it with backpressure.
+        request.pause();
+        HttpMethod method = request.method();
+        MultiMap upstreamHeaders = MultiMap.caseInsensitiveMultiMap();
+        headers.forEach(entry -> {
+            if (!isHopByHopHeader(entry.getKey()) && !"Host".equalsIgnoreCase(entry.getKey())) {
+                upstreamHeaders.add(entry.getKey(), entry.getValue());
+            }
+        });
+        boolean hasBody = request.headers().contains(HttpHeaders.CONTENT_LENGTH)
+                || request.headers().contains(HttpHeaders.TRANSFER_ENCODING);
+        RequestOptions options = new RequestOptions()
+                .setMethod(method)
+                .setAbsoluteURI(targetUrl)
+                .setHeaders(upstreamHeaders);
+        HttpServerResponse clientResponse = request.response();
+
+        client.request(options)
+                .compose(upstreamRequest -> {
+                    // Client disconnected before the upstream response finished: abort upstream too.
+                    clientResponse.closeHandler(ignored -> {
+                        log.warn("[{}] Client closed the connection, resetting upstream request", requestId);
+                        upstreamRequest.reset();
+                    });
+                    if (hasBody) {
+                        return upstreamRequest.send(request);
+                    }
+                    request.resume();
+                    return upstreamRequest.send();
+                })
+                .onSuccess(upstreamResponse -> pipeResponse(clientResponse, upstreamResponse, requestId))
+                .onFailure(failure -> {
+                    log.error("[{}] Forwarding {} request failed: {}", requestId, method, failure.getMessage(), failure);
+                    if (clientResponse.closed() || clientResponse.ended()) {
+                        return;
+                    }
+                    if (clientResponse.headWritten()) {
+                        clientResponse.reset();
+                    } else {
+                        clientResponse.setStatusCode(500).setStatusMessage("Forwarding failed").end();
+                    }
+                });
+    }
+
+    private void pipeResponse(HttpServerResponse clientResponse, HttpClientResponse upstreamResponse, String requestId) {
+        log.info("[{}] Response status code: {}", requestId, upstreamResponse.statusCode());
+
+        clientResponse.setStatusCode(upstreamResponse.statusCode());
+        String statusMessage = upstreamResponse.statusMessage();
+        if (statusMessage != null) {
+            clientResponse.setStatusMessage(statusMessage);
+        }
+        // Content-Type, Content-Disposition and Content-Length pass through unchanged.
+        upstreamResponse.headers().forEach(entry -> {
+            if (!isHopByHopHeader(entry.getKey())) {
+                clientResponse.headers().add(entry.getKey(), entry.getValue());
+            }
+        });
+        if (!clientResponse.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+            clientResponse.setChunked(true);
+        }
+        upstreamResponse.pipeTo(clientResponse)
+                .onFailure(failure -> {
+                    log.error("[{}] Streaming backend response failed: {}", requestId, failure.getMessage(), failure);
+                    HttpClientRequest upstreamRequest = upstreamResponse.request();
+                    upstreamRequest.reset();
+                });
+    }
+
+    static boolean isHopByHopHeader(String headerName) {
+        return headerName != null && HOP_BY_HOP_HEADERS.contains(headerName.toLowerCase(Locale.ROOT));
+    }
+}
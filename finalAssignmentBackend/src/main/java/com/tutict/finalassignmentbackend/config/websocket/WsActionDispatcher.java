@@ -0,0 +1,220 @@
+package com.tutict.finalassignmentbackend.config.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs @WsAction handlers off the Vert.x event loop.
+ * Each service gets its own bounded lane (concurrency + queue); results are completed
+ * back on the socket's context so the caller can write frames without extra hops.
+ */
+@Component
+public class WsActionDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(WsActionDispatcher.class);
+
+    private final WsDispatchProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService virtualExecutor;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<String, ActionMeters> meters = new ConcurrentHashMap<>();
+
+    public WsActionDispatcher(WsDispatchProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.virtualExecutor = properties.getMode() == WsDispatchProperties.Mode.VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-action-", 0).factory())
+                : null;
+        log.info("WsActionDispatcher mode={}, maxConcurrencyPerService={}, queueCapacityPerService={}, maxInFlightPerConnection={}",
+                properties.getMode(),
+                properties.getMaxConcurrencyPerService(),
+                properties.getQueueCapacityPerService(),
+                properties.getMaxInFlightPerConnection());
+    }
+
+    public int maxInFlightPerConnection() {
+        return properties.getMaxInFlightPerConnection();
+    }
+
+    /**
+     * Submits the handler call to the service lane. The returned future is always completed
+     * on {@code context}; it fails with {@link RejectedExecutionException} when the lane is full.
+     */
+    public <T> Future<T> dispatch(Context context, String service, String action, Callable<T> task) {
+        Lane lane = lanes.computeIfAbsent(service, this::newLane);
+        ActionMeters actionMeters = meters.computeIfAbsent(service + "#" + action,
+                ignored -> new ActionMeters(service, action));
+
+        if (!lane.tryReserve()) {
+            actionMeters.rejected.increment();
+            return Future.failedFuture(new RejectedExecutionException(
+                    "WsAction queue is full for service " + service));
+        }
+
+        Promise<T> promise = Promise.promise();
+        long enqueuedAt = System.nanoTime();
+        actionMeters.queueDepth.incrementAndGet();
+        Runnable job = () -> {
+            actionMeters.queueDepth.decrementAndGet();
+            long startedAt = System.nanoTime();
+            actionMeters.queueWait.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+            T result = null;
+            Throwable failure = null;
+            try {
+                result = task.call();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                lane.release();
+                Timer latency = failure == null ? actionMeters.success : actionMeters.error;
+                latency.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+            T finalResult = result;
+            Throwable finalFailure = failure;
+            context.runOnContext(v -> {
+                if (finalFailure == null) {
+                    promise.complete(finalResult);
+                } else {
+                    promise.fail(finalFailure);
+                }
+            });
+        };
+
+        try {
+            lane.execute(job);
+        } catch (RejectedExecutionException e) {
+            actionMeters.queueDepth.decrementAndGet();
+            lane.release();
+            actionMeters.rejected.increment();
+            return Future.failedFuture(e);
+        }
+        return promise.future();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.values().forEach(Lane::shutdown);
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+        }
+    }
+
+    private Lane newLane(String service) {
+        int concurrency = properties.getMaxConcurrencyPerService();
+        int queueCapacity = properties.getQueueCapacityPerService();
+        if (virtualExecutor != null) {
+            return new Lane(concurrency + queueCapacity, new Semaphore(concurrency), null);
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ws-action-" + service + "-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new Lane(concurrency + queueCapacity, null, pool);
+    }
+
+    private final class Lane {
+        private final int capacity;
+        private final AtomicInteger reserved = new AtomicInteger();
+        private final Semaphore permits;
+        private final ThreadPoolExecutor pool;
+
+        private Lane(int capacity, Semaphore permits, ThreadPoolExecutor pool) {
+            this.capacity = capacity;
+            this.permits = permits;
+            this.pool = pool;
+        }
+
+        private boolean tryReserve() {
+            if (reserved.incrementAndGet() > capacity) {
+                reserved.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private void release() {
+            reserved.decrementAndGet();
+        }
+
+        private void execute(Runnable job) {
+            if (pool != null) {
+                pool.execute(job);
+                return;
+            }
+            virtualExecutor.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    job.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        private void shutdown() {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private final class ActionMeters {
+        private final AtomicInteger queueDepth;
+        private final Timer queueWait;
+        private final Timer success;
+        private final Timer error;
+        private final Counter rejected;
+
+        private ActionMeters(String service, String action) {
+            Tags tags = Tags.of("service", service, "action", action);
+            this.queueDepth = meterRegistry.gauge("ws.action.queue.depth", tags, new AtomicInteger());
+            this.queueWait = Timer.builder("ws.action.queue.wait")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.success = latencyTimer(tags, "success");
+            this.error = latencyTimer(tags, "error");
+            this.rejected = Counter.builder("ws.action.rejected")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        private Timer latencyTimer(Tags tags, String outcome) {
+            return Timer.builder("ws.action.latency")
+                    .tags(tags.and("outcome", outcome))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.tutict.finalassignmentbackend.config.websocket;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,12 +11,19 @@ import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Scans @WsAction methods and stores them as (serviceName + "#" + actionName) -> handler.
+ * Each handler is compiled once into a spread MethodHandle plus one ObjectReader per parameter,
+ * so frame dispatch does no reflection or type resolution.
  */
 @Component
 public class WsActionRegistry {
@@ -25,9 +34,11 @@ public class WsActionRegistry {
     private final Map<String, HandlerMethod> registry = new HashMap<>();
 
     private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper;
 
-    public WsActionRegistry(ApplicationContext applicationContext) {
+    public WsActionRegistry(ApplicationContext applicationContext, ObjectMapper objectMapper) {
         this.applicationContext = applicationContext;
+        this.objectMapper = objectMapper;
     }
 
     @PostConstruct
@@ -55,12 +66,7 @@ public class WsActionRegistry {
             for (Method m : actualClass.getMethods()) {
                 WsAction anno = m.getAnnotation(WsAction.class);
                 if (anno != null) {
-                    String serviceName = anno.service();
-                    String actionName = anno.action();
-                    String key = serviceName + "#" + actionName;
-
-                    HandlerMethod hm = new HandlerMethod(bean, m, anno);
-                    registry.put(key, hm);
+                    String key = register(HandlerMethod.compile(bean, m, anno, objectMapper));
                     log.info("Registered WsAction: key={}, method={}.{}", key, actualClass.getSimpleName(), m.getName());
                 }
             }
@@ -82,20 +88,70 @@ public class WsActionRegistry {
         return clazz;
     }
 
+    String register(HandlerMethod handlerMethod) {
+        String key = handlerMethod.getWsAction().service() + "#" + handlerMethod.getWsAction().action();
+        registry.put(key, handlerMethod);
+        return key;
+    }
+
     public HandlerMethod getHandler(String serviceName, String actionName) {
         return registry.get(serviceName + "#" + actionName);
     }
 
     @Getter
     public static class HandlerMethod {
+        private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
         private final Object bean;
         private final Method method;
         private final WsAction wsAction;
+        private final MethodHandle invoker;
+        private final ObjectReader[] argReaders;
+        private final Class<?>[] parameterTypes;
+        private final boolean returnsVoid;
 
-        public HandlerMethod(Object bean, Method method, WsAction wsAction) {
+        public HandlerMethod(Object bean, Method method, WsAction wsAction,
+                             MethodHandle invoker, ObjectReader[] argReaders) {
             this.bean = bean;
             this.method = method;
             this.wsAction = wsAction;
+            this.invoker = invoker;
+            this.argReaders = argReaders;
+            this.parameterTypes = method.getParameterTypes();
+            this.returnsVoid = method.getReturnType() == void.class;
+        }
+
+        public static HandlerMethod compile(Object bean, Method method, WsAction wsAction, ObjectMapper objectMapper) {
+            Type[] parameterTypes = method.getGenericParameterTypes();
+            ObjectReader[] readers = new ObjectReader[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                readers[i] = objectMapper.readerFor(objectMapper.getTypeFactory().constructType(parameterTypes[i]));
+            }
+            MethodHandle invoker;
+            try {
+                invoker = MethodHandles.publicLookup()
+                        .unreflect(method)
+                        .bindTo(bean)
+                        .asSpreader(Object[].class, parameterTypes.length)
+                        .asType(SPREAD_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot access WsAction method " + method, e);
+            }
+            return new HandlerMethod(bean, method, wsAction, invoker, readers);
+        }
+
+        public int getParameterCount() {
+            return argReaders.length;
+        }
+
+        public Object invoke(Object[] args) throws Exception {
+            try {
+                return (Object) invoker.invokeExact(args);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new UndeclaredThrowableException(t);
+            }
         }
     }
-}
\ No newline at end of file
+}
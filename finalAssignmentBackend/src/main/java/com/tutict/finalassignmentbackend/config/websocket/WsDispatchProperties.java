@@ -0,0 +1,53 @@
+package com.tutict.finalassignmentbackend.config.websocket;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "network.ws.dispatch")
+public class WsDispatchProperties {
+
+    // virtual: one virtual thread per action, bounded per service by a semaphore.
+    // pool: one fixed-size platform worker pool per service.
+    private Mode mode = Mode.VIRTUAL;
+    private int maxConcurrencyPerService = 32;
+    private int queueCapacityPerService = 256;
+    private int maxInFlightPerConnection = 16;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode == null ? Mode.VIRTUAL : mode;
+    }
+
+    public int getMaxConcurrencyPerService() {
+        return maxConcurrencyPerService;
+    }
+
+    public void setMaxConcurrencyPerService(int maxConcurrencyPerService) {
+        this.maxConcurrencyPerService = Math.max(1, maxConcurrencyPerService);
+    }
+
+    public int getQueueCapacityPerService() {
+        return queueCapacityPerService;
+    }
+
+    public void setQueueCapacityPerService(int queueCapacityPerService) {
+        this.queueCapacityPerService = Math.max(0, queueCapacityPerService);
+    }
+
+    public int getMaxInFlightPerConnection() {
+        return maxInFlightPerConnection;
+    }
+
+    public void setMaxInFlightPerConnection(int maxInFlightPerConnection) {
+        this.maxInFlightPerConnection = Math.max(1, maxInFlightPerConnection);
+    }
+
+    public enum Mode {
+        VIRTUAL,
+        POOL
+    }
+}
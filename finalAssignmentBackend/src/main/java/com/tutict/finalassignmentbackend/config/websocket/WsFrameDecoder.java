@@ -0,0 +1,183 @@
+package com.tutict.finalassignmentbackend.config.websocket;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Streams a WebSocket text frame straight into the handler's pre-resolved argument readers.
+ * When "args" arrives before "service"/"action" the array is buffered as tokens (not a JsonNode tree)
+ * and decoded once the handler is known. Arguments of unknown or forbidden actions are never decoded.
+ * String/int/long/boolean parameters keep the lenient JsonNode coercion of the old reflective path,
+ * so clients sending "123" for a Long (or 123 for a String) are still accepted.
+ */
+@Component
+public class WsFrameDecoder {
+
+    private final ObjectMapper objectMapper;
+    private final WsActionRegistry wsActionRegistry;
+
+    public WsFrameDecoder(ObjectMapper objectMapper, @Lazy WsActionRegistry wsActionRegistry) {
+        this.objectMapper = objectMapper;
+        this.wsActionRegistry = wsActionRegistry;
+    }
+
+    public WsFrame decode(String text, Predicate<WsActionRegistry.HandlerMethod> authorizer) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(text)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "WebSocket frame must be a JSON object");
+            }
+
+            String requestId = null;
+            String service = null;
+            String action = null;
+            String idempotencyKey = null;
+            boolean argsIsArray = false;
+            TokenBuffer bufferedArgs = null;
+            DecodedArgs decoded = null;
+            Rejection rejection = null;
+            WsActionRegistry.HandlerMethod handler = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "requestId" -> requestId = scalarText(parser, value);
+                    case "service" -> service = scalarText(parser, value);
+                    case "action" -> action = scalarText(parser, value);
+                    case "idempotencyKey" -> idempotencyKey = scalarText(parser, value);
+                    case "args" -> {
+                        argsIsArray = value == JsonToken.START_ARRAY;
+                        if (!argsIsArray) {
+                            parser.skipChildren();
+                        } else if (service != null && action != null) {
+                            handler = wsActionRegistry.getHandler(service, action);
+                            rejection = authorize(handler, authorizer);
+                            if (rejection == null) {
+                                decoded = readArgs(parser, handler);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        } else {
+                            bufferedArgs = new TokenBuffer(parser);
+                            bufferedArgs.copyCurrentStructure(parser);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (!argsIsArray) {
+                return new WsFrame(requestId, service, action, idempotencyKey, null, null, 0, Rejection.INVALID_ARGS);
+            }
+            if (decoded == null && rejection == null) {
+                handler = wsActionRegistry.getHandler(service, action);
+                rejection = authorize(handler, authorizer);
+                if (rejection == null) {
+                    try (JsonParser argsParser = bufferedArgs.asParser(objectMapper)) {
+                        argsParser.nextToken();
+                        decoded = readArgs(argsParser, handler);
+                    }
+                }
+            }
+            if (rejection != null) {
+                return new WsFrame(requestId, service, action, idempotencyKey, handler, null, 0, rejection);
+            }
+            if (decoded.count() != handler.getParameterCount()) {
+                return new WsFrame(requestId, service, action, idempotencyKey, handler, null, decoded.count(),
+                        Rejection.PARAM_MISMATCH);
+            }
+            return new WsFrame(requestId, service, action, idempotencyKey, handler, decoded.values(), decoded.count(), null);
+        }
+    }
+
+    private Rejection authorize(WsActionRegistry.HandlerMethod handler,
+                                Predicate<WsActionRegistry.HandlerMethod> authorizer) {
+        if (handler == null) {
+            return Rejection.UNKNOWN_ACTION;
+        }
+        return authorizer.test(handler) ? null : Rejection.FORBIDDEN;
+    }
+
+    // Parser is positioned on START_ARRAY; extra elements are counted but skipped.
+    private DecodedArgs readArgs(JsonParser parser, WsActionRegistry.HandlerMethod handler) throws IOException {
+        ObjectReader[] readers = handler.getArgReaders();
+        Class<?>[] types = handler.getParameterTypes();
+        Object[] values = new Object[readers.length];
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (count < readers.length) {
+                values[count] = isLenientScalar(types[count])
+                        ? coerceScalar(parser.readValueAsTree(), types[count])
+                        : readers[count].readValue(parser);
+            } else {
+                parser.skipChildren();
+            }
+            count++;
+        }
+        return new DecodedArgs(values, count);
+    }
+
+    private static boolean isLenientScalar(Class<?> type) {
+        return type == String.class
+                || type == int.class || type == Integer.class
+                || type == long.class || type == Long.class
+                || type == boolean.class || type == Boolean.class;
+    }
+
+    // 与旧版 convertJsonToParam 保持一致：字符串数字可转数值，非法值回落为默认值
+    private static Object coerceScalar(JsonNode node, Class<?> type) {
+        if (node == null) {
+            node = NullNode.getInstance();
+        }
+        if (type == String.class) {
+            return node.asText();
+        } else if (type == int.class || type == Integer.class) {
+            return node.asInt();
+        } else if (type == long.class || type == Long.class) {
+            return node.asLong();
+        }
+        return node.asBoolean();
+    }
+
+    private String scalarText(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value.isScalarValue()) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return "";
+    }
+
+    public enum Rejection {
+        INVALID_ARGS,
+        UNKNOWN_ACTION,
+        FORBIDDEN,
+        PARAM_MISMATCH
+    }
+
+    public record WsFrame(String requestId,
+                          String service,
+                          String action,
+                          String idempotencyKey,
+                          WsActionRegistry.HandlerMethod handler,
+                          Object[] args,
+                          int argCount,
+                          Rejection rejection) {
+    }
+
+    private record DecodedArgs(Object[] values, int count) {
+    }
+}
@@ -2,15 +2,20 @@ package com.tutict.finalassignmentbackend.controller.admin;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.tutict.finalassignmentbackend.common.PageRequest;
+import com.tutict.finalassignmentbackend.common.export.ExportFormat;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.export.StreamingExportResponses;
 import com.tutict.finalassignmentbackend.common.idempotency.IdempotentExecution;
 import com.tutict.finalassignmentbackend.common.idempotency.IdempotentRequestExecutor;
 import com.tutict.finalassignmentbackend.dto.mapper.UserResponseMapper;
 import com.tutict.finalassignmentbackend.dto.request.UserCreateRequest;
 import com.tutict.finalassignmentbackend.dto.response.ApiResponse;
+import com.tutict.finalassignmentbackend.dto.response.AuthorizationSnapshot;
 import com.tutict.finalassignmentbackend.dto.response.PageResponse;
 import com.tutict.finalassignmentbackend.dto.response.UserResponse;
 import com.tutict.finalassignmentbackend.entity.admin.SysUser;
 import com.tutict.finalassignmentbackend.entity.admin.SysUserRole;
+import com.tutict.finalassignmentbackend.service.admin.AuthorizationSnapshotService;
 import com.tutict.finalassignmentbackend.service.admin.SysUserRoleService;
 import com.tutict.finalassignmentbackend.service.admin.SysUserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -30,6 +35,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.logging.Level;
@@ -45,15 +51,21 @@ public class UserManagementController {
     private static final Logger LOG = Logger.getLogger(UserManagementController.class.getName());
 
     private final SysUserService sysUserService;
+    private final StreamingExportResponses streamingExportResponses;
     private final SysUserRoleService sysUserRoleService;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
     private final IdempotentRequestExecutor idempotentRequestExecutor;
 
     public UserManagementController(SysUserService sysUserService,
                                     SysUserRoleService sysUserRoleService,
-                                    IdempotentRequestExecutor idempotentRequestExecutor) {
+                                    AuthorizationSnapshotService authorizationSnapshotService,
+                                    IdempotentRequestExecutor idempotentRequestExecutor,
+                                    StreamingExportResponses streamingExportResponses) {
         this.sysUserService = sysUserService;
         this.sysUserRoleService = sysUserRoleService;
+        this.authorizationSnapshotService = authorizationSnapshotService;
         this.idempotentRequestExecutor = idempotentRequestExecutor;
+        this.streamingExportResponses = streamingExportResponses;
     }
 
     @PostMapping
@@ -165,6 +177,17 @@ public class UserManagementController {
         }
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "导出全部用户", description = "按主键分批流式输出 NDJSON 或 CSV；source=index 时从搜索索引导出")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(defaultValue = "database") String source) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        ExportSource exportSource = ExportSource.from(source);
+        return streamingExportResponses.stream("users", exportFormat,
+                sink -> sysUserService.exportAll(exportSource, sink),
+                this::toUserResponses);
+    }
+
     @GetMapping("/search/username/{username}")
     @Operation(summary = "按用户名查询用户")
     public ResponseEntity<ApiResponse<UserResponse>> getByUsername(@PathVariable String username) {
@@ -343,6 +366,20 @@ public class UserManagementController {
         }
     }
 
+    @GetMapping("/{userId}/authorization-snapshot")
+    @Operation(summary = "查询用户授权快照（角色、角色类型与数据范围）")
+    public ResponseEntity<AuthorizationSnapshot> getAuthorizationSnapshot(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(authorizationSnapshotService.getSnapshot(userId));
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Get authorization snapshot failed", ex);
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            throw new RuntimeException(ex);
+        }
+    }
+
     @PutMapping("/role-bindings/{relationId}")
     @Operation(summary = "更新用户角色关联")
     public ResponseEntity<SysUserRole> updateUserRole(@PathVariable Long relationId,
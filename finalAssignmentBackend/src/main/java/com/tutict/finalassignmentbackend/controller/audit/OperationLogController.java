@@ -1,5 +1,8 @@
 package com.tutict.finalassignmentbackend.controller.audit;
 
+import com.tutict.finalassignmentbackend.common.export.ExportFormat;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.export.StreamingExportResponses;
 import com.tutict.finalassignmentbackend.dto.response.ApiResponse;
 
 import com.tutict.finalassignmentbackend.entity.audit.AuditOperationLog;
@@ -21,8 +24,10 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,9 +41,12 @@ public class OperationLogController {
     private static final Logger LOG = Logger.getLogger(OperationLogController.class.getName());
 
     private final AuditOperationLogService auditOperationLogService;
+    private final StreamingExportResponses streamingExportResponses;
 
-    public OperationLogController(AuditOperationLogService auditOperationLogService) {
+    public OperationLogController(AuditOperationLogService auditOperationLogService,
+                                  StreamingExportResponses streamingExportResponses) {
         this.auditOperationLogService = auditOperationLogService;
+        this.streamingExportResponses = streamingExportResponses;
     }
 
     @PostMapping
@@ -145,6 +153,17 @@ public class OperationLogController {
         }
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "导出全部操作日志", description = "按主键分批流式输出 NDJSON 或 CSV；source=index 时从搜索索引导出")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(defaultValue = "database") String source) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        ExportSource exportSource = ExportSource.from(source);
+        return streamingExportResponses.<AuditOperationLog>stream("operation-logs", exportFormat,
+                sink -> auditOperationLogService.exportAll(exportSource, sink),
+                Function.identity());
+    }
+
     @GetMapping("/search/module")
     @Operation(summary = "按模块搜索操作日志")
     public ResponseEntity<List<AuditOperationLog>> searchByModule(@RequestParam String module,
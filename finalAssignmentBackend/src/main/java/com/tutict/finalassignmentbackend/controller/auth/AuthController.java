@@ -1,5 +1,6 @@
 package com.tutict.finalassignmentbackend.controller.auth;
 
+import com.tutict.finalassignmentbackend.common.export.StreamingExportResponses;
 import com.tutict.finalassignmentbackend.dto.request.RefreshRequest;
 import com.tutict.finalassignmentbackend.dto.response.TokenResponse;
 import com.tutict.finalassignmentbackend.dto.response.UserProfileResponse;
@@ -32,12 +33,13 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,10 +53,14 @@ public class AuthController {
 
     private final AuthWsService authWsService;
     private final LoginAttemptGuard loginAttemptGuard;
+    private final StreamingExportResponses streamingExportResponses;
 
-    public AuthController(AuthWsService authWsService, LoginAttemptGuard loginAttemptGuard) {
+    public AuthController(AuthWsService authWsService,
+                          LoginAttemptGuard loginAttemptGuard,
+                          StreamingExportResponses streamingExportResponses) {
         this.authWsService = authWsService;
         this.loginAttemptGuard = loginAttemptGuard;
+        this.streamingExportResponses = streamingExportResponses;
     }
 
     @PostMapping("/login")
@@ -236,7 +242,7 @@ public class AuthController {
     @SecurityRequirement(name = "bearerAuth")
     @Operation(
             summary = "获取全部系统用户",
-            description = "仅管理员角色可查询系统中所有用户的基本信息。"
+            description = "仅管理员角色可查询系统中所有用户的基本信息；按主键分批流式输出。"
     )
     @ApiResponses({
             @ApiResponse(
@@ -251,14 +257,7 @@ public class AuthController {
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(type = "object", example = "{\"error\":\"Access denied\"}")))
     })
-    public ResponseEntity<com.tutict.finalassignmentbackend.dto.response.ApiResponse<List<UserResponse>>> getAllUsers() {
-        try {
-            List<UserResponse> users = authWsService.getAllUsers();
-            LOG.log(Level.INFO, "Fetched {0} users", users.size());
-            return ResponseEntity.ok(com.tutict.finalassignmentbackend.dto.response.ApiResponse.ok(users));
-        } catch (Exception ex) {
-            LOG.log(Level.SEVERE, "GetAllUsers failed", ex);
-            throw new IllegalStateException("Failed to fetch users", ex);
-        }
+    public ResponseEntity<StreamingResponseBody> getAllUsers() {
+        return streamingExportResponses.<UserResponse>streamList(authWsService::exportUsers, Function.identity());
     }
 }
@@ -1,5 +1,10 @@
 package com.tutict.finalassignmentbackend.controller.business;
 
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.tutict.finalassignmentbackend.common.PageLimits;
+import com.tutict.finalassignmentbackend.common.export.ExportFormat;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.export.StreamingExportResponses;
 import com.tutict.finalassignmentbackend.config.security.SecurityRoleUtils;
 import com.tutict.finalassignmentbackend.dto.response.ApiResponse;
 
@@ -30,6 +35,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Objects;
@@ -53,19 +59,22 @@ public class DriverInformationController {
 
     private final AuthWsService authWsService;
     private final DriverInformationService driverInformationService;
+    private final StreamingExportResponses streamingExportResponses;
     private final BusinessRecordViewService businessRecordViewService;
 
     @Autowired
     public DriverInformationController(AuthWsService authWsService,
                                        DriverInformationService driverInformationService,
-                                       BusinessRecordViewService businessRecordViewService) {
+                                       BusinessRecordViewService businessRecordViewService,
+                                       StreamingExportResponses streamingExportResponses) {
         this.authWsService = authWsService;
         this.driverInformationService = driverInformationService;
         this.businessRecordViewService = businessRecordViewService;
+        this.streamingExportResponses = streamingExportResponses;
     }
 
     public DriverInformationController(DriverInformationService driverInformationService) {
-        this(null, driverInformationService, null);
+        this(null, driverInformationService, null, null);
     }
 
     @PostMapping
@@ -176,13 +185,12 @@ public class DriverInformationController {
     public ResponseEntity<ApiResponse<PageResponse<DriverInformation>>> list(@RequestParam(defaultValue = "0") int page,
                                                                              @RequestParam(defaultValue = "20") int size) {
         try {
-            List<DriverInformation> drivers = enrich(driverInformationService.getAllDrivers());
             int normalizedPage = Math.max(page, 0);
-            int normalizedSize = Math.max(size, 1);
-            int from = Math.min(normalizedPage * normalizedSize, drivers.size());
-            int to = Math.min(from + normalizedSize, drivers.size());
+            int normalizedSize = PageLimits.normalizeSize(size);
+            // 接口页码从 0 开始，MyBatis-Plus 从 1 开始
+            Page<DriverInformation> result = driverInformationService.findPage(normalizedPage + 1, normalizedSize);
             return ResponseEntity.ok(ApiResponse.ok(PageResponse.of(
-                    drivers.subList(from, to), drivers.size(), normalizedPage, normalizedSize)));
+                    enrich(result.getRecords()), result.getTotal(), normalizedPage, normalizedSize)));
         } catch (Exception ex) {
             LOG.log(Level.WARNING, "List drivers failed", ex);
             if (ex instanceof RuntimeException) {
@@ -192,6 +200,17 @@ public class DriverInformationController {
         }
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "导出全部驾驶员", description = "按主键分批流式输出 NDJSON 或 CSV；source=index 时从搜索索引导出")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(defaultValue = "database") String source) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        ExportSource exportSource = ExportSource.from(source);
+        return streamingExportResponses.stream("drivers", exportFormat,
+                sink -> driverInformationService.exportAll(exportSource, sink),
+                this::enrich);
+    }
+
     @GetMapping("/search/id-card")
     @Operation(summary = "按身份证号搜索驾驶员")
     public ResponseEntity<List<DriverInformation>> searchByIdCard(@RequestParam String keywords,
@@ -1,5 +1,8 @@
 package com.tutict.finalassignmentbackend.controller.business;
 
+import com.tutict.finalassignmentbackend.common.export.ExportFormat;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.export.StreamingExportResponses;
 import com.tutict.finalassignmentbackend.config.security.SecurityRoleUtils;
 import com.tutict.finalassignmentbackend.config.statemachine.states.PaymentState;
 import com.tutict.finalassignmentbackend.dto.mapper.PaymentRecordRequestMapper;
@@ -34,6 +37,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Objects;
@@ -57,12 +61,15 @@ public class PaymentRecordController {
 
     private final AuthWsService authWsService;
     private final PaymentRecordService paymentRecordService;
+    private final StreamingExportResponses streamingExportResponses;
     private final PaymentGovernanceClassifier paymentGovernanceClassifier;
 
-    public PaymentRecordController(AuthWsService authWsService, PaymentRecordService paymentRecordService) {
+    public PaymentRecordController(AuthWsService authWsService, PaymentRecordService paymentRecordService,
+                                   StreamingExportResponses streamingExportResponses) {
         this.authWsService = authWsService;
         this.paymentRecordService = paymentRecordService;
         this.paymentGovernanceClassifier = new PaymentGovernanceClassifier();
+        this.streamingExportResponses = streamingExportResponses;
     }
 
     @PostMapping
@@ -187,9 +194,22 @@ public class PaymentRecordController {
     }
 
     @GetMapping
-    @Operation(summary = "查询全部支付记录")
-    public ResponseEntity<ApiResponse<List<PaymentRecordResponse>>> listPayments() {
-        return ResponseEntity.ok(ApiResponse.ok(toPaymentResponses(paymentRecordService.findAll())));
+    @Operation(summary = "查询全部支付记录", description = "按主键分批流式输出 ApiResponse 包装的 JSON 列表")
+    public ResponseEntity<StreamingResponseBody> listPayments() {
+        return streamingExportResponses.streamList(
+                sink -> paymentRecordService.exportAll(ExportSource.DATABASE, sink),
+                this::toPaymentResponses);
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "导出全部支付记录", description = "按主键分批流式输出 NDJSON 或 CSV；source=index 时从搜索索引导出")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(defaultValue = "database") String source) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        ExportSource exportSource = ExportSource.from(source);
+        return streamingExportResponses.stream("payments", exportFormat,
+                sink -> paymentRecordService.exportAll(exportSource, sink),
+                this::toPaymentResponses);
     }
 
     @GetMapping("/fine/{fineId}")
@@ -1,5 +1,10 @@
 package com.tutict.finalassignmentbackend.controller.business;
 
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.tutict.finalassignmentbackend.common.PageLimits;
+import com.tutict.finalassignmentbackend.common.export.ExportFormat;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.export.StreamingExportResponses;
 import com.tutict.finalassignmentbackend.config.security.SecurityRoleUtils;
 import com.tutict.finalassignmentbackend.dto.response.ApiResponse;
 
@@ -29,6 +34,7 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Locale;
@@ -54,17 +60,20 @@ public class VehicleInformationController {
 
     private final AuthWsService authWsService;
     private final VehicleInformationService vehicleInformationService;
+    private final StreamingExportResponses streamingExportResponses;
     private final DriverVehicleService driverVehicleService;
     private final BusinessRecordViewService businessRecordViewService;
 
     public VehicleInformationController(AuthWsService authWsService,
                                         VehicleInformationService vehicleInformationService,
                                         DriverVehicleService driverVehicleService,
-                                        BusinessRecordViewService businessRecordViewService) {
+                                        BusinessRecordViewService businessRecordViewService,
+                                        StreamingExportResponses streamingExportResponses) {
         this.authWsService = authWsService;
         this.vehicleInformationService = vehicleInformationService;
         this.driverVehicleService = driverVehicleService;
         this.businessRecordViewService = businessRecordViewService;
+        this.streamingExportResponses = streamingExportResponses;
     }
 
     @PostMapping
@@ -198,13 +207,12 @@ public class VehicleInformationController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         try {
-            List<VehicleInformation> records = enrich(vehicleInformationService.getAllVehicleInformation());
             int normalizedPage = Math.max(page, 0);
-            int normalizedSize = Math.max(size, 1);
-            int from = Math.min(normalizedPage * normalizedSize, records.size());
-            int to = Math.min(from + normalizedSize, records.size());
+            int normalizedSize = PageLimits.normalizeSize(size);
+            // 接口页码从 0 开始，MyBatis-Plus 从 1 开始
+            Page<VehicleInformation> result = vehicleInformationService.findPage(normalizedPage + 1, normalizedSize);
             return ResponseEntity.ok(ApiResponse.ok(PageResponse.of(
-                    records.subList(from, to), records.size(), normalizedPage, normalizedSize)));
+                    enrich(result.getRecords()), result.getTotal(), normalizedPage, normalizedSize)));
         } catch (Exception ex) {
             LOG.log(Level.WARNING, "List vehicles failed", ex);
             if (ex instanceof RuntimeException) {
@@ -214,6 +222,17 @@ public class VehicleInformationController {
         }
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "导出全部车辆", description = "按主键分批流式输出 NDJSON 或 CSV；source=index 时从搜索索引导出")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(defaultValue = "database") String source) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        ExportSource exportSource = ExportSource.from(source);
+        return streamingExportResponses.stream("vehicles", exportFormat,
+                sink -> vehicleInformationService.exportAll(exportSource, sink),
+                this::enrich);
+    }
+
     @GetMapping("/search/license")
     @Operation(summary = "按车牌号搜索车辆")
     public ResponseEntity<VehicleInformation> searchByLicense(@RequestParam String licensePlate) {
@@ -394,6 +394,9 @@ public class RagManagementController {
                     objectNode.put("sheetCount", parsedFile.sheetCount());
                 }
             }
+            if (parsedFile.truncated()) {
+                objectNode.put("contentTruncated", true);
+            }
             return objectMapper.writeValueAsString(objectNode);
         } catch (JsonProcessingException error) {
             throw new IllegalArgumentException("metadataJson is not valid JSON", error);
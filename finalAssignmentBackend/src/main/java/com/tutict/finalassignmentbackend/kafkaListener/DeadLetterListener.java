@@ -28,6 +28,8 @@ public class DeadLetterListener {
     @KafkaListener(topics = {
             "${kafka.topics.offense.create-dlt:offense_record_create.DLT}",
             "${kafka.topics.offense.update-dlt:offense_record_update.DLT}",
+            "${kafka.topics.fine.create-dlt:fine_record_create.DLT}",
+            "${kafka.topics.fine.update-dlt:fine_record_update.DLT}",
             "${kafka.topics.payment.create-dlt:payment_record_create.DLT}",
             "${kafka.topics.payment.update-dlt:payment_record_update.DLT}",
             "${kafka.topics.appeal.create-dlt:appeal_record_create.DLT}",
@@ -77,6 +79,7 @@ public class DeadLetterListener {
     private String buildUserFriendlyMessage(String topic) {
         return switch (topic) {
             case "offense_record_create.DLT", "offense_record_update.DLT" -> "Offense async operation failed";
+            case "fine_record_create.DLT", "fine_record_update.DLT" -> "Fine async operation failed";
             case "payment_record_create.DLT", "payment_record_update.DLT" -> "Payment async operation failed";
             case "appeal_record_create.DLT", "appeal_record_update.DLT" -> "Appeal async operation failed";
             case "sys_user_create.DLT", "sys_user_update.DLT" -> "User async operation failed";
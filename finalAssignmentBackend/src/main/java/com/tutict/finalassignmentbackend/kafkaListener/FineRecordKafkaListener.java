@@ -1,8 +1,10 @@
 package com.tutict.finalassignmentbackend.kafkaListener;
 
+import com.tutict.finalassignmentbackend.common.idempotency.BatchKafkaMessageProcessor;
 import com.tutict.finalassignmentbackend.common.idempotency.IdempotentKafkaMessageProcessor;
 import com.tutict.finalassignmentbackend.entity.offense.FineRecord;
 import com.tutict.finalassignmentbackend.service.offense.FineRecordService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
@@ -11,6 +13,7 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,15 +24,19 @@ public class FineRecordKafkaListener {
 
     private final FineRecordService fineRecordService;
     private final IdempotentKafkaMessageProcessor messageProcessor;
+    private final BatchKafkaMessageProcessor batchMessageProcessor;
 
     @Autowired
     public FineRecordKafkaListener(FineRecordService fineRecordService,
-                                   IdempotentKafkaMessageProcessor messageProcessor) {
+                                   IdempotentKafkaMessageProcessor messageProcessor,
+                                   BatchKafkaMessageProcessor batchMessageProcessor) {
         this.fineRecordService = fineRecordService;
         this.messageProcessor = messageProcessor;
+        this.batchMessageProcessor = batchMessageProcessor;
     }
 
-    @KafkaListener(topics = "${kafka.topics.fine.create:fine_record_create}", groupId = "${kafka.groups.fine:fineRecordGroup}", concurrency = "3")
+    @KafkaListener(topics = "${kafka.topics.fine.create:fine_record_create}", groupId = "${kafka.groups.fine:fineRecordGroup}", concurrency = "3",
+            autoStartup = "#{@kafkaBatchListenerProperties.recordListenerStartup('${kafka.topics.fine.create:fine_record_create}')}")
     public void onFineRecordCreate(@Header(value = KafkaHeaders.RECEIVED_KEY, required = false) byte[] rawKey,
                                    @Payload String message,
                                    Acknowledgment ack) {
@@ -37,7 +44,8 @@ public class FineRecordKafkaListener {
         processMessage(asKey(rawKey), message, "create", ack);
     }
 
-    @KafkaListener(topics = "${kafka.topics.fine.update:fine_record_update}", groupId = "${kafka.groups.fine:fineRecordGroup}", concurrency = "3")
+    @KafkaListener(topics = "${kafka.topics.fine.update:fine_record_update}", groupId = "${kafka.groups.fine:fineRecordGroup}", concurrency = "3",
+            autoStartup = "#{@kafkaBatchListenerProperties.recordListenerStartup('${kafka.topics.fine.update:fine_record_update}')}")
     public void onFineRecordUpdate(@Header(value = KafkaHeaders.RECEIVED_KEY, required = false) byte[] rawKey,
                                    @Payload String message,
                                    Acknowledgment ack) {
@@ -45,6 +53,22 @@ public class FineRecordKafkaListener {
         processMessage(asKey(rawKey), message, "update", ack);
     }
 
+    @KafkaListener(topics = "${kafka.topics.fine.create:fine_record_create}", groupId = "${kafka.groups.fine:fineRecordGroup}", concurrency = "3",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{@kafkaBatchListenerProperties.batchListenerStartup('${kafka.topics.fine.create:fine_record_create}')}")
+    public void onFineRecordCreateBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        log.log(Level.INFO, "Received {0} Kafka messages for FineRecord create (payloads omitted)", records.size());
+        processBatch(records, "create", ack);
+    }
+
+    @KafkaListener(topics = "${kafka.topics.fine.update:fine_record_update}", groupId = "${kafka.groups.fine:fineRecordGroup}", concurrency = "3",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{@kafkaBatchListenerProperties.batchListenerStartup('${kafka.topics.fine.update:fine_record_update}')}")
+    public void onFineRecordUpdateBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        log.log(Level.INFO, "Received {0} Kafka messages for FineRecord update (payloads omitted)", records.size());
+        processBatch(records, "update", ack);
+    }
+
     private void processMessage(String idempotencyKey, String message, String action, Acknowledgment ack) {
         if (isBlank(idempotencyKey)) {
             log.warning("Received FineRecord event without idempotency key, skipping");
@@ -68,6 +92,32 @@ public class FineRecordKafkaListener {
         );
     }
 
+    private void processBatch(List<ConsumerRecord<String, String>> records, String action, Acknowledgment ack) {
+        batchMessageProcessor.process(
+                records,
+                ack,
+                "FineRecord",
+                action,
+                FineRecord.class,
+                payloads -> {
+                    if ("create".equalsIgnoreCase(action)) {
+                        payloads.forEach(payload -> payload.setFineId(null));
+                        return fineRecordService.createFineRecords(payloads);
+                    }
+                    return fineRecordService.updateFineRecords(payloads);
+                },
+                (key, payload) -> {
+                    if ("create".equalsIgnoreCase(action)) {
+                        payload.setFineId(null);
+                        return fineRecordService.createFineRecord(payload);
+                    }
+                    return fineRecordService.updateFineRecord(payload);
+                },
+                FineRecord::getFineId,
+                null
+        );
+    }
+
     private FineRecord processPayload(String message, String action) {
         FineRecord payload = messageProcessor.deserialize(message, FineRecord.class);
         if ("create".equalsIgnoreCase(action)) {
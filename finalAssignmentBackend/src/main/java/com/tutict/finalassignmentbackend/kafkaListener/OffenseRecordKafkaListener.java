@@ -1,5 +1,6 @@
 package com.tutict.finalassignmentbackend.kafkaListener;
 
+import com.tutict.finalassignmentbackend.common.idempotency.BatchKafkaMessageProcessor;
 import com.tutict.finalassignmentbackend.common.idempotency.IdempotentKafkaMessageProcessor;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
 import com.tutict.finalassignmentbackend.offense.governance.OffenseGovernanceDecision;
@@ -7,6 +8,7 @@ import com.tutict.finalassignmentbackend.offense.governance.OffenseGovernanceLog
 import com.tutict.finalassignmentbackend.offense.governance.SemanticIntentClassifier;
 import com.tutict.finalassignmentbackend.offense.governance.StaleFullUpdateRejectedException;
 import com.tutict.finalassignmentbackend.service.offense.OffenseRecordService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
@@ -15,6 +17,7 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,17 +28,21 @@ public class OffenseRecordKafkaListener {
 
     private final OffenseRecordService offenseRecordService;
     private final IdempotentKafkaMessageProcessor messageProcessor;
+    private final BatchKafkaMessageProcessor batchMessageProcessor;
     private final SemanticIntentClassifier semanticIntentClassifier;
 
     @Autowired
     public OffenseRecordKafkaListener(OffenseRecordService offenseRecordService,
-                                      IdempotentKafkaMessageProcessor messageProcessor) {
+                                      IdempotentKafkaMessageProcessor messageProcessor,
+                                      BatchKafkaMessageProcessor batchMessageProcessor) {
         this.offenseRecordService = offenseRecordService;
         this.messageProcessor = messageProcessor;
+        this.batchMessageProcessor = batchMessageProcessor;
         this.semanticIntentClassifier = new SemanticIntentClassifier();
     }
 
-    @KafkaListener(topics = "${kafka.topics.offense.create:offense_record_create}", groupId = "${kafka.groups.offense:offenseRecordGroup}", concurrency = "3")
+    @KafkaListener(topics = "${kafka.topics.offense.create:offense_record_create}", groupId = "${kafka.groups.offense:offenseRecordGroup}", concurrency = "3",
+            autoStartup = "#{@kafkaBatchListenerProperties.recordListenerStartup('${kafka.topics.offense.create:offense_record_create}')}")
     public void onOffenseRecordCreate(@Header(value = KafkaHeaders.RECEIVED_KEY, required = false) byte[] rawKey,
                                       @Payload String message,
                                       Acknowledgment ack) {
@@ -43,7 +50,8 @@ public class OffenseRecordKafkaListener {
         processMessage(asKey(rawKey), message, "create", ack);
     }
 
-    @KafkaListener(topics = "${kafka.topics.offense.update:offense_record_update}", groupId = "${kafka.groups.offense:offenseRecordGroup}", concurrency = "3")
+    @KafkaListener(topics = "${kafka.topics.offense.update:offense_record_update}", groupId = "${kafka.groups.offense:offenseRecordGroup}", concurrency = "3",
+            autoStartup = "#{@kafkaBatchListenerProperties.recordListenerStartup('${kafka.topics.offense.update:offense_record_update}')}")
     public void onOffenseRecordUpdate(@Header(value = KafkaHeaders.RECEIVED_KEY, required = false) byte[] rawKey,
                                       @Payload String message,
                                       Acknowledgment ack) {
@@ -51,6 +59,22 @@ public class OffenseRecordKafkaListener {
         processMessage(asKey(rawKey), message, "update", ack);
     }
 
+    @KafkaListener(topics = "${kafka.topics.offense.create:offense_record_create}", groupId = "${kafka.groups.offense:offenseRecordGroup}", concurrency = "3",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{@kafkaBatchListenerProperties.batchListenerStartup('${kafka.topics.offense.create:offense_record_create}')}")
+    public void onOffenseRecordCreateBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        log.log(Level.INFO, "Received {0} Kafka messages for OffenseRecord create (payloads omitted)", records.size());
+        processBatch(records, "create", ack);
+    }
+
+    @KafkaListener(topics = "${kafka.topics.offense.update:offense_record_update}", groupId = "${kafka.groups.offense:offenseRecordGroup}", concurrency = "3",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{@kafkaBatchListenerProperties.batchListenerStartup('${kafka.topics.offense.update:offense_record_update}')}")
+    public void onOffenseRecordUpdateBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        log.log(Level.INFO, "Received {0} Kafka messages for OffenseRecord update (payloads omitted)", records.size());
+        processBatch(records, "update", ack);
+    }
+
     private void processMessage(String idempotencyKey, String message, String action, Acknowledgment ack) {
         if (isBlank(idempotencyKey)) {
             log.warning("Received OffenseRecord event without idempotency key, skipping");
@@ -98,6 +122,40 @@ public class OffenseRecordKafkaListener {
         );
     }
 
+    private void processBatch(List<ConsumerRecord<String, String>> records, String action, Acknowledgment ack) {
+        batchMessageProcessor.process(
+                records,
+                ack,
+                "OffenseRecord",
+                action,
+                OffenseRecord.class,
+                payloads -> processBatchPayloads(payloads, action),
+                (key, payload) -> processPayload(payload, key, action),
+                OffenseRecord::getOffenseId,
+                (key, payload) -> {
+                    semanticIntentClassifier.classifyKafkaAction(action, true);
+                    logGovernance(Level.INFO, OffenseGovernanceLogFactory.noOpSuppressed(
+                                    OffenseGovernanceDecision.Source.KAFKA,
+                                    payload.getOffenseId(),
+                                    "duplicate"
+                            )
+                            .withAttribute("kafkaKey", key)
+                            .withAttribute("action", action));
+                }
+        );
+    }
+
+    private List<OffenseRecord> processBatchPayloads(List<OffenseRecord> payloads, String action) {
+        if ("create".equalsIgnoreCase(action)) {
+            payloads.forEach(payload -> payload.setOffenseId(null));
+            return offenseRecordService.createOffenseRecords(payloads);
+        }
+        if ("update".equalsIgnoreCase(action)) {
+            return offenseRecordService.updateKafkaFullUpdates(payloads);
+        }
+        throw new IllegalArgumentException("Unsupported OffenseRecord action: " + action);
+    }
+
     private OffenseRecord processPayload(OffenseRecord payload, String idempotencyKey, String action) {
         try {
             if ("create".equalsIgnoreCase(action)) {
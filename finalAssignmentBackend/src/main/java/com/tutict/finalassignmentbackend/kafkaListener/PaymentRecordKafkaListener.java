@@ -1,11 +1,13 @@
 package com.tutict.finalassignmentbackend.kafkaListener;
 
+import com.tutict.finalassignmentbackend.common.idempotency.BatchKafkaMessageProcessor;
 import com.tutict.finalassignmentbackend.common.idempotency.IdempotentKafkaMessageProcessor;
 import com.tutict.finalassignmentbackend.entity.payment.PaymentRecord;
 import com.tutict.finalassignmentbackend.payment.governance.PaymentGovernanceClassifier;
 import com.tutict.finalassignmentbackend.payment.governance.PaymentGovernanceLogFactory;
 import com.tutict.finalassignmentbackend.payment.governance.PaymentGovernanceSource;
 import com.tutict.finalassignmentbackend.service.payment.PaymentRecordService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
@@ -14,6 +16,7 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,17 +27,21 @@ public class PaymentRecordKafkaListener {
 
     private final PaymentRecordService paymentRecordService;
     private final IdempotentKafkaMessageProcessor messageProcessor;
+    private final BatchKafkaMessageProcessor batchMessageProcessor;
     private final PaymentGovernanceClassifier paymentGovernanceClassifier;
 
     @Autowired
     public PaymentRecordKafkaListener(PaymentRecordService paymentRecordService,
-                                      IdempotentKafkaMessageProcessor messageProcessor) {
+                                      IdempotentKafkaMessageProcessor messageProcessor,
+                                      BatchKafkaMessageProcessor batchMessageProcessor) {
         this.paymentRecordService = paymentRecordService;
         this.messageProcessor = messageProcessor;
+        this.batchMessageProcessor = batchMessageProcessor;
         this.paymentGovernanceClassifier = new PaymentGovernanceClassifier();
     }
 
-    @KafkaListener(topics = "${kafka.topics.payment.create:payment_record_create}", groupId = "${kafka.groups.payment:paymentRecordGroup}", concurrency = "3")
+    @KafkaListener(topics = "${kafka.topics.payment.create:payment_record_create}", groupId = "${kafka.groups.payment:paymentRecordGroup}", concurrency = "3",
+            autoStartup = "#{@kafkaBatchListenerProperties.recordListenerStartup('${kafka.topics.payment.create:payment_record_create}')}")
     public void onPaymentRecordCreate(@Header(value = KafkaHeaders.RECEIVED_KEY, required = false) byte[] rawKey,
                                       @Payload String message,
                                       Acknowledgment ack) {
@@ -42,7 +49,8 @@ public class PaymentRecordKafkaListener {
         processMessage(asKey(rawKey), message, "create", ack);
     }
 
-    @KafkaListener(topics = "${kafka.topics.payment.update:payment_record_update}", groupId = "${kafka.groups.payment:paymentRecordGroup}", concurrency = "3")
+    @KafkaListener(topics = "${kafka.topics.payment.update:payment_record_update}", groupId = "${kafka.groups.payment:paymentRecordGroup}", concurrency = "3",
+            autoStartup = "#{@kafkaBatchListenerProperties.recordListenerStartup('${kafka.topics.payment.update:payment_record_update}')}")
     public void onPaymentRecordUpdate(@Header(value = KafkaHeaders.RECEIVED_KEY, required = false) byte[] rawKey,
                                       @Payload String message,
                                       Acknowledgment ack) {
@@ -50,6 +58,22 @@ public class PaymentRecordKafkaListener {
         processMessage(asKey(rawKey), message, "update", ack);
     }
 
+    @KafkaListener(topics = "${kafka.topics.payment.create:payment_record_create}", groupId = "${kafka.groups.payment:paymentRecordGroup}", concurrency = "3",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{@kafkaBatchListenerProperties.batchListenerStartup('${kafka.topics.payment.create:payment_record_create}')}")
+    public void onPaymentRecordCreateBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        log.log(Level.INFO, "Received {0} Kafka messages for PaymentRecord create (payloads omitted)", records.size());
+        processBatch(records, "create", ack);
+    }
+
+    @KafkaListener(topics = "${kafka.topics.payment.update:payment_record_update}", groupId = "${kafka.groups.payment:paymentRecordGroup}", concurrency = "3",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{@kafkaBatchListenerProperties.batchListenerStartup('${kafka.topics.payment.update:payment_record_update}')}")
+    public void onPaymentRecordUpdateBatch(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        log.log(Level.INFO, "Received {0} Kafka messages for PaymentRecord update (payloads omitted)", records.size());
+        processBatch(records, "update", ack);
+    }
+
     private void processMessage(String idempotencyKey, String message, String action, Acknowledgment ack) {
         if (isBlank(idempotencyKey)) {
             log.warning("Received PaymentRecord event without idempotency key, skipping");
@@ -95,6 +119,45 @@ public class PaymentRecordKafkaListener {
         );
     }
 
+    private void processBatch(List<ConsumerRecord<String, String>> records, String action, Acknowledgment ack) {
+        batchMessageProcessor.process(
+                records,
+                ack,
+                "PaymentRecord",
+                action,
+                PaymentRecord.class,
+                payloads -> processBatchPayloads(payloads, action),
+                (key, payload) -> processPayload(payload, action),
+                PaymentRecord::getPaymentId,
+                (key, payload) -> logPaymentGovernance(PaymentGovernanceLogFactory.noOpSuppressed(
+                        PaymentGovernanceSource.KAFKA,
+                        paymentGovernanceClassifier.classifyKafkaMutation(action, true),
+                        payload,
+                        action,
+                        key
+                ))
+        );
+    }
+
+    private List<PaymentRecord> processBatchPayloads(List<PaymentRecord> payloads, String action) {
+        for (PaymentRecord payload : payloads) {
+            logPaymentGovernance(PaymentGovernanceLogFactory.shadowClassification(
+                    PaymentGovernanceSource.KAFKA,
+                    paymentGovernanceClassifier.classifyKafkaMutation(action, false),
+                    payload,
+                    action
+            ));
+        }
+        if ("create".equalsIgnoreCase(action)) {
+            payloads.forEach(payload -> payload.setPaymentId(null));
+            return paymentRecordService.createPaymentRecords(payloads);
+        }
+        if ("update".equalsIgnoreCase(action)) {
+            return paymentRecordService.updatePaymentRecords(payloads);
+        }
+        throw new IllegalArgumentException("Unsupported PaymentRecord action: " + action);
+    }
+
     private PaymentRecord processPayload(PaymentRecord payload, String action) {
         logPaymentGovernance(PaymentGovernanceLogFactory.shadowClassification(
                 PaymentGovernanceSource.KAFKA,
@@ -1,9 +1,9 @@
 package com.tutict.finalassignmentbackend.mapper.offense;
 
-import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tutict.finalassignmentbackend.config.mybatis.BatchInsertMapper;
 import com.tutict.finalassignmentbackend.entity.offense.FineRecord;
 import org.apache.ibatis.annotations.Mapper;
 
 @Mapper
-public interface FineRecordMapper extends BaseMapper<FineRecord> {
+public interface FineRecordMapper extends BatchInsertMapper<FineRecord> {
 }
@@ -1,9 +1,9 @@
 package com.tutict.finalassignmentbackend.mapper.offense;
 
-import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tutict.finalassignmentbackend.config.mybatis.BatchInsertMapper;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
 import org.apache.ibatis.annotations.Mapper;
 
 @Mapper
-public interface OffenseRecordMapper extends BaseMapper<OffenseRecord> {
+public interface OffenseRecordMapper extends BatchInsertMapper<OffenseRecord> {
 }
@@ -5,7 +5,9 @@ import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -13,6 +15,16 @@ public interface SysRequestHistoryMapper extends BaseMapper<SysRequestHistory> {
     @Select("SELECT * FROM sys_request_history WHERE idempotency_key = #{idempotencyKey} LIMIT 1")
     SysRequestHistory selectByIdempotencyKey(@Param("idempotencyKey") String idempotencyKey);
 
+    @Select("""
+            <script>
+            SELECT idempotency_key FROM sys_request_history
+            WHERE business_status = 'SUCCESS' AND request_params = 'DONE'
+              AND idempotency_key IN
+            <foreach collection="keys" item="key" open="(" separator="," close=")">#{key}</foreach>
+            </script>
+            """)
+    List<String> selectCompletedKeys(@Param("keys") Collection<String> keys);
+
     @Select("""
             SELECT h.*
             FROM sys_request_history h
@@ -24,4 +36,24 @@ public interface SysRequestHistoryMapper extends BaseMapper<SysRequestHistory> {
     List<SysRequestHistory> selectByUsername(@Param("username") String username,
                                              @Param("offset") long offset,
                                              @Param("size") long size);
+
+    /**
+     * Moves the row of an idempotency key forward in one statement. A late PENDING never overwrites
+     * DONE or FAILED, because the consumer may finish before the producer transaction commits.
+     *
+     * @return 0 when the key is missing or already past the requested state
+     */
+    @Update("""
+            UPDATE sys_request_history
+            SET business_status = #{status},
+                request_params = #{requestParams},
+                business_id = COALESCE(#{businessId}, business_id),
+                updated_at = NOW()
+            WHERE idempotency_key = #{idempotencyKey}
+              AND NOT (#{requestParams} = 'PENDING' AND (business_status = 'FAILED' OR request_params = 'DONE'))
+            """)
+    int advanceState(@Param("idempotencyKey") String idempotencyKey,
+                     @Param("status") String status,
+                     @Param("businessId") Long businessId,
+                     @Param("requestParams") String requestParams);
 }
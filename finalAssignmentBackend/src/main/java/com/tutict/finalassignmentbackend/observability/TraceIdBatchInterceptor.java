@@ -0,0 +1,47 @@
+package com.tutict.finalassignmentbackend.observability;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.listener.BatchInterceptor;
+
+import java.util.Objects;
+
+/**
+ * Batch counterpart of {@link TraceIdRecordInterceptor}: a batch carrying a single trace id keeps it,
+ * a batch mixing several gets a fresh one so its log lines are still grouped.
+ */
+public class TraceIdBatchInterceptor implements BatchInterceptor<String, String> {
+
+    @Override
+    public ConsumerRecords<String, String> intercept(
+            ConsumerRecords<String, String> records,
+            Consumer<String, String> consumer) {
+        String traceId = null;
+        boolean first = true;
+        for (ConsumerRecord<String, String> record : records) {
+            Header traceHeader = record.headers().lastHeader(TraceContext.TRACE_ID_HEADER);
+            String recordTraceId = traceHeader == null ? null : TraceContext.decode(traceHeader.value());
+            if (first) {
+                traceId = recordTraceId;
+                first = false;
+            } else if (!Objects.equals(traceId, recordTraceId)) {
+                traceId = null;
+                break;
+            }
+        }
+        TraceContext.put(traceId);
+        return records;
+    }
+
+    @Override
+    public void success(ConsumerRecords<String, String> records, Consumer<String, String> consumer) {
+        TraceContext.clear();
+    }
+
+    @Override
+    public void failure(ConsumerRecords<String, String> records, Exception exception, Consumer<String, String> consumer) {
+        TraceContext.clear();
+    }
+}
@@ -0,0 +1,173 @@
+package com.tutict.finalassignmentbackend.offense.cache;
+
+import com.tutict.finalassignmentbackend.config.caffeine.TieredCacheProperties;
+import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Dependency index for the paged queries in offenseRecordCache.
+ * Every cached page registers its filter arguments and the offense ids it returned; a write then
+ * evicts only the pages whose filter matches the old or new row, or which contain the row itself.
+ * Registries live in a {@link QueryDependencyStore} shared by all nodes and are updated one page at a
+ * time, so concurrent nodes never drop each other's registrations.
+ */
+@Component
+public class OffenseQueryCacheIndex {
+
+    public static final String CACHE_NAME = "offenseRecordCache";
+    static final String ALL_KEY = "all";
+
+    private final CacheManager cacheManager;
+    private final QueryDependencyStore dependencyStore;
+    private final Duration pageLifetime;
+
+    public OffenseQueryCacheIndex(CacheManager cacheManager,
+                                  QueryDependencyStore dependencyStore,
+                                  TieredCacheProperties cacheProperties) {
+        this.cacheManager = cacheManager;
+        this.dependencyStore = dependencyStore;
+        this.pageLifetime = pageLifetime(cacheProperties.resolve(CACHE_NAME));
+    }
+
+    /**
+     * Records the dependencies of a page that is about to be cached and returns it unchanged.
+     */
+    public List<OffenseRecord> track(OffenseQueryDimension dimension, List<?> args, int page, int size,
+                                     List<OffenseRecord> result) {
+        if (result == null || result.isEmpty()) {
+            return result;
+        }
+        List<String> stringArgs = args.stream().map(String::valueOf).toList();
+        List<Long> offenseIds = result.stream()
+                .filter(Objects::nonNull)
+                .map(OffenseRecord::getOffenseId)
+                .filter(Objects::nonNull)
+                .toList();
+        String pageKey = dimension.pageKey(args, page, size);
+        long expiresAt = System.currentTimeMillis() + pageLifetime.toMillis();
+        QueryDependency dependency = new QueryDependency(stringArgs, offenseIds, expiresAt);
+        for (String registryKey : dimension.registryKeysForPage(stringArgs)) {
+            dependencyStore.register(registryKey, pageKey, dependency, pageLifetime);
+        }
+        return result;
+    }
+
+    /**
+     * Evicts the entries affected by a write. {@code before} is null for inserts, {@code after} for deletes.
+     */
+    public void evictFor(OffenseRecord before, OffenseRecord after) {
+        Cache cache = cache();
+        if (cache == null || (before == null && after == null)) {
+            return;
+        }
+        Long offenseId = before != null ? before.getOffenseId() : after.getOffenseId();
+        if (offenseId != null) {
+            cache.evict(offenseId);
+        }
+        cache.evict(ALL_KEY);
+
+        // 只读取旧值和新值落入的登记分片，所有维度在一次往返中读出
+        Map<String, OffenseQueryDimension> scans = new LinkedHashMap<>();
+        for (OffenseQueryDimension dimension : OffenseQueryDimension.values()) {
+            dimension.registryKeysFor(dimension.valueOf(before)).forEach(key -> scans.put(key, dimension));
+            dimension.registryKeysFor(dimension.valueOf(after)).forEach(key -> scans.put(key, dimension));
+        }
+        List<String> registryKeys = new ArrayList<>(scans.keySet());
+        List<Map<String, QueryDependency>> registries = dependencyStore.registries(registryKeys);
+        long now = System.currentTimeMillis();
+        Map<String, List<String>> removals = new LinkedHashMap<>();
+        for (int i = 0; i < registryKeys.size(); i++) {
+            String registryKey = registryKeys.get(i);
+            OffenseQueryDimension dimension = scans.get(registryKey);
+            // 成员或排序变化会影响整页内容；否则只有包含该记录的页需要失效
+            boolean membershipChanged = before == null || after == null
+                    || !Objects.equals(dimension.valueOf(before), dimension.valueOf(after))
+                    || !Objects.equals(before.getOffenseTime(), after.getOffenseTime());
+            removals.computeIfAbsent(registryKey, ignored -> new ArrayList<>());
+            registries.get(i).forEach((pageKey, dependency) -> {
+                // 页面本身已过期时不必失效，只顺带清理登记项
+                boolean expired = dependency.expiredAt(now);
+                boolean affected = !expired && (dependency.contains(offenseId)
+                        || (membershipChanged && (dimension.matches(dependency.args(), before)
+                        || dimension.matches(dependency.args(), after))));
+                if (!expired && !affected) {
+                    return;
+                }
+                if (affected) {
+                    cache.evict(pageKey);
+                }
+                // 区间页面可能登记在多个分片中，一并清理
+                List<String> pageRegistries = dependency.args() == null || dependency.args().isEmpty()
+                        ? List.of(registryKey)
+                        : dimension.registryKeysForPage(dependency.args());
+                for (String pageRegistry : pageRegistries) {
+                    removals.computeIfAbsent(pageRegistry, ignored -> new ArrayList<>()).add(pageKey);
+                }
+                if (!pageRegistries.contains(registryKey)) {
+                    removals.get(registryKey).add(pageKey);
+                }
+            });
+        }
+        removals.forEach((registryKey, removed) -> {
+            if (!removed.isEmpty()) {
+                dependencyStore.unregister(registryKey, removed);
+            }
+        });
+    }
+
+    /**
+     * Fallback for writes whose previous row is unknown.
+     */
+    public void evictAll() {
+        Cache cache = cache();
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
+
+    /**
+     * Longest time a page can stay cached: the jittered L2 TTL plus an L1 copy loaded just before it expired.
+     */
+    private static Duration pageLifetime(TieredCacheProperties.Spec spec) {
+        Duration lifetime = spec.getL2Ttl();
+        if (spec.getL2TtlJitter() != null) {
+            lifetime = lifetime.plus(spec.getL2TtlJitter());
+        }
+        if (spec.getL1Ttl() != null) {
+            lifetime = lifetime.plus(spec.getL1Ttl());
+        }
+        return lifetime;
+    }
+
+    /**
+     * Filter arguments and result ids of one cached page, and when the page expires at the latest.
+     */
+    public record QueryDependency(List<String> args, List<Long> offenseIds, long expiresAt) implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 2L;
+
+        boolean contains(Long offenseId) {
+            return offenseId != null && offenseIds != null && offenseIds.contains(offenseId);
+        }
+
+        boolean expiredAt(long epochMillis) {
+            return expiresAt > 0 && expiresAt < epochMillis;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.tutict.finalassignmentbackend.offense.cache;
+
+import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The cached offenseRecordCache query families, keyed by the same prefixes as the
+ * {@code @Cacheable} keys in OffenseRecordService, with the predicate each one applies to a row.
+ */
+public enum OffenseQueryDimension {
+
+    DRIVER("driver", Kind.EQUALS, OffenseRecord::getDriverId),
+    VEHICLE("vehicle", Kind.EQUALS, OffenseRecord::getVehicleId),
+    STATUS("status", Kind.EQUALS, OffenseRecord::getProcessStatus),
+    PROVINCE("province", Kind.EQUALS, OffenseRecord::getOffenseProvince),
+    CITY("city", Kind.EQUALS, OffenseRecord::getOffenseCity),
+    NOTIFICATION("notification", Kind.EQUALS, OffenseRecord::getNotificationStatus),
+    CODE("code", Kind.TEXT, OffenseRecord::getOffenseCode),
+    NUMBER("number", Kind.TEXT, OffenseRecord::getOffenseNumber),
+    LOCATION("location", Kind.TEXT, OffenseRecord::getOffenseLocation),
+    AGENCY("agency", Kind.TEXT, OffenseRecord::getEnforcementAgency),
+    TIME_RANGE("timeRange", Kind.RANGE, OffenseRecord::getOffenseTime),
+    FINE_RANGE("fineRange", Kind.RANGE, OffenseRecord::getFineAmount);
+
+    enum Kind {
+        // 等值条件：按取值分桶登记，只需查看旧值和新值两个桶
+        EQUALS,
+        // ES match_phrase_prefix / 数据库 like，按归一化后的包含关系保守判断
+        TEXT,
+        // 区间条件：逐页判断旧行或新行是否落在区间内
+        RANGE
+    }
+
+    // TEXT/RANGE 维度按取值分片登记：写入时只需读取记录取值落入的分片，外加一个通配登记
+    static final int REGISTRY_SHARDS = 16;
+    private static final String WILDCARD_SHARD = "*";
+
+    private final String prefix;
+    private final Kind kind;
+    private final Function<OffenseRecord, Object> field;
+
+    OffenseQueryDimension(String prefix, Kind kind, Function<OffenseRecord, Object> field) {
+        this.prefix = prefix;
+        this.kind = kind;
+        this.field = field;
+    }
+
+    public String prefix() {
+        return prefix;
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    Object valueOf(OffenseRecord row) {
+        return row == null ? null : field.apply(row);
+    }
+
+    /**
+     * Same string the SpEL key {@code '<prefix>:' + #arg... + ':' + #page + ':' + #size} produces.
+     */
+    public String pageKey(List<?> args, int page, int size) {
+        StringBuilder key = new StringBuilder(prefix).append(':');
+        for (Object arg : args) {
+            key.append(arg).append(':');
+        }
+        return key.append(page).append(':').append(size).toString();
+    }
+
+    /**
+     * Registries a page filtered by {@code args} is registered in. Equality pages get one registry per
+     * value; text pages the shard of the filter's first character; range pages the shards of the buckets
+     * the range covers. Filters that can match rows in every shard go to the dimension's wildcard registry.
+     */
+    List<String> registryKeysForPage(List<String> args) {
+        if (kind == Kind.EQUALS) {
+            return List.of("deps:" + prefix + ":" + args.get(0));
+        }
+        if (kind == Kind.TEXT) {
+            String filter = normalize(args.get(0));
+            return List.of(filter.isEmpty() ? wildcardKey() : shardKey(filter.codePointAt(0)));
+        }
+        if (args.size() < 2) {
+            return List.of(wildcardKey());
+        }
+        Long lower;
+        Long upper;
+        try {
+            lower = bucketOf(parseBound(args.get(0)));
+            upper = bucketOf(parseBound(args.get(1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            // 无法解析的区间可能命中任意记录
+            return List.of(wildcardKey());
+        }
+        if (lower == null || upper == null || upper < lower || upper - lower >= REGISTRY_SHARDS) {
+            return List.of(wildcardKey());
+        }
+        List<String> keys = new ArrayList<>();
+        for (long bucket = lower; bucket <= upper; bucket++) {
+            keys.add(shardKey(bucket));
+        }
+        return keys;
+    }
+
+    /**
+     * Registries that may hold pages able to contain a row whose field is {@code value}.
+     */
+    List<String> registryKeysFor(Object value) {
+        if (value == null) {
+            return List.of();
+        }
+        if (kind == Kind.EQUALS) {
+            return List.of("deps:" + prefix + ":" + value);
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(wildcardKey());
+        if (kind == Kind.TEXT) {
+            // 包含匹配要求过滤串的首字符出现在取值中
+            normalize(String.valueOf(value)).codePoints().forEach(codePoint -> keys.add(shardKey(codePoint)));
+        } else {
+            Long bucket = bucketOf(value);
+            if (bucket != null) {
+                keys.add(shardKey(bucket));
+            }
+        }
+        return List.copyOf(keys);
+    }
+
+    private String shardKey(long hash) {
+        return "deps:" + prefix + "#" + Math.floorMod(hash, REGISTRY_SHARDS);
+    }
+
+    private String wildcardKey() {
+        return "deps:" + prefix + "#" + WILDCARD_SHARD;
+    }
+
+    private Object parseBound(String bound) {
+        return this == TIME_RANGE ? LocalDateTime.parse(bound) : new BigDecimal(bound);
+    }
+
+    // 区间维度的分桶：时间按月，罚款金额按每 100 元
+    private static Long bucketOf(Object value) {
+        if (value instanceof LocalDateTime time) {
+            return time.getYear() * 12L + time.getMonthValue() - 1;
+        }
+        if (value instanceof BigDecimal amount) {
+            return amount.movePointLeft(2).setScale(0, RoundingMode.FLOOR).longValue();
+        }
+        return null;
+    }
+
+    /**
+     * Whether a page filtered by {@code args} can contain {@code row}. Errs towards true.
+     */
+    boolean matches(List<String> args, OffenseRecord row) {
+        Object value = valueOf(row);
+        if (value == null || args == null || args.isEmpty()) {
+            return false;
+        }
+        return switch (kind) {
+            case EQUALS -> Objects.equals(String.valueOf(value), args.get(0));
+            case TEXT -> normalize(String.valueOf(value)).contains(normalize(args.get(0)));
+            case RANGE -> args.size() < 2 || inRange(value, args.get(0), args.get(1));
+        };
+    }
+
+    private static boolean inRange(Object value, String lower, String upper) {
+        try {
+            if (value instanceof LocalDateTime time) {
+                return !time.isBefore(LocalDateTime.parse(lower)) && !time.isAfter(LocalDateTime.parse(upper));
+            }
+            if (value instanceof BigDecimal amount) {
+                return amount.compareTo(new BigDecimal(lower)) >= 0 && amount.compareTo(new BigDecimal(upper)) <= 0;
+            }
+        } catch (DateTimeParseException | NumberFormatException ignored) {
+            // 无法解析的区间无法判断，按命中处理
+        }
+        return true;
+    }
+
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        text.toLowerCase(Locale.ROOT).codePoints()
+                .filter(Character::isLetterOrDigit)
+                .forEach(normalized::appendCodePoint);
+        return normalized.toString();
+    }
+}
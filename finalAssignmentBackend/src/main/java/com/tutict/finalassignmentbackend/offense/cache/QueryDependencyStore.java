@@ -0,0 +1,28 @@
+package com.tutict.finalassignmentbackend.offense.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared storage of the page dependency registries. Every operation touches one registry entry
+ * atomically on the server, so nodes registering or invalidating pages concurrently never overwrite
+ * each other's entries.
+ */
+public interface QueryDependencyStore {
+
+    /**
+     * Adds or replaces {@code pageKey} in a registry and extends the registry's lifetime to at least
+     * {@code ttl}.
+     */
+    void register(String registryKey, String pageKey, OffenseQueryCacheIndex.QueryDependency dependency, Duration ttl);
+
+    /**
+     * Reads several registries in one round trip, in the order of {@code registryKeys}. Missing
+     * registries come back empty.
+     */
+    List<Map<String, OffenseQueryCacheIndex.QueryDependency>> registries(List<String> registryKeys);
+
+    void unregister(String registryKey, Collection<String> pageKeys);
+}
@@ -0,0 +1,101 @@
+package com.tutict.finalassignmentbackend.offense.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registries as Redis hashes: one field per cached page, holding its dependency as JSON. HSET, HDEL
+ * and HGETALL are atomic per command, so registration needs no read-modify-write.
+ */
+@Component
+public class RedisQueryDependencyStore implements QueryDependencyStore {
+
+    private static final Logger LOG = Logger.getLogger(RedisQueryDependencyStore.class.getName());
+    private static final String KEY_PREFIX = OffenseQueryCacheIndex.CACHE_NAME + "::";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    public RedisQueryDependencyStore(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void register(String registryKey, String pageKey, OffenseQueryCacheIndex.QueryDependency dependency,
+                         Duration ttl) {
+        String value;
+        try {
+            value = objectMapper.writeValueAsString(dependency);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize query dependency for " + pageKey, e);
+        }
+        String key = KEY_PREFIX + registryKey;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                operations.opsForHash().put(key, pageKey, value);
+                // 登记项的有效期取所跟踪页面的最长有效期，后登记的页面只会延长
+                operations.expire(key, ttl);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public List<Map<String, OffenseQueryCacheIndex.QueryDependency>> registries(List<String> registryKeys) {
+        List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                registryKeys.forEach(registryKey -> operations.opsForHash().entries(KEY_PREFIX + registryKey));
+                return null;
+            }
+        });
+        List<Map<String, OffenseQueryCacheIndex.QueryDependency>> registries = new ArrayList<>(registryKeys.size());
+        for (Object reply : replies) {
+            Map<String, OffenseQueryCacheIndex.QueryDependency> registry = new HashMap<>();
+            if (reply instanceof Map<?, ?> fields) {
+                fields.forEach((pageKey, json) -> {
+                    OffenseQueryCacheIndex.QueryDependency dependency = read(String.valueOf(json));
+                    if (dependency != null) {
+                        registry.put(String.valueOf(pageKey), dependency);
+                    }
+                });
+            }
+            registries.add(registry);
+        }
+        return registries;
+    }
+
+    @Override
+    public void unregister(String registryKey, Collection<String> pageKeys) {
+        if (!pageKeys.isEmpty()) {
+            redisTemplate.opsForHash().delete(KEY_PREFIX + registryKey, pageKeys.toArray());
+        }
+    }
+
+    private OffenseQueryCacheIndex.QueryDependency read(String json) {
+        try {
+            return objectMapper.readValue(json, OffenseQueryCacheIndex.QueryDependency.class);
+        } catch (JsonProcessingException e) {
+            LOG.log(Level.WARNING, "Ignoring unreadable offense query dependency", e);
+            return null;
+        }
+    }
+}
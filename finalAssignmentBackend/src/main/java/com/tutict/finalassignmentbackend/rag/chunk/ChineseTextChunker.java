@@ -6,6 +6,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -14,49 +19,80 @@ import java.util.ArrayList;
 import java.util.HexFormat;
 import java.util.List;
 
+/**
+ * Splits normalized text into fixed-size code point windows with overlap. Normalization is NFKC
+ * followed by one whitespace pass, and chunks are cut, counted and hashed while walking the
+ * normalized text once. With a positive {@code sentenceTolerance}, a chunk end is pulled back to just
+ * after the nearest sentence terminator within that many code points; with zero the windows are
+ * exact.
+ */
 @Component
 @ConditionalOnProperty(prefix = "rag", name = "enabled", havingValue = "true")
 public class ChineseTextChunker implements Chunker {
 
     private final int chunkSize;
     private final int overlap;
+    private final int sentenceTolerance;
 
     @Autowired
     public ChineseTextChunker(RagProperties properties) {
-        this(properties.getChunk().getSize(), properties.getChunk().getOverlap());
+        this(properties.getChunk().getSize(), properties.getChunk().getOverlap(),
+                properties.getChunk().getSentenceTolerance());
     }
 
     public ChineseTextChunker(int chunkSize, int overlap) {
+        this(chunkSize, overlap, 0);
+    }
+
+    public ChineseTextChunker(int chunkSize, int overlap, int sentenceTolerance) {
         this.chunkSize = Math.max(1, chunkSize);
         this.overlap = Math.max(0, Math.min(overlap, this.chunkSize - 1));
+        this.sentenceTolerance = Math.max(0, Math.min(sentenceTolerance, this.chunkSize - 1));
     }
 
     @Override
     public List<Chunk> chunk(RagSourceDocument document) {
-        String normalized = normalizeContent(document.content());
+        return chunk(document.content(), document.sourceField());
+    }
+
+    public List<Chunk> chunk(CharSequence content, String sourceField) {
+        String normalized = normalizeContent(content);
         if (normalized.isBlank()) {
             return List.of();
         }
 
-        int[] codePoints = normalized.codePoints().toArray();
+        ChunkHasher hasher = new ChunkHasher();
         List<Chunk> chunks = new ArrayList<>();
+        int length = normalized.length();
+        // start/end 为 char 下标，窗口大小按码点计算
         int start = 0;
         int chunkNo = 0;
-        while (start < codePoints.length) {
-            int end = Math.min(start + chunkSize, codePoints.length);
-            String content = new String(codePoints, start, end - start);
+        while (start < length) {
+            int end = start;
+            int codePoints = 0;
+            while (codePoints < chunkSize && end < length) {
+                end += Character.charCount(normalized.codePointAt(end));
+                codePoints++;
+            }
+            if (end < length && sentenceTolerance > 0) {
+                int snapped = snapToSentenceEnd(normalized, start, end);
+                codePoints -= Character.codePointCount(normalized, snapped, end);
+                end = snapped;
+            }
+            String text = normalized.substring(start, end);
             chunks.add(new Chunk(
                     chunkNo++,
-                    content,
-                    normalizedContentSha256(content),
-                    estimateTokenCount(content),
-                    content.codePointCount(0, content.length()),
-                    document.sourceField()
+                    text,
+                    hasher.chunkHash(text),
+                    estimateTokenCount(text),
+                    codePoints,
+                    sourceField
             ));
-            if (end == codePoints.length) {
+            if (end == length) {
                 break;
             }
-            start = Math.max(start + 1, end - overlap);
+            // 窗口至少 overlap + 1 个码点，回退 overlap 后仍前进
+            start = normalized.offsetByCodePoints(end, -overlap);
         }
         return chunks;
     }
@@ -67,30 +103,96 @@ public class ChineseTextChunker implements Chunker {
     }
 
     public static String normalizedContentSha256Of(String content) {
-        return sha256Hex(normalizeContent(content));
+        return new ChunkHasher().hash(normalizeContent(content));
     }
 
-    public static String normalizeContent(String content) {
+    /**
+     * NFKC, then in one pass: CR/CRLF become LF, vertical tab and every run of space separators,
+     * tabs and form feeds become one space, spaces next to a line break are dropped, runs of three
+     * or more line breaks become two, and the result is trimmed.
+     */
+    public static String normalizeContent(CharSequence content) {
         if (content == null) {
             return "";
         }
-        return Normalizer.normalize(content, Normalizer.Form.NFKC)
-                .replace("\r\n", "\n")
-                .replace('\r', '\n')
-                .replace('\u000B', ' ')
-                .replaceAll("[\\p{Zs}\\t\\f]+", " ")
-                .replaceAll(" *\\n *", "\n")
-                .replaceAll("\\n{3,}", "\n\n")
-                .trim();
+        String text = Normalizer.normalize(content, Normalizer.Form.NFKC);
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        int pendingNewlines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char current = text.charAt(i);
+            if (current == '\r') {
+                if (i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                    continue;
+                }
+                current = '\n';
+            }
+            if (current == '\n') {
+                // 换行前的空格丢弃
+                pendingSpace = false;
+                pendingNewlines++;
+            } else if (current == '\u000B' || current == '\t' || current == '\f'
+                    || Character.getType(current) == Character.SPACE_SEPARATOR) {
+                // 换行后的空格同样丢弃
+                pendingSpace = pendingNewlines == 0;
+            } else {
+                flushWhitespace(normalized, pendingSpace, pendingNewlines);
+                pendingSpace = false;
+                pendingNewlines = 0;
+                normalized.append(current);
+            }
+        }
+        flushWhitespace(normalized, pendingSpace, pendingNewlines);
+        int start = 0;
+        int end = normalized.length();
+        while (start < end && normalized.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && normalized.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return normalized.substring(start, end);
+    }
+
+    private static void flushWhitespace(StringBuilder normalized, boolean pendingSpace, int pendingNewlines) {
+        if (pendingNewlines > 0) {
+            normalized.append(pendingNewlines == 1 ? "\n" : "\n\n");
+        } else if (pendingSpace) {
+            normalized.append(' ');
+        }
     }
 
-    private static String sha256Hex(String value) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
-        } catch (NoSuchAlgorithmException error) {
-            throw new IllegalStateException("SHA-256 is not available", error);
+    /**
+     * Moves the window end back to just after the last sentence terminator within the tolerance. The
+     * new end stays past {@code overlap} code points from the start so the next window still advances.
+     */
+    private int snapToSentenceEnd(String text, int start, int end) {
+        int floor = advance(text, start, overlap + 1);
+        int limit = sentenceTolerance;
+        for (int i = end; i > floor && limit > 0; limit--) {
+            int codePoint = text.codePointBefore(i);
+            if (isSentenceTerminator(codePoint)) {
+                return i;
+            }
+            i -= Character.charCount(codePoint);
         }
+        return end;
+    }
+
+    private static boolean isSentenceTerminator(int codePoint) {
+        // NFKC 会把全角的 ！？； 折叠成 ASCII，所以两种写法都算
+        return switch (codePoint) {
+            case '。', '！', '？', '；', '!', '?', ';' -> true;
+            default -> false;
+        };
+    }
+
+    private static int advance(String text, int index, int codePoints) {
+        int position = index;
+        for (int i = 0; i < codePoints && position < text.length(); i++) {
+            position += Character.charCount(text.codePointAt(position));
+        }
+        return position;
     }
 
     private static int estimateTokenCount(String value) {
@@ -119,4 +221,70 @@ public class ChineseTextChunker implements Chunker {
                 || codePoint >= 'A' && codePoint <= 'Z'
                 || codePoint >= 'a' && codePoint <= 'z';
     }
+
+    /**
+     * SHA-256 over UTF-8 without materialising the encoded bytes: chars are encoded into a reused
+     * buffer and fed to a reused digest. One instance per {@link #chunk} call, so not shared between
+     * threads.
+     */
+    private static final class ChunkHasher {
+        private final MessageDigest digest;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        ChunkHasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException error) {
+                throw new IllegalStateException("SHA-256 is not available", error);
+            }
+        }
+
+        /**
+         * Equals {@code normalizedContentSha256Of(chunk)}. A window of normalized text is already
+         * normalized apart from its ends, so only trimming is needed; the NFKC quick check guards the
+         * rare window that splits a sequence normalization would recombine.
+         */
+        String chunkHash(String chunk) {
+            if (!Normalizer.isNormalized(chunk, Normalizer.Form.NFKC)) {
+                return hash(normalizeContent(chunk));
+            }
+            // 与 String.trim() 相同：去掉首尾 <= U+0020 的字符
+            int start = 0;
+            int end = chunk.length();
+            while (start < end && chunk.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && chunk.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            return hash(CharBuffer.wrap(chunk, start, end));
+        }
+
+        String hash(CharSequence value) {
+            return hash(CharBuffer.wrap(value));
+        }
+
+        private String hash(CharBuffer input) {
+            encoder.reset();
+            CoderResult result;
+            do {
+                result = encoder.encode(input, buffer, true);
+                drain();
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(buffer);
+                drain();
+            } while (result.isOverflow());
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private void drain() {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.tutict.finalassignmentbackend.rag.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
@@ -14,6 +15,7 @@ public class RagProperties {
     private Indexing indexing = new Indexing();
     private Embedding embedding = new Embedding();
     private Index index = new Index();
+    private Upload upload = new Upload();
 
     public boolean isEnabled() {
         return enabled;
@@ -55,9 +57,19 @@ public class RagProperties {
         this.index = index;
     }
 
+    public Upload getUpload() {
+        return upload;
+    }
+
+    public void setUpload(Upload upload) {
+        this.upload = upload;
+    }
+
     public static class Chunk {
         private int size = 500;
         private int overlap = 100;
+        // 大于 0 时，块尾在该码点数范围内回退到最近的句末标点（。！？；）
+        private int sentenceTolerance = 0;
 
         public int getSize() {
             return size;
@@ -74,6 +86,14 @@ public class RagProperties {
         public void setOverlap(int overlap) {
             this.overlap = overlap;
         }
+
+        public int getSentenceTolerance() {
+            return sentenceTolerance;
+        }
+
+        public void setSentenceTolerance(int sentenceTolerance) {
+            this.sentenceTolerance = sentenceTolerance;
+        }
     }
 
     public static class Indexing {
@@ -106,6 +126,12 @@ public class RagProperties {
         private int maxAttempts = 3;
         private Duration retryDelay = Duration.ofMinutes(1);
         private long pollIntervalMs = 30000;
+        // 单次 provider 请求携带的文本数，以及同时在途的 provider 请求数
+        private int providerBatchSize = 16;
+        private int concurrency = 4;
+        // 任务租约：多实例按 lease_owner 认领，心跳续期，过期的 RUNNING 任务可被其他实例回收
+        private Duration leaseDuration = Duration.ofMinutes(5);
+        private String workerId = "";
 
         public boolean isEnabled() {
             return enabled;
@@ -170,6 +196,38 @@ public class RagProperties {
         public void setPollIntervalMs(long pollIntervalMs) {
             this.pollIntervalMs = pollIntervalMs;
         }
+
+        public int getProviderBatchSize() {
+            return providerBatchSize;
+        }
+
+        public void setProviderBatchSize(int providerBatchSize) {
+            this.providerBatchSize = providerBatchSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public Duration getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        public void setLeaseDuration(Duration leaseDuration) {
+            this.leaseDuration = leaseDuration;
+        }
+
+        public String getWorkerId() {
+            return workerId;
+        }
+
+        public void setWorkerId(String workerId) {
+            this.workerId = workerId;
+        }
     }
 
     public static class Index {
@@ -179,6 +237,10 @@ public class RagProperties {
         private int numberOfShards = 1;
         private int numberOfReplicas = 0;
         private String refreshInterval = "30s";
+        // dense_vector index_options.type: hnsw | int8_hnsw | int4_hnsw | bbq_hnsw | flat | int8_flat | int4_flat | bbq_flat
+        private String vectorIndexType = "hnsw";
+        // false 时 embedding 只进向量索引，不写入 _source
+        private boolean vectorInSource = true;
 
         public String getName() {
             return name;
@@ -227,5 +289,61 @@ public class RagProperties {
         public void setRefreshInterval(String refreshInterval) {
             this.refreshInterval = refreshInterval;
         }
+
+        public String getVectorIndexType() {
+            return vectorIndexType;
+        }
+
+        public void setVectorIndexType(String vectorIndexType) {
+            this.vectorIndexType = vectorIndexType;
+        }
+
+        public boolean isVectorInSource() {
+            return vectorInSource;
+        }
+
+        public void setVectorInSource(boolean vectorInSource) {
+            this.vectorInSource = vectorInSource;
+        }
+    }
+
+    public static class Upload {
+        private DataSize maxFileSize = DataSize.ofMegabytes(64);
+        // 解析出的正文字符上限，超出部分截断，使单次上传的堆占用与文件大小无关
+        private int maxContentChars = 2_000_000;
+        private int pdfParallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        private int pdfPagesPerTask = 16;
+
+        public DataSize getMaxFileSize() {
+            return maxFileSize;
+        }
+
+        public void setMaxFileSize(DataSize maxFileSize) {
+            this.maxFileSize = maxFileSize;
+        }
+
+        public int getMaxContentChars() {
+            return maxContentChars;
+        }
+
+        public void setMaxContentChars(int maxContentChars) {
+            this.maxContentChars = maxContentChars;
+        }
+
+        public int getPdfParallelism() {
+            return pdfParallelism;
+        }
+
+        public void setPdfParallelism(int pdfParallelism) {
+            this.pdfParallelism = pdfParallelism;
+        }
+
+        public int getPdfPagesPerTask() {
+            return pdfPagesPerTask;
+        }
+
+        public void setPdfPagesPerTask(int pdfPagesPerTask) {
+            this.pdfPagesPerTask = pdfPagesPerTask;
+        }
     }
 }
@@ -1,181 +1,376 @@
 package com.tutict.finalassignmentbackend.rag.embedding;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.tutict.finalassignmentbackend.ai.rag.config.RagChunkIndexMapping;
+import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.AclFilterService;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw.LocalVectorIndex;
 import com.tutict.finalassignmentbackend.rag.entity.RagChunk;
 import com.tutict.finalassignmentbackend.rag.entity.RagDocument;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.NoSuchIndexException;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.IndexOperations;
 import org.springframework.data.elasticsearch.core.document.Document;
 import org.springframework.data.elasticsearch.core.index.AliasAction;
 import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
 import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.index.AliasData;
 import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
 import org.springframework.data.elasticsearch.core.query.IndexQuery;
 import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @Service
 @ConditionalOnProperty(prefix = "rag.embedding", name = "enabled", havingValue = "true")
 public class RagChunkVectorIndexService {
 
-    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
-    };
+    private static final Logger log = Logger.getLogger(RagChunkVectorIndexService.class.getName());
 
     private final ObjectProvider<ElasticsearchOperations> operationsProvider;
     private final RagChunkIndexMapping mapping;
     private final ObjectMapper objectMapper;
+    private final ObjectProvider<LocalVectorIndex> localIndexProvider;
     private volatile boolean indexReady;
+    private volatile String writeTarget;
 
     public RagChunkVectorIndexService(
             ObjectProvider<ElasticsearchOperations> operationsProvider,
             RagChunkIndexMapping mapping,
             ObjectMapper objectMapper
+    ) {
+        this(operationsProvider, mapping, objectMapper, null);
+    }
+
+    @Autowired
+    public RagChunkVectorIndexService(
+            ObjectProvider<ElasticsearchOperations> operationsProvider,
+            RagChunkIndexMapping mapping,
+            ObjectMapper objectMapper,
+            ObjectProvider<LocalVectorIndex> localIndexProvider
     ) {
         this.operationsProvider = operationsProvider;
         this.mapping = mapping;
         this.objectMapper = objectMapper;
+        this.localIndexProvider = localIndexProvider;
     }
 
-    public void index(RagDocument document, RagChunk chunk, float[] embedding, String provider, String model) {
+    /**
+     * Indexes the batch with one {@code _bulk} request. Sources are written straight from the
+     * {@code float[]} with a streaming generator, and each document's metadata is parsed once per batch.
+     * When the local vector backend is enabled, chunks Elasticsearch accepted (or all of them, without
+     * a cluster) are upserted into it as well.
+     *
+     * @return failure reasons by chunk id; empty when every chunk was indexed
+     */
+    public Map<String, String> indexAll(List<VectorEntry> entries, String provider, String model) {
+        if (entries.isEmpty()) {
+            return Map.of();
+        }
         ElasticsearchOperations operations = operationsProvider.getIfAvailable();
-        if (operations == null) {
-            throw new IllegalStateException("ElasticsearchOperations is not available for RAG vector indexing");
+        LocalVectorIndex localIndex = localIndexProvider == null ? null : localIndexProvider.getIfAvailable();
+        if (operations == null && localIndex == null) {
+            throw new IllegalStateException("Neither ElasticsearchOperations nor a local vector index is available for RAG vector indexing");
         }
-        ensureIndex(operations);
-        IndexQuery query = new IndexQueryBuilder()
-                .withId(chunk.getId())
-                .withSource(writeJson(source(document, chunk, embedding, provider, model)))
-                .build();
+        Map<String, DocumentFields> documentFields = new HashMap<>();
+        Map<String, String> failures = operations == null
+                ? Map.of()
+                : indexElasticsearch(operations, entries, documentFields, provider, model);
+        if (localIndex != null) {
+            List<LocalVectorIndex.Entry> localEntries = new ArrayList<>(entries.size());
+            for (VectorEntry entry : entries) {
+                if (!failures.containsKey(entry.chunk().getId())) {
+                    DocumentFields fields = documentFields.computeIfAbsent(entry.document().getId(),
+                            id -> documentFields(entry.document()));
+                    localEntries.add(localEntry(fields, entry.chunk(), entry.embedding()));
+                }
+            }
+            localIndex.upsert(localEntries);
+        }
+        return failures;
+    }
+
+    /**
+     * Removes chunk vectors with one delete-by-ids request, and from the local index when enabled.
+     */
+    public void deleteAll(Collection<String> chunkIds) {
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        ElasticsearchOperations operations = operationsProvider.getIfAvailable();
+        if (operations != null) {
+            Query query = NativeQuery.builder().withIds(List.copyOf(chunkIds)).build();
+            operations.delete(DeleteQuery.builder(query).build(), Object.class, IndexCoordinates.of(ensureIndex(operations)));
+        }
+        LocalVectorIndex localIndex = localIndexProvider == null ? null : localIndexProvider.getIfAvailable();
+        if (localIndex != null) {
+            localIndex.delete(chunkIds);
+        }
+    }
+
+    private Map<String, String> indexElasticsearch(
+            ElasticsearchOperations operations,
+            List<VectorEntry> entries,
+            Map<String, DocumentFields> documentFields,
+            String provider,
+            String model
+    ) {
+        List<IndexQuery> queries = new ArrayList<>(entries.size());
+        for (VectorEntry entry : entries) {
+            DocumentFields fields = documentFields.computeIfAbsent(entry.document().getId(),
+                    id -> documentFields(entry.document()));
+            queries.add(new IndexQueryBuilder()
+                    .withId(entry.chunk().getId())
+                    .withSource(sourceJson(fields, entry.chunk(), entry.embedding(), provider, model))
+                    .build());
+        }
+        String target = ensureIndex(operations);
         try {
-            operations.index(query, IndexCoordinates.of(mapping.aliasName()));
-        } catch (RuntimeException error) {
-            operations.index(query, IndexCoordinates.of(mapping.indexName()));
+            return bulkIndex(operations, queries, target);
+        } catch (NoSuchIndexException missing) {
+            // 索引被外部删除：重建后重试一次，其它错误交给任务重试
+            indexReady = false;
+            return bulkIndex(operations, queries, ensureIndex(operations));
+        }
+    }
+
+    private static Map<String, String> bulkIndex(ElasticsearchOperations operations, List<IndexQuery> queries, String index) {
+        try {
+            operations.bulkIndex(queries, IndexCoordinates.of(index));
+            return Map.of();
+        } catch (BulkFailureException failure) {
+            Map<String, String> reasons = new LinkedHashMap<>();
+            failure.getFailedDocuments().forEach((id, details) -> reasons.put(id, String.valueOf(details)));
+            return reasons;
         }
     }
 
-    private void ensureIndex(ElasticsearchOperations operations) {
+    /**
+     * @return the alias when it accepts writes, otherwise the physical index
+     */
+    private String ensureIndex(ElasticsearchOperations operations) {
         if (indexReady) {
-            return;
+            return writeTarget;
         }
         synchronized (this) {
             if (indexReady) {
-                return;
+                return writeTarget;
             }
             IndexOperations indexOperations = operations.indexOps(IndexCoordinates.of(mapping.indexName()));
             if (!indexOperations.exists()) {
                 indexOperations.create(mapping.settings(), Document.from(mapping.mapping()));
             }
-            ensureAlias(indexOperations);
+            writeTarget = ensureAlias(indexOperations) ? mapping.aliasName() : mapping.indexName();
             indexReady = true;
+            return writeTarget;
         }
     }
 
-    private void ensureAlias(IndexOperations indexOperations) {
-        Map<String, ?> aliases = indexOperations.getAliases(mapping.aliasName());
+    private boolean ensureAlias(IndexOperations indexOperations) {
+        Map<String, Set<AliasData>> aliases = indexOperations.getAliases(mapping.aliasName());
         if (!aliases.isEmpty()) {
-            return;
+            // 指向多个索引且没有写索引时，别名不可写
+            return aliases.size() == 1 || aliases.values().stream()
+                    .flatMap(Set::stream)
+                    .anyMatch(alias -> Boolean.TRUE.equals(alias.isWriteIndex()));
         }
         AliasActionParameters parameters = AliasActionParameters.builder()
                 .withIndices(mapping.indexName())
                 .withAliases(mapping.aliasName())
                 .withIsWriteIndex(true)
                 .build();
-        indexOperations.alias(new AliasActions(new AliasAction.Add(parameters)));
+        try {
+            return indexOperations.alias(new AliasActions(new AliasAction.Add(parameters)));
+        } catch (RuntimeException error) {
+            log.log(Level.WARNING, "Failed to create RAG write alias " + mapping.aliasName()
+                    + ", writing to " + mapping.indexName(), error);
+            return false;
+        }
     }
 
-    private Map<String, Object> source(
-            RagDocument document,
-            RagChunk chunk,
-            float[] embedding,
-            String provider,
-            String model
-    ) {
-        Map<String, Object> metadata = metadata(document.getMetadataJson());
-        Map<String, Object> source = new LinkedHashMap<>();
-        source.put("chunk_id", chunk.getId());
-        source.put("document_id", document.getId());
-        source.put("content", chunk.getContent());
-        source.put("title", document.getTitle());
-        source.put("source_type", document.getSourceType());
-        source.put("source_table", document.getSourceTable());
-        source.put("source_id", document.getSourceId());
-        source.put("source_version", document.getSourceVersion());
-        source.put("source_field", chunk.getSourceField());
-        source.put("route", document.getRoute());
-        source.put("acl_scope", document.getAclScope());
-        source.put("acl_roles", listValue(metadata, "acl_roles", "aclRoles", "roles"));
-        source.put("acl_user_ids", listValue(metadata, "acl_user_ids", "aclUserIds", "userIds"));
-        source.put("acl_departments", listValue(metadata, "acl_departments", "aclDepartments", "departments"));
-        source.put("metadata", metadata);
-        source.put("embedding_provider", provider);
-        source.put("embedding_model", model);
-        source.put("embedding", toDoubleList(embedding));
-        return source;
-    }
-
-    private Map<String, Object> metadata(String metadataJson) {
+    String sourceJson(DocumentFields document, RagChunk chunk, float[] embedding, String provider, String model) {
+        // 预估 float 文本约 12 字符，避免 StringWriter 反复扩容
+        StringWriter writer = new StringWriter(embedding.length * 12 + 512);
+        try (JsonGenerator generator = objectMapper.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStringField("chunk_id", chunk.getId());
+            generator.writeStringField("document_id", document.id());
+            generator.writeStringField("content", chunk.getContent());
+            generator.writeStringField("title", document.title());
+            generator.writeStringField("source_type", document.sourceType());
+            generator.writeStringField("source_table", document.sourceTable());
+            generator.writeStringField("source_id", document.sourceId());
+            generator.writeStringField("source_version", document.sourceVersion());
+            generator.writeStringField("source_field", chunk.getSourceField());
+            generator.writeStringField("route", document.route());
+            generator.writeStringField("acl_scope", document.aclScope());
+            writeStrings(generator, "acl_roles", document.aclRoles());
+            writeStrings(generator, "acl_user_ids", document.aclUserIds());
+            writeStrings(generator, "acl_departments", document.aclDepartments());
+            generator.writeFieldName("metadata");
+            generator.writeTree(document.metadata());
+            generator.writeStringField("embedding_provider", provider);
+            generator.writeStringField("embedding_model", model);
+            generator.writeFieldName("embedding");
+            generator.writeStartArray();
+            for (float value : embedding) {
+                generator.writeNumber(value);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException error) {
+            throw new IllegalStateException("Failed to serialize RAG chunk vector document", error);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Payload for the local vector index, shaped like a hit mapped from the Elasticsearch source.
+     */
+    @SuppressWarnings("unchecked")
+    LocalVectorIndex.Entry localEntry(DocumentFields document, RagChunk chunk, float[] embedding) {
+        Map<String, Object> metadata = new LinkedHashMap<>(objectMapper.convertValue(document.metadata(), Map.class));
+        metadata.values().removeIf(Objects::isNull);
+        if (document.aclScope() != null) {
+            metadata.putIfAbsent("acl_scope", document.aclScope());
+        }
+        metadata.putIfAbsent("acl_roles", document.aclRoles());
+        metadata.putIfAbsent("acl_user_ids", document.aclUserIds());
+        metadata.putIfAbsent("acl_departments", document.aclDepartments());
+        RetrievalResult result = new RetrievalResult(
+                chunk.getId(),
+                nullToEmpty(document.id()),
+                nullToEmpty(chunk.getContent()),
+                nullToEmpty(document.title()),
+                nullToEmpty(document.sourceType()),
+                nullToEmpty(document.sourceTable()),
+                nullToEmpty(document.sourceId()),
+                nullToEmpty(chunk.getSourceField()),
+                nullToEmpty(document.route()),
+                0,
+                0,
+                0,
+                metadata
+        );
+        Set<String> grantKeys = AclFilterService.grantKeys(document.aclScope(), document.aclRoles(),
+                document.aclUserIds(), document.aclDepartments());
+        return new LocalVectorIndex.Entry(result, grantKeys, embedding);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    DocumentFields documentFields(RagDocument document) {
+        ObjectNode metadata = metadata(document.getMetadataJson());
+        return new DocumentFields(
+                document.getId(),
+                document.getTitle(),
+                document.getSourceType(),
+                document.getSourceTable(),
+                document.getSourceId(),
+                document.getSourceVersion(),
+                document.getRoute(),
+                document.getAclScope(),
+                listValue(metadata, "acl_roles", "aclRoles", "roles"),
+                listValue(metadata, "acl_user_ids", "aclUserIds", "userIds"),
+                listValue(metadata, "acl_departments", "aclDepartments", "departments"),
+                metadata
+        );
+    }
+
+    private ObjectNode metadata(String metadataJson) {
         if (metadataJson == null || metadataJson.isBlank()) {
-            return new LinkedHashMap<>();
+            return objectMapper.createObjectNode();
         }
         try {
-            return new LinkedHashMap<>(objectMapper.readValue(metadataJson, MAP_TYPE));
+            JsonNode parsed = objectMapper.readTree(metadataJson);
+            if (parsed instanceof ObjectNode object) {
+                return object;
+            }
+            throw new IllegalArgumentException("metadata is not a JSON object");
         } catch (Exception error) {
-            Map<String, Object> fallback = new LinkedHashMap<>();
+            ObjectNode fallback = objectMapper.createObjectNode();
             fallback.put("rawMetadata", metadataJson);
             fallback.put("metadataParseError", error.getMessage());
             return fallback;
         }
     }
 
-    private String writeJson(Map<String, Object> source) {
-        try {
-            return objectMapper.writeValueAsString(source);
-        } catch (Exception error) {
-            throw new IllegalStateException("Failed to serialize RAG chunk vector document", error);
+    private static void writeStrings(JsonGenerator generator, String field, List<String> values) throws IOException {
+        generator.writeArrayFieldStart(field);
+        for (String value : values) {
+            generator.writeString(value);
         }
+        generator.writeEndArray();
     }
 
-    private static List<Object> listValue(Map<String, Object> metadata, String... keys) {
-        Object value = null;
+    private static List<String> listValue(ObjectNode metadata, String... keys) {
+        JsonNode value = null;
         for (String key : keys) {
-            if (metadata.containsKey(key)) {
+            if (metadata.has(key)) {
                 value = metadata.get(key);
                 break;
             }
         }
-        if (value == null) {
+        if (value == null || value.isNull()) {
             return List.of();
         }
-        if (value instanceof Iterable<?> iterable) {
-            List<Object> values = new ArrayList<>();
-            iterable.forEach(item -> {
-                if (item != null && !item.toString().isBlank()) {
-                    values.add(item.toString());
+        if (value.isArray()) {
+            List<String> values = new ArrayList<>();
+            value.forEach(item -> {
+                String text = item.isValueNode() ? item.asText() : item.toString();
+                if (!item.isNull() && !text.isBlank()) {
+                    values.add(text);
                 }
             });
             return values;
         }
-        String text = value.toString();
+        String text = value.isValueNode() ? value.asText() : value.toString();
         if (text.isBlank()) {
             return List.of();
         }
         return List.of(text);
     }
 
-    private static List<Double> toDoubleList(float[] vector) {
-        List<Double> values = new ArrayList<>(vector.length);
-        for (float value : vector) {
-            values.add((double) value);
-        }
-        return values;
+    record DocumentFields(
+            String id,
+            String title,
+            String sourceType,
+            String sourceTable,
+            String sourceId,
+            String sourceVersion,
+            String route,
+            String aclScope,
+            List<String> aclRoles,
+            List<String> aclUserIds,
+            List<String> aclDepartments,
+            ObjectNode metadata
+    ) {
+    }
+
+    public record VectorEntry(RagDocument document, RagChunk chunk, float[] embedding) {
     }
 }
@@ -1,6 +1,8 @@
 package com.tutict.finalassignmentbackend.rag.embedding;
 
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.tutict.finalassignmentbackend.ai.rag.retrieval.EmbeddingProvider;
 import com.tutict.finalassignmentbackend.rag.config.RagProperties;
 import com.tutict.finalassignmentbackend.rag.entity.RagChunk;
@@ -9,22 +11,54 @@ import com.tutict.finalassignmentbackend.rag.entity.RagEmbeddingTask;
 import com.tutict.finalassignmentbackend.rag.mapper.RagChunkMapper;
 import com.tutict.finalassignmentbackend.rag.mapper.RagDocumentMapper;
 import com.tutict.finalassignmentbackend.rag.mapper.RagEmbeddingTaskMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Embeds pending chunks. Tasks are claimed with a lease: candidates are locked with
+ * {@code FOR UPDATE SKIP LOCKED} and stamped with this worker's {@code lease_owner}, so replicas
+ * never pick the same row. A heartbeat renews the lease while the batch runs, expired RUNNING rows
+ * are reclaimed, and final status writes only apply while this worker still owns the lease.
+ */
 @Service
 @ConditionalOnProperty(prefix = "rag.embedding", name = "enabled", havingValue = "true")
 public class RagEmbeddingService {
 
+    private static final Logger LOG = Logger.getLogger(RagEmbeddingService.class.getName());
+
     private static final String STATUS_PENDING = "PENDING";
     private static final String STATUS_RUNNING = "RUNNING";
     private static final String STATUS_SUCCEEDED = "SUCCEEDED";
@@ -37,6 +71,11 @@ public class RagEmbeddingService {
     private final EmbeddingProvider embeddingProvider;
     private final RagChunkVectorIndexService vectorIndexService;
     private final RagProperties properties;
+    private final TransactionOperations transactionOperations;
+    private final String workerId;
+    private final ExecutorService embeddingExecutor;
+    private final ScheduledExecutorService leaseRenewer;
+    // 同一实例内仍只跑一个批次，跨实例的互斥由租约保证
     private final AtomicBoolean running = new AtomicBoolean(false);
 
     public RagEmbeddingService(
@@ -46,6 +85,20 @@ public class RagEmbeddingService {
             EmbeddingProvider embeddingProvider,
             RagChunkVectorIndexService vectorIndexService,
             RagProperties properties
+    ) {
+        this(taskMapper, chunkMapper, documentMapper, embeddingProvider, vectorIndexService, properties,
+                TransactionOperations.withoutTransaction());
+    }
+
+    @Autowired
+    public RagEmbeddingService(
+            RagEmbeddingTaskMapper taskMapper,
+            RagChunkMapper chunkMapper,
+            RagDocumentMapper documentMapper,
+            EmbeddingProvider embeddingProvider,
+            RagChunkVectorIndexService vectorIndexService,
+            RagProperties properties,
+            TransactionOperations transactionOperations
     ) {
         this.taskMapper = taskMapper;
         this.chunkMapper = chunkMapper;
@@ -53,6 +106,13 @@ public class RagEmbeddingService {
         this.embeddingProvider = embeddingProvider;
         this.vectorIndexService = vectorIndexService;
         this.properties = properties;
+        this.transactionOperations = transactionOperations;
+        this.workerId = resolveWorkerId(properties.getEmbedding().getWorkerId());
+        this.embeddingExecutor = Executors.newFixedThreadPool(
+                Math.max(1, properties.getEmbedding().getConcurrency()),
+                Thread.ofVirtual().name("rag-embedding-", 0).factory());
+        this.leaseRenewer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("rag-embedding-lease").factory());
     }
 
     @Scheduled(fixedDelayString = "${rag.embedding.poll-interval-ms:30000}")
@@ -67,77 +127,303 @@ public class RagEmbeddingService {
         if (!running.compareAndSet(false, true)) {
             return new RagEmbeddingBatchResult(0, 0, 0, false, true);
         }
+        ScheduledFuture<?> heartbeat = null;
         try {
-            List<RagEmbeddingTask> tasks = selectPendingTasks(requestedLimit);
-            int succeeded = 0;
-            int failed = 0;
-            for (RagEmbeddingTask task : tasks) {
-                if (processTask(task)) {
-                    succeeded++;
-                } else {
-                    failed++;
-                }
+            List<RagEmbeddingTask> tasks = claimTasks(requestedLimit);
+            if (tasks.isEmpty()) {
+                return new RagEmbeddingBatchResult(0, 0, 0, true, false);
             }
-            return new RagEmbeddingBatchResult(tasks.size(), succeeded, failed, true, false);
+            long renewEveryMs = Math.max(1000, leaseDuration().toMillis() / 3);
+            heartbeat = leaseRenewer.scheduleAtFixedRate(this::renewLeases, renewEveryMs, renewEveryMs, TimeUnit.MILLISECONDS);
+            int succeeded = processTasks(tasks);
+            return new RagEmbeddingBatchResult(tasks.size(), succeeded, tasks.size() - succeeded, true, false);
         } finally {
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
             running.set(false);
         }
     }
 
-    private List<RagEmbeddingTask> selectPendingTasks(int requestedLimit) {
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+        embeddingExecutor.shutdown();
+    }
+
+    /**
+     * Claims up to {@code requestedLimit} runnable or lease-expired tasks for this worker. Rows locked
+     * by another replica's claim are skipped rather than waited on; the stamping UPDATE re-checks the
+     * claim condition, so a row is never owned by two workers even without row locks.
+     *
+     * @return the claimed tasks, already RUNNING with their attempt counted
+     */
+    private List<RagEmbeddingTask> claimTasks(int requestedLimit) {
         int limit = Math.min(Math.max(1, requestedLimit), 500);
         LocalDateTime now = LocalDateTime.now();
-        return taskMapper.selectList(new QueryWrapper<RagEmbeddingTask>()
-                .in("status", List.of(STATUS_PENDING, STATUS_FAILED))
-                .and(wrapper -> wrapper.isNull("next_retry_at").or().le("next_retry_at", now))
-                .orderByAsc("created_at")
-                .last("LIMIT " + limit));
+        LocalDateTime staleBefore = now.minus(leaseDuration());
+        List<String> claimedIds = transactionOperations.execute(status -> {
+            List<String> candidates = taskMapper.selectObjs(
+                            claimable(new QueryWrapper<RagEmbeddingTask>().select("id"), now, staleBefore)
+                                    .orderByAsc("created_at")
+                                    .last("LIMIT " + limit + " FOR UPDATE SKIP LOCKED"))
+                    .stream()
+                    .map(Object::toString)
+                    .toList();
+            if (candidates.isEmpty()) {
+                return List.of();
+            }
+            taskMapper.update(null, claimable(new UpdateWrapper<RagEmbeddingTask>().in("id", candidates), now, staleBefore)
+                    .set("status", STATUS_RUNNING)
+                    .set("lease_owner", workerId)
+                    .set("lease_expires_at", now.plus(leaseDuration()))
+                    .set("provider", embeddingProvider.providerName())
+                    .set("model", embeddingProvider.modelName())
+                    .setSql("attempt_count = attempt_count + 1")
+                    .set("next_retry_at", null)
+                    .set("last_error", null)
+                    .set("rerun_requested", false)
+                    .set("updated_at", now));
+            return candidates;
+        });
+        if (claimedIds == null || claimedIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, RagEmbeddingTask> current = byId(taskMapper.selectBatchIds(claimedIds), RagEmbeddingTask::getId);
+        List<RagEmbeddingTask> claimed = new ArrayList<>(claimedIds.size());
+        for (String id : claimedIds) {
+            RagEmbeddingTask task = current.get(id);
+            if (task != null && STATUS_RUNNING.equals(task.getStatus()) && workerId.equals(task.getLeaseOwner())) {
+                claimed.add(task);
+            }
+        }
+        return claimed;
     }
 
-    private boolean processTask(RagEmbeddingTask task) {
-        RagEmbeddingTask currentTask = taskMapper.selectById(task.getId());
-        if (currentTask == null || !isRunnable(currentTask)) {
-            return false;
-        }
-        markRunning(currentTask);
+    private static <W extends AbstractWrapper<RagEmbeddingTask, String, W>> W claimable(
+            W wrapper, LocalDateTime now, LocalDateTime staleBefore) {
+        // 可运行的待处理/失败任务，或租约已过期的 RUNNING 任务（无租约的旧数据按 updated_at 判断）
+        return wrapper.and(claim -> claim
+                .and(runnable -> runnable
+                        .in("status", List.of(STATUS_PENDING, STATUS_FAILED))
+                        .and(retry -> retry.isNull("next_retry_at").or().le("next_retry_at", now)))
+                .or(expired -> expired
+                        .eq("status", STATUS_RUNNING)
+                        .and(lease -> lease
+                                .lt("lease_expires_at", now)
+                                .or(legacy -> legacy.isNull("lease_expires_at").lt("updated_at", staleBefore)))));
+    }
+
+    private void renewLeases() {
         try {
-            RagChunk chunk = chunkMapper.selectById(currentTask.getChunkId());
+            taskMapper.update(null, new UpdateWrapper<RagEmbeddingTask>()
+                    .eq("lease_owner", workerId)
+                    .eq("status", STATUS_RUNNING)
+                    .set("lease_expires_at", LocalDateTime.now().plus(leaseDuration())));
+        } catch (RuntimeException error) {
+            LOG.log(Level.WARNING, "Failed to renew RAG embedding task leases for " + workerId, error);
+        }
+    }
+
+    private Duration leaseDuration() {
+        Duration leaseDuration = properties.getEmbedding().getLeaseDuration();
+        return leaseDuration == null || leaseDuration.isNegative() || leaseDuration.isZero()
+                ? Duration.ofMinutes(5)
+                : leaseDuration;
+    }
+
+    /**
+     * Pipelines one batch: batched lookups, grouped provider calls with bounded concurrency,
+     * one bulk index request and batched status writes.
+     *
+     * @return number of tasks that succeeded
+     */
+    private int processTasks(List<RagEmbeddingTask> tasks) {
+        Map<String, RagChunk> chunks = byId(chunkMapper.selectBatchIds(distinct(tasks, RagEmbeddingTask::getChunkId)),
+                RagChunk::getId);
+        Map<String, RagDocument> documents = byId(documentMapper.selectBatchIds(distinct(chunks.values(), RagChunk::getDocumentId)),
+                RagDocument::getId);
+        List<PendingEmbedding> work = new ArrayList<>(tasks.size());
+        for (RagEmbeddingTask task : tasks) {
+            RagChunk chunk = chunks.get(task.getChunkId());
             if (chunk == null) {
-                poison(currentTask, "RAG chunk does not exist: " + currentTask.getChunkId());
-                return false;
+                poison(task, "RAG chunk does not exist: " + task.getChunkId());
+                continue;
             }
-            RagDocument document = documentMapper.selectById(chunk.getDocumentId());
+            RagDocument document = documents.get(chunk.getDocumentId());
             if (document == null) {
-                poison(currentTask, "RAG document does not exist: " + chunk.getDocumentId());
-                return false;
+                poison(task, "RAG document does not exist: " + chunk.getDocumentId());
+                continue;
+            }
+            work.add(new PendingEmbedding(task, chunk, document));
+        }
+
+        embed(work);
+        Map<String, String> indexFailures = index(work);
+        dropVectorsOfDeletedTasks(work, indexFailures);
+
+        int succeeded = 0;
+        List<RagChunk> embeddedChunks = new ArrayList<>(work.size());
+        for (PendingEmbedding item : work) {
+            if (item.error != null) {
+                markFailed(item.task, item.error);
+            } else if (indexFailures.containsKey(item.chunk.getId())) {
+                markFailed(item.task, new IllegalStateException(indexFailures.get(item.chunk.getId())));
+            } else {
+                markSucceeded(item.task, item.chunk, item.vector);
+                embeddedChunks.add(item.chunk);
+                succeeded++;
+            }
+        }
+        if (!embeddedChunks.isEmpty()) {
+            chunkMapper.updateById(embeddedChunks);
+        }
+        releaseLeases(tasks);
+        return succeeded;
+    }
+
+    /**
+     * Writes final task states, one UPDATE per distinct outcome. Each UPDATE is fenced on
+     * {@code lease_owner}, so a task whose lease expired and was reclaimed elsewhere is left alone.
+     * A task flagged with {@code rerun_requested} while it ran goes back to PENDING instead.
+     */
+    private void releaseLeases(List<RagEmbeddingTask> tasks) {
+        Map<TaskOutcome, List<String>> outcomes = new LinkedHashMap<>();
+        for (RagEmbeddingTask task : tasks) {
+            outcomes.computeIfAbsent(new TaskOutcome(task.getStatus(), task.getLastError(), task.getNextRetryAt()),
+                    ignored -> new ArrayList<>()).add(task.getId());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        outcomes.forEach((outcome, ids) -> taskMapper.update(null, new UpdateWrapper<RagEmbeddingTask>()
+                .in("id", ids)
+                .eq("lease_owner", workerId)
+                // 运行期间文档字段变更过的任务读到的是旧内容，直接回到 PENDING 重跑
+                .setSql("status = CASE WHEN rerun_requested = 1 THEN 'PENDING' ELSE {0} END", outcome.status())
+                .setSql("last_error = CASE WHEN rerun_requested = 1 THEN NULL ELSE {0} END", outcome.lastError())
+                .setSql("next_retry_at = CASE WHEN rerun_requested = 1 THEN NULL ELSE {0} END", outcome.nextRetryAt())
+                .set("lease_owner", null)
+                .set("lease_expires_at", null)
+                .set("updated_at", now)
+                // MySQL 按顺序求值 SET，标志位必须最后清除
+                .set("rerun_requested", false)));
+    }
+
+    private void embed(List<PendingEmbedding> work) {
+        List<List<PendingEmbedding>> groups = new ArrayList<>();
+        int groupSize = Math.max(1, properties.getEmbedding().getProviderBatchSize());
+        for (int from = 0; from < work.size(); from += groupSize) {
+            groups.add(work.subList(from, Math.min(work.size(), from + groupSize)));
+        }
+        if (groups.size() <= 1) {
+            groups.forEach(this::embedGroup);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(groups.size());
+        for (List<PendingEmbedding> group : groups) {
+            futures.add(embeddingExecutor.submit(() -> embedGroup(group)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                break;
+            } catch (ExecutionException error) {
+                // embedGroup 只处理 RuntimeException，Error 等会走到这里：整组按失败处理并保留原因
+                IllegalStateException failure = new IllegalStateException(
+                        "Embedding failed: " + error.getCause(), error.getCause());
+                for (PendingEmbedding item : groups.get(i)) {
+                    if (item.vector == null && item.error == null) {
+                        item.error = failure;
+                    }
+                }
+            }
+        }
+        for (PendingEmbedding item : work) {
+            if (item.vector == null && item.error == null) {
+                item.error = new IllegalStateException("Embedding was interrupted");
+            }
+        }
+    }
+
+    private void embedGroup(List<PendingEmbedding> group) {
+        try {
+            List<float[]> vectors = group.size() == 1
+                    ? List.of(embeddingProvider.embed(group.get(0).chunk.getContent()))
+                    : embeddingProvider.embedAll(group.stream().map(item -> item.chunk.getContent()).toList());
+            if (vectors.size() != group.size()) {
+                throw new IllegalStateException("Embedding provider returned " + vectors.size()
+                        + " vectors for " + group.size() + " inputs");
+            }
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).vector = vectors.get(i);
             }
-            float[] vector = embeddingProvider.embed(chunk.getContent());
-            vectorIndexService.index(document, chunk, vector, embeddingProvider.providerName(), embeddingProvider.modelName());
-            markSucceeded(currentTask, chunk, vector);
-            return true;
         } catch (RuntimeException error) {
-            markFailed(currentTask, error);
-            return false;
+            if (group.size() == 1) {
+                group.get(0).error = error;
+                return;
+            }
+            // 整组失败时逐条重试，避免一条坏输入拖累同组的其他任务
+            for (PendingEmbedding item : group) {
+                try {
+                    item.vector = embeddingProvider.embed(item.chunk.getContent());
+                } catch (RuntimeException itemError) {
+                    item.error = itemError;
+                }
+            }
         }
     }
 
-    private boolean isRunnable(RagEmbeddingTask task) {
-        if (!STATUS_PENDING.equals(task.getStatus()) && !STATUS_FAILED.equals(task.getStatus())) {
-            return false;
+    private Map<String, String> index(List<PendingEmbedding> work) {
+        List<RagChunkVectorIndexService.VectorEntry> entries = new ArrayList<>(work.size());
+        for (PendingEmbedding item : work) {
+            if (item.error == null) {
+                entries.add(new RagChunkVectorIndexService.VectorEntry(item.document, item.chunk, item.vector));
+            }
+        }
+        try {
+            return vectorIndexService.indexAll(entries, embeddingProvider.providerName(), embeddingProvider.modelName());
+        } catch (RuntimeException error) {
+            for (PendingEmbedding item : work) {
+                if (item.error == null) {
+                    item.error = error;
+                }
+            }
+            return Map.of();
         }
-        LocalDateTime nextRetryAt = task.getNextRetryAt();
-        return nextRetryAt == null || !nextRetryAt.isAfter(LocalDateTime.now());
     }
 
-    private void markRunning(RagEmbeddingTask task) {
-        task.setStatus(STATUS_RUNNING);
-        task.setProvider(embeddingProvider.providerName());
-        task.setModel(embeddingProvider.modelName());
-        task.setAttemptCount(safeAttemptCount(task) + 1);
-        task.setNextRetryAt(null);
-        task.setLastError(null);
-        task.setUpdatedAt(LocalDateTime.now());
-        taskMapper.updateById(task);
+    /**
+     * Removes vectors just indexed for tasks that a re-index deleted while this batch ran, together with
+     * their orphaned chunk. The re-index removes vectors after its own commit, so whichever of the two
+     * deletes runs later sees the vector: either the re-index committed before this check, or its
+     * after-commit delete follows {@code indexAll}.
+     */
+    private void dropVectorsOfDeletedTasks(List<PendingEmbedding> work, Map<String, String> indexFailures) {
+        List<PendingEmbedding> indexed = work.stream()
+                .filter(item -> item.error == null && !indexFailures.containsKey(item.chunk.getId()))
+                .toList();
+        if (indexed.isEmpty()) {
+            return;
+        }
+        Set<String> remaining = taskMapper.selectBatchIds(distinct(indexed, item -> item.task.getId())).stream()
+                .map(RagEmbeddingTask::getId)
+                .collect(Collectors.toSet());
+        List<String> orphanedChunkIds = new ArrayList<>();
+        for (PendingEmbedding item : indexed) {
+            if (!remaining.contains(item.task.getId())) {
+                orphanedChunkIds.add(item.chunk.getId());
+                item.error = new IllegalStateException("RAG embedding task was deleted while running: " + item.task.getId());
+            }
+        }
+        if (!orphanedChunkIds.isEmpty()) {
+            try {
+                vectorIndexService.deleteAll(orphanedChunkIds);
+            } catch (RuntimeException error) {
+                LOG.log(Level.WARNING, "Failed to remove vectors of deleted RAG chunks " + orphanedChunkIds, error);
+            }
+        }
     }
 
     private void markSucceeded(RagEmbeddingTask task, RagChunk chunk, float[] vector) {
@@ -146,13 +432,11 @@ public class RagEmbeddingService {
         chunk.setEmbeddingModel(embeddingProvider.modelName());
         chunk.setEmbeddingHash(embeddingHash(chunk, vector));
         chunk.setUpdatedAt(now);
-        chunkMapper.updateById(chunk);
 
         task.setStatus(STATUS_SUCCEEDED);
         task.setLastError(null);
         task.setNextRetryAt(null);
         task.setUpdatedAt(now);
-        taskMapper.updateById(task);
     }
 
     private void markFailed(RagEmbeddingTask task, RuntimeException error) {
@@ -164,7 +448,6 @@ public class RagEmbeddingService {
                 ? now.plus(properties.getEmbedding().getRetryDelay())
                 : null);
         task.setUpdatedAt(now);
-        taskMapper.updateById(task);
     }
 
     private void poison(RagEmbeddingTask task, String message) {
@@ -172,7 +455,6 @@ public class RagEmbeddingService {
         task.setLastError(clip(message));
         task.setNextRetryAt(null);
         task.setUpdatedAt(LocalDateTime.now());
-        taskMapper.updateById(task);
     }
 
     private String embeddingHash(RagChunk chunk, float[] vector) {
@@ -206,6 +488,43 @@ public class RagEmbeddingService {
         return message.length() <= 2000 ? message : message.substring(0, 2000);
     }
 
+    private static String resolveWorkerId(String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return configured.trim();
+        }
+        return ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static <T> List<String> distinct(Collection<T> values, Function<T, String> id) {
+        return values.stream().map(id).filter(Objects::nonNull).distinct().toList();
+    }
+
+    private static <T> Map<String, T> byId(Collection<T> values, Function<T, String> id) {
+        Map<String, T> byId = new HashMap<>();
+        if (values != null) {
+            values.forEach(value -> byId.put(id.apply(value), value));
+        }
+        return byId;
+    }
+
+    private record TaskOutcome(String status, String lastError, LocalDateTime nextRetryAt) {
+    }
+
+    private static final class PendingEmbedding {
+
+        private final RagEmbeddingTask task;
+        private final RagChunk chunk;
+        private final RagDocument document;
+        private float[] vector;
+        private RuntimeException error;
+
+        private PendingEmbedding(RagEmbeddingTask task, RagChunk chunk, RagDocument document) {
+            this.task = task;
+            this.chunk = chunk;
+            this.document = document;
+        }
+    }
+
     public record RagEmbeddingBatchResult(
             int selectedTasks,
             int succeededTasks,
@@ -31,6 +31,12 @@ public class RagEmbeddingTask implements Serializable {
     private Integer attemptCount;
     @TableField("next_retry_at")
     private LocalDateTime nextRetryAt;
+    @TableField("lease_owner")
+    private String leaseOwner;
+    @TableField("lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    @TableField("rerun_requested")
+    private Boolean rerunRequested;
     @TableField("last_error")
     private String lastError;
     @TableField("created_at")
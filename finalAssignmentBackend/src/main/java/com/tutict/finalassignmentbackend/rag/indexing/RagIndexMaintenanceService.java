@@ -157,6 +157,8 @@ public class RagIndexMaintenanceService {
                 .set("attempt_count", 0)
                 .set("next_retry_at", null)
                 .set("last_error", null)
+                .set("lease_owner", null)
+                .set("lease_expires_at", null)
                 .set("updated_at", now));
     }
 
@@ -1,236 +1,525 @@
 package com.tutict.finalassignmentbackend.rag.ingestion;
 
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import jakarta.annotation.PreDestroy;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
+/**
+ * Extracts indexable text from uploaded files without buffering the upload on the heap. Text formats
+ * are read as streams, Office files are read entry by entry from a temp file with StAX, and PDF pages
+ * are extracted in ranges on a bounded pool. Extracted text is capped at
+ * {@code rag.upload.max-content-chars}, so peak heap per upload does not grow with file size.
+ */
 @Component
 @ConditionalOnProperty(prefix = "rag", name = "enabled", havingValue = "true")
 public class RagUploadedFileParser {
 
-    private static final long MAX_FILE_SIZE = 8L * 1024L * 1024L;
+    private static final int MAX_TABLE_ROWS = 300;
+    private static final int MAX_SHEET_ROWS = 250;
+    private static final int MAX_SHARED_INDEX_CHARS = 16;
+    private static final XMLInputFactory XML_INPUT_FACTORY = xmlInputFactory();
+
+    private final RagProperties.Upload settings;
+    private final ExecutorService pdfExecutor;
+
+    public RagUploadedFileParser(RagProperties properties) {
+        this.settings = properties.getUpload();
+        // PDF 文本提取是 CPU 密集型，用固定大小的平台线程池限制并发
+        this.pdfExecutor = Executors.newFixedThreadPool(
+                Math.max(1, settings.getPdfParallelism()),
+                Thread.ofPlatform().name("rag-pdf-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pdfExecutor.shutdownNow();
+    }
 
     public ParsedRagFile parse(MultipartFile file) throws IOException {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("uploaded file must not be empty");
         }
-        if (file.getSize() > MAX_FILE_SIZE) {
-            throw new IllegalArgumentException("uploaded file is too large; max size is 8MB");
+        if (file.getSize() > settings.getMaxFileSize().toBytes()) {
+            throw new IllegalArgumentException("uploaded file is too large; max size is " + settings.getMaxFileSize());
         }
         String fileName = sanitizeFileName(file.getOriginalFilename());
         String extension = extensionOf(fileName);
-        byte[] bytes = file.getBytes();
+        String contentType = file.getContentType();
+        long size = file.getSize();
         return switch (extension) {
             case "txt", "md", "markdown", "log", "json", "xml", "yml", "yaml" ->
-                    plainText(fileName, file.getContentType(), bytes, extension);
-            case "csv" -> delimitedText(fileName, file.getContentType(), bytes, ",");
-            case "tsv" -> delimitedText(fileName, file.getContentType(), bytes, "\t");
-            case "docx" -> docxText(fileName, file.getContentType(), bytes);
-            case "xlsx" -> xlsxText(fileName, file.getContentType(), bytes);
-            case "pdf" -> pdfText(fileName, file.getContentType(), bytes);
+                    plainText(fileName, contentType, size, file, extension);
+            case "csv" -> delimitedText(fileName, contentType, size, file, ',');
+            case "tsv" -> delimitedText(fileName, contentType, size, file, '\t');
+            case "docx" -> withTempFile(file, extension, path -> docxText(fileName, contentType, size, path));
+            case "xlsx" -> withTempFile(file, extension, path -> xlsxText(fileName, contentType, size, path));
+            case "pdf" -> withTempFile(file, extension, path -> pdfText(fileName, contentType, size, path));
             default -> throw new IllegalArgumentException(
                     "unsupported RAG upload type: " + extension + ". Supported: txt, md, csv, tsv, json, docx, xlsx, pdf"
             );
         };
     }
 
-    private ParsedRagFile plainText(String fileName, String contentType, byte[] bytes, String parser) {
-        String content = stripUtf8Bom(new String(bytes, StandardCharsets.UTF_8)).trim();
-        return new ParsedRagFile(fileName, contentType, bytes.length, titleFromFileName(fileName), content, parser, 0, 0);
+    private ParsedRagFile plainText(String fileName, String contentType, long size, MultipartFile file, String parser)
+            throws IOException {
+        BoundedText text = new BoundedText(settings.getMaxContentChars());
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1 && text.append(buffer, read)) {
+                // 读满字符上限后停止读取
+            }
+        }
+        String content = stripUtf8Bom(text.toString()).trim();
+        return new ParsedRagFile(fileName, contentType, size, titleFromFileName(fileName), content, parser, 0, 0,
+                text.isTruncated());
     }
 
-    private ParsedRagFile delimitedText(String fileName, String contentType, byte[] bytes, String delimiter) {
-        String raw = stripUtf8Bom(new String(bytes, StandardCharsets.UTF_8));
-        List<List<String>> rows = parseDelimitedRows(raw, delimiter.charAt(0));
-        StringBuilder content = new StringBuilder();
-        content.append("Table file: ").append(fileName).append('\n');
-        content.append("Total rows: ").append(rows.size()).append("\n\n");
-        appendMarkdownRows(content, rows, 300);
+    private ParsedRagFile delimitedText(String fileName, String contentType, long size, MultipartFile file, char delimiter)
+            throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        int totalRows = 0;
+        int room = Math.max(0, settings.getMaxContentChars());
+        boolean clipped = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            skipUtf8Bom(reader);
+            BoundedLineReader lines = new BoundedLineReader(reader);
+            String line;
+            // 保留的行合计不超过字符上限，超出部分边读边丢弃；其余行只判断是否为空行
+            while ((line = lines.readLine(totalRows < MAX_TABLE_ROWS ? room : 0)) != null) {
+                if (lines.isBlank()) {
+                    continue;
+                }
+                // 只保留写入正文的前若干行，其余行只计数
+                if (totalRows++ < MAX_TABLE_ROWS) {
+                    rows.add(parseDelimitedLine(line, delimiter));
+                    room -= line.length();
+                    clipped |= lines.isClipped();
+                }
+            }
+        }
+        BoundedText content = new BoundedText(settings.getMaxContentChars());
+        content.append("Table file: ").append(fileName).append("\n");
+        content.append("Total rows: ").append(String.valueOf(totalRows)).append("\n\n");
+        appendMarkdownRows(content, rows, totalRows, MAX_TABLE_ROWS);
+        if (clipped) {
+            content.markTruncated();
+        }
         return new ParsedRagFile(
                 fileName,
                 contentType,
-                bytes.length,
+                size,
                 titleFromFileName(fileName),
                 content.toString().trim(),
-                delimiter.equals("\t") ? "tsv" : "csv",
-                rows.size(),
-                1
+                delimiter == '\t' ? "tsv" : "csv",
+                totalRows,
+                1,
+                content.isTruncated()
         );
     }
 
-    private ParsedRagFile docxText(String fileName, String contentType, byte[] bytes) throws IOException {
-        Map<String, byte[]> entries = unzip(bytes);
-        byte[] documentXml = entries.get("word/document.xml");
-        if (documentXml == null) {
-            throw new IllegalArgumentException("invalid docx: word/document.xml not found");
+    private ParsedRagFile docxText(String fileName, String contentType, long size, Path path) throws IOException {
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            ZipEntry documentXml = zip.getEntry("word/document.xml");
+            if (documentXml == null) {
+                throw new IllegalArgumentException("invalid docx: word/document.xml not found");
+            }
+            BoundedText content = new BoundedText(settings.getMaxContentChars());
+            int lines = 0;
+            try (InputStream input = zip.getInputStream(documentXml)) {
+                XMLStreamReader reader = xmlReader(input);
+                try {
+                    StringBuilder paragraph = new StringBuilder();
+                    boolean clipped = false;
+                    int depth = 0;
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT && "p".equals(reader.getLocalName())) {
+                            // 文本框等嵌套段落并入外层段落
+                            if (depth++ == 0) {
+                                paragraph.setLength(0);
+                                clipped = false;
+                            }
+                        } else if (isText(event) && depth > 0) {
+                            // 段落缓冲不超过正文剩余空间，超长段落不会整段读入内存
+                            clipped |= appendCapped(paragraph, reader, content.room());
+                        } else if (event == XMLStreamConstants.END_ELEMENT && "p".equals(reader.getLocalName())
+                                && --depth == 0) {
+                            String text = paragraph.toString().trim();
+                            if (!text.isBlank()) {
+                                lines++;
+                                content.append(text).append("\n");
+                                if (clipped) {
+                                    content.markTruncated();
+                                }
+                                if (content.isTruncated()) {
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    closeQuietly(reader);
+                }
+            } catch (XMLStreamException error) {
+                throw new IllegalArgumentException("uploaded Office XML cannot be parsed", error);
+            }
+            return new ParsedRagFile(fileName, contentType, size, titleFromFileName(fileName), content.toString().trim(),
+                    "docx", lines, 0, content.isTruncated());
         }
-        Document document = parseXml(new String(documentXml, StandardCharsets.UTF_8));
-        NodeList paragraphs = document.getElementsByTagNameNS("*", "p");
-        List<String> lines = new ArrayList<>();
-        for (int i = 0; i < paragraphs.getLength(); i++) {
-            String text = textOf(paragraphs.item(i)).trim();
-            if (!text.isBlank()) {
-                lines.add(text);
+    }
+
+    private ParsedRagFile xlsxText(String fileName, String contentType, long size, Path path) throws IOException {
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            List<String> worksheetNames = zip.stream()
+                    .map(ZipEntry::getName)
+                    .filter(name -> name.startsWith("xl/worksheets/sheet") && name.endsWith(".xml"))
+                    .sorted()
+                    .toList();
+            if (worksheetNames.isEmpty()) {
+                throw new IllegalArgumentException("invalid xlsx: worksheets not found");
             }
+            // 先扫描工作表，只记录前 MAX_SHEET_ROWS 行引用到的共享字符串下标，再按需解析共享字符串表
+            List<SheetRows> sheets = new ArrayList<>(worksheetNames.size());
+            BitSet referenced = new BitSet();
+            int room = Math.max(0, settings.getMaxContentChars());
+            boolean clipped = false;
+            for (String worksheetName : worksheetNames) {
+                SheetRows rows;
+                try (InputStream input = zip.getInputStream(zip.getEntry(worksheetName))) {
+                    rows = parseWorksheet(input, room);
+                }
+                room = Math.max(0, room - rows.textLength());
+                clipped |= rows.clipped();
+                rows.sharedCells().forEach(cell -> referenced.set(cell.index()));
+                sheets.add(rows);
+            }
+            Map<Integer, String> sharedStrings = parseSharedStrings(zip, referenced);
+
+            BoundedText content = new BoundedText(settings.getMaxContentChars());
+            int totalRows = 0;
+            int sheetNo = 1;
+            for (int i = 0; i < sheets.size() && !content.isTruncated(); i++) {
+                SheetRows rows = sheets.get(i).resolve(sharedStrings);
+                if (rows.total() == 0) {
+                    continue;
+                }
+                totalRows += rows.total();
+                content.append("## Sheet ").append(String.valueOf(sheetNo++)).append("\n");
+                content.append("Source: ").append(worksheetNames.get(i)).append("\n");
+                content.append("Rows: ").append(String.valueOf(rows.total())).append("\n\n");
+                appendMarkdownRows(content, rows.rows(), rows.total(), MAX_SHEET_ROWS);
+                content.append("\n\n");
+            }
+            if (clipped) {
+                content.markTruncated();
+            }
+            return new ParsedRagFile(
+                    fileName,
+                    contentType,
+                    size,
+                    titleFromFileName(fileName),
+                    content.toString().trim(),
+                    "xlsx",
+                    totalRows,
+                    worksheetNames.size(),
+                    content.isTruncated()
+            );
         }
-        String content = String.join("\n", lines).trim();
-        return new ParsedRagFile(fileName, contentType, bytes.length, titleFromFileName(fileName), content, "docx", lines.size(), 0);
     }
 
-    private ParsedRagFile xlsxText(String fileName, String contentType, byte[] bytes) throws IOException {
-        Map<String, byte[]> entries = unzip(bytes);
-        List<String> sharedStrings = parseSharedStrings(entries.get("xl/sharedStrings.xml"));
-        List<String> worksheetNames = entries.keySet().stream()
-                .filter(name -> name.startsWith("xl/worksheets/sheet") && name.endsWith(".xml"))
-                .sorted()
-                .toList();
-        if (worksheetNames.isEmpty()) {
-            throw new IllegalArgumentException("invalid xlsx: worksheets not found");
+    /**
+     * Extracts page ranges on the PDF pool. Each task opens its own {@link PDDocument} on the temp file
+     * because documents are not thread safe; at most twice the pool size of ranges are in flight, and
+     * finished ranges are appended in page order.
+     */
+    private ParsedRagFile pdfText(String fileName, String contentType, long size, Path path) throws IOException {
+        int pageCount;
+        try (PDDocument document = loadPdf(path)) {
+            if (document.isEncrypted()) {
+                throw new IllegalArgumentException("encrypted pdf is not supported");
+            }
+            pageCount = document.getNumberOfPages();
         }
+        BoundedText content = new BoundedText(settings.getMaxContentChars());
+        content.append("PDF file: ").append(fileName).append("\n");
+        content.append("Pages: ").append(String.valueOf(pageCount)).append("\n\n");
 
-        StringBuilder content = new StringBuilder();
-        int totalRows = 0;
-        int sheetNo = 1;
-        for (String worksheetName : worksheetNames) {
-            List<List<String>> rows = parseWorksheet(entries.get(worksheetName), sharedStrings);
-            if (rows.isEmpty()) {
-                continue;
+        int pagesPerTask = Math.max(1, settings.getPdfPagesPerTask());
+        int window = Math.max(1, settings.getPdfParallelism()) * 2;
+        Deque<Future<String>> inFlight = new ArrayDeque<>();
+        boolean hasText = false;
+        int nextPage = 1;
+        try {
+            while (nextPage <= pageCount || !inFlight.isEmpty()) {
+                while (nextPage <= pageCount && inFlight.size() < window) {
+                    int firstPage = nextPage;
+                    int lastPage = Math.min(pageCount, firstPage + pagesPerTask - 1);
+                    inFlight.add(pdfExecutor.submit(() -> pdfPages(path, firstPage, lastPage)));
+                    nextPage = lastPage + 1;
+                }
+                String text = inFlight.poll().get();
+                hasText |= !text.isBlank();
+                if (content.append(text).isTruncated()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while extracting pdf text", error);
+        } catch (ExecutionException error) {
+            if (error.getCause() instanceof IOException io) {
+                throw io;
             }
-            totalRows += rows.size();
-            content.append("## Sheet ").append(sheetNo++).append('\n');
-            content.append("Source: ").append(worksheetName).append('\n');
-            content.append("Rows: ").append(rows.size()).append("\n\n");
-            appendMarkdownRows(content, rows, 250);
-            content.append("\n\n");
+            if (error.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("pdf text extraction failed", error.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        if (!hasText) {
+            throw new IllegalArgumentException("pdf text is empty; scanned image-only PDFs are not supported");
         }
         return new ParsedRagFile(
                 fileName,
                 contentType,
-                bytes.length,
+                size,
                 titleFromFileName(fileName),
                 content.toString().trim(),
-                "xlsx",
-                totalRows,
-                worksheetNames.size()
+                "pdf",
+                0,
+                pageCount,
+                content.isTruncated()
         );
     }
 
-    private ParsedRagFile pdfText(String fileName, String contentType, byte[] bytes) throws IOException {
-        try (PDDocument document = Loader.loadPDF(bytes)) {
-            if (document.isEncrypted()) {
-                throw new IllegalArgumentException("encrypted pdf is not supported");
-            }
+    private static String pdfPages(Path path, int firstPage, int lastPage) throws IOException {
+        try (PDDocument document = loadPdf(path)) {
             PDFTextStripper stripper = new PDFTextStripper();
             stripper.setSortByPosition(true);
-            String text = stripper.getText(document).trim();
-            if (text.isBlank()) {
-                throw new IllegalArgumentException("pdf text is empty; scanned image-only PDFs are not supported");
+            StringBuilder text = new StringBuilder();
+            for (int page = firstPage; page <= lastPage; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                text.append(stripper.getText(document));
             }
-            int pageCount = document.getNumberOfPages();
-            String content = "PDF file: " + fileName + "\n"
-                    + "Pages: " + pageCount + "\n\n"
-                    + text;
-            return new ParsedRagFile(
-                    fileName,
-                    contentType,
-                    bytes.length,
-                    titleFromFileName(fileName),
-                    content.trim(),
-                    "pdf",
-                    0,
-                    pageCount
-            );
+            return text.toString();
         }
     }
 
-    private List<String> parseSharedStrings(byte[] xmlBytes) {
-        if (xmlBytes == null) {
-            return List.of();
+    private static PDDocument loadPdf(Path path) throws IOException {
+        // 从文件随机读取，解码后的流缓存写临时文件而不是堆
+        return Loader.loadPDF(path.toFile(), "", null, null, IOUtils.createTempFileOnlyStreamCache());
+    }
+
+    /**
+     * Reads only the {@code referenced} entries of the shared-string table, each capped at
+     * {@code rag.upload.max-content-chars}, and stops after the last referenced entry.
+     */
+    private Map<Integer, String> parseSharedStrings(ZipFile zip, BitSet referenced) throws IOException {
+        ZipEntry entry = zip.getEntry("xl/sharedStrings.xml");
+        if (entry == null || referenced.isEmpty()) {
+            return Map.of();
         }
-        Document document = parseXml(new String(xmlBytes, StandardCharsets.UTF_8));
-        NodeList items = document.getElementsByTagNameNS("*", "si");
-        List<String> values = new ArrayList<>();
-        for (int i = 0; i < items.getLength(); i++) {
-            values.add(textOf(items.item(i)).trim());
+        int lastReferenced = referenced.length() - 1;
+        int maxChars = Math.max(0, settings.getMaxContentChars());
+        Map<Integer, String> values = new HashMap<>();
+        try (InputStream input = zip.getInputStream(entry)) {
+            XMLStreamReader reader = xmlReader(input);
+            try {
+                StringBuilder value = new StringBuilder();
+                int index = -1;
+                boolean inItem = false;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && "si".equals(reader.getLocalName())) {
+                        index++;
+                        inItem = referenced.get(index);
+                        value.setLength(0);
+                    } else if (isText(event) && inItem && value.length() < maxChars) {
+                        value.append(reader.getText(), 0, Math.min(reader.getTextLength(), maxChars - value.length()));
+                    } else if (event == XMLStreamConstants.END_ELEMENT && "si".equals(reader.getLocalName())) {
+                        if (inItem) {
+                            values.put(index, value.toString().trim());
+                        }
+                        inItem = false;
+                        if (index >= lastReferenced) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                closeQuietly(reader);
+            }
+        } catch (XMLStreamException error) {
+            throw new IllegalArgumentException("uploaded Office XML cannot be parsed", error);
         }
         return values;
     }
 
-    private List<List<String>> parseWorksheet(byte[] xmlBytes, List<String> sharedStrings) {
-        Document document = parseXml(new String(xmlBytes, StandardCharsets.UTF_8));
-        NodeList rowNodes = document.getElementsByTagNameNS("*", "row");
+    /**
+     * Streams a worksheet row by row, keeping the first {@link #MAX_SHEET_ROWS} non-blank rows and
+     * counting the rest. Shared-string cells are left empty and recorded for {@link SheetRows#resolve}.
+     * Kept cell text is capped at {@code room} characters in total; cells of counted-only rows keep one.
+     */
+    private SheetRows parseWorksheet(InputStream input, int room) {
         List<List<String>> rows = new ArrayList<>();
-        for (int i = 0; i < rowNodes.getLength(); i++) {
-            Node rowNode = rowNodes.item(i);
-            if (!(rowNode instanceof Element rowElement)) {
-                continue;
-            }
-            NodeList cells = rowElement.getElementsByTagNameNS("*", "c");
-            Map<Integer, String> values = new HashMap<>();
-            int maxColumn = -1;
-            for (int j = 0; j < cells.getLength(); j++) {
-                Element cell = (Element) cells.item(j);
-                int column = columnIndex(cell.getAttribute("r"));
-                if (column < 0) {
-                    column = j;
+        List<SharedCell> sharedCells = new ArrayList<>();
+        Map<Integer, Integer> rowShared = new HashMap<>();
+        int total = 0;
+        boolean clipped = false;
+        try {
+            XMLStreamReader reader = xmlReader(input);
+            try {
+                Map<Integer, String> values = null;
+                int maxColumn = -1;
+                int cellNo = 0;
+                int column = -1;
+                String cellType = null;
+                StringBuilder value = new StringBuilder();
+                boolean inValue = false;
+                boolean valueSeen = false;
+                boolean inInline = false;
+                boolean cellClipped = false;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        switch (reader.getLocalName()) {
+                            case "row" -> {
+                                values = new HashMap<>();
+                                rowShared.clear();
+                                maxColumn = -1;
+                                cellNo = 0;
+                            }
+                            case "c" -> {
+                                cellType = reader.getAttributeValue(null, "t");
+                                column = columnIndex(reader.getAttributeValue(null, "r"));
+                                if (column < 0) {
+                                    column = cellNo;
+                                }
+                                cellNo++;
+                                value.setLength(0);
+                                valueSeen = false;
+                                cellClipped = false;
+                            }
+                            // 与原先一致：只取单元格的第一个 <v>
+                            case "v" -> inValue = !valueSeen;
+                            case "is" -> inInline = true;
+                            default -> {
+                            }
+                        }
+                    } else if (isText(event) && (inValue || inInline)) {
+                        // 共享字符串下标很短；其余单元格按剩余空间截断，只计数的行保留一个字符用于判断空行
+                        int cap = "s".equals(cellType) ? MAX_SHARED_INDEX_CHARS
+                                : total < MAX_SHEET_ROWS ? Math.max(room, 1) : 1;
+                        cellClipped |= appendCapped(value, reader, cap);
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        switch (reader.getLocalName()) {
+                            case "v" -> {
+                                inValue = false;
+                                valueSeen = true;
+                            }
+                            case "is" -> inInline = false;
+                            case "c" -> {
+                                if (values != null) {
+                                    maxColumn = Math.max(maxColumn, column);
+                                    String text = value.toString().trim();
+                                    if ("s".equals(cellType)) {
+                                        int index = parseInt(text, -1);
+                                        if (index >= 0) {
+                                            rowShared.put(column, index);
+                                        } else {
+                                            rowShared.remove(column);
+                                        }
+                                        text = "";
+                                    } else {
+                                        rowShared.remove(column);
+                                        if (total < MAX_SHEET_ROWS) {
+                                            room = Math.max(0, room - text.length());
+                                            clipped |= cellClipped;
+                                        }
+                                    }
+                                    values.put(column, text);
+                                }
+                            }
+                            case "row" -> {
+                                List<String> row = toRow(values, maxColumn, !rowShared.isEmpty());
+                                if (row != null) {
+                                    if (total++ < MAX_SHEET_ROWS) {
+                                        int rowNo = rows.size();
+                                        rowShared.forEach((cell, index) -> sharedCells.add(new SharedCell(rowNo, cell, index)));
+                                        rows.add(row);
+                                    }
+                                }
+                                values = null;
+                            }
+                            default -> {
+                            }
+                        }
+                    }
                 }
-                maxColumn = Math.max(maxColumn, column);
-                values.put(column, readCellValue(cell, sharedStrings));
-            }
-            if (maxColumn < 0) {
-                continue;
-            }
-            List<String> row = new ArrayList<>();
-            for (int column = 0; column <= maxColumn; column++) {
-                row.add(values.getOrDefault(column, ""));
-            }
-            if (row.stream().anyMatch(value -> !value.isBlank())) {
-                rows.add(row);
+            } finally {
+                closeQuietly(reader);
             }
+        } catch (XMLStreamException error) {
+            throw new IllegalArgumentException("uploaded Office XML cannot be parsed", error);
         }
-        return rows;
+        return new SheetRows(rows, total, sharedCells, clipped);
     }
 
-    private String readCellValue(Element cell, List<String> sharedStrings) {
-        String type = cell.getAttribute("t");
-        if ("inlineStr".equals(type)) {
-            return textOf(cell).trim();
+    private List<String> toRow(Map<Integer, String> values, int maxColumn, boolean hasSharedCells) {
+        if (values == null || maxColumn < 0) {
+            return null;
         }
-        String value = firstChildText(cell, "v");
-        if ("s".equals(type)) {
-            int index = parseInt(value, -1);
-            return index >= 0 && index < sharedStrings.size() ? sharedStrings.get(index) : "";
+        List<String> row = new ArrayList<>(maxColumn + 1);
+        for (int column = 0; column <= maxColumn; column++) {
+            row.add(values.getOrDefault(column, ""));
         }
-        return value;
+        return hasSharedCells || !isBlank(row) ? row : null;
     }
 
-    private void appendMarkdownRows(StringBuilder content, List<List<String>> rows, int maxRows) {
+    private static boolean isBlank(List<String> row) {
+        return row.stream().allMatch(String::isBlank);
+    }
+
+    private void appendMarkdownRows(BoundedText content, List<List<String>> rows, int totalRows, int maxRows) {
         int limit = Math.min(rows.size(), maxRows);
-        for (int i = 0; i < limit; i++) {
+        for (int i = 0; i < limit && !content.isTruncated(); i++) {
             List<String> row = rows.get(i);
             content.append("| ");
             content.append(row.stream().map(this::escapeMarkdownCell).reduce((a, b) -> a + " | " + b).orElse(""));
@@ -241,23 +530,13 @@ public class RagUploadedFileParser {
                 content.append(" |\n");
             }
         }
-        if (rows.size() > maxRows) {
-            content.append("\nIndexed first ").append(maxRows)
-                    .append(" rows; remaining ").append(rows.size() - maxRows)
+        if (totalRows > maxRows) {
+            content.append("\nIndexed first ").append(String.valueOf(maxRows))
+                    .append(" rows; remaining ").append(String.valueOf(totalRows - maxRows))
                     .append(" rows were omitted.\n");
         }
     }
 
-    private List<List<String>> parseDelimitedRows(String raw, char delimiter) {
-        List<List<String>> rows = new ArrayList<>();
-        for (String line : raw.replace("\r\n", "\n").replace('\r', '\n').split("\n")) {
-            if (!line.isBlank()) {
-                rows.add(parseDelimitedLine(line, delimiter));
-            }
-        }
-        return rows;
-    }
-
     private List<String> parseDelimitedLine(String line, char delimiter) {
         List<String> values = new ArrayList<>();
         StringBuilder cell = new StringBuilder();
@@ -282,53 +561,66 @@ public class RagUploadedFileParser {
         return values;
     }
 
-    private Map<String, byte[]> unzip(byte[] bytes) throws IOException {
-        Map<String, byte[]> entries = new HashMap<>();
-        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes))) {
-            ZipEntry entry;
-            while ((entry = zip.getNextEntry()) != null) {
-                if (entry.isDirectory()) {
-                    continue;
-                }
-                ByteArrayOutputStream output = new ByteArrayOutputStream();
-                zip.transferTo(output);
-                entries.put(entry.getName(), output.toByteArray());
-            }
+    private ParsedRagFile withTempFile(MultipartFile file, String extension, TempFileParser parser) throws IOException {
+        Path temporary = Files.createTempFile("rag-upload-", "." + extension);
+        try {
+            // multipart 已落盘时 transferTo 只做文件复制或移动，不经过堆
+            file.transferTo(temporary);
+            return parser.parse(temporary);
+        } finally {
+            Files.deleteIfExists(temporary);
         }
-        return entries;
     }
 
-    private Document parseXml(String xml) {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            return builder.parse(new InputSource(new StringReader(xml)));
-        } catch (Exception error) {
-            throw new IllegalArgumentException("uploaded Office XML cannot be parsed", error);
-        }
+    private static XMLInputFactory xmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
     }
 
-    private String textOf(Node node) {
-        NodeList children = node.getChildNodes();
-        StringBuilder text = new StringBuilder();
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if ("t".equals(child.getLocalName()) || "#text".equals(child.getNodeName())) {
-                text.append(child.getTextContent());
-            } else {
-                text.append(textOf(child));
+    private static XMLStreamReader xmlReader(InputStream input) throws XMLStreamException {
+        return XML_INPUT_FACTORY.createXMLStreamReader(input);
+    }
+
+    /**
+     * Appends the current text event to {@code target}, dropping leading blanks of an empty buffer and
+     * everything past {@code cap} characters.
+     *
+     * @return whether non-blank characters were dropped
+     */
+    private static boolean appendCapped(StringBuilder target, XMLStreamReader reader, int cap) {
+        char[] chars = reader.getTextCharacters();
+        int start = reader.getTextStart();
+        int end = start + reader.getTextLength();
+        if (target.isEmpty()) {
+            // 与 trim() 一致：前导空白不占截断空间
+            while (start < end && chars[start] <= ' ') {
+                start++;
             }
         }
-        return text.toString();
+        int take = Math.min(end - start, Math.max(0, cap - target.length()));
+        target.append(chars, start, take);
+        for (int i = start + take; i < end; i++) {
+            if (chars[i] > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isText(int event) {
+        return event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA;
     }
 
-    private String firstChildText(Element element, String localName) {
-        NodeList nodes = element.getElementsByTagNameNS("*", localName);
-        return nodes.getLength() == 0 ? "" : nodes.item(0).getTextContent().trim();
+    private static void closeQuietly(XMLStreamReader reader) {
+        try {
+            reader.close();
+        } catch (XMLStreamException ignored) {
+            // 底层流由调用方关闭
+        }
     }
 
     private int columnIndex(String reference) {
@@ -358,6 +650,13 @@ public class RagUploadedFileParser {
                 .trim();
     }
 
+    private static void skipUtf8Bom(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+    }
+
     private String stripUtf8Bom(String value) {
         return value.startsWith("\uFEFF") ? value.substring(1) : value;
     }
@@ -377,6 +676,140 @@ public class RagUploadedFileParser {
         return dot < 0 ? fileName : fileName.substring(0, dot);
     }
 
+    @FunctionalInterface
+    private interface TempFileParser {
+        ParsedRagFile parse(Path path) throws IOException;
+    }
+
+    private record SheetRows(List<List<String>> rows, int total, List<SharedCell> sharedCells, boolean clipped) {
+
+        /**
+         * Fills in shared-string cells; rows that turn out blank are dropped from the rows and the total.
+         */
+        SheetRows resolve(Map<Integer, String> sharedStrings) {
+            for (SharedCell cell : sharedCells) {
+                rows.get(cell.row()).set(cell.column(), sharedStrings.getOrDefault(cell.index(), ""));
+            }
+            List<List<String>> kept = rows.stream().filter(row -> !isBlank(row)).toList();
+            return new SheetRows(kept, total - (rows.size() - kept.size()), List.of(), clipped);
+        }
+
+        int textLength() {
+            return rows.stream().flatMap(List::stream).mapToInt(String::length).sum();
+        }
+    }
+
+    private record SharedCell(int row, int column, int index) {
+    }
+
+    /**
+     * Text buffer that stops growing at a fixed number of characters.
+     */
+    private static final class BoundedText {
+        private final StringBuilder text = new StringBuilder();
+        private final int limit;
+        private boolean truncated;
+
+        BoundedText(int limit) {
+            this.limit = Math.max(0, limit);
+        }
+
+        BoundedText append(String value) {
+            if (truncated) {
+                return this;
+            }
+            int room = limit - text.length();
+            if (value.length() > room) {
+                text.append(value, 0, room);
+                truncated = true;
+            } else {
+                text.append(value);
+            }
+            return this;
+        }
+
+        /**
+         * @return {@code false} once the limit is reached
+         */
+        boolean append(char[] buffer, int length) {
+            if (!truncated) {
+                int room = limit - text.length();
+                text.append(buffer, 0, Math.min(length, room));
+                truncated = length > room;
+            }
+            return !truncated;
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        int room() {
+            return truncated ? 0 : limit - text.length();
+        }
+
+        // 输入在读取时已被截断，正文虽未写满也不完整
+        void markTruncated() {
+            truncated = true;
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    /**
+     * Line reader that keeps at most {@code cap} characters of each line and skips the rest, so a line
+     * without newlines is never buffered in full. Line terminators match {@link BufferedReader#readLine()}.
+     */
+    private static final class BoundedLineReader {
+        private final BufferedReader reader;
+        private final StringBuilder line = new StringBuilder();
+        private boolean blank;
+        private boolean clipped;
+
+        BoundedLineReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        String readLine(int cap) throws IOException {
+            line.setLength(0);
+            blank = true;
+            clipped = false;
+            int current = reader.read();
+            if (current == -1) {
+                return null;
+            }
+            while (current != -1 && current != '\n' && current != '\r') {
+                boolean whitespace = Character.isWhitespace(current);
+                blank &= whitespace;
+                if (line.length() < cap) {
+                    line.append((char) current);
+                } else if (!whitespace) {
+                    clipped = true;
+                }
+                current = reader.read();
+            }
+            if (current == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') {
+                    reader.reset();
+                }
+            }
+            return line.toString();
+        }
+
+        // 按整行（含被丢弃部分）判断是否为空行
+        boolean isBlank() {
+            return blank;
+        }
+
+        boolean isClipped() {
+            return clipped;
+        }
+    }
+
     public record ParsedRagFile(
             String fileName,
             String contentType,
@@ -385,7 +818,8 @@ public class RagUploadedFileParser {
             String content,
             String parser,
             int rowCount,
-            int sheetCount
+            int sheetCount,
+            boolean truncated
     ) {
     }
 }
@@ -1,9 +1,32 @@
 package com.tutict.finalassignmentbackend.rag.mapper;
 
-import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tutict.finalassignmentbackend.config.mybatis.BatchInsertMapper;
 import com.tutict.finalassignmentbackend.rag.entity.RagChunk;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
-public interface RagChunkMapper extends BaseMapper<RagChunk> {
+public interface RagChunkMapper extends BatchInsertMapper<RagChunk> {
+
+    @Select("""
+            <script>
+            SELECT * FROM rag_chunk WHERE document_id IN
+            <foreach collection="documentIds" item="documentId" open="(" separator="," close=")">#{documentId}</foreach>
+            </script>
+            """)
+    List<RagChunk> selectByDocumentIds(@Param("documentIds") Collection<String> documentIds);
+
+    @Update("""
+            <script>
+            UPDATE rag_chunk SET status = 'PENDING_EMBEDDING', updated_at = #{now} WHERE id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int markPendingEmbedding(@Param("ids") Collection<String> ids, @Param("now") LocalDateTime now);
 }
@@ -3,7 +3,18 @@ package com.tutict.finalassignmentbackend.rag.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.tutict.finalassignmentbackend.rag.entity.RagDocument;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 @Mapper
 public interface RagDocumentMapper extends BaseMapper<RagDocument> {
+
+    @Select("""
+            SELECT * FROM rag_document
+            WHERE source_table = #{sourceTable} AND source_id = #{sourceId}
+            ORDER BY updated_at DESC
+            """)
+    List<RagDocument> selectBySource(@Param("sourceTable") String sourceTable, @Param("sourceId") String sourceId);
 }
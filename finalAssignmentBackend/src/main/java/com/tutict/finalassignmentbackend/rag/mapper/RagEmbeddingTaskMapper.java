@@ -1,9 +1,40 @@
 package com.tutict.finalassignmentbackend.rag.mapper;
 
-import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tutict.finalassignmentbackend.config.mybatis.BatchInsertMapper;
 import com.tutict.finalassignmentbackend.rag.entity.RagEmbeddingTask;
+import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 
 @Mapper
-public interface RagEmbeddingTaskMapper extends BaseMapper<RagEmbeddingTask> {
+public interface RagEmbeddingTaskMapper extends BatchInsertMapper<RagEmbeddingTask> {
+
+    @Delete("""
+            <script>
+            DELETE FROM rag_embedding_task WHERE chunk_id IN
+            <foreach collection="chunkIds" item="chunkId" open="(" separator="," close=")">#{chunkId}</foreach>
+            </script>
+            """)
+    int deleteByChunkIds(@Param("chunkIds") Collection<String> chunkIds);
+
+    /**
+     * Moves the tasks back to PENDING. A RUNNING task is left to its current lease holder but flagged
+     * with {@code rerun_requested}, so the holder puts it back to PENDING when it releases the lease.
+     */
+    @Update("""
+            <script>
+            UPDATE rag_embedding_task
+            SET rerun_requested = CASE WHEN status = 'RUNNING' THEN 1 ELSE 0 END,
+                status = CASE WHEN status = 'RUNNING' THEN status ELSE 'PENDING' END,
+                next_retry_at = NULL,
+                updated_at = #{now}
+            WHERE id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int requeue(@Param("ids") Collection<String> ids, @Param("now") LocalDateTime now);
 }
@@ -4,60 +4,124 @@ import com.tutict.finalassignmentbackend.rag.chunk.ChineseTextChunker;
 import com.tutict.finalassignmentbackend.rag.chunk.Chunker;
 import com.tutict.finalassignmentbackend.rag.config.RagProperties;
 import com.tutict.finalassignmentbackend.rag.dto.RagSourceDocument;
+import com.tutict.finalassignmentbackend.rag.embedding.RagChunkVectorIndexService;
 import com.tutict.finalassignmentbackend.rag.entity.RagChunk;
 import com.tutict.finalassignmentbackend.rag.entity.RagDocument;
 import com.tutict.finalassignmentbackend.rag.entity.RagEmbeddingTask;
 import com.tutict.finalassignmentbackend.rag.mapper.RagChunkMapper;
 import com.tutict.finalassignmentbackend.rag.mapper.RagDocumentMapper;
 import com.tutict.finalassignmentbackend.rag.mapper.RagEmbeddingTaskMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @Service
 @ConditionalOnProperty(prefix = "rag", name = "enabled", havingValue = "true")
 public class RagIndexingService {
 
+    private static final Logger log = Logger.getLogger(RagIndexingService.class.getName());
+
     private final RagDocumentService documentService;
     private final RagChunkService chunkService;
     private final RagEmbeddingTaskService embeddingTaskService;
     private final Chunker chunker;
+    private final ObjectProvider<RagChunkVectorIndexService> vectorIndexProvider;
 
     public RagIndexingService(
             RagDocumentService documentService,
             RagChunkService chunkService,
             RagEmbeddingTaskService embeddingTaskService,
             Chunker chunker
+    ) {
+        this(documentService, chunkService, embeddingTaskService, chunker, null);
+    }
+
+    @Autowired
+    public RagIndexingService(
+            RagDocumentService documentService,
+            RagChunkService chunkService,
+            RagEmbeddingTaskService embeddingTaskService,
+            Chunker chunker,
+            ObjectProvider<RagChunkVectorIndexService> vectorIndexProvider
     ) {
         this.documentService = documentService;
         this.chunkService = chunkService;
         this.embeddingTaskService = embeddingTaskService;
         this.chunker = chunker;
+        this.vectorIndexProvider = vectorIndexProvider;
     }
 
+    /**
+     * Re-indexes a source by diffing its chunks against what is stored. Unchanged chunks keep their
+     * rows, tasks and vectors; new or changed chunks are inserted with one multi-row statement each for
+     * chunks and tasks; chunks no longer produced, including those of superseded versions, are
+     * deleted from MySQL and, after commit, from the vector index.
+     */
     @Transactional
     public RagIndexingResult index(RagSourceDocument sourceDocument) {
-        RagDocument document = documentService.upsert(sourceDocument);
-        List<RagChunk> chunks = new ArrayList<>();
-        List<RagEmbeddingTask> tasks = new ArrayList<>();
-        for (Chunker.Chunk chunk : chunker.chunk(sourceDocument)) {
-            RagChunk ragChunk = chunkService.upsert(document, chunk);
-            chunks.add(ragChunk);
-            tasks.add(embeddingTaskService.ensurePendingTask(ragChunk));
+        RagDocumentService.UpsertedDocument upserted = documentService.upsert(sourceDocument);
+        RagDocument document = upserted.document();
+        List<String> storedDocumentIds = new ArrayList<>(upserted.supersededIds());
+        storedDocumentIds.add(document.getId());
+        RagChunkService.ChunkDiff diff = chunkService.diff(
+                document,
+                chunker.chunk(sourceDocument),
+                chunkService.stored(storedDocumentIds)
+        );
+
+        chunkService.delete(diff.orphanIds(), embeddingTaskService);
+        documentService.deleteSuperseded(upserted.supersededIds());
+        chunkService.insert(diff.inserted());
+        if (upserted.indexFieldsChanged()) {
+            // 标题、ACL 或元数据变化：向量不变但索引里的冗余字段需要重写
+            chunkService.markPendingEmbedding(diff.unchanged());
+        }
+        List<RagEmbeddingTask> tasks = embeddingTaskService.syncTasks(diff, upserted.indexFieldsChanged());
+        removeVectorsAfterCommit(diff.orphanIds());
+        return new RagIndexingResult(document, diff.chunks(), tasks);
+    }
+
+    private void removeVectorsAfterCommit(List<String> orphanIds) {
+        RagChunkVectorIndexService vectorIndex = vectorIndexProvider == null ? null : vectorIndexProvider.getIfAvailable();
+        if (orphanIds.isEmpty() || vectorIndex == null) {
+            return;
+        }
+        Runnable delete = () -> {
+            try {
+                vectorIndex.deleteAll(orphanIds);
+            } catch (RuntimeException error) {
+                log.log(Level.WARNING, "Failed to delete " + orphanIds.size() + " orphaned RAG chunk vectors", error);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            delete.run();
+            return;
         }
-        documentService.markIndexed(document);
-        return new RagIndexingResult(document, List.copyOf(chunks), List.copyOf(tasks));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                delete.run();
+            }
+        });
     }
 
     public record RagIndexingResult(
@@ -80,20 +144,29 @@ class RagDocumentService {
         this.mapper = mapper;
     }
 
-    RagDocument upsert(RagSourceDocument source) {
-        String id = RagHashSupport.stableId(
-                "doc",
-                source.sourceTable(),
-                source.sourceId(),
-                source.sourceVersion()
-        );
+    /**
+     * Writes the document row for {@code source}. A new version reuses the row of the latest stored
+     * version, so chunk ids (derived from the document id) stay stable across versions and unchanged
+     * chunks can be kept; other stored versions are reported as superseded.
+     */
+    UpsertedDocument upsert(RagSourceDocument source) {
+        List<RagDocument> stored = mapper.selectBySource(source.sourceTable(), source.sourceId());
+        RagDocument document = stored.stream()
+                .filter(candidate -> Objects.equals(candidate.getSourceVersion(), source.sourceVersion()))
+                .findFirst()
+                .orElse(stored.isEmpty() ? null : stored.getFirst());
         String contentHash = ChineseTextChunker.normalizedContentSha256Of(source.content());
         LocalDateTime now = LocalDateTime.now();
-        RagDocument document = mapper.selectById(id);
         boolean insert = document == null;
+        String previousFields = insert ? null : indexFields(document);
         if (insert) {
             document = new RagDocument();
-            document.setId(id);
+            document.setId(RagHashSupport.stableId(
+                    "doc",
+                    source.sourceTable(),
+                    source.sourceId(),
+                    source.sourceVersion()
+            ));
             document.setCreatedAt(now);
         }
         document.setSourceType(source.sourceType());
@@ -107,24 +180,46 @@ class RagDocumentService {
         document.setRoute(source.route());
         document.setMetadataJson(source.metadataJson());
         document.setUpdatedAt(now);
+        document.setIndexedAt(now);
         if (insert) {
             mapper.insert(document);
         } else {
             mapper.updateById(document);
         }
-        return document;
+        String keptId = document.getId();
+        List<String> superseded = stored.stream()
+                .map(RagDocument::getId)
+                .filter(id -> !id.equals(keptId))
+                .toList();
+        return new UpsertedDocument(document, !insert && !previousFields.equals(indexFields(document)), superseded);
+    }
+
+    void deleteSuperseded(List<String> documentIds) {
+        if (!documentIds.isEmpty()) {
+            mapper.deleteBatchIds(documentIds);
+        }
     }
 
-    void markIndexed(RagDocument document) {
-        document.setIndexedAt(LocalDateTime.now());
-        document.setUpdatedAt(document.getIndexedAt());
-        mapper.updateById(document);
+    /**
+     * Document fields copied into every chunk's index entry; the source version is excluded so a
+     * version bump alone does not rewrite unchanged chunks.
+     */
+    private static String indexFields(RagDocument document) {
+        return String.join("\u001F",
+                String.valueOf(document.getTitle()),
+                String.valueOf(document.getSourceType()),
+                String.valueOf(document.getAclScope()),
+                String.valueOf(document.getRoute()),
+                String.valueOf(document.getMetadataJson()));
     }
 
     private static String normalizeAclScope(String aclScope) {
         String normalized = aclScope == null ? "PUBLIC" : aclScope.toUpperCase(Locale.ROOT);
         return ACL_SCOPES.contains(normalized) ? normalized : "PUBLIC";
     }
+
+    record UpsertedDocument(RagDocument document, boolean indexFieldsChanged, List<String> supersededIds) {
+    }
 }
 
 @Service
@@ -137,36 +232,89 @@ class RagChunkService {
         this.mapper = mapper;
     }
 
-    RagChunk upsert(RagDocument document, Chunker.Chunk chunk) {
-        String id = RagHashSupport.stableId(
-                "chk",
-                document.getId(),
-                String.valueOf(chunk.chunkNo()),
-                chunk.contentHash()
-        );
+    Map<String, RagChunk> stored(List<String> documentIds) {
+        Map<String, RagChunk> stored = new HashMap<>();
+        for (RagChunk chunk : mapper.selectByDocumentIds(documentIds)) {
+            stored.put(chunk.getId(), chunk);
+        }
+        return stored;
+    }
+
+    /**
+     * Chunk ids hash the document id, chunk number and content hash, so an id match means the chunk
+     * is unchanged.
+     */
+    ChunkDiff diff(RagDocument document, List<Chunker.Chunk> produced, Map<String, RagChunk> stored) {
         LocalDateTime now = LocalDateTime.now();
-        RagChunk ragChunk = mapper.selectById(id);
-        boolean insert = ragChunk == null;
-        if (insert) {
-            ragChunk = new RagChunk();
+        Map<String, RagChunk> remaining = new HashMap<>(stored);
+        List<RagChunk> chunks = new ArrayList<>(produced.size());
+        List<RagChunk> inserted = new ArrayList<>();
+        List<RagChunk> unchanged = new ArrayList<>();
+        for (Chunker.Chunk chunk : produced) {
+            String id = RagHashSupport.stableId(
+                    "chk",
+                    document.getId(),
+                    String.valueOf(chunk.chunkNo()),
+                    chunk.contentHash()
+            );
+            RagChunk existing = remaining.remove(id);
+            if (existing != null) {
+                unchanged.add(existing);
+                chunks.add(existing);
+                continue;
+            }
+            RagChunk ragChunk = new RagChunk();
             ragChunk.setId(id);
             ragChunk.setCreatedAt(now);
+            ragChunk.setDocumentId(document.getId());
+            ragChunk.setChunkNo(chunk.chunkNo());
+            ragChunk.setContent(chunk.content());
+            ragChunk.setContentHash(chunk.contentHash());
+            ragChunk.setTokenCount(chunk.tokenCount());
+            ragChunk.setCharCount(chunk.charCount());
+            ragChunk.setSourceField(chunk.sourceField());
+            ragChunk.setStatus("PENDING_EMBEDDING");
+            ragChunk.setUpdatedAt(now);
+            inserted.add(ragChunk);
+            chunks.add(ragChunk);
         }
-        ragChunk.setDocumentId(document.getId());
-        ragChunk.setChunkNo(chunk.chunkNo());
-        ragChunk.setContent(chunk.content());
-        ragChunk.setContentHash(chunk.contentHash());
-        ragChunk.setTokenCount(chunk.tokenCount());
-        ragChunk.setCharCount(chunk.charCount());
-        ragChunk.setSourceField(chunk.sourceField());
-        ragChunk.setStatus("PENDING_EMBEDDING");
-        ragChunk.setUpdatedAt(now);
-        if (insert) {
-            mapper.insert(ragChunk);
-        } else {
-            mapper.updateById(ragChunk);
+        return new ChunkDiff(List.copyOf(chunks), List.copyOf(inserted), List.copyOf(unchanged),
+                List.copyOf(remaining.keySet()));
+    }
+
+    void insert(List<RagChunk> chunks) {
+        if (!chunks.isEmpty()) {
+            mapper.insertBatch(chunks);
+        }
+    }
+
+    void markPendingEmbedding(List<RagChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        mapper.markPendingEmbedding(chunks.stream().map(RagChunk::getId).toList(), now);
+        chunks.forEach(chunk -> {
+            chunk.setStatus("PENDING_EMBEDDING");
+            chunk.setUpdatedAt(now);
+        });
+    }
+
+    void delete(List<String> chunkIds, RagEmbeddingTaskService taskService) {
+        if (chunkIds.isEmpty()) {
+            return;
         }
-        return ragChunk;
+        // 先删任务再删分块，满足外键约束
+        taskService.deleteByChunkIds(chunkIds);
+        mapper.deleteBatchIds(chunkIds);
+    }
+
+    record ChunkDiff(
+            List<RagChunk> chunks,
+            List<RagChunk> inserted,
+            List<RagChunk> unchanged,
+            List<String> orphanIds
+    ) {
     }
 }
 
@@ -193,39 +341,79 @@ class RagEmbeddingTaskService {
         this(mapper, new RagProperties());
     }
 
-    RagEmbeddingTask ensurePendingTask(RagChunk chunk) {
+    /**
+     * Ensures every chunk of the diff has a task for the configured provider and model. Missing tasks
+     * are inserted in one statement. Unfinished tasks of unchanged chunks are requeued, and so are
+     * finished ones when {@code refreshUnchanged} is set; a RUNNING task is then flagged to run again
+     * once its current lease is released, since that run read the old document fields.
+     */
+    List<RagEmbeddingTask> syncTasks(RagChunkService.ChunkDiff diff, boolean refreshUnchanged) {
         String provider = normalize(properties.getEmbedding().getProvider(), "unassigned");
         String model = normalize(properties.getEmbedding().getModel(), "unassigned");
-        String taskKey = RagHashSupport.stableId(
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, RagEmbeddingTask> existing = new HashMap<>();
+        if (!diff.unchanged().isEmpty()) {
+            List<String> keys = diff.unchanged().stream()
+                    .map(chunk -> taskKey(chunk, provider, model))
+                    .toList();
+            mapper.selectBatchIds(keys).forEach(task -> existing.put(task.getId(), task));
+        }
+
+        List<RagEmbeddingTask> tasks = new ArrayList<>(diff.chunks().size());
+        List<RagEmbeddingTask> created = new ArrayList<>();
+        List<RagEmbeddingTask> requeued = new ArrayList<>();
+        for (RagChunk chunk : diff.chunks()) {
+            String taskKey = taskKey(chunk, provider, model);
+            RagEmbeddingTask task = existing.get(taskKey);
+            if (task == null) {
+                task = new RagEmbeddingTask();
+                task.setId(taskKey);
+                task.setChunkId(chunk.getId());
+                task.setTaskKey(taskKey);
+                task.setProvider(provider);
+                task.setModel(model);
+                task.setStatus(STATUS_PENDING);
+                task.setAttemptCount(0);
+                task.setCreatedAt(now);
+                task.setUpdatedAt(now);
+                created.add(task);
+            } else if (refreshUnchanged
+                    || !STATUS_RUNNING.equals(task.getStatus()) && !STATUS_SUCCEEDED.equals(task.getStatus())) {
+                requeued.add(task);
+            }
+            tasks.add(task);
+        }
+        if (!created.isEmpty()) {
+            mapper.insertBatch(created);
+        }
+        if (!requeued.isEmpty()) {
+            mapper.requeue(requeued.stream().map(RagEmbeddingTask::getId).toList(), now);
+            requeued.forEach(task -> {
+                // 与 requeue 的 SQL 一致：RUNNING 任务保持状态，只记下释放租约后需要重跑
+                if (STATUS_RUNNING.equals(task.getStatus())) {
+                    task.setRerunRequested(true);
+                } else {
+                    task.setStatus(STATUS_PENDING);
+                    task.setRerunRequested(false);
+                }
+                task.setNextRetryAt(null);
+                task.setUpdatedAt(now);
+            });
+        }
+        return List.copyOf(tasks);
+    }
+
+    void deleteByChunkIds(List<String> chunkIds) {
+        mapper.deleteByChunkIds(chunkIds);
+    }
+
+    private static String taskKey(RagChunk chunk, String provider, String model) {
+        return RagHashSupport.stableId(
                 "emb",
                 chunk.getId(),
                 provider,
                 model
         );
-        LocalDateTime now = LocalDateTime.now();
-        RagEmbeddingTask task = mapper.selectById(taskKey);
-        if (task != null) {
-            if (!STATUS_SUCCEEDED.equals(task.getStatus())) {
-                task.setStatus(STATUS_PENDING);
-                task.setNextRetryAt(null);
-            }
-            task.setUpdatedAt(now);
-            mapper.updateById(task);
-            return task;
-        }
-
-        task = new RagEmbeddingTask();
-        task.setId(taskKey);
-        task.setChunkId(chunk.getId());
-        task.setTaskKey(taskKey);
-        task.setProvider(provider);
-        task.setModel(model);
-        task.setStatus(STATUS_PENDING);
-        task.setAttemptCount(0);
-        task.setCreatedAt(now);
-        task.setUpdatedAt(now);
-        mapper.insert(task);
-        return task;
     }
 
     private static String normalize(String value, String fallback) {
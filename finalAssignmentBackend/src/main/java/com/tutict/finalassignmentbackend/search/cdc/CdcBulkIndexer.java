@@ -0,0 +1,76 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonData;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes one table's collapsed changes as a single {@code _bulk} request.
+ * Documents go through the Spring Data converter, so field names and date formats match
+ * what the repositories write.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.cdc.elasticsearch", name = "enabled", havingValue = "true")
+public class CdcBulkIndexer {
+
+    private final ElasticsearchClient client;
+    private final ElasticsearchOperations operations;
+    private final Map<Class<?>, String> indexNames = new ConcurrentHashMap<>();
+
+    public CdcBulkIndexer(ElasticsearchClient client, ElasticsearchOperations operations) {
+        this.client = client;
+        this.operations = operations;
+    }
+
+    /**
+     * @return failed items by document id; empty when every item succeeded
+     */
+    public Map<String, ItemFailure> bulk(Class<?> documentClass, List<CdcChange> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return Map.of();
+        }
+        String indexName = indexNames.computeIfAbsent(documentClass,
+                type -> operations.getIndexCoordinatesFor(type).getIndexName());
+        BulkRequest.Builder request = new BulkRequest.Builder();
+        for (CdcChange change : changes) {
+            if (change.isDelete()) {
+                request.operations(op -> op.delete(delete -> delete.index(indexName).id(change.id())));
+            } else {
+                String json = operations.getElasticsearchConverter().mapObject(change.document()).toJson();
+                request.operations(op -> op.index(index -> index.index(indexName)
+                        .id(change.id())
+                        .document(JsonData.fromJson(json))));
+            }
+        }
+        BulkResponse response = client.bulk(request.build());
+        if (!response.errors()) {
+            return Map.of();
+        }
+        Map<String, ItemFailure> failures = new LinkedHashMap<>();
+        for (BulkResponseItem item : response.items()) {
+            if (item.error() != null) {
+                failures.put(item.id(), new ItemFailure(item.error().reason(), isRetryable(item.status())));
+            }
+        }
+        return failures;
+    }
+
+    private static boolean isRetryable(int status) {
+        // 429 和 5xx 属于集群压力或瞬时故障；其余 4xx 是文档本身的问题，重试无意义
+        return status == 429 || status >= 500;
+    }
+
+    public record ItemFailure(String reason, boolean retryable) {
+    }
+}
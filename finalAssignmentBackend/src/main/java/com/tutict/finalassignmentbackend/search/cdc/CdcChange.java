@@ -0,0 +1,20 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * One decoded binlog change. {@code document} is null for deletes, including soft deletes.
+ */
+public record CdcChange(String table,
+                        String id,
+                        Object document,
+                        ConsumerRecord<String, String> source) {
+
+    public boolean isDelete() {
+        return document == null;
+    }
+
+    String key() {
+        return table + ":" + id;
+    }
+}
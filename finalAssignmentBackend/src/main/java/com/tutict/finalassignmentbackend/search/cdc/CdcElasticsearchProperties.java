@@ -0,0 +1,66 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@Component
+@ConfigurationProperties(prefix = "app.cdc.elasticsearch")
+public class CdcElasticsearchProperties {
+
+    private boolean enabled = false;
+    // 每次 poll 的最大记录数，也是一次 _bulk 的上限
+    private int maxPollRecords = 500;
+    // 批内失败条目的重试次数，耗尽后写入 <topic>.DLT
+    private int maxItemAttempts = 3;
+    private Duration retryBackoff = Duration.ofMillis(500);
+    // 由 CDC 负责索引的表；为空表示 repository 包下所有可映射的表，这些表的服务不再同步写 ES
+    private Set<String> tables = new LinkedHashSet<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxPollRecords() {
+        return maxPollRecords;
+    }
+
+    public void setMaxPollRecords(int maxPollRecords) {
+        this.maxPollRecords = Math.max(1, maxPollRecords);
+    }
+
+    public int getMaxItemAttempts() {
+        return maxItemAttempts;
+    }
+
+    public void setMaxItemAttempts(int maxItemAttempts) {
+        this.maxItemAttempts = Math.max(1, maxItemAttempts);
+    }
+
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff == null ? Duration.ZERO : retryBackoff;
+    }
+
+    public Set<String> getTables() {
+        return tables;
+    }
+
+    public void setTables(Set<String> tables) {
+        this.tables = tables == null ? new LinkedHashSet<>() : tables;
+    }
+
+    public boolean includes(String table) {
+        return enabled && (tables.isEmpty() || tables.contains(table));
+    }
+}
@@ -0,0 +1,36 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells services whether the binlog indexer owns a document's index. Covered tables skip the
+ * after-commit {@code save()/deleteById()} dual-write; read repair and full rebuilds stay.
+ */
+@Component
+public class CdcIndexCoverage {
+
+    private final CdcElasticsearchProperties properties;
+    private final ObjectProvider<CdcTableMappings> mappings;
+
+    public CdcIndexCoverage(CdcElasticsearchProperties properties, ObjectProvider<CdcTableMappings> mappings) {
+        this.properties = properties;
+        this.mappings = mappings;
+    }
+
+    /**
+     * Coverage for callers built outside the container: never covered, so dual-writes stay on.
+     */
+    public static CdcIndexCoverage disabled() {
+        return new CdcIndexCoverage(new CdcElasticsearchProperties(), null);
+    }
+
+    public boolean covers(Class<?> documentClass) {
+        if (!properties.isEnabled() || mappings == null) {
+            return false;
+        }
+        CdcTableMappings available = mappings.getIfAvailable();
+        CdcTableMapping mapping = available == null ? null : available.forDocument(documentClass);
+        return mapping != null && properties.includes(mapping.table());
+    }
+}
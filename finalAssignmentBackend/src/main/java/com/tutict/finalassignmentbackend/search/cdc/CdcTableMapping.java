@@ -0,0 +1,219 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Row decoder for one table, compiled once from MyBatis-Plus {@link TableInfo}: every mapped column
+ * gets a typed converter and a {@link LambdaMetafactory}-generated setter, and the document comes
+ * from the existing {@code *Document.fromEntity}. Rows soft-deleted through {@code @TableLogic}
+ * decode to {@code null}, i.e. a delete.
+ */
+public final class CdcTableMapping {
+
+    private final String table;
+    private final Class<?> entityClass;
+    private final Class<?> documentClass;
+    private final Supplier<Object> entityFactory;
+    private final Function<Object, Object> documentFactory;
+    private final ColumnWriter key;
+    private final ColumnWriter[] columns;
+    private final String logicDeleteColumn;
+    private final String logicNotDeleteValue;
+
+    private CdcTableMapping(String table,
+                            Class<?> entityClass,
+                            Class<?> documentClass,
+                            Supplier<Object> entityFactory,
+                            Function<Object, Object> documentFactory,
+                            ColumnWriter key,
+                            ColumnWriter[] columns,
+                            String logicDeleteColumn,
+                            String logicNotDeleteValue) {
+        this.table = table;
+        this.entityClass = entityClass;
+        this.documentClass = documentClass;
+        this.entityFactory = entityFactory;
+        this.documentFactory = documentFactory;
+        this.key = key;
+        this.columns = columns;
+        this.logicDeleteColumn = logicDeleteColumn;
+        this.logicNotDeleteValue = logicNotDeleteValue;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public Class<?> entityClass() {
+        return entityClass;
+    }
+
+    public Class<?> documentClass() {
+        return documentClass;
+    }
+
+    public String keyColumn() {
+        return key.column();
+    }
+
+    /**
+     * @return the document id, or null when the row carries no primary key
+     */
+    public String id(JsonNode row) {
+        JsonNode value = row == null ? null : row.get(key.column());
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        return String.valueOf(key.converter().apply(value));
+    }
+
+    /**
+     * @return the document for the row, or null when the row is logically deleted
+     */
+    public Object toDocument(JsonNode row) {
+        if (isLogicallyDeleted(row)) {
+            return null;
+        }
+        Object entity = entityFactory.get();
+        key.write(entity, row);
+        for (ColumnWriter column : columns) {
+            column.write(entity, row);
+        }
+        return documentFactory.apply(entity);
+    }
+
+    private boolean isLogicallyDeleted(JsonNode row) {
+        if (logicDeleteColumn == null) {
+            return false;
+        }
+        JsonNode value = row.get(logicDeleteColumn);
+        boolean present = value != null && !value.isNull();
+        // @TableLogic(value = "null") 表示未删除时该列为 NULL，例如 deleted_at
+        if (logicNotDeleteValue == null || "null".equalsIgnoreCase(logicNotDeleteValue)) {
+            return present;
+        }
+        return present && !logicNotDeleteValue.equals(value.asText());
+    }
+
+    /**
+     * Compiles the decoder for {@code documentClass}; its static {@code fromEntity} parameter must be
+     * the entity described by {@code tableInfo}.
+     */
+    static CdcTableMapping compile(Class<?> documentClass, Method fromEntity, TableInfo tableInfo,
+                                   ObjectMapper objectMapper) throws ReflectiveOperationException {
+        Class<?> entityClass = tableInfo.getEntityType();
+        if (!StringUtils.hasText(tableInfo.getKeyColumn())) {
+            throw new IllegalArgumentException("Entity " + entityClass.getName() + " has no @TableId");
+        }
+        MethodHandles.Lookup entityLookup = MethodHandles.privateLookupIn(entityClass, MethodHandles.lookup());
+        Field keyField = ReflectionUtils.findField(entityClass, tableInfo.getKeyProperty());
+        if (keyField == null) {
+            throw new NoSuchFieldException(entityClass.getName() + "." + tableInfo.getKeyProperty());
+        }
+        ColumnWriter key = new ColumnWriter(unquote(tableInfo.getKeyColumn()),
+                CdcValueConverters.forType(keyField.getType(), objectMapper),
+                setter(entityLookup, entityClass, keyField));
+        List<ColumnWriter> columns = new ArrayList<>();
+        for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+            Field field = fieldInfo.getField();
+            columns.add(new ColumnWriter(unquote(fieldInfo.getColumn()),
+                    CdcValueConverters.forType(field.getType(), objectMapper),
+                    setter(entityLookup, entityClass, field)));
+        }
+        TableFieldInfo logicDelete = tableInfo.isWithLogicDelete() ? tableInfo.getLogicDeleteFieldInfo() : null;
+        return new CdcTableMapping(
+                unquote(tableInfo.getTableName()),
+                entityClass,
+                documentClass,
+                entityFactory(entityLookup, entityClass),
+                documentFactory(documentClass, fromEntity),
+                key,
+                columns.toArray(ColumnWriter[]::new),
+                logicDelete == null ? null : unquote(logicDelete.getColumn()),
+                logicDelete == null ? null : logicDelete.getLogicNotDeleteValue()
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> entityFactory(MethodHandles.Lookup lookup, Class<?> entityClass) throws ReflectiveOperationException {
+        MethodHandle constructor = lookup.findConstructor(entityClass, MethodType.methodType(void.class));
+        return (Supplier<Object>) metafactory(lookup, "get", Supplier.class,
+                MethodType.methodType(Object.class), constructor, MethodType.methodType(entityClass));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> documentFactory(Class<?> documentClass, Method fromEntity) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(documentClass, MethodHandles.lookup());
+        return (Function<Object, Object>) metafactory(lookup, "apply", Function.class,
+                MethodType.methodType(Object.class, Object.class), lookup.unreflect(fromEntity),
+                MethodType.methodType(documentClass, fromEntity.getParameterTypes()[0]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Class<?> entityClass, Field field)
+            throws ReflectiveOperationException {
+        Method method = ReflectionUtils.findMethod(entityClass, "set" + StringUtils.capitalize(field.getName()), field.getType());
+        if (method == null) {
+            // 没有 setter 的字段退回到字段句柄，仍然只解析一次
+            MethodHandle handle = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (target, value) -> {
+                try {
+                    handle.invokeExact(target, value);
+                } catch (Throwable error) {
+                    throw new IllegalStateException("Failed to set " + field.getName(), error);
+                }
+            };
+        }
+        return (BiConsumer<Object, Object>) metafactory(lookup, "accept", BiConsumer.class,
+                MethodType.methodType(void.class, Object.class, Object.class), lookup.unreflect(method),
+                MethodType.methodType(void.class, entityClass, ClassUtils.resolvePrimitiveIfNecessary(field.getType())));
+    }
+
+    private static Object metafactory(MethodHandles.Lookup lookup, String name, Class<?> functionalInterface,
+                                      MethodType erasedType, MethodHandle implementation, MethodType instantiatedType)
+            throws ReflectiveOperationException {
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(functionalInterface),
+                    erasedType, implementation, instantiatedType);
+            return site.getTarget().invoke();
+        } catch (ReflectiveOperationException | RuntimeException error) {
+            throw error;
+        } catch (Throwable error) {
+            throw new ReflectiveOperationException("Failed to compile " + implementation, error);
+        }
+    }
+
+    private static String unquote(String identifier) {
+        return identifier == null ? null : identifier.replace("`", "");
+    }
+
+    private record ColumnWriter(String column, Function<JsonNode, Object> converter, BiConsumer<Object, Object> setter) {
+
+        void write(Object entity, JsonNode row) {
+            JsonNode value = row.get(column);
+            if (value != null && !value.isNull()) {
+                setter.accept(entity, converter.apply(value));
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Table → {@link CdcTableMapping} registry. Every {@link ElasticsearchRepository} in the repository
+ * package contributes its document class; the entity comes from the document's static
+ * {@code fromEntity} and the columns from MyBatis-Plus table metadata. Mappings are compiled once,
+ * after all mappers are registered.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.cdc.elasticsearch", name = "enabled", havingValue = "true")
+public class CdcTableMappings implements SmartInitializingSingleton {
+
+    static final String REPOSITORY_PACKAGE = "com.tutict.finalassignmentbackend.repository";
+
+    private static final Logger log = LoggerFactory.getLogger(CdcTableMappings.class);
+
+    private final ObjectMapper objectMapper;
+    private volatile Map<String, CdcTableMapping> byTable = Map.of();
+    private volatile Map<Class<?>, CdcTableMapping> byDocument = Map.of();
+
+    @Autowired
+    public CdcTableMappings(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Builds the registry for the given document classes immediately, without classpath scanning.
+     */
+    static CdcTableMappings of(ObjectMapper objectMapper, Class<?>... documentClasses) {
+        CdcTableMappings mappings = new CdcTableMappings(objectMapper);
+        mappings.register(List.of(documentClasses));
+        return mappings;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        register(scanDocumentClasses());
+        log.info("Compiled CDC mappings for tables {}", byTable.keySet());
+    }
+
+    public CdcTableMapping forTable(String table) {
+        return table == null ? null : byTable.get(table);
+    }
+
+    public CdcTableMapping forDocument(Class<?> documentClass) {
+        return byDocument.get(documentClass);
+    }
+
+    public Set<String> tables() {
+        return byTable.keySet();
+    }
+
+    private void register(List<Class<?>> documentClasses) {
+        Map<String, CdcTableMapping> tables = new LinkedHashMap<>();
+        Map<Class<?>, CdcTableMapping> documents = new LinkedHashMap<>();
+        for (Class<?> documentClass : documentClasses) {
+            CdcTableMapping mapping = compile(documentClass);
+            if (mapping == null) {
+                continue;
+            }
+            CdcTableMapping existing = tables.putIfAbsent(mapping.table(), mapping);
+            if (existing != null) {
+                log.warn("Table {} is already indexed as {}, ignoring {}",
+                        mapping.table(), existing.documentClass().getSimpleName(), documentClass.getSimpleName());
+                continue;
+            }
+            documents.put(documentClass, mapping);
+        }
+        this.byTable = Map.copyOf(tables);
+        this.byDocument = Map.copyOf(documents);
+    }
+
+    private CdcTableMapping compile(Class<?> documentClass) {
+        Method fromEntity = findFromEntity(documentClass);
+        if (fromEntity == null) {
+            log.warn("Document {} has no static fromEntity(entity), skipped for CDC", documentClass.getName());
+            return null;
+        }
+        Class<?> entityClass = fromEntity.getParameterTypes()[0];
+        try {
+            return CdcTableMapping.compile(documentClass, fromEntity, tableInfo(entityClass), objectMapper);
+        } catch (Exception error) {
+            log.warn("Cannot compile CDC mapping for {}: {}", entityClass.getName(), error.getMessage(), error);
+            return null;
+        }
+    }
+
+    private static TableInfo tableInfo(Class<?> entityClass) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        if (tableInfo != null) {
+            return tableInfo;
+        }
+        // 没有注册 Mapper 的实体按默认配置（下划线转驼峰）解析注解
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        assistant.setCurrentNamespace(entityClass.getName());
+        return TableInfoHelper.initTableInfo(assistant, entityClass);
+    }
+
+    private static Method findFromEntity(Class<?> documentClass) {
+        for (Method method : documentClass.getDeclaredMethods()) {
+            if ("fromEntity".equals(method.getName())
+                    && Modifier.isStatic(method.getModifiers())
+                    && method.getParameterCount() == 1
+                    && method.getReturnType() == documentClass) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static List<Class<?>> scanDocumentClasses() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                return beanDefinition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(ElasticsearchRepository.class));
+        List<Class<?>> documentClasses = new ArrayList<>();
+        ClassLoader classLoader = CdcTableMappings.class.getClassLoader();
+        for (BeanDefinition candidate : scanner.findCandidateComponents(REPOSITORY_PACKAGE)) {
+            Class<?> repository = ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader);
+            Class<?> documentClass = ResolvableType.forClass(repository)
+                    .as(ElasticsearchRepository.class)
+                    .resolveGeneric(0);
+            if (documentClass != null && !documentClasses.contains(documentClass)) {
+                documentClasses.add(documentClass);
+            }
+        }
+        return documentClasses;
+    }
+}
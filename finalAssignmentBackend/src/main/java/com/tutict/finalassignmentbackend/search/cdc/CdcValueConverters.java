@@ -0,0 +1,102 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Function;
+
+/**
+ * Converters from Debezium column values to entity property types. Debezium encodes DATE as
+ * epoch days, DATETIME as epoch millis and TIMESTAMP as an ISO string with offset; DECIMAL
+ * columns are expected with {@code decimal.handling.mode=string} (or {@code double}).
+ */
+final class CdcValueConverters {
+
+    private CdcValueConverters() {
+    }
+
+    /**
+     * Picks the converter once per column; unknown property types fall back to Jackson.
+     */
+    static Function<JsonNode, Object> forType(Class<?> type, ObjectMapper objectMapper) {
+        if (type == String.class) {
+            return JsonNode::asText;
+        }
+        if (type == Long.class || type == long.class) {
+            return CdcValueConverters::toLong;
+        }
+        if (type == Integer.class || type == int.class) {
+            return CdcValueConverters::toInteger;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return CdcValueConverters::toBoolean;
+        }
+        if (type == BigDecimal.class) {
+            return CdcValueConverters::toBigDecimal;
+        }
+        if (type == Double.class || type == double.class) {
+            return value -> value.isNumber() ? value.doubleValue() : Double.valueOf(value.asText());
+        }
+        if (type == LocalDate.class) {
+            return CdcValueConverters::toLocalDate;
+        }
+        if (type == LocalDateTime.class) {
+            return CdcValueConverters::toLocalDateTime;
+        }
+        return value -> objectMapper.convertValue(value, type);
+    }
+
+    static Long toLong(JsonNode value) {
+        return value.isNumber() ? value.longValue() : Long.valueOf(value.asText().trim());
+    }
+
+    static Integer toInteger(JsonNode value) {
+        return value.isNumber() ? value.intValue() : Integer.valueOf(value.asText().trim());
+    }
+
+    static Boolean toBoolean(JsonNode value) {
+        // MySQL tinyint(1) 在 binlog 中是 0/1
+        if (value.isBoolean()) {
+            return value.booleanValue();
+        }
+        if (value.isNumber()) {
+            return value.intValue() != 0;
+        }
+        String text = value.asText().trim();
+        return "1".equals(text) || Boolean.parseBoolean(text);
+    }
+
+    static BigDecimal toBigDecimal(JsonNode value) {
+        return value.isNumber() ? value.decimalValue() : new BigDecimal(value.asText().trim());
+    }
+
+    static LocalDate toLocalDate(JsonNode value) {
+        if (value.isNumber()) {
+            return LocalDate.ofEpochDay(value.longValue());
+        }
+        String text = value.asText();
+        return StringUtils.hasText(text) ? LocalDate.parse(text.substring(0, Math.min(text.length(), 10))) : null;
+    }
+
+    static LocalDateTime toLocalDateTime(JsonNode value) {
+        if (value.isNumber()) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(value.longValue()), ZoneOffset.UTC);
+        }
+        String text = value.asText();
+        if (!StringUtils.hasText(text)) {
+            return null;
+        }
+        String iso = text.replace(" ", "T");
+        if (iso.endsWith("Z") || iso.lastIndexOf('+') > 0 || iso.indexOf('-', 11) > 0) {
+            return OffsetDateTime.parse(iso).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        }
+        return LocalDateTime.parse(iso);
+    }
+}
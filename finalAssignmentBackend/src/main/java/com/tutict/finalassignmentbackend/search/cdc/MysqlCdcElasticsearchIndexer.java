@@ -2,29 +2,38 @@ package com.tutict.finalassignmentbackend.search.cdc;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.tutict.finalassignmentbackend.entity.admin.SysUser;
-import com.tutict.finalassignmentbackend.entity.driver.DriverInformation;
-import com.tutict.finalassignmentbackend.entity.driver.VehicleInformation;
-import com.tutict.finalassignmentbackend.entity.elastic.DriverInformationDocument;
-import com.tutict.finalassignmentbackend.entity.elastic.SysUserDocument;
-import com.tutict.finalassignmentbackend.entity.elastic.VehicleInformationDocument;
-import com.tutict.finalassignmentbackend.repository.DriverInformationSearchRepository;
-import com.tutict.finalassignmentbackend.repository.SysUserSearchRepository;
-import com.tutict.finalassignmentbackend.repository.VehicleInformationSearchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch CDC indexer for every table with a {@link CdcTableMapping}: each poll is decoded,
+ * collapsed to the last change per primary key and written with one {@code _bulk} request per
+ * table. Offsets are acknowledged only after every
+ * item is either indexed or dead-lettered to {@code <topic>.DLT}; a failed bulk request throws
+ * so the container redelivers the whole poll. Dead letters are sent only once every bulk request
+ * succeeded, so a redelivered poll never publishes the same record to the DLT twice.
+ */
 @Component
 @ConditionalOnProperty(prefix = "app.cdc.elasticsearch", name = "enabled", havingValue = "true")
 public class MysqlCdcElasticsearchIndexer {
@@ -32,179 +41,182 @@ public class MysqlCdcElasticsearchIndexer {
     private static final Logger log = LoggerFactory.getLogger(MysqlCdcElasticsearchIndexer.class);
 
     private final ObjectMapper objectMapper;
-    private final DriverInformationSearchRepository driverInformationSearchRepository;
-    private final VehicleInformationSearchRepository vehicleInformationSearchRepository;
-    private final SysUserSearchRepository sysUserSearchRepository;
+    private final CdcTableMappings mappings;
+    private final CdcBulkIndexer bulkIndexer;
+    private final CdcElasticsearchProperties properties;
+    private final ConsumerRecordRecoverer deadLetterRecoverer;
+    private final MeterRegistry meterRegistry;
 
+    @Autowired
     public MysqlCdcElasticsearchIndexer(
             ObjectMapper objectMapper,
-            DriverInformationSearchRepository driverInformationSearchRepository,
-            VehicleInformationSearchRepository vehicleInformationSearchRepository,
-            SysUserSearchRepository sysUserSearchRepository
+            CdcTableMappings mappings,
+            CdcBulkIndexer bulkIndexer,
+            CdcElasticsearchProperties properties,
+            KafkaTemplate<String, String> kafkaTemplate,
+            MeterRegistry meterRegistry
+    ) {
+        this(objectMapper, mappings, bulkIndexer, properties, new DeadLetterPublishingRecoverer(
+                kafkaTemplate,
+                (record, ex) -> new TopicPartition(record.topic() + ".DLT", record.partition())
+        ), meterRegistry);
+    }
+
+    MysqlCdcElasticsearchIndexer(
+            ObjectMapper objectMapper,
+            CdcTableMappings mappings,
+            CdcBulkIndexer bulkIndexer,
+            CdcElasticsearchProperties properties,
+            ConsumerRecordRecoverer deadLetterRecoverer,
+            MeterRegistry meterRegistry
     ) {
         this.objectMapper = objectMapper;
-        this.driverInformationSearchRepository = driverInformationSearchRepository;
-        this.vehicleInformationSearchRepository = vehicleInformationSearchRepository;
-        this.sysUserSearchRepository = sysUserSearchRepository;
+        this.mappings = mappings;
+        this.bulkIndexer = bulkIndexer;
+        this.properties = properties;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.meterRegistry = meterRegistry;
     }
 
     @KafkaListener(
             id = "mysql-cdc-elasticsearch-indexer",
-            topicPattern = "${app.cdc.elasticsearch.topic-pattern:traffic\\.traffic\\.(driver_information|vehicle_information|sys_user)}",
+            topicPattern = "${app.cdc.elasticsearch.topic-pattern:traffic\\.traffic\\.[^.]+}",
             groupId = "${app.cdc.elasticsearch.group-id:mysql-cdc-elasticsearch-indexer}",
-            autoStartup = "${app.cdc.elasticsearch.enabled:false}"
+            containerFactory = "batchKafkaListenerContainerFactory",
+            properties = "max.poll.records=#{@cdcElasticsearchProperties.maxPollRecords}"
     )
-    public void index(String message, @Header(KafkaHeaders.RECEIVED_TOPIC) String topic) {
-        if (!StringUtils.hasText(message)) {
-            return;
+    public void index(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) {
+        Map<String, Map<String, CdcChange>> byTable = new LinkedHashMap<>();
+        Map<String, Integer> decoded = new LinkedHashMap<>();
+        List<DeadLetter> deadLetters = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            CdcChange change = decode(record, deadLetters);
+            if (change != null) {
+                decoded.merge(change.table(), 1, Integer::sum);
+                // 同一主键在同一分区内有序，保留最后一次变更即可
+                byTable.computeIfAbsent(change.table(), table -> new LinkedHashMap<>())
+                        .put(change.key(), change);
+            }
+        }
+        for (Map.Entry<String, Map<String, CdcChange>> entry : byTable.entrySet()) {
+            CdcTableMapping mapping = mappings.forTable(entry.getKey());
+            List<CdcChange> changes = new ArrayList<>(entry.getValue().values());
+            meterRegistry.counter("cdc.es.changes.collapsed", "table", entry.getKey())
+                    .increment(decoded.get(entry.getKey()) - changes.size());
+            writeWithRetry(entry.getKey(), mapping.documentClass(), changes, deadLetters);
+        }
+        deadLetterInBatchOrder(records, deadLetters);
+        acknowledgment.acknowledge();
+    }
+
+    private CdcChange decode(ConsumerRecord<String, String> record, List<DeadLetter> deadLetters) {
+        if (!StringUtils.hasText(record.value())) {
+            return null;
         }
         try {
-            JsonNode root = objectMapper.readTree(message);
+            JsonNode root = objectMapper.readTree(record.value());
             JsonNode payload = root.has("payload") ? root.path("payload") : root;
-            String table = tableName(payload, topic);
+            String table = tableName(payload, record.topic());
+            CdcTableMapping mapping = mappings.forTable(table);
+            if (mapping == null || !properties.includes(table)) {
+                log.debug("Ignored unmapped CDC table: {}", table);
+                return null;
+            }
             String op = text(payload, "op");
             JsonNode row = payload.path("after");
             if ("d".equals(op) || row.isMissingNode() || row.isNull()) {
-                delete(table, payload.path("before"));
-                return;
+                String id = mapping.id(payload.path("before"));
+                return id == null ? null : new CdcChange(table, id, null, record);
             }
-            upsert(table, row);
+            String id = mapping.id(row);
+            return id == null ? null : new CdcChange(table, id, mapping.toDocument(row), record);
         } catch (Exception error) {
-            log.error("Failed to index MySQL CDC event to Elasticsearch: topic={}, error={}",
-                    topic, error.getMessage(), error);
+            // 无法解析的消息重试也不会成功，直接进入 DLT
+            log.error("Failed to decode MySQL CDC event: topic={}, partition={}, offset={}, error={}",
+                    record.topic(), record.partition(), record.offset(), error.getMessage(), error);
+            deadLetters.add(new DeadLetter(record, "decode", error));
+            return null;
         }
     }
 
-    private void upsert(String table, JsonNode row) {
-        switch (table) {
-            case "driver_information" -> {
-                DriverInformation entity = toDriverInformation(row);
-                if (entity.getDeletedAt() != null) {
-                    driverInformationSearchRepository.deleteById(entity.getDriverId());
-                } else {
-                    driverInformationSearchRepository.save(DriverInformationDocument.fromEntity(entity));
+    private void writeWithRetry(String table, Class<?> documentClass, List<CdcChange> changes,
+                                List<DeadLetter> deadLetters) {
+        List<CdcChange> pending = changes;
+        for (int attempt = 1; ; attempt++) {
+            Map<String, CdcBulkIndexer.ItemFailure> failures;
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                failures = bulkIndexer.bulk(documentClass, pending);
+            } catch (Exception error) {
+                if (attempt >= properties.getMaxItemAttempts()) {
+                    throw new IllegalStateException("Bulk indexing failed for CDC table " + table, error);
                 }
+                log.warn("Bulk request for CDC table {} failed (attempt {}), retrying: {}", table, attempt, error.getMessage());
+                backoff(attempt);
+                continue;
+            } finally {
+                sample.stop(meterRegistry.timer("cdc.es.bulk.latency", "table", table));
             }
-            case "vehicle_information" -> {
-                VehicleInformation entity = toVehicleInformation(row);
-                if (entity.getDeletedAt() != null) {
-                    vehicleInformationSearchRepository.deleteById(entity.getVehicleId());
-                } else {
-                    vehicleInformationSearchRepository.save(VehicleInformationDocument.fromEntity(entity));
-                }
+            meterRegistry.counter("cdc.es.bulk.items", "table", table, "result", "success")
+                    .increment(pending.size() - failures.size());
+            if (failures.isEmpty()) {
+                return;
             }
-            case "sys_user" -> {
-                SysUser entity = toSysUser(row);
-                if (entity.getDeletedAt() != null) {
-                    sysUserSearchRepository.deleteById(entity.getUserId());
+            meterRegistry.counter("cdc.es.bulk.items", "table", table, "result", "failed").increment(failures.size());
+            List<CdcChange> retry = new ArrayList<>();
+            for (CdcChange change : pending) {
+                CdcBulkIndexer.ItemFailure failure = failures.get(change.id());
+                if (failure == null) {
+                    continue;
+                }
+                if (failure.retryable() && attempt < properties.getMaxItemAttempts()) {
+                    retry.add(change);
                 } else {
-                    sysUserSearchRepository.save(SysUserDocument.fromEntity(entity));
+                    deadLetters.add(new DeadLetter(change.source(), failure.reason(), null));
                 }
             }
-            default -> log.debug("Ignored unsupported CDC table: {}", table);
+            if (retry.isEmpty()) {
+                return;
+            }
+            backoff(attempt);
+            pending = retry;
         }
     }
 
-    private void delete(String table, JsonNode row) {
-        switch (table) {
-            case "driver_information" -> deleteById(driverInformationSearchRepository, longValue(row, "driver_id"));
-            case "vehicle_information" -> deleteById(vehicleInformationSearchRepository, longValue(row, "vehicle_id"));
-            case "sys_user" -> deleteById(sysUserSearchRepository, longValue(row, "user_id"));
-            default -> log.debug("Ignored delete for unsupported CDC table: {}", table);
+    private void deadLetterInBatchOrder(List<ConsumerRecord<String, String>> records, List<DeadLetter> deadLetters) {
+        if (deadLetters.isEmpty()) {
+            return;
         }
-    }
-
-    private <T> void deleteById(org.springframework.data.elasticsearch.repository.ElasticsearchRepository<T, Long> repository, Long id) {
-        if (id != null) {
-            repository.deleteById(id);
+        Map<ConsumerRecord<String, String>, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            positions.put(records.get(i), i);
+        }
+        deadLetters.sort(Comparator.comparingInt(deadLetter -> positions.get(deadLetter.record())));
+        for (DeadLetter deadLetter : deadLetters) {
+            ConsumerRecord<String, String> record = deadLetter.record();
+            try {
+                deadLetterRecoverer.accept(record,
+                        new IllegalStateException("CDC indexing failed: " + deadLetter.reason(), deadLetter.cause()));
+            } catch (RuntimeException error) {
+                // 发送 DLT 失败时只从该记录起重投，之前的记录已写入或已进入 DLT，随位点一起提交
+                throw new BatchListenerFailedException("Failed to dead-letter CDC event", error,
+                        positions.get(record));
+            }
+            meterRegistry.counter("cdc.es.dead_lettered", "topic", record.topic()).increment();
         }
     }
 
-    private DriverInformation toDriverInformation(JsonNode row) {
-        DriverInformation entity = new DriverInformation();
-        entity.setDriverId(longValue(row, "driver_id"));
-        entity.setAuthUserId(longValue(row, "auth_user_id"));
-        entity.setName(text(row, "name"));
-        entity.setIdCardNumber(text(row, "id_card_number"));
-        entity.setGender(text(row, "gender"));
-        entity.setBirthdate(date(row, "birthdate"));
-        entity.setContactNumber(text(row, "contact_number"));
-        entity.setEmail(text(row, "email"));
-        entity.setAddress(text(row, "address"));
-        entity.setDriverLicenseNumber(text(row, "driver_license_number"));
-        entity.setLicenseType(text(row, "license_type"));
-        entity.setFirstLicenseDate(date(row, "first_license_date"));
-        entity.setIssueDate(date(row, "issue_date"));
-        entity.setExpiryDate(date(row, "expiry_date"));
-        entity.setIssuingAuthority(text(row, "issuing_authority"));
-        entity.setCurrentPoints(intValue(row, "current_points"));
-        entity.setTotalDeductedPoints(intValue(row, "total_deducted_points"));
-        entity.setStatus(text(row, "status"));
-        entity.setCreatedAt(dateTime(row, "created_at"));
-        entity.setUpdatedAt(dateTime(row, "updated_at"));
-        entity.setCreatedBy(text(row, "created_by"));
-        entity.setUpdatedBy(text(row, "updated_by"));
-        entity.setDeletedAt(dateTime(row, "deleted_at"));
-        entity.setRemarks(text(row, "remarks"));
-        return entity;
-    }
-
-    private VehicleInformation toVehicleInformation(JsonNode row) {
-        VehicleInformation entity = new VehicleInformation();
-        entity.setVehicleId(longValue(row, "vehicle_id"));
-        entity.setDriverId(longValue(row, "driver_id"));
-        entity.setLicensePlate(text(row, "license_plate"));
-        entity.setPlateColor(text(row, "plate_color"));
-        entity.setVehicleType(text(row, "vehicle_type"));
-        entity.setBrand(text(row, "brand"));
-        entity.setModel(text(row, "model"));
-        entity.setVehicleColor(text(row, "vehicle_color"));
-        entity.setEngineNumber(text(row, "engine_number"));
-        entity.setFrameNumber(text(row, "frame_number"));
-        entity.setOwnerName(text(row, "owner_name"));
-        entity.setOwnerIdCard(text(row, "owner_id_card"));
-        entity.setOwnerContact(text(row, "owner_contact"));
-        entity.setOwnerAddress(text(row, "owner_address"));
-        entity.setFirstRegistrationDate(date(row, "first_registration_date"));
-        entity.setRegistrationDate(date(row, "registration_date"));
-        entity.setIssuingAuthority(text(row, "issuing_authority"));
-        entity.setStatus(text(row, "status"));
-        entity.setInspectionExpiryDate(date(row, "inspection_expiry_date"));
-        entity.setInsuranceExpiryDate(date(row, "insurance_expiry_date"));
-        entity.setCreatedAt(dateTime(row, "created_at"));
-        entity.setUpdatedAt(dateTime(row, "updated_at"));
-        entity.setCreatedBy(text(row, "created_by"));
-        entity.setUpdatedBy(text(row, "updated_by"));
-        entity.setDeletedAt(dateTime(row, "deleted_at"));
-        entity.setRemarks(text(row, "remarks"));
-        return entity;
-    }
-
-    private SysUser toSysUser(JsonNode row) {
-        SysUser entity = new SysUser();
-        entity.setUserId(longValue(row, "user_id"));
-        entity.setUsername(text(row, "username"));
-        entity.setRealName(text(row, "real_name"));
-        entity.setIdCardNumber(text(row, "id_card_number"));
-        entity.setGender(text(row, "gender"));
-        entity.setContactNumber(text(row, "contact_number"));
-        entity.setEmail(text(row, "email"));
-        entity.setDepartment(text(row, "department"));
-        entity.setPosition(text(row, "position"));
-        entity.setEmployeeNumber(text(row, "employee_number"));
-        entity.setStatus(text(row, "status"));
-        entity.setAccountExpiryDate(date(row, "account_expiry_date"));
-        entity.setLoginFailures(intValue(row, "login_failures"));
-        entity.setLastLoginTime(dateTime(row, "last_login_time"));
-        entity.setLastLoginIp(text(row, "last_login_ip"));
-        entity.setPasswordUpdateTime(dateTime(row, "password_update_time"));
-        entity.setCreatedAt(dateTime(row, "created_at"));
-        entity.setUpdatedAt(dateTime(row, "updated_at"));
-        entity.setCreatedBy(text(row, "created_by"));
-        entity.setUpdatedBy(text(row, "updated_by"));
-        entity.setDeletedAt(dateTime(row, "deleted_at"));
-        entity.setRemarks(text(row, "remarks"));
-        return entity;
+    private void backoff(int attempt) {
+        long millis = properties.getRetryBackoff().toMillis() * attempt;
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying CDC bulk indexing", interrupted);
+        }
     }
 
     private String tableName(JsonNode payload, String topic) {
@@ -221,62 +233,6 @@ public class MysqlCdcElasticsearchIndexer {
         return value == null || value.isNull() ? null : value.asText();
     }
 
-    private static Long longValue(JsonNode node, String field) {
-        JsonNode value = node == null ? null : node.get(field);
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        return value.isNumber() ? value.longValue() : parseLong(value.asText());
-    }
-
-    private static Integer intValue(JsonNode node, String field) {
-        JsonNode value = node == null ? null : node.get(field);
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        return value.isNumber() ? value.intValue() : parseInt(value.asText());
-    }
-
-    private static LocalDate date(JsonNode node, String field) {
-        JsonNode value = node == null ? null : node.get(field);
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        if (value.isNumber()) {
-            return LocalDate.ofEpochDay(value.longValue());
-        }
-        String text = value.asText();
-        return StringUtils.hasText(text) ? LocalDate.parse(text.substring(0, Math.min(text.length(), 10))) : null;
-    }
-
-    private static LocalDateTime dateTime(JsonNode node, String field) {
-        JsonNode value = node == null ? null : node.get(field);
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        if (value.isNumber()) {
-            return LocalDateTime.ofInstant(Instant.ofEpochMilli(value.longValue()), ZoneOffset.UTC);
-        }
-        String text = value.asText();
-        if (!StringUtils.hasText(text)) {
-            return null;
-        }
-        return LocalDateTime.parse(text.replace(" ", "T"));
-    }
-
-    private static Long parseLong(String value) {
-        try {
-            return StringUtils.hasText(value) ? Long.parseLong(value) : null;
-        } catch (NumberFormatException ignored) {
-            return null;
-        }
-    }
-
-    private static Integer parseInt(String value) {
-        try {
-            return StringUtils.hasText(value) ? Integer.parseInt(value) : null;
-        } catch (NumberFormatException ignored) {
-            return null;
-        }
+    private record DeadLetter(ConsumerRecord<String, String> record, String reason, Exception cause) {
     }
 }
@@ -0,0 +1,21 @@
+package com.tutict.finalassignmentbackend.service.admin;
+
+/**
+ * Cluster-wide change counters for authorization snapshots: one for the role table and one per user.
+ * A cached snapshot is only served while both counters still match the ones it was built with.
+ */
+public interface AuthorizationVersionStore {
+
+    Versions current(Long userId);
+
+    /**
+     * Bumps the user's counter. Counters never expire: a counter that restarted from zero could
+     * return to the value a still-cached snapshot was stamped with.
+     */
+    void bumpUser(Long userId);
+
+    void bumpRoles();
+
+    record Versions(long roles, long user) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.tutict.finalassignmentbackend.service.admin;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class RedisAuthorizationVersionStore implements AuthorizationVersionStore {
+
+    static final String ROLES_KEY = "auth:snapshot:roles-version";
+    static final String USER_KEY_PREFIX = "auth:snapshot:user-version:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisAuthorizationVersionStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Versions current(Long userId) {
+        List<String> values = redisTemplate.opsForValue().multiGet(List.of(ROLES_KEY, USER_KEY_PREFIX + userId));
+        if (values == null || values.size() < 2) {
+            return new Versions(0, 0);
+        }
+        return new Versions(parse(values.get(0)), parse(values.get(1)));
+    }
+
+    @Override
+    public void bumpUser(Long userId) {
+        // 不设过期：键过期后 INCR 会从 1 重新计数，可能与仍在缓存中的旧快照版本相等；每个用户只占一个小键
+        redisTemplate.opsForValue().increment(USER_KEY_PREFIX + userId);
+    }
+
+    @Override
+    public void bumpRoles() {
+        redisTemplate.opsForValue().increment(ROLES_KEY);
+    }
+
+    private static long parse(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -4,13 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tutict.finalassignmentbackend.common.PageRequest;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.system.SysBackupRestore;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.SysBackupRestoreDocument;
 import com.tutict.finalassignmentbackend.mapper.system.SysBackupRestoreMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.SysBackupRestoreSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -36,22 +36,25 @@ public class SysBackupRestoreService {
     private static final String CACHE_NAME = "sysBackupRestoreCache";
 
     private final SysBackupRestoreMapper sysBackupRestoreMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysBackupRestoreSearchRepository sysBackupRestoreSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public SysBackupRestoreService(SysBackupRestoreMapper sysBackupRestoreMapper,
-                                   SysRequestHistoryMapper sysRequestHistoryMapper,
+                                   IdempotencyStore idempotencyStore,
                                    SysBackupRestoreSearchRepository sysBackupRestoreSearchRepository,
                                    KafkaTemplate<String, String> kafkaTemplate,
-                                   ObjectMapper objectMapper) {
+                                   ObjectMapper objectMapper,
+                                   CdcIndexCoverage cdcIndexCoverage) {
         this.sysBackupRestoreMapper = sysBackupRestoreMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysBackupRestoreSearchRepository = sysBackupRestoreSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -59,26 +62,14 @@ public class SysBackupRestoreService {
     @WsAction(service = "SysBackupRestoreService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysBackupRestore backupRestore, String action) {
         Objects.requireNonNull(backupRestore, "SysBackupRestore must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             log.warning(() -> String.format("Duplicate sys backup/restore request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate sys backup/restore request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("sys_backup_restore_" + action, idempotencyKey, backupRestore);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(backupRestore.getBackupId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, backupRestore.getBackupId());
     }
 
     @Transactional
@@ -111,6 +102,9 @@ public class SysBackupRestoreService {
         if (rows == 0) {
             throw new IllegalStateException("SysBackupRestore not found for id=" + backupId);
         }
+        if (cdcIndexCoverage.covers(SysBackupRestoreDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -290,35 +284,15 @@ public class SysBackupRestoreService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long backupId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(backupId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, backupId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysBackupRestore backupRestore) {
@@ -332,7 +306,7 @@ public class SysBackupRestoreService {
     }
 
     private void syncToIndexAfterCommit(SysBackupRestore backupRestore) {
-        if (backupRestore == null) {
+        if (backupRestore == null || cdcIndexCoverage.covers(SysBackupRestoreDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -433,11 +407,4 @@ public class SysBackupRestoreService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -3,13 +3,13 @@ package com.tutict.finalassignmentbackend.service.admin;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.system.SysDict;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.SysDictDocument;
 import com.tutict.finalassignmentbackend.mapper.system.SysDictMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.SysDictSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -19,7 +19,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -35,22 +34,25 @@ public class SysDictService {
     private static final String CACHE_NAME = "sysDictCache";
 
     private final SysDictMapper sysDictMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysDictSearchRepository sysDictSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public SysDictService(SysDictMapper sysDictMapper,
-                          SysRequestHistoryMapper sysRequestHistoryMapper,
+                          IdempotencyStore idempotencyStore,
                           SysDictSearchRepository sysDictSearchRepository,
                           KafkaTemplate<String, String> kafkaTemplate,
-                          ObjectMapper objectMapper) {
+                          ObjectMapper objectMapper,
+                          CdcIndexCoverage cdcIndexCoverage) {
         this.sysDictMapper = sysDictMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysDictSearchRepository = sysDictSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -58,24 +60,13 @@ public class SysDictService {
     @WsAction(service = "SysDictService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysDict sysDict, String action) {
         Objects.requireNonNull(sysDict, "SysDict must not be null");
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             throw new RuntimeException("Duplicate SysDict request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("sys_dict_" + action, idempotencyKey, sysDict);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(Optional.ofNullable(sysDict.getDictId()).map(Long::valueOf).orElse(null));
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, Optional.ofNullable(sysDict.getDictId()).map(Long::valueOf).orElse(null));
     }
 
     @Transactional
@@ -108,6 +99,9 @@ public class SysDictService {
         if (rows == 0) {
             throw new IllegalStateException("No SysDict deleted for id=" + dictId);
         }
+        if (cdcIndexCoverage.covers(SysDictDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -262,35 +256,15 @@ public class SysDictService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Integer dictId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(dictId != null ? dictId.longValue() : null);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, dictId != null ? dictId.longValue() : null);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysDict sysDict) {
@@ -304,7 +278,7 @@ public class SysDictService {
     }
 
     private void syncToIndexAfterCommit(SysDict sysDict) {
-        if (sysDict == null) {
+        if (sysDict == null || cdcIndexCoverage.covers(SysDictDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -368,11 +342,4 @@ public class SysDictService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -3,13 +3,13 @@ package com.tutict.finalassignmentbackend.service.admin;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.admin.SysPermission;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.SysPermissionDocument;
 import com.tutict.finalassignmentbackend.mapper.admin.SysPermissionMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.SysPermissionSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -35,22 +35,25 @@ public class SysPermissionService {
     private static final String CACHE_NAME = "sysPermissionCache";
 
     private final SysPermissionMapper sysPermissionMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysPermissionSearchRepository sysPermissionSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public SysPermissionService(SysPermissionMapper sysPermissionMapper,
-                                SysRequestHistoryMapper sysRequestHistoryMapper,
+                                IdempotencyStore idempotencyStore,
                                 SysPermissionSearchRepository sysPermissionSearchRepository,
                                 KafkaTemplate<String, String> kafkaTemplate,
-                                ObjectMapper objectMapper) {
+                                ObjectMapper objectMapper,
+                                CdcIndexCoverage cdcIndexCoverage) {
         this.sysPermissionMapper = sysPermissionMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysPermissionSearchRepository = sysPermissionSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -58,26 +61,14 @@ public class SysPermissionService {
     @WsAction(service = "SysPermissionService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysPermission permission, String action) {
         Objects.requireNonNull(permission, "SysPermission must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             log.warning(() -> String.format("Duplicate sys permission request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate sys permission request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("sys_permission_" + action, idempotencyKey, permission);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(Optional.ofNullable(permission.getPermissionId()).map(Integer::longValue).orElse(null));
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, Optional.ofNullable(permission.getPermissionId()).map(Integer::longValue).orElse(null));
     }
 
     @Transactional
@@ -110,6 +101,9 @@ public class SysPermissionService {
         if (rows == 0) {
             throw new IllegalStateException("SysPermission not found for id=" + permissionId);
         }
+        if (cdcIndexCoverage.covers(SysPermissionDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -326,35 +320,15 @@ public class SysPermissionService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Integer permissionId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(permissionId != null ? permissionId.longValue() : null);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, permissionId != null ? permissionId.longValue() : null);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysPermission permission) {
@@ -368,7 +342,7 @@ public class SysPermissionService {
     }
 
     private void syncToIndexAfterCommit(SysPermission permission) {
-        if (permission == null) {
+        if (permission == null || cdcIndexCoverage.covers(SysPermissionDocument.class)) {
             return;
         }
         Runnable sync = () -> {
@@ -479,11 +453,4 @@ public class SysPermissionService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
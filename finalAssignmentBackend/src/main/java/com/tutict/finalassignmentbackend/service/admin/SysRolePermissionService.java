@@ -3,13 +3,13 @@ package com.tutict.finalassignmentbackend.service.admin;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.admin.SysRolePermission;
 import com.tutict.finalassignmentbackend.entity.elastic.SysRolePermissionDocument;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.admin.SysRolePermissionMapper;
 import com.tutict.finalassignmentbackend.repository.SysRolePermissionSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -33,22 +33,25 @@ public class SysRolePermissionService {
     private static final String CACHE_NAME = "sysRolePermissionCache";
 
     private final SysRolePermissionMapper sysRolePermissionMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysRolePermissionSearchRepository sysRolePermissionSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public SysRolePermissionService(SysRolePermissionMapper sysRolePermissionMapper,
-                                    SysRequestHistoryMapper sysRequestHistoryMapper,
+                                    IdempotencyStore idempotencyStore,
                                     SysRolePermissionSearchRepository sysRolePermissionSearchRepository,
                                     KafkaTemplate<String, String> kafkaTemplate,
-                                    ObjectMapper objectMapper) {
+                                    ObjectMapper objectMapper,
+                                    CdcIndexCoverage cdcIndexCoverage) {
         this.sysRolePermissionMapper = sysRolePermissionMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysRolePermissionSearchRepository = sysRolePermissionSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -56,26 +59,14 @@ public class SysRolePermissionService {
     @WsAction(service = "SysRolePermissionService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysRolePermission relation, String action) {
         Objects.requireNonNull(relation, "SysRolePermission must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             log.warning(() -> String.format("Duplicate role-permission request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate role-permission request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("sys_role_permission_" + action, idempotencyKey, relation);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(relation.getId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, relation.getId());
     }
 
     @Transactional
@@ -108,6 +99,9 @@ public class SysRolePermissionService {
         if (rows == 0) {
             throw new IllegalStateException("SysRolePermission not found for id=" + id);
         }
+        if (cdcIndexCoverage.covers(SysRolePermissionDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -188,35 +182,15 @@ public class SysRolePermissionService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long relationId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(relationId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, relationId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysRolePermission relation) {
@@ -230,7 +204,7 @@ public class SysRolePermissionService {
     }
 
     private void syncToIndexAfterCommit(SysRolePermission relation) {
-        if (relation == null) {
+        if (relation == null || cdcIndexCoverage.covers(SysRolePermissionDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -311,11 +285,4 @@ public class SysRolePermissionService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -3,13 +3,13 @@ package com.tutict.finalassignmentbackend.service.admin;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.admin.SysRole;
 import com.tutict.finalassignmentbackend.entity.elastic.SysRoleDocument;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.admin.SysRoleMapper;
 import com.tutict.finalassignmentbackend.repository.SysRoleSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -35,22 +35,28 @@ public class SysRoleService {
     private static final String CACHE_NAME = "sysRoleCache";
 
     private final SysRoleMapper sysRoleMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysRoleSearchRepository sysRoleSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
 
     @Autowired
     public SysRoleService(SysRoleMapper sysRoleMapper,
-                          SysRequestHistoryMapper sysRequestHistoryMapper,
+                          IdempotencyStore idempotencyStore,
                           SysRoleSearchRepository sysRoleSearchRepository,
                           KafkaTemplate<String, String> kafkaTemplate,
-                          ObjectMapper objectMapper) {
+                          ObjectMapper objectMapper,
+                          CdcIndexCoverage cdcIndexCoverage,
+                          AuthorizationSnapshotService authorizationSnapshotService) {
         this.sysRoleMapper = sysRoleMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysRoleSearchRepository = sysRoleSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.authorizationSnapshotService = authorizationSnapshotService;
     }
 
     @Transactional
@@ -58,26 +64,14 @@ public class SysRoleService {
     @WsAction(service = "SysRoleService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysRole sysRole, String action) {
         Objects.requireNonNull(sysRole, "SysRole must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             log.warning(() -> String.format("Duplicate sys role request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate sys role request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("sys_role_" + action, idempotencyKey, sysRole);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(Optional.ofNullable(sysRole.getRoleId()).map(Integer::longValue).orElse(null));
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, Optional.ofNullable(sysRole.getRoleId()).map(Integer::longValue).orElse(null));
     }
 
     @Transactional
@@ -98,6 +92,7 @@ public class SysRoleService {
         if (rows == 0) {
             throw new IllegalStateException("SysRole not found for id=" + sysRole.getRoleId());
         }
+        authorizationSnapshotService.invalidateRoles();
         syncToIndexAfterCommit(sysRole);
         return sysRole;
     }
@@ -110,6 +105,10 @@ public class SysRoleService {
         if (rows == 0) {
             throw new IllegalStateException("SysRole not found for id=" + roleId);
         }
+        authorizationSnapshotService.invalidateRoles();
+        if (cdcIndexCoverage.covers(SysRoleDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -155,7 +154,8 @@ public class SysRoleService {
         wrapper.eq("role_code", roleCode);
         SysRole fromDb = sysRoleMapper.selectOne(wrapper);
         if (fromDb != null) {
-            syncToIndexAfterCommit(fromDb);
+            // 读修复不受 CDC 覆盖影响
+            syncBatchToIndexAfterCommit(List.of(fromDb));
         }
         return fromDb;
     }
@@ -272,35 +272,15 @@ public class SysRoleService {
         return fetchFromDatabase(wrapper, page, size);
     }
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Integer roleId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(roleId != null ? roleId.longValue() : null);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, roleId != null ? roleId.longValue() : null);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysRole sysRole) {
@@ -314,7 +294,7 @@ public class SysRoleService {
     }
 
     private void syncToIndexAfterCommit(SysRole sysRole) {
-        if (sysRole == null) {
+        if (sysRole == null || cdcIndexCoverage.covers(SysRoleDocument.class)) {
             return;
         }
         Runnable sync = () -> {
@@ -419,11 +399,4 @@ public class SysRoleService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -3,13 +3,13 @@ package com.tutict.finalassignmentbackend.service.admin;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.system.SysSettings;
 import com.tutict.finalassignmentbackend.entity.elastic.SysSettingsDocument;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.system.SysSettingsMapper;
 import com.tutict.finalassignmentbackend.repository.SysSettingsSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.service.messaging.KafkaMessageSender;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
@@ -35,22 +35,25 @@ public class SysSettingsService {
     private static final String CACHE_NAME = "sysSettingsCache";
 
     private final SysSettingsMapper sysSettingsMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysSettingsSearchRepository sysSettingsSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaMessageSender kafkaMessageSender;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public SysSettingsService(SysSettingsMapper sysSettingsMapper,
-                              SysRequestHistoryMapper sysRequestHistoryMapper,
+                              IdempotencyStore idempotencyStore,
                               SysSettingsSearchRepository sysSettingsSearchRepository,
                               KafkaMessageSender kafkaMessageSender,
-                              ObjectMapper objectMapper) {
+                              ObjectMapper objectMapper,
+                              CdcIndexCoverage cdcIndexCoverage) {
         this.sysSettingsMapper = sysSettingsMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysSettingsSearchRepository = sysSettingsSearchRepository;
         this.kafkaMessageSender = kafkaMessageSender;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -58,26 +61,14 @@ public class SysSettingsService {
     @WsAction(service = "SysSettingsService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysSettings settings, String action) {
         Objects.requireNonNull(settings, "SysSettings must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             LOG.warning(() -> String.format("Duplicate sys settings request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate sys settings request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("sys_settings_" + action, idempotencyKey, settings);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(Optional.ofNullable(settings.getSettingId()).map(Integer::longValue).orElse(null));
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, Optional.ofNullable(settings.getSettingId()).map(Integer::longValue).orElse(null));
     }
 
     @Transactional
@@ -110,6 +101,9 @@ public class SysSettingsService {
         if (rows == 0) {
             throw new IllegalStateException("SysSettings not found for id=" + settingId);
         }
+        if (cdcIndexCoverage.covers(SysSettingsDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -254,35 +248,15 @@ public class SysSettingsService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Integer settingId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            LOG.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(settingId != null ? settingId.longValue() : null);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, settingId != null ? settingId.longValue() : null);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            LOG.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysSettings settings) {
@@ -296,7 +270,7 @@ public class SysSettingsService {
     }
 
     private void syncToIndexAfterCommit(SysSettings settings) {
-        if (settings == null) {
+        if (settings == null || cdcIndexCoverage.covers(SysSettingsDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -384,11 +358,4 @@ public class SysSettingsService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -3,13 +3,13 @@ package com.tutict.finalassignmentbackend.service.admin;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.admin.SysUserRole;
 import com.tutict.finalassignmentbackend.entity.elastic.SysUserRoleDocument;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.admin.SysUserRoleMapper;
 import com.tutict.finalassignmentbackend.repository.SysUserRoleSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -33,22 +33,28 @@ public class SysUserRoleService {
     private static final String CACHE_NAME = "sysUserRoleCache";
 
     private final SysUserRoleMapper sysUserRoleMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysUserRoleSearchRepository sysUserRoleSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
 
     @Autowired
     public SysUserRoleService(SysUserRoleMapper sysUserRoleMapper,
-                              SysRequestHistoryMapper sysRequestHistoryMapper,
+                              IdempotencyStore idempotencyStore,
                               SysUserRoleSearchRepository sysUserRoleSearchRepository,
                               KafkaTemplate<String, String> kafkaTemplate,
-                              ObjectMapper objectMapper) {
+                              ObjectMapper objectMapper,
+                              CdcIndexCoverage cdcIndexCoverage,
+                              AuthorizationSnapshotService authorizationSnapshotService) {
         this.sysUserRoleMapper = sysUserRoleMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysUserRoleSearchRepository = sysUserRoleSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.authorizationSnapshotService = authorizationSnapshotService;
     }
 
     @Transactional
@@ -56,26 +62,14 @@ public class SysUserRoleService {
     @WsAction(service = "SysUserRoleService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysUserRole relation, String action) {
         Objects.requireNonNull(relation, "SysUserRole must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             LOG.warning(() -> String.format("Duplicate sys user role request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate sys user role request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("sys_user_role_" + action, idempotencyKey, relation);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(relation.getId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, relation.getId());
     }
 
     @Transactional
@@ -83,6 +77,7 @@ public class SysUserRoleService {
     public SysUserRole createRelation(SysUserRole relation) {
         validateRelation(relation);
         sysUserRoleMapper.insert(relation);
+        authorizationSnapshotService.invalidateUser(relation.getUserId());
         syncToIndexAfterCommit(relation);
         return relation;
     }
@@ -92,10 +87,16 @@ public class SysUserRoleService {
     public SysUserRole updateRelation(SysUserRole relation) {
         validateRelation(relation);
         requirePositive(relation.getId(), "Relation ID");
+        SysUserRole previous = sysUserRoleMapper.selectById(relation.getId());
         int rows = sysUserRoleMapper.updateById(relation);
         if (rows == 0) {
             throw new IllegalStateException("SysUserRole not found for id=" + relation.getId());
         }
+        // 关联可能被改到另一个用户名下，新旧用户的快照都要失效
+        if (previous != null && !Objects.equals(previous.getUserId(), relation.getUserId())) {
+            authorizationSnapshotService.invalidateUser(previous.getUserId());
+        }
+        authorizationSnapshotService.invalidateUser(relation.getUserId());
         syncToIndexAfterCommit(relation);
         return relation;
     }
@@ -104,10 +105,17 @@ public class SysUserRoleService {
     @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public void deleteRelation(Long relationId) {
         requirePositive(relationId, "Relation ID");
+        SysUserRole existing = sysUserRoleMapper.selectById(relationId);
         int rows = sysUserRoleMapper.deleteById(relationId);
         if (rows == 0) {
             throw new IllegalStateException("SysUserRole not found for id=" + relationId);
         }
+        if (existing != null) {
+            authorizationSnapshotService.invalidateUser(existing.getUserId());
+        }
+        if (cdcIndexCoverage.covers(SysUserRoleDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -190,35 +198,15 @@ public class SysUserRoleService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long relationId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            LOG.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(relationId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, relationId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            LOG.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysUserRole relation) {
@@ -232,7 +220,7 @@ public class SysUserRoleService {
     }
 
     private void syncToIndexAfterCommit(SysUserRole relation) {
-        if (relation == null) {
+        if (relation == null || cdcIndexCoverage.covers(SysUserRoleDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -309,11 +297,4 @@ public class SysUserRoleService {
             throw new IllegalArgumentException(fieldName + " must be greater than zero");
         }
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -4,13 +4,15 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tutict.finalassignmentbackend.common.PageRequest;
+import com.tutict.finalassignmentbackend.common.export.ExportScanner;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.admin.SysUser;
 import com.tutict.finalassignmentbackend.entity.elastic.SysUserDocument;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.admin.SysUserMapper;
 import com.tutict.finalassignmentbackend.repository.SysUserSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.security.crypto.SensitiveDataPersistenceService;
 import com.tutict.finalassignmentbackend.service.messaging.KafkaMessageSender;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,14 +26,15 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 public class SysUserService {
@@ -42,8 +45,10 @@ public class SysUserService {
             Pattern.compile("\\A\\$2[aby]\\$\\d{2}\\$[./A-Za-z0-9]{53}\\z");
 
     private final SysUserMapper sysUserMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final SysUserSearchRepository sysUserSearchRepository;
+    private final ExportScanner exportScanner;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaMessageSender kafkaMessageSender;
     private final ObjectMapper objectMapper;
     private final PasswordEncoder passwordEncoder;
@@ -51,19 +56,23 @@ public class SysUserService {
 
     @Autowired
     public SysUserService(SysUserMapper sysUserMapper,
-                          SysRequestHistoryMapper sysRequestHistoryMapper,
+                          IdempotencyStore idempotencyStore,
                           SysUserSearchRepository sysUserSearchRepository,
                           KafkaMessageSender kafkaMessageSender,
                           ObjectMapper objectMapper,
                           PasswordEncoder passwordEncoder,
-                          SensitiveDataPersistenceService sensitiveDataPersistenceService) {
+                          SensitiveDataPersistenceService sensitiveDataPersistenceService,
+                          CdcIndexCoverage cdcIndexCoverage,
+                          ExportScanner exportScanner) {
         this.sysUserMapper = sysUserMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.sysUserSearchRepository = sysUserSearchRepository;
         this.kafkaMessageSender = kafkaMessageSender;
         this.objectMapper = objectMapper;
         this.passwordEncoder = passwordEncoder;
         this.sensitiveDataPersistenceService = sensitiveDataPersistenceService;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.exportScanner = exportScanner;
     }
 
     @Transactional
@@ -71,28 +80,16 @@ public class SysUserService {
     @WsAction(service = "SysUserService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, SysUser sysUser, String action) {
         Objects.requireNonNull(sysUser, "SysUser must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             LOG.warning(() -> String.format("Duplicate sys user request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate sys user request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         encodePasswordIfNecessary(sysUser);
         sensitiveDataPersistenceService.prepare(sysUser);
         sendKafkaMessage("sys_user_" + action, idempotencyKey, sysUser);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(sysUser.getUserId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, sysUser.getUserId());
     }
 
     @Transactional
@@ -129,6 +126,9 @@ public class SysUserService {
         if (rows == 0) {
             throw new IllegalStateException("SysUser not found for id=" + userId);
         }
+        if (cdcIndexCoverage.covers(SysUserDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -152,19 +152,27 @@ public class SysUserService {
                 });
     }
 
+    /**
+     * @deprecated materializes the whole table; use {@link #exportAll} instead.
+     */
+    @Deprecated
     @Transactional(readOnly = true)
-    @Cacheable(cacheNames = CACHE_NAME, key = "'all'", unless = "#result == null || #result.isEmpty()")
     public List<SysUser> findAll() {
-        List<SysUser> fromIndex = StreamSupport.stream(
-                        sysUserSearchRepository.findAll().spliterator(), false)
-                .map(SysUserDocument::toEntity)
-                .collect(Collectors.toList());
-        if (!fromIndex.isEmpty()) {
-            return fromIndex;
+        List<SysUser> all = new ArrayList<>();
+        exportAll(ExportSource.DATABASE, all::addAll);
+        return all;
+    }
+
+    /**
+     * Streams every row page by page; see {@link ExportScanner}.
+     */
+    public void exportAll(ExportSource source, Consumer<List<SysUser>> sink) {
+        if (source == ExportSource.INDEX) {
+            exportScanner.scanIndex(SysUserDocument.class,
+                    page -> sink.accept(page.stream().map(SysUserDocument::toEntity).toList()));
+            return;
         }
-        List<SysUser> fromDb = sysUserMapper.selectList(null);
-        syncBatchToIndexAfterCommit(fromDb);
-        return fromDb;
+        exportScanner.scanTable(sysUserMapper, SysUser.class, sink);
     }
 
     @Transactional(readOnly = true)
@@ -300,7 +308,8 @@ public class SysUserService {
         wrapper.eq("username", username);
         SysUser entity = sysUserMapper.selectOne(wrapper);
         if (entity != null) {
-            syncToIndexAfterCommit(entity);
+            // 读修复不受 CDC 覆盖影响
+            syncBatchToIndexAfterCommit(List.of(entity));
         }
         return entity;
     }
@@ -362,40 +371,24 @@ public class SysUserService {
         return fetchFromDatabase(wrapper, page, size);
     }
 
+    /**
+     * @deprecated see {@link #findAll()}.
+     */
+    @Deprecated
     public List<SysUser> getAllUsers() {
         return findAll();
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long userId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            LOG.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(userId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, userId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            LOG.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, SysUser sysUser) {
@@ -409,7 +402,7 @@ public class SysUserService {
     }
 
     private void syncToIndexAfterCommit(SysUser sysUser) {
-        if (sysUser == null) {
+        if (sysUser == null || cdcIndexCoverage.covers(SysUserDocument.class)) {
             return;
         }
         Runnable sync = () -> {
@@ -555,11 +548,4 @@ public class SysUserService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -2,124 +2,247 @@ package com.tutict.finalassignmentbackend.service.ai;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.tutict.finalassignmentbackend.config.ai.chat.GraalPyContext;
 import jakarta.annotation.PreDestroy;
-import org.graalvm.polyglot.PolyglotException;
-import org.graalvm.polyglot.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
+/**
+ * Web search through {@code baidu_crawler.search} on a pool of pre-warmed GraalPy contexts, so
+ * concurrent chat sessions search in parallel up to {@code ai.search.pool-size}. A context is
+ * recycled after a timeout, a fatal polyglot error, repeated failures or
+ * {@code ai.search.max-calls-per-context} calls. Results are cached briefly by normalized query.
+ */
 @Service
 public class AIChatSearchService {
 
     private static final Logger log = LoggerFactory.getLogger(AIChatSearchService.class);
+    private static final int NUM_RESULTS = 15;
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private static final Charset GBK = Charset.forName("GBK");
 
-    private final GraalPyContext graalPyContext;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Supplier<SearchWorker> workerFactory;
+    private final BooleanSupplier pythonAvailable;
     private final long timeoutSeconds;
+    private final int poolSize;
+    private final int maxCallsPerContext;
+    private final BlockingQueue<PooledWorker> idle;
+    // 已创建或正在创建的上下文数，不超过 poolSize
+    private final AtomicInteger provisioned = new AtomicInteger();
+    private final ExecutorService executor;
+    private final Cache<String, List<Map<String, String>>> resultCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
     private volatile boolean pythonReady = false;
+    private volatile boolean closed = false;
 
+    @Autowired
     public AIChatSearchService(
             GraalPyContext graalPyContext,
-            @org.springframework.beans.factory.annotation.Value("${ai.search.timeout-seconds:30}") long timeoutSeconds
+            @Value("${ai.search.timeout-seconds:30}") long timeoutSeconds,
+            @Value("${ai.search.pool-size:2}") int poolSize,
+            @Value("${ai.search.max-calls-per-context:200}") int maxCallsPerContext,
+            @Value("${ai.search.cache-ttl:PT5M}") Duration cacheTtl,
+            @Value("${ai.search.cache-size:500}") long cacheSize
+    ) {
+        this(() -> new GraalPySearchWorker(graalPyContext.newContext()), graalPyContext::isAvailable,
+                timeoutSeconds, poolSize, maxCallsPerContext, cacheTtl, cacheSize);
+    }
+
+    AIChatSearchService(
+            Supplier<SearchWorker> workerFactory,
+            BooleanSupplier pythonAvailable,
+            long timeoutSeconds,
+            int poolSize,
+            int maxCallsPerContext,
+            Duration cacheTtl,
+            long cacheSize
     ) {
-        this.graalPyContext = graalPyContext;
+        this.workerFactory = workerFactory;
+        this.pythonAvailable = pythonAvailable;
         this.timeoutSeconds = timeoutSeconds;
+        this.poolSize = Math.max(1, poolSize);
+        this.maxCallsPerContext = Math.max(1, maxCallsPerContext);
+        this.idle = new ArrayBlockingQueue<>(this.poolSize);
+        // 每个上下文同一时刻只被一个线程使用，线程数与池大小一致
+        this.executor = Executors.newFixedThreadPool(this.poolSize,
+                Thread.ofPlatform().name("graalpy-search-", 0).daemon().factory());
+        this.resultCache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, cacheSize))
+                .expireAfterWrite(cacheTtl.isNegative() ? Duration.ZERO : cacheTtl)
+                .build();
     }
 
     public List<Map<String, String>> search(String query) {
         if (query == null || query.trim().isEmpty()) {
             return Collections.emptyList();
         }
-        ensurePythonReady();
-        if (!pythonReady) {
+        String cacheKey = normalizeQuery(query);
+        List<Map<String, String>> cached = resultCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        if (!ensurePoolStarted()) {
             log.warn("Web search unavailable, returning empty results");
             return Collections.emptyList();
         }
         try {
-            return searchWithGraalPy(query);
+            // 缓存的结果在会话间共享，返回只读视图
+            List<Map<String, String>> results = Collections.unmodifiableList(searchWithPool(gbkSafe(query.trim())));
+            if (!results.isEmpty()) {
+                resultCache.put(cacheKey, results);
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
         } catch (Exception e) {
             log.warn("GraalPy web search failed for query='{}': {}", query, e.getMessage());
             return Collections.emptyList();
         }
     }
 
-    private synchronized void ensurePythonReady() {
-        if (pythonReady || !graalPyContext.isAvailable()) {
-            return;
+    /**
+     * Warms the first context synchronously so a broken crawler import is reported on this call,
+     * then fills the rest of the pool in the background.
+     */
+    private synchronized boolean ensurePoolStarted() {
+        if (pythonReady) {
+            return true;
+        }
+        if (closed || !pythonAvailable.getAsBoolean()) {
+            return false;
         }
+        provisioned.incrementAndGet();
         try {
-            graalPyContext.eval(
-                    """
-                            import json
-                            from baidu_crawler import search
-                            """
-            );
-            pythonReady = true;
-            log.info("GraalPy Python initialized for baidu_crawler.search");
-        } catch (PolyglotException e) {
+            idle.add(new PooledWorker(workerFactory.get()));
+        } catch (RuntimeException e) {
+            provisioned.decrementAndGet();
             log.warn("Python baidu_crawler import failed: {}", e.getMessage());
-        } catch (Exception e) {
-            log.warn("GraalPy initialization failed: {}", e.getMessage());
+            return false;
         }
+        pythonReady = true;
+        topUp();
+        log.info("GraalPy web search pool started with {} contexts", poolSize);
+        return true;
     }
 
-    private List<Map<String, String>> searchWithGraalPy(String query) throws Exception {
-        String gbkQuery;
-        try {
-            gbkQuery = new String(query.getBytes("GBK"), "GBK").replace("'", "\\'");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("Query encoding failed: " + e.getMessage(), e);
-        }
-
-        String pythonCode = String.format(
-                """
-                        import json
-                        from baidu_crawler import search
-                        res = search('%s', num_results=15, debug=False)
-                        json.dumps(res, ensure_ascii=False)
-                        """,
-                gbkQuery
-        );
-
-        Future<Value> future = executor.submit(() -> graalPyContext.eval(pythonCode));
-        Value pyResult;
+    private List<Map<String, String>> searchWithPool(String query) throws Exception {
+        topUp();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        PooledWorker worker = idle.poll(timeoutSeconds, TimeUnit.SECONDS);
+        if (worker == null) {
+            throw new RuntimeException("Web search timed out waiting for a Python context");
+        }
+        Future<String> future = executor.submit(() -> worker.delegate.search(query, NUM_RESULTS));
+        String json;
         try {
-            pyResult = future.get(timeoutSeconds, TimeUnit.SECONDS);
+            json = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
         } catch (TimeoutException e) {
             future.cancel(true);
+            retire(worker, "timed out");
             throw new RuntimeException("Web search timed out", e);
         } catch (ExecutionException e) {
             Throwable cause = e.getCause() == null ? e : e.getCause();
+            if (worker.delegate.isBroken(cause) || ++worker.consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                retire(worker, cause.getMessage());
+            } else {
+                release(worker);
+            }
             throw new RuntimeException("Web search execution failed: " + cause.getMessage(), cause);
         }
+        worker.consecutiveFailures = 0;
+        if (++worker.calls >= maxCallsPerContext) {
+            retire(worker, "reached " + maxCallsPerContext + " calls");
+        } else {
+            release(worker);
+        }
+        return objectMapper.readValue(json, new TypeReference<>() {
+        });
+    }
 
-        if (!pyResult.isString()) {
-            throw new RuntimeException("Web search returned non-string JSON: " + pyResult);
+    private void release(PooledWorker worker) {
+        if (closed || !idle.offer(worker)) {
+            retire(worker, "pool closed");
         }
+    }
 
-        return objectMapper.readValue(
-                pyResult.asString(),
-                new TypeReference<>() {
-                }
-        );
+    private void retire(PooledWorker worker, String reason) {
+        log.debug("Recycling GraalPy search context: {}", reason);
+        closeQuietly(worker);
+        provisioned.decrementAndGet();
+        topUp();
+    }
+
+    /**
+     * Starts background creation of contexts until the pool is back at {@code poolSize}. A failed
+     * creation is retried on the next search rather than in a loop.
+     */
+    private void topUp() {
+        while (!closed && pythonReady) {
+            int current = provisioned.get();
+            if (current >= poolSize) {
+                return;
+            }
+            if (provisioned.compareAndSet(current, current + 1)) {
+                Thread.ofVirtual().name("graalpy-search-warmup").start(() -> {
+                    try {
+                        release(new PooledWorker(workerFactory.get()));
+                    } catch (RuntimeException e) {
+                        provisioned.decrementAndGet();
+                        log.warn("GraalPy search context creation failed: {}", e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    static String normalizeQuery(String query) {
+        return Normalizer.normalize(query, Normalizer.Form.NFKC)
+                .strip()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static String gbkSafe(String query) {
+        // 百度按 GBK 处理查询，无法编码的字符替换为 '?'
+        return new String(query.getBytes(GBK), GBK);
+    }
+
+    private static void closeQuietly(PooledWorker worker) {
+        try {
+            worker.delegate.close();
+        } catch (Exception e) {
+            log.debug("GraalPy search context close failed: {}", e.getMessage());
+        }
     }
 
     @PreDestroy
     public void shutdown() {
+        closed = true;
         executor.shutdown();
         try {
             if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
@@ -129,5 +252,40 @@ public class AIChatSearchService {
             executor.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        PooledWorker worker;
+        while ((worker = idle.poll()) != null) {
+            closeQuietly(worker);
+        }
+    }
+
+    /**
+     * A search function bound inside one Python context. Calls are never concurrent.
+     */
+    interface SearchWorker extends AutoCloseable {
+
+        /**
+         * @return the crawler results as a JSON array of objects
+         */
+        String search(String query, int numResults);
+
+        /**
+         * Whether {@code error} left the context unusable, as opposed to a failure of this one call.
+         */
+        default boolean isBroken(Throwable error) {
+            return false;
+        }
+
+        @Override
+        void close();
+    }
+
+    private static final class PooledWorker {
+        private final SearchWorker delegate;
+        private int calls;
+        private int consecutiveFailures;
+
+        private PooledWorker(SearchWorker delegate) {
+            this.delegate = delegate;
+        }
     }
 }
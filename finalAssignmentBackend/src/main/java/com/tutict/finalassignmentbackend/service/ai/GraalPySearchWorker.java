@@ -0,0 +1,61 @@
+package com.tutict.finalassignmentbackend.service.ai;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+
+/**
+ * One pooled GraalPy context with {@code baidu_crawler} imported once and a bound search function,
+ * so each query is a function call with arguments rather than freshly evaluated source.
+ */
+final class GraalPySearchWorker implements AIChatSearchService.SearchWorker {
+
+    private static final String BIND_SEARCH = """
+            import json
+            from baidu_crawler import search as _baidu_search
+
+            def _search_json(query, num_results):
+                return json.dumps(_baidu_search(query, num_results=num_results, debug=False), ensure_ascii=False)
+
+            _search_json
+            """;
+
+    private final Context context;
+    private final Value searchFunction;
+
+    GraalPySearchWorker(Context context) {
+        this.context = context;
+        try {
+            this.searchFunction = context.eval("python", BIND_SEARCH);
+        } catch (RuntimeException e) {
+            context.close(true);
+            throw e;
+        }
+        if (!searchFunction.canExecute()) {
+            context.close(true);
+            throw new IllegalStateException("baidu_crawler search binding is not callable");
+        }
+    }
+
+    @Override
+    public String search(String query, int numResults) {
+        Value result = searchFunction.execute(query, numResults);
+        if (!result.isString()) {
+            throw new IllegalStateException("Web search returned non-string JSON: " + result);
+        }
+        return result.asString();
+    }
+
+    @Override
+    public boolean isBroken(Throwable error) {
+        // Python 层的普通异常（如网络错误）不影响上下文；取消、内部错误、资源耗尽后上下文不可再用
+        return error instanceof PolyglotException polyglot
+                && (polyglot.isCancelled() || polyglot.isInternalError()
+                || polyglot.isResourceExhausted() || polyglot.isExit());
+    }
+
+    @Override
+    public void close() {
+        context.close(true);
+    }
+}
@@ -3,13 +3,13 @@ package com.tutict.finalassignmentbackend.service.appeal;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.appeal.AppealReview;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.AppealReviewDocument;
 import com.tutict.finalassignmentbackend.mapper.appeal.AppealReviewMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.AppealReviewSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -35,22 +35,25 @@ public class AppealReviewService {
     private static final String CACHE_NAME = "appealReviewCache";
 
     private final AppealReviewMapper appealReviewMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final AppealReviewSearchRepository appealReviewSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public AppealReviewService(AppealReviewMapper appealReviewMapper,
-                               SysRequestHistoryMapper sysRequestHistoryMapper,
+                               IdempotencyStore idempotencyStore,
                                AppealReviewSearchRepository appealReviewSearchRepository,
                                KafkaTemplate<String, String> kafkaTemplate,
-                               ObjectMapper objectMapper) {
+                               ObjectMapper objectMapper,
+                               CdcIndexCoverage cdcIndexCoverage) {
         this.appealReviewMapper = appealReviewMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.appealReviewSearchRepository = appealReviewSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -58,23 +61,13 @@ public class AppealReviewService {
     @WsAction(service = "AppealReviewService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN", "APPEAL_REVIEWER"})
     public void checkAndInsertIdempotency(String idempotencyKey, AppealReview appealReview, String action) {
         Objects.requireNonNull(appealReview, "AppealReview must not be null");
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             throw new RuntimeException("Duplicate appeal review request detected");
         }
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
 
         sendKafkaMessage("appeal_review_" + action, idempotencyKey, appealReview);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(appealReview.getReviewId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, appealReview.getReviewId());
     }
 
     @Transactional
@@ -107,6 +100,9 @@ public class AppealReviewService {
         if (rows == 0) {
             throw new IllegalStateException("No AppealReview deleted for id=" + reviewId);
         }
+        if (cdcIndexCoverage.covers(AppealReviewDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -198,35 +194,15 @@ public class AppealReviewService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long reviewId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(reviewId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, reviewId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, AppealReview appealReview) {
@@ -240,7 +216,7 @@ public class AppealReviewService {
     }
 
     private void syncToIndexAfterCommit(AppealReview appealReview) {
-        if (appealReview == null) {
+        if (appealReview == null || cdcIndexCoverage.covers(AppealReviewDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -329,11 +305,4 @@ public class AppealReviewService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -4,13 +4,15 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tutict.finalassignmentbackend.common.PageLimits;
+import com.tutict.finalassignmentbackend.common.export.ExportScanner;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.audit.AuditLoginLog;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.AuditLoginLogDocument;
 import com.tutict.finalassignmentbackend.mapper.audit.AuditLoginLogMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.AuditLoginLogSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -26,12 +28,13 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 public class AuditLoginLogService {
@@ -40,22 +43,28 @@ public class AuditLoginLogService {
     private static final String CACHE_NAME = "auditLoginLogCache";
 
     private final AuditLoginLogMapper auditLoginLogMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final AuditLoginLogSearchRepository auditLoginLogSearchRepository;
+    private final ExportScanner exportScanner;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public AuditLoginLogService(AuditLoginLogMapper auditLoginLogMapper,
-                                SysRequestHistoryMapper sysRequestHistoryMapper,
+                                IdempotencyStore idempotencyStore,
                                 AuditLoginLogSearchRepository auditLoginLogSearchRepository,
                                 KafkaTemplate<String, String> kafkaTemplate,
-                                ObjectMapper objectMapper) {
+                                ObjectMapper objectMapper,
+                                CdcIndexCoverage cdcIndexCoverage,
+                                ExportScanner exportScanner) {
         this.auditLoginLogMapper = auditLoginLogMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.auditLoginLogSearchRepository = auditLoginLogSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.exportScanner = exportScanner;
     }
 
     @Transactional
@@ -63,24 +72,13 @@ public class AuditLoginLogService {
     @WsAction(service = "AuditLoginLogService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, AuditLoginLog loginLog, String action) {
         Objects.requireNonNull(loginLog, "AuditLoginLog must not be null");
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             throw new RuntimeException("Duplicate audit login log request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("audit_login_log_" + action, idempotencyKey, loginLog);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(loginLog.getLogId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, loginLog.getLogId());
     }
 
     @Transactional
@@ -113,6 +111,9 @@ public class AuditLoginLogService {
         if (rows == 0) {
             throw new IllegalStateException("Audit login log not found for id=" + logId);
         }
+        if (cdcIndexCoverage.covers(AuditLoginLogDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -136,18 +137,27 @@ public class AuditLoginLogService {
                 });
     }
 
+    /**
+     * @deprecated materializes the whole table; use {@link #exportAll} instead.
+     */
+    @Deprecated
     @Transactional(readOnly = true)
-    @Cacheable(cacheNames = CACHE_NAME, key = "'all'", unless = "#result == null || #result.isEmpty()")
     public List<AuditLoginLog> findAll() {
-        List<AuditLoginLog> fromIndex = StreamSupport.stream(auditLoginLogSearchRepository.findAll().spliterator(), false)
-                .map(AuditLoginLogDocument::toEntity)
-                .collect(Collectors.toList());
-        if (!fromIndex.isEmpty()) {
-            return fromIndex;
+        List<AuditLoginLog> all = new ArrayList<>();
+        exportAll(ExportSource.DATABASE, all::addAll);
+        return all;
+    }
+
+    /**
+     * Streams every row page by page; see {@link ExportScanner}.
+     */
+    public void exportAll(ExportSource source, Consumer<List<AuditLoginLog>> sink) {
+        if (source == ExportSource.INDEX) {
+            exportScanner.scanIndex(AuditLoginLogDocument.class,
+                    page -> sink.accept(page.stream().map(AuditLoginLogDocument::toEntity).toList()));
+            return;
         }
-        List<AuditLoginLog> fromDb = auditLoginLogMapper.selectList(null);
-        syncBatchToIndexAfterCommit(fromDb);
-        return fromDb;
+        exportScanner.scanTable(auditLoginLogMapper, AuditLoginLog.class, sink);
     }
 
     @Transactional(readOnly = true)
@@ -308,35 +318,15 @@ public class AuditLoginLogService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long logId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(logId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, logId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, AuditLoginLog loginLog) {
@@ -350,6 +340,9 @@ public class AuditLoginLogService {
     }
 
     private void syncToIndexAfterCommit(AuditLoginLog loginLog) {
+        if (cdcIndexCoverage.covers(AuditLoginLogDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -457,11 +450,4 @@ public class AuditLoginLogService {
             default -> "Failed";
         };
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
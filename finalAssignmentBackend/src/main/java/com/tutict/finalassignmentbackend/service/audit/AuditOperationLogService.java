@@ -4,13 +4,15 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tutict.finalassignmentbackend.common.PageLimits;
+import com.tutict.finalassignmentbackend.common.export.ExportScanner;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.audit.AuditOperationLog;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.AuditOperationLogDocument;
 import com.tutict.finalassignmentbackend.mapper.audit.AuditOperationLogMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.AuditOperationLogSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -26,12 +28,13 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 public class AuditOperationLogService {
@@ -40,22 +43,28 @@ public class AuditOperationLogService {
     private static final String CACHE_NAME = "auditOperationLogCache";
 
     private final AuditOperationLogMapper auditOperationLogMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final AuditOperationLogSearchRepository auditOperationLogSearchRepository;
+    private final ExportScanner exportScanner;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public AuditOperationLogService(AuditOperationLogMapper auditOperationLogMapper,
-                                    SysRequestHistoryMapper sysRequestHistoryMapper,
+                                    IdempotencyStore idempotencyStore,
                                     AuditOperationLogSearchRepository auditOperationLogSearchRepository,
                                     KafkaTemplate<String, String> kafkaTemplate,
-                                    ObjectMapper objectMapper) {
+                                    ObjectMapper objectMapper,
+                                    CdcIndexCoverage cdcIndexCoverage,
+                                    ExportScanner exportScanner) {
         this.auditOperationLogMapper = auditOperationLogMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.auditOperationLogSearchRepository = auditOperationLogSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.exportScanner = exportScanner;
     }
 
     @Transactional
@@ -63,24 +72,13 @@ public class AuditOperationLogService {
     @WsAction(service = "AuditOperationLogService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN"})
     public void checkAndInsertIdempotency(String idempotencyKey, AuditOperationLog auditOperationLog, String action) {
         Objects.requireNonNull(auditOperationLog, "AuditOperationLog must not be null");
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             throw new RuntimeException("Duplicate audit operation log request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("audit_operation_log_" + action, idempotencyKey, auditOperationLog);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(auditOperationLog.getLogId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, auditOperationLog.getLogId());
     }
 
     @Transactional
@@ -113,6 +111,9 @@ public class AuditOperationLogService {
         if (rows == 0) {
             throw new IllegalStateException("Audit operation log not found for id=" + logId);
         }
+        if (cdcIndexCoverage.covers(AuditOperationLogDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -136,18 +137,27 @@ public class AuditOperationLogService {
                 });
     }
 
+    /**
+     * @deprecated materializes the whole table; use {@link #exportAll} instead.
+     */
+    @Deprecated
     @Transactional(readOnly = true)
-    @Cacheable(cacheNames = CACHE_NAME, key = "'all'", unless = "#result == null || #result.isEmpty()")
     public List<AuditOperationLog> findAll() {
-        List<AuditOperationLog> fromIndex = StreamSupport.stream(auditOperationLogSearchRepository.findAll().spliterator(), false)
-                .map(AuditOperationLogDocument::toEntity)
-                .collect(Collectors.toList());
-        if (!fromIndex.isEmpty()) {
-            return fromIndex;
+        List<AuditOperationLog> all = new ArrayList<>();
+        exportAll(ExportSource.DATABASE, all::addAll);
+        return all;
+    }
+
+    /**
+     * Streams every row page by page; see {@link ExportScanner}.
+     */
+    public void exportAll(ExportSource source, Consumer<List<AuditOperationLog>> sink) {
+        if (source == ExportSource.INDEX) {
+            exportScanner.scanIndex(AuditOperationLogDocument.class,
+                    page -> sink.accept(page.stream().map(AuditOperationLogDocument::toEntity).toList()));
+            return;
         }
-        List<AuditOperationLog> fromDb = auditOperationLogMapper.selectList(null);
-        syncBatchToIndexAfterCommit(fromDb);
-        return fromDb;
+        exportScanner.scanTable(auditOperationLogMapper, AuditOperationLog.class, sink);
     }
 
     @Transactional(readOnly = true)
@@ -304,35 +314,15 @@ public class AuditOperationLogService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long logId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(logId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, logId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, AuditOperationLog auditOperationLog) {
@@ -346,7 +336,7 @@ public class AuditOperationLogService {
     }
 
     private void syncToIndexAfterCommit(AuditOperationLog auditOperationLog) {
-        if (auditOperationLog == null) {
+        if (auditOperationLog == null || cdcIndexCoverage.covers(AuditOperationLogDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -437,11 +427,4 @@ public class AuditOperationLogService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
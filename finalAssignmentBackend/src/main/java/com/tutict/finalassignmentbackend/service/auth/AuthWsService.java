@@ -1,9 +1,11 @@
 package com.tutict.finalassignmentbackend.service.auth;
 
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
 import com.tutict.finalassignmentbackend.config.login.jwt.TokenProvider;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.dto.mapper.UserResponseMapper;
 import com.tutict.finalassignmentbackend.dto.request.RefreshRequest;
+import com.tutict.finalassignmentbackend.dto.response.AuthorizationSnapshot;
 import com.tutict.finalassignmentbackend.dto.response.TokenResponse;
 import com.tutict.finalassignmentbackend.dto.response.UserProfileResponse;
 import com.tutict.finalassignmentbackend.dto.response.UserResponse;
@@ -14,9 +16,9 @@ import com.tutict.finalassignmentbackend.entity.admin.SysRole;
 import com.tutict.finalassignmentbackend.entity.admin.SysUser;
 import com.tutict.finalassignmentbackend.entity.admin.SysUserRole;
 import com.tutict.finalassignmentbackend.enums.DataScope;
-import com.tutict.finalassignmentbackend.enums.RoleType;
 import com.tutict.finalassignmentbackend.exception.EntityNotFoundException;
 import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import com.tutict.finalassignmentbackend.service.admin.AuthorizationSnapshotService;
 import com.tutict.finalassignmentbackend.service.admin.SysRoleService;
 import com.tutict.finalassignmentbackend.service.admin.SysUserRoleService;
 import com.tutict.finalassignmentbackend.service.admin.SysUserService;
@@ -35,22 +37,19 @@ import jakarta.validation.constraints.NotBlank;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 public class AuthWsService {
 
     private static final Logger logger = Logger.getLogger(AuthWsService.class.getName());
-    private static final int MAX_ROLE_PAGE_SIZE = 100;
     private static final String PUBLIC_REGISTER_ROLE = "USER";
     private static final Set<String> DRIVER_PROFILE_ROLES = Set.of("USER");
     private static final Set<String> STAFF_ROLES = Set.of(
@@ -66,6 +65,7 @@ public class AuthWsService {
     private final SysUserService sysUserService;
     private final SysRoleService sysRoleService;
     private final SysUserRoleService sysUserRoleService;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
     private final SysRequestHistoryMapper sysRequestHistoryMapper;
     private final PasswordEncoder passwordEncoder;
     private final RefreshTokenService refreshTokenService;
@@ -78,6 +78,7 @@ public class AuthWsService {
                          SysUserService sysUserService,
                          SysRoleService sysRoleService,
                          SysUserRoleService sysUserRoleService,
+                         AuthorizationSnapshotService authorizationSnapshotService,
                          SysRequestHistoryMapper sysRequestHistoryMapper,
                          PasswordEncoder passwordEncoder,
                          RefreshTokenService refreshTokenService,
@@ -88,6 +89,7 @@ public class AuthWsService {
         this.sysUserService = sysUserService;
         this.sysRoleService = sysRoleService;
         this.sysUserRoleService = sysUserRoleService;
+        this.authorizationSnapshotService = authorizationSnapshotService;
         this.sysRequestHistoryMapper = sysRequestHistoryMapper;
         this.passwordEncoder = passwordEncoder;
         this.refreshTokenService = refreshTokenService;
@@ -266,6 +268,11 @@ public class AuthWsService {
         return "CREATED";
     }
 
+    /**
+     * @deprecated materializes every user; kept only for the WebSocket action. HTTP callers use
+     * {@link #exportUsers}.
+     */
+    @Deprecated
     @CacheEvict(cacheNames = "AuthCache", allEntries = true)
     @WsAction(service = "AuthWsService", action = "getAllUsers", roles = {"SUPER_ADMIN", "ADMIN"})
     public List<UserResponse> getAllUsers() {
@@ -279,6 +286,14 @@ public class AuthWsService {
                 .toList();
     }
 
+    /**
+     * Streams every user page by page as {@link UserResponse}s.
+     */
+    public void exportUsers(Consumer<List<UserResponse>> sink) {
+        sysUserService.exportAll(ExportSource.DATABASE,
+                users -> sink.accept(users.stream().map(UserResponseMapper::toResponse).toList()));
+    }
+
     private SysRequestHistory createRegisterHistory(RegisterRequest registerRequest) {
         SysRequestHistory history = new SysRequestHistory();
         history.setIdempotencyKey(registerRequest.getIdempotencyKey());
@@ -427,7 +442,7 @@ public class AuthWsService {
     }
 
     private SysRole resolveOrCreateRole(String requestedRole) {
-        String roleCode = normalizeRoleCode(StringUtils.hasText(requestedRole) ? requestedRole : "USER");
+        String roleCode = AuthorizationSnapshotService.normalizeRoleCode(StringUtils.hasText(requestedRole) ? requestedRole : "USER");
         SysRole role = sysRoleService.findByRoleCode(roleCode);
         if (role != null) {
             return role;
@@ -476,43 +491,12 @@ public class AuthWsService {
             return RoleAggregation.empty();
         }
         try {
-            List<SysUserRole> relations = sysUserRoleService.findByUserId(userId, 1, MAX_ROLE_PAGE_SIZE);
-            if (relations == null || relations.isEmpty()) {
-                return RoleAggregation.empty();
-            }
-            List<String> roleNames = new ArrayList<>();
-            List<String> roleCodes = new ArrayList<>();
-            List<String> roleTypes = new ArrayList<>();
-            DataScope aggregatedScope = DataScope.SELF;
-
-            for (SysUserRole relation : relations) {
-                if (relation == null || relation.getRoleId() == null) {
-                    continue;
-                }
-                SysRole role = sysRoleService.findById(relation.getRoleId());
-                if (role == null) {
-                    continue;
-                }
-                if (StringUtils.hasText(role.getRoleName())) {
-                    roleNames.add(role.getRoleName());
-                }
-                String roleCode = resolveRoleCode(role);
-                if (StringUtils.hasText(roleCode)) {
-                    roleCodes.add(roleCode);
-                }
-                String roleType = resolveRoleType(role);
-                if (StringUtils.hasText(roleType)) {
-                    roleTypes.add(roleType);
-                }
-                DataScope requiredScope = resolveDataScope(role);
-                aggregatedScope = widenScope(aggregatedScope, requiredScope);
-            }
-
+            AuthorizationSnapshot snapshot = authorizationSnapshotService.getSnapshot(userId);
             return new RoleAggregation(
-                    roleNames.stream().distinct().collect(Collectors.toList()),
-                    roleCodes.stream().distinct().collect(Collectors.toList()),
-                    roleTypes.stream().distinct().collect(Collectors.toList()),
-                    aggregatedScope
+                    snapshot.roleNames(),
+                    snapshot.roleCodes(),
+                    snapshot.roleTypes(),
+                    snapshot.dataScope()
             );
         } catch (Exception ex) {
             logger.log(Level.WARNING, "Failed to aggregate roles for userId=" + userId, ex);
@@ -520,64 +504,6 @@ public class AuthWsService {
         }
     }
 
-    private String resolveRoleCode(SysRole role) {
-        if (role == null) {
-            return null;
-        }
-        String code = StringUtils.hasText(role.getRoleCode()) ? role.getRoleCode() : role.getRoleName();
-        return StringUtils.hasText(code) ? normalizeRoleCode(code) : null;
-    }
-
-    private static String normalizeRoleCode(String roleCode) {
-        if (!StringUtils.hasText(roleCode)) {
-            return null;
-        }
-        String normalized = roleCode.trim().toUpperCase(Locale.ROOT);
-        if (normalized.startsWith("ROLE_")) {
-            return normalized.substring("ROLE_".length());
-        }
-        return normalized;
-    }
-
-    private String resolveRoleType(SysRole role) {
-        if (role == null || !StringUtils.hasText(role.getRoleType())) {
-            return RoleType.BUSINESS.getCode();
-        }
-        RoleType type = RoleType.fromCode(role.getRoleType());
-        return type != null ? type.getCode() : RoleType.BUSINESS.getCode();
-    }
-
-    private DataScope resolveDataScope(SysRole role) {
-        if (role == null) {
-            return DataScope.SELF;
-        }
-        DataScope scope = DataScope.fromCode(role.getDataScope());
-        return scope != null ? scope : DataScope.SELF;
-    }
-
-    private DataScope widenScope(DataScope current, DataScope candidate) {
-        if (candidate == null) {
-            return current;
-        }
-        if (current == null) {
-            return candidate;
-        }
-        return scopeRank(candidate) > scopeRank(current) ? candidate : current;
-    }
-
-    private int scopeRank(DataScope scope) {
-        if (scope == null) {
-            return 0;
-        }
-        return switch (scope) {
-            case CUSTOM -> 1;
-            case SELF -> 2;
-            case DEPARTMENT -> 3;
-            case DEPARTMENT_AND_SUB -> 4;
-            case ALL -> 5;
-        };
-    }
-
     private String truncate(String value, int maxLength) {
         if (value == null || value.length() <= maxLength) {
             return value;
@@ -2,8 +2,16 @@ package com.tutict.finalassignmentbackend.service.auth;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -13,28 +21,51 @@ import java.security.NoSuchAlgorithmException;
 import java.util.HexFormat;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Access-token revocation list in Redis ({@code blacklist:<sha256>} with the token's remaining TTL).
+ * <p>
+ * With the local filter enabled, every node keeps the revoked digests in a {@link TokenRevocationFilter}:
+ * loaded from Redis once the revocation channel is subscribed, fed by {@link #blacklist} publications
+ * and re-synced periodically to cover pub/sub messages lost during reconnects. While the filter is
+ * ready, lookups never touch Redis; otherwise they fall back to {@code EXISTS} as before.
+ */
 @Service
-public class TokenBlacklistService {
+public class TokenBlacklistService implements MessageListener, SubscriptionListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(TokenBlacklistService.class);
     private static final String BLACKLIST_PREFIX = "blacklist:";
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final boolean failOpenWhenUnavailable;
+    private final boolean localFilterEnabled;
+    private final String revocationChannel;
+    private final ObjectProvider<StringRedisTemplate> publisher;
+    private final TokenRevocationFilter revocationFilter = new TokenRevocationFilter();
+    private volatile boolean subscribed;
 
     public TokenBlacklistService(
             RedisTemplate<String, Object> redisTemplate,
-            @Value("${app.security.token-blacklist.fail-open:false}") boolean failOpenWhenUnavailable) {
+            @Value("${app.security.token-blacklist.fail-open:false}") boolean failOpenWhenUnavailable,
+            @Value("${app.security.token-blacklist.local-filter.enabled:true}") boolean localFilterEnabled,
+            @Value("${app.security.token-blacklist.local-filter.channel:token-revocations}") String revocationChannel,
+            ObjectProvider<StringRedisTemplate> publisher) {
         this.redisTemplate = redisTemplate;
         this.failOpenWhenUnavailable = failOpenWhenUnavailable;
+        this.localFilterEnabled = localFilterEnabled;
+        this.revocationChannel = revocationChannel;
+        this.publisher = publisher;
     }
 
     public void blacklist(String token, long ttlMillis) {
         if (!StringUtils.hasText(token) || ttlMillis <= 0) {
             return;
         }
+        String digest = sha256(token);
+        long expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+        // 本节点立即生效，不依赖 pub/sub 回环
+        revocationFilter.add(digest, expiresAtMillis);
         try {
-            redisTemplate.opsForValue().set(key(token), "revoked", ttlMillis, TimeUnit.MILLISECONDS);
+            redisTemplate.opsForValue().set(BLACKLIST_PREFIX + digest, "revoked", ttlMillis, TimeUnit.MILLISECONDS);
         } catch (RuntimeException ex) {
             if (failOpenWhenUnavailable) {
                 LOG.warn("Failed to blacklist access token because Redis is unavailable", ex);
@@ -42,22 +73,102 @@ public class TokenBlacklistService {
             }
             throw ex;
         }
+        publish(digest, expiresAtMillis);
     }
 
     public boolean isBlacklisted(String token) {
         if (!StringUtils.hasText(token)) {
             return false;
         }
+        String digest = sha256(token);
+        if (revocationFilter.isReady()) {
+            return revocationFilter.contains(digest);
+        }
         try {
-            return Boolean.TRUE.equals(redisTemplate.hasKey(key(token)));
+            return Boolean.TRUE.equals(redisTemplate.hasKey(BLACKLIST_PREFIX + digest));
         } catch (RuntimeException ex) {
             LOG.error("Failed to check access token blacklist", ex);
             return !failOpenWhenUnavailable;
         }
     }
 
-    private String key(String token) {
-        return BLACKLIST_PREFIX + sha256(token);
+    public String getRevocationChannel() {
+        return revocationChannel;
+    }
+
+    /**
+     * Reloads every revoked digest from Redis and, on success, lets lookups trust the local filter.
+     * Runs after each (re)subscription and periodically; does nothing while the channel is not subscribed.
+     */
+    @Scheduled(
+            initialDelayString = "${app.security.token-blacklist.local-filter.resync-interval-ms:300000}",
+            fixedDelayString = "${app.security.token-blacklist.local-filter.resync-interval-ms:300000}")
+    public void resync() {
+        if (!localFilterEnabled || !subscribed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ScanOptions options = ScanOptions.scanOptions().match(BLACKLIST_PREFIX + "*").count(1000).build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Long ttlMillis = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+                if (ttlMillis != null && ttlMillis > 0) {
+                    revocationFilter.add(key.substring(BLACKLIST_PREFIX.length()), now + ttlMillis);
+                }
+            }
+            if (subscribed) {
+                revocationFilter.markReady();
+                LOG.debug("Token revocation filter synced with {} entries", revocationFilter.size());
+            }
+        } catch (RuntimeException ex) {
+            revocationFilter.markStale();
+            LOG.warn("Failed to load token blacklist, falling back to Redis lookups", ex);
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        subscribed = true;
+        // 订阅回调运行在 Redis 客户端线程上，加载放到虚拟线程里
+        Thread.ofVirtual().name("token-revocation-sync").start(this::resync);
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] channel, long count) {
+        subscribed = false;
+        revocationFilter.markStale();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0) {
+            LOG.warn("Ignoring malformed token revocation message");
+            return;
+        }
+        try {
+            revocationFilter.add(body.substring(0, separator), Long.parseLong(body.substring(separator + 1)));
+        } catch (NumberFormatException ex) {
+            LOG.warn("Ignoring malformed token revocation message");
+        }
+    }
+
+    private void publish(String digest, long expiresAtMillis) {
+        if (!localFilterEnabled) {
+            return;
+        }
+        StringRedisTemplate template = publisher == null ? null : publisher.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+        try {
+            template.convertAndSend(revocationChannel, digest + ":" + expiresAtMillis);
+        } catch (RuntimeException ex) {
+            // 丢失的广播由定期 resync 补齐
+            LOG.warn("Failed to publish token revocation", ex);
+        }
     }
 
     private String sha256(String value) {
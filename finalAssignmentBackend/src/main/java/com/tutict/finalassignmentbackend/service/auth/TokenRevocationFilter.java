@@ -0,0 +1,47 @@
+package com.tutict.finalassignmentbackend.service.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+
+/**
+ * Node-local set of revoked token digests, each expiring with its token. Only authoritative while
+ * {@link #isReady() ready}, i.e. after a full load from Redis with the revocation channel subscribed;
+ * otherwise callers must ask Redis.
+ */
+final class TokenRevocationFilter {
+
+    private final Cache<String, Long> revoked = Caffeine.newBuilder()
+            .expireAfter(Expiry.writing((String digest, Long expiresAtMillis) ->
+                    Duration.ofMillis(Math.max(0, expiresAtMillis - System.currentTimeMillis()))))
+            .build();
+    private volatile boolean ready;
+
+    void add(String digest, long expiresAtMillis) {
+        if (expiresAtMillis > System.currentTimeMillis()) {
+            revoked.asMap().merge(digest, expiresAtMillis, Math::max);
+        }
+    }
+
+    boolean contains(String digest) {
+        return revoked.getIfPresent(digest) != null;
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    void markReady() {
+        ready = true;
+    }
+
+    void markStale() {
+        ready = false;
+    }
+
+    long size() {
+        return revoked.estimatedSize();
+    }
+}
@@ -23,18 +23,24 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class BusinessRecordViewService {
 
+    // 分组统计时 IN 列表的分片大小，避免超长 SQL
+    private static final int COUNT_CHUNK_SIZE = 1000;
+
     private final DriverInformationMapper driverInformationMapper;
     private final VehicleInformationMapper vehicleInformationMapper;
     private final OffenseRecordMapper offenseRecordMapper;
@@ -212,16 +218,26 @@ public class BusinessRecordViewService {
         Map<Long, SysUser> users = usersById(records.stream()
                 .map(DriverInformation::getAuthUserId)
                 .collect(Collectors.toSet()));
+        Set<Long> driverIds = records.stream()
+                .map(DriverInformation::getDriverId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        // 每种关联一次分组统计，查询次数与页大小无关
+        Map<Long, Long> vehicleCounts = countGrouped(vehicleInformationMapper, "driver_id", driverIds, null);
+        Map<Long, Long> offenseCounts = countGrouped(offenseRecordMapper, "driver_id", driverIds, null);
+        Map<Long, Long> unpaidFineCounts = countGrouped(fineRecordMapper, "driver_id", driverIds, this::unpaidOnly);
+        Map<Long, Long> appealCounts = countGrouped(appealRecordMapper, "driver_id", driverIds, null);
         records.forEach(driver -> {
             SysUser user = users.get(driver.getAuthUserId());
             if (user != null) {
                 driver.setUsername(user.getUsername());
                 driver.setAccountStatus(user.getStatus());
             }
-            driver.setVehicleCount(countByDriver(vehicleInformationMapper, "driver_id", driver.getDriverId()));
-            driver.setOffenseCount(countByDriver(offenseRecordMapper, "driver_id", driver.getDriverId()));
-            driver.setUnpaidFineCount(countUnpaidFinesByDriver(driver.getDriverId()));
-            driver.setAppealCount(countByDriver(appealRecordMapper, "driver_id", driver.getDriverId()));
+            Long driverId = driver.getDriverId();
+            driver.setVehicleCount(vehicleCounts.getOrDefault(driverId, 0L));
+            driver.setOffenseCount(offenseCounts.getOrDefault(driverId, 0L));
+            driver.setUnpaidFineCount(unpaidFineCounts.getOrDefault(driverId, 0L));
+            driver.setAppealCount(appealCounts.getOrDefault(driverId, 0L));
         });
         return records;
     }
@@ -243,12 +259,24 @@ public class BusinessRecordViewService {
         Map<Long, DriverInformation> drivers = driversById(records.stream()
                 .map(VehicleInformation::getDriverId)
                 .collect(Collectors.toSet()));
+        // 罚款和申诉只关联到违法记录：先取本页车辆的违法记录，再按 offense_id 分组统计后归并到车辆
+        Map<Long, Long> vehicleByOffense = offenseVehicleIds(records.stream()
+                .map(VehicleInformation::getVehicleId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        Map<Long, Long> offenseCounts = new HashMap<>();
+        vehicleByOffense.values().forEach(vehicleId -> offenseCounts.merge(vehicleId, 1L, Long::sum));
+        Map<Long, Long> unpaidFineCounts = rollUp(vehicleByOffense,
+                countGrouped(fineRecordMapper, "offense_id", vehicleByOffense.keySet(), this::unpaidOnly));
+        Map<Long, Long> appealCounts = rollUp(vehicleByOffense,
+                countGrouped(appealRecordMapper, "offense_id", vehicleByOffense.keySet(), null));
         records.forEach(vehicle -> {
             DriverInformation driver = drivers.get(vehicle.getDriverId());
             applyDriver(vehicle, driver);
-            vehicle.setOffenseCount(countByVehicle(offenseRecordMapper, "vehicle_id", vehicle.getVehicleId()));
-            vehicle.setUnpaidFineCount(countUnpaidFinesByVehicle(vehicle.getVehicleId()));
-            vehicle.setAppealCount(countAppealsByVehicle(vehicle.getVehicleId()));
+            Long vehicleId = vehicle.getVehicleId();
+            vehicle.setOffenseCount(offenseCounts.getOrDefault(vehicleId, 0L));
+            vehicle.setUnpaidFineCount(unpaidFineCounts.getOrDefault(vehicleId, 0L));
+            vehicle.setAppealCount(appealCounts.getOrDefault(vehicleId, 0L));
         });
         return records;
     }
@@ -460,62 +488,107 @@ public class BusinessRecordViewService {
         return mpPage.getRecords();
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
-    private Long countByDriver(BaseMapper mapper, String column, Long driverId) {
-        if (driverId == null) {
-            return 0L;
+    /**
+     * One {@code SELECT column, COUNT(*) ... GROUP BY column} per chunk of ids; logical deletes are
+     * applied by MyBatis-Plus as for any other wrapper query.
+     *
+     * @return count per id, ids without rows are absent
+     */
+    private <T> Map<Long, Long> countGrouped(BaseMapper<T> mapper,
+                                             String column,
+                                             Collection<Long> ids,
+                                             Consumer<QueryWrapper<T>> scope) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyMap();
         }
-        return mapper.selectCount(new QueryWrapper<>().eq(column, driverId));
+        Map<Long, Long> counts = new HashMap<>();
+        for (List<Long> chunk : chunks(ids)) {
+            QueryWrapper<T> wrapper = new QueryWrapper<T>()
+                    .select(column + " AS gid", "COUNT(*) AS cnt")
+                    .in(column, chunk);
+            if (scope != null) {
+                scope.accept(wrapper);
+            }
+            wrapper.groupBy(column);
+            for (Map<String, Object> row : mapper.selectMaps(wrapper)) {
+                Long id = toLong(column(row, "gid"));
+                Long count = toLong(column(row, "cnt"));
+                if (id != null && count != null) {
+                    counts.merge(id, count, Long::sum);
+                }
+            }
+        }
+        return counts;
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
-    private Long countByVehicle(BaseMapper mapper, String column, Long vehicleId) {
-        if (vehicleId == null) {
-            return 0L;
-        }
-        return mapper.selectCount(new QueryWrapper<>().eq(column, vehicleId));
+    private void unpaidOnly(QueryWrapper<FineRecord> wrapper) {
+        wrapper.and(scope -> scope.ne("payment_status", "Paid").or().isNull("payment_status"));
     }
 
-    private Long countUnpaidFinesByDriver(Long driverId) {
-        if (driverId == null) {
-            return 0L;
+    private Map<Long, Long> offenseVehicleIds(Collection<Long> vehicleIds) {
+        if (vehicleIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Long> vehicleByOffense = new HashMap<>();
+        for (List<Long> chunk : chunks(vehicleIds)) {
+            QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<OffenseRecord>()
+                    .select("offense_id", "vehicle_id")
+                    .in("vehicle_id", chunk);
+            for (OffenseRecord offense : offenseRecordMapper.selectList(wrapper)) {
+                if (offense.getOffenseId() != null && offense.getVehicleId() != null) {
+                    vehicleByOffense.put(offense.getOffenseId(), offense.getVehicleId());
+                }
+            }
         }
-        QueryWrapper<FineRecord> wrapper = new QueryWrapper<FineRecord>()
-                .eq("driver_id", driverId)
-                .and(scope -> scope.ne("payment_status", "Paid").or().isNull("payment_status"));
-        return fineRecordMapper.selectCount(wrapper);
+        return vehicleByOffense;
     }
 
-    private Long countUnpaidFinesByVehicle(Long vehicleId) {
-        Set<Long> offenseIds = offenseIdsByVehicle(vehicleId);
-        if (offenseIds.isEmpty()) {
-            return 0L;
+    private Map<Long, Long> rollUp(Map<Long, Long> vehicleByOffense, Map<Long, Long> countsByOffense) {
+        Map<Long, Long> counts = new HashMap<>();
+        countsByOffense.forEach((offenseId, count) -> {
+            Long vehicleId = vehicleByOffense.get(offenseId);
+            if (vehicleId != null) {
+                counts.merge(vehicleId, count, Long::sum);
+            }
+        });
+        return counts;
+    }
+
+    private List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> values = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += COUNT_CHUNK_SIZE) {
+            chunks.add(values.subList(from, Math.min(values.size(), from + COUNT_CHUNK_SIZE)));
         }
-        QueryWrapper<FineRecord> wrapper = new QueryWrapper<FineRecord>()
-                .in("offense_id", offenseIds)
-                .and(scope -> scope.ne("payment_status", "Paid").or().isNull("payment_status"));
-        return fineRecordMapper.selectCount(wrapper);
+        return chunks;
     }
 
-    private Long countAppealsByVehicle(Long vehicleId) {
-        Set<Long> offenseIds = offenseIdsByVehicle(vehicleId);
-        if (offenseIds.isEmpty()) {
-            return 0L;
+    private Object column(Map<String, Object> row, String label) {
+        // 列标签大小写随数据库而异（MySQL 原样返回，H2 转大写）
+        Object value = row.get(label);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (label.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
         }
-        return appealRecordMapper.selectCount(new QueryWrapper<AppealRecord>().in("offense_id", offenseIds));
+        return null;
     }
 
-    private Set<Long> offenseIdsByVehicle(Long vehicleId) {
-        if (vehicleId == null) {
-            return Set.of();
+    private Long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
         }
-        QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<OffenseRecord>()
-                .select("offense_id")
-                .eq("vehicle_id", vehicleId);
-        return offenseRecordMapper.selectList(wrapper).stream()
-                .map(OffenseRecord::getOffenseId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        if (value != null) {
+            try {
+                return Long.valueOf(value.toString().trim());
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+        return null;
     }
 
     private String resolveOffenseType(OffenseRecord offense) {
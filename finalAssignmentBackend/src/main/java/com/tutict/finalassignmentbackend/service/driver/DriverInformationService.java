@@ -3,15 +3,17 @@ package com.tutict.finalassignmentbackend.service.driver;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.export.ExportScanner;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.driver.DriverInformation;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.admin.SysUser;
 import com.tutict.finalassignmentbackend.entity.elastic.DriverInformationDocument;
 import com.tutict.finalassignmentbackend.mapper.driver.DriverInformationMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.admin.SysUserMapper;
 import com.tutict.finalassignmentbackend.repository.DriverInformationSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.security.crypto.SensitiveDataPersistenceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
@@ -29,14 +31,15 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 public class DriverInformationService {
@@ -46,8 +49,10 @@ public class DriverInformationService {
 
     private final DriverInformationMapper driverInformationMapper;
     private final SysUserMapper sysUserMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final DriverInformationSearchRepository driverInformationSearchRepository;
+    private final ExportScanner exportScanner;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
     private final SensitiveDataPersistenceService sensitiveDataPersistenceService;
@@ -55,18 +60,22 @@ public class DriverInformationService {
     @Autowired
     public DriverInformationService(DriverInformationMapper driverInformationMapper,
                                     SysUserMapper sysUserMapper,
-                                    SysRequestHistoryMapper sysRequestHistoryMapper,
+                                    IdempotencyStore idempotencyStore,
                                     KafkaTemplate<String, String> kafkaTemplate,
                                     DriverInformationSearchRepository driverInformationSearchRepository,
                                     ObjectMapper objectMapper,
-                                    SensitiveDataPersistenceService sensitiveDataPersistenceService) {
+                                    SensitiveDataPersistenceService sensitiveDataPersistenceService,
+                                    CdcIndexCoverage cdcIndexCoverage,
+                                    ExportScanner exportScanner) {
         this.driverInformationMapper = driverInformationMapper;
         this.sysUserMapper = sysUserMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.kafkaTemplate = kafkaTemplate;
         this.driverInformationSearchRepository = driverInformationSearchRepository;
         this.objectMapper = objectMapper;
         this.sensitiveDataPersistenceService = sensitiveDataPersistenceService;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.exportScanner = exportScanner;
     }
 
     @Transactional
@@ -76,24 +85,15 @@ public class DriverInformationService {
         if (driverInformation == null) {
             throw new IllegalArgumentException("Driver information cannot be null");
         }
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             log.warning(() -> String.format("Duplicate driver request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate driver request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        sysRequestHistoryMapper.insert(history);
-
         sensitiveDataPersistenceService.prepare(driverInformation);
         sendKafkaMessage("driver_" + action, idempotencyKey, driverInformation);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(driverInformation.getDriverId());
-        history.setRequestParams("PENDING");
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, driverInformation.getDriverId());
     }
 
     @Transactional
@@ -139,6 +139,9 @@ public class DriverInformationService {
         if (rows == 0) {
             throw new IllegalStateException("Driver not found: " + driverId);
         }
+        if (cdcIndexCoverage.covers(DriverInformationDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -228,22 +231,35 @@ public class DriverInformationService {
         return driver;
     }
 
-    @Cacheable(cacheNames = CACHE_NAME, key = "'all'", unless = "#result == null || #result.isEmpty()")
+    /**
+     * @deprecated materializes the whole table; kept only for the {@code getAllDrivers} WebSocket action.
+     * Use {@link #exportAll} or {@link #findPage}.
+     */
+    @Deprecated
     @WsAction(service = "DriverInformationService", action = "getAllDrivers", roles = {"SUPER_ADMIN", "ADMIN", "TRAFFIC_POLICE"})
     public List<DriverInformation> getAllDrivers() {
-        List<DriverInformation> fromIndex = StreamSupport.stream(
-                        driverInformationSearchRepository.findAll().spliterator(), false)
-                .map(DriverInformationDocument::toEntity)
-                .collect(Collectors.toList());
-        if (!fromIndex.isEmpty()) {
-            return fromIndex;
+        List<DriverInformation> all = new ArrayList<>();
+        exportAll(ExportSource.DATABASE, all::addAll);
+        return all;
+    }
+
+    /**
+     * Streams every row page by page; see {@link ExportScanner}.
+     */
+    public void exportAll(ExportSource source, Consumer<List<DriverInformation>> sink) {
+        if (source == ExportSource.INDEX) {
+            exportScanner.scanIndex(DriverInformationDocument.class,
+                    page -> sink.accept(page.stream().map(DriverInformationDocument::toEntity).toList()));
+            return;
         }
-        List<DriverInformation> db = driverInformationMapper.selectList(null);
-        db.stream()
-                .map(DriverInformationDocument::fromEntity)
-                .filter(Objects::nonNull)
-                .forEach(driverInformationSearchRepository::save);
-        return db;
+        exportScanner.scanTable(driverInformationMapper, DriverInformation.class, sink);
+    }
+
+    public Page<DriverInformation> findPage(int page, int size) {
+        Page<DriverInformation> mpPage = new Page<>(Math.max(page, 1), Math.max(size, 1));
+        QueryWrapper<DriverInformation> wrapper = new QueryWrapper<>();
+        wrapper.orderByAsc("driver_id");
+        return driverInformationMapper.selectPage(mpPage, wrapper);
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'idCard:' + #query + ':' + #page + ':' + #size")
@@ -300,35 +316,15 @@ public class DriverInformationService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long driverId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(driverId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, driverId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void searchAndCollect(String query,
@@ -356,6 +352,9 @@ public class DriverInformationService {
     }
 
     private void syncToIndexAfterCommit(DriverInformation driverInformation) {
+        if (cdcIndexCoverage.covers(DriverInformationDocument.class)) {
+            return;
+        }
         if (!TransactionSynchronizationManager.isSynchronizationActive()) {
             DriverInformationDocument doc = DriverInformationDocument.fromEntity(driverInformation);
             if (doc != null) {
@@ -550,13 +549,6 @@ public class DriverInformationService {
         }
     }
 
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
-
     @FunctionalInterface
     private interface FunctionWithException<T, R> {
         R apply(T t) throws Exception;
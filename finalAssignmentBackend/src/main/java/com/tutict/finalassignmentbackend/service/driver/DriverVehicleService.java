@@ -3,15 +3,15 @@ package com.tutict.finalassignmentbackend.service.driver;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.driver.DriverVehicle;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.driver.VehicleInformation;
 import com.tutict.finalassignmentbackend.entity.elastic.DriverVehicleDocument;
 import com.tutict.finalassignmentbackend.mapper.driver.DriverVehicleMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.driver.VehicleInformationMapper;
 import com.tutict.finalassignmentbackend.repository.DriverVehicleSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -26,7 +26,6 @@ import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
 import java.util.logging.Level;
@@ -41,25 +40,28 @@ public class DriverVehicleService {
     private static final String CACHE_NAME = "driverVehicleCache";
 
     private final DriverVehicleMapper driverVehicleMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final DriverVehicleSearchRepository driverVehicleSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final VehicleInformationMapper vehicleInformationMapper;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public DriverVehicleService(DriverVehicleMapper driverVehicleMapper,
-                                SysRequestHistoryMapper sysRequestHistoryMapper,
+                                IdempotencyStore idempotencyStore,
                                 DriverVehicleSearchRepository driverVehicleSearchRepository,
                                 VehicleInformationMapper vehicleInformationMapper,
                                 KafkaTemplate<String, String> kafkaTemplate,
-                                ObjectMapper objectMapper) {
+                                ObjectMapper objectMapper,
+                                CdcIndexCoverage cdcIndexCoverage) {
         this.driverVehicleMapper = driverVehicleMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.driverVehicleSearchRepository = driverVehicleSearchRepository;
         this.vehicleInformationMapper = vehicleInformationMapper;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -67,26 +69,14 @@ public class DriverVehicleService {
     @WsAction(service = "DriverVehicleService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN", "TRAFFIC_POLICE"})
     public void checkAndInsertIdempotency(String idempotencyKey, DriverVehicle binding, String action) {
         Objects.requireNonNull(binding, "DriverVehicle must not be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             log.warning(() -> String.format("Duplicate driver-vehicle binding request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate driver-vehicle request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("driver_vehicle_" + action, idempotencyKey, binding);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(binding.getId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, binding.getId());
     }
 
     @Transactional
@@ -123,6 +113,9 @@ public class DriverVehicleService {
         if (rows == 0) {
             throw new IllegalStateException("Driver-vehicle binding not found for id=" + id);
         }
+        if (cdcIndexCoverage.covers(DriverVehicleDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -217,35 +210,15 @@ public class DriverVehicleService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long bindingId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(bindingId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, bindingId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, DriverVehicle binding) {
@@ -259,7 +232,7 @@ public class DriverVehicleService {
     }
 
     private void syncToIndexAfterCommit(DriverVehicle binding) {
-        if (binding == null) {
+        if (binding == null || cdcIndexCoverage.covers(DriverVehicleDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -381,11 +354,4 @@ public class DriverVehicleService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
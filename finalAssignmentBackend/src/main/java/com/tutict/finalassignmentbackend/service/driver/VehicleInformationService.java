@@ -2,13 +2,15 @@ package com.tutict.finalassignmentbackend.service.driver;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.tutict.finalassignmentbackend.common.export.ExportScanner;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.driver.VehicleInformation;
 import com.tutict.finalassignmentbackend.entity.elastic.VehicleInformationDocument;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.mapper.driver.VehicleInformationMapper;
 import com.tutict.finalassignmentbackend.repository.VehicleInformationSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.security.crypto.SensitiveDataPersistenceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
@@ -26,12 +28,12 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.ArrayList;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 public class VehicleInformationService {
@@ -41,22 +43,28 @@ public class VehicleInformationService {
     private static final String VEHICLE_INFO_LIST_CACHE = "vehicleInfoList";
 
     private final VehicleInformationMapper vehicleInformationMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final KafkaTemplate<String, VehicleInformation> kafkaTemplate;
     private final VehicleInformationSearchRepository vehicleInformationSearchRepository;
+    private final ExportScanner exportScanner;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final SensitiveDataPersistenceService sensitiveDataPersistenceService;
 
     @Autowired
     public VehicleInformationService(VehicleInformationMapper vehicleInformationMapper,
-                                     SysRequestHistoryMapper sysRequestHistoryMapper,
+                                     IdempotencyStore idempotencyStore,
                                      KafkaTemplate<String, VehicleInformation> kafkaTemplate,
                                      VehicleInformationSearchRepository vehicleInformationSearchRepository,
-                                     SensitiveDataPersistenceService sensitiveDataPersistenceService) {
+                                     SensitiveDataPersistenceService sensitiveDataPersistenceService,
+                                     CdcIndexCoverage cdcIndexCoverage,
+                                     ExportScanner exportScanner) {
         this.vehicleInformationMapper = vehicleInformationMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.kafkaTemplate = kafkaTemplate;
         this.vehicleInformationSearchRepository = vehicleInformationSearchRepository;
         this.sensitiveDataPersistenceService = sensitiveDataPersistenceService;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.exportScanner = exportScanner;
     }
 
     @Transactional
@@ -64,25 +72,15 @@ public class VehicleInformationService {
     @WsAction(service = "VehicleInformationService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN", "TRAFFIC_POLICE"})
     public void checkAndInsertIdempotency(String idempotencyKey, VehicleInformation vehicleInformation, String action) {
         Objects.requireNonNull(vehicleInformation, "Vehicle information cannot be null");
-        SysRequestHistory existing = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (existing != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             log.warning(() -> String.format("Duplicate vehicle request detected (key=%s)", idempotencyKey));
             throw new RuntimeException("Duplicate vehicle request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sensitiveDataPersistenceService.prepare(vehicleInformation);
         sendKafkaMessage(action, idempotencyKey, vehicleInformation);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(vehicleInformation.getVehicleId());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, vehicleInformation.getVehicleId());
     }
 
     @Transactional
@@ -163,22 +161,35 @@ public class VehicleInformationService {
                 });
     }
 
-    @Cacheable(cacheNames = VEHICLE_INFO_LIST_CACHE, key = "'all'", unless = "#result == null || #result.isEmpty()")
+    /**
+     * @deprecated materializes the whole table; kept only for the {@code getAllVehicleInformation} WebSocket action.
+     * Use {@link #exportAll} or {@link #findPage}.
+     */
+    @Deprecated
     @WsAction(service = "VehicleInformationService", action = "getAllVehicleInformation", roles = {"SUPER_ADMIN", "ADMIN", "TRAFFIC_POLICE"})
     public List<VehicleInformation> getAllVehicleInformation() {
-        List<VehicleInformation> fromIndex = StreamSupport.stream(
-                        vehicleInformationSearchRepository.findAll().spliterator(), false)
-                .map(VehicleInformationDocument::toEntity)
-                .collect(Collectors.toList());
-        if (!fromIndex.isEmpty()) {
-            return fromIndex;
+        List<VehicleInformation> all = new ArrayList<>();
+        exportAll(ExportSource.DATABASE, all::addAll);
+        return all;
+    }
+
+    /**
+     * Streams every row page by page; see {@link ExportScanner}.
+     */
+    public void exportAll(ExportSource source, Consumer<List<VehicleInformation>> sink) {
+        if (source == ExportSource.INDEX) {
+            exportScanner.scanIndex(VehicleInformationDocument.class,
+                    page -> sink.accept(page.stream().map(VehicleInformationDocument::toEntity).toList()));
+            return;
         }
-        List<VehicleInformation> db = vehicleInformationMapper.selectList(null);
-        db.stream()
-                .map(VehicleInformationDocument::fromEntity)
-                .filter(Objects::nonNull)
-                .forEach(vehicleInformationSearchRepository::save);
-        return db;
+        exportScanner.scanTable(vehicleInformationMapper, VehicleInformation.class, sink);
+    }
+
+    public Page<VehicleInformation> findPage(int page, int size) {
+        Page<VehicleInformation> mpPage = new Page<>(Math.max(page, 1), Math.max(size, 1));
+        QueryWrapper<VehicleInformation> wrapper = new QueryWrapper<>();
+        wrapper.orderByAsc("vehicle_id");
+        return vehicleInformationMapper.selectPage(mpPage, wrapper);
     }
 
     @Cacheable(cacheNames = VEHICLE_INFO_LIST_CACHE, key = "'driver:' + #driverId + ':' + #page + ':' + #size")
@@ -451,6 +462,9 @@ public class VehicleInformationService {
     }
 
     private void syncToIndexAfterCommit(VehicleInformation vehicleInformation) {
+        if (cdcIndexCoverage.covers(VehicleInformationDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -463,6 +477,9 @@ public class VehicleInformationService {
     }
 
     private void syncDeleteAfterCommit(Long vehicleId) {
+        if (cdcIndexCoverage.covers(VehicleInformationDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -502,42 +519,15 @@ public class VehicleInformationService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long vehicleId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(vehicleId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, vehicleId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
-    }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 255 ? value : value.substring(0, 255);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void validateVehicle(VehicleInformation vehicleInformation) {
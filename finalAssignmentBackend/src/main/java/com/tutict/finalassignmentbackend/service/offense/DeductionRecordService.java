@@ -2,13 +2,13 @@ package com.tutict.finalassignmentbackend.service.offense;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.offense.DeductionRecord;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.DeductionRecordDocument;
 import com.tutict.finalassignmentbackend.mapper.offense.DeductionRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.DeductionRecordSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -34,19 +34,22 @@ public class DeductionRecordService {
     private static final String CACHE_NAME = "deductionRecordCache";
 
     private final DeductionRecordMapper deductionRecordMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final DeductionRecordSearchRepository deductionRecordSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, DeductionRecord> kafkaTemplate;
 
     @Autowired
     public DeductionRecordService(DeductionRecordMapper deductionRecordMapper,
-                                  SysRequestHistoryMapper sysRequestHistoryMapper,
+                                  IdempotencyStore idempotencyStore,
                                   DeductionRecordSearchRepository deductionRecordSearchRepository,
-                                  KafkaTemplate<String, DeductionRecord> kafkaTemplate) {
+                                  KafkaTemplate<String, DeductionRecord> kafkaTemplate,
+                                  CdcIndexCoverage cdcIndexCoverage) {
         this.deductionRecordMapper = deductionRecordMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.deductionRecordSearchRepository = deductionRecordSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -54,24 +57,13 @@ public class DeductionRecordService {
     @WsAction(service = "DeductionRecordService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN", "TRAFFIC_POLICE"})
     public void checkAndInsertIdempotency(String idempotencyKey, DeductionRecord deductionRecord, String action) {
         Objects.requireNonNull(deductionRecord, "DeductionRecord must not be null");
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             throw new RuntimeException("Duplicate deduction record request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("deduction_record_" + action, idempotencyKey, deductionRecord);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(deductionRecord.getDeductionId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, deductionRecord.getDeductionId());
     }
 
     @Transactional
@@ -104,6 +96,9 @@ public class DeductionRecordService {
         if (rows == 0) {
             throw new IllegalStateException("No DeductionRecord deleted for id=" + deductionId);
         }
+        if (cdcIndexCoverage.covers(DeductionRecordDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -234,39 +229,19 @@ public class DeductionRecordService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long deductionId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(deductionId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, deductionId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void syncToIndexAfterCommit(DeductionRecord deductionRecord) {
-        if (deductionRecord == null) {
+        if (deductionRecord == null || cdcIndexCoverage.covers(DeductionRecordDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -369,11 +344,4 @@ public class DeductionRecordService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
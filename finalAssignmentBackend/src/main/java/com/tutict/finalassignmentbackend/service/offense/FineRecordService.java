@@ -3,15 +3,15 @@ package com.tutict.finalassignmentbackend.service.offense;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.offense.FineRecord;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.FineRecordDocument;
 import com.tutict.finalassignmentbackend.mapper.offense.FineRecordMapper;
 import com.tutict.finalassignmentbackend.mapper.offense.OffenseRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.repository.FineRecordSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -22,7 +22,6 @@ import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Objects;
@@ -39,24 +38,27 @@ public class FineRecordService {
 
     private final FineRecordMapper fineRecordMapper;
     private final OffenseRecordMapper offenseRecordMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final FineRecordSearchRepository fineRecordSearchRepository;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
     @Autowired
     public FineRecordService(FineRecordMapper fineRecordMapper,
                              OffenseRecordMapper offenseRecordMapper,
-                             SysRequestHistoryMapper sysRequestHistoryMapper,
+                             IdempotencyStore idempotencyStore,
                              FineRecordSearchRepository fineRecordSearchRepository,
                              KafkaTemplate<String, String> kafkaTemplate,
-                             ObjectMapper objectMapper) {
+                             ObjectMapper objectMapper,
+                             CdcIndexCoverage cdcIndexCoverage) {
         this.fineRecordMapper = fineRecordMapper;
         this.offenseRecordMapper = offenseRecordMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.fineRecordSearchRepository = fineRecordSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
@@ -64,24 +66,13 @@ public class FineRecordService {
     @WsAction(service = "FineRecordService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN", "TRAFFIC_POLICE", "FINANCE"})
     public void checkAndInsertIdempotency(String idempotencyKey, FineRecord fineRecord, String action) {
         Objects.requireNonNull(fineRecord, "FineRecord must not be null");
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             throw new RuntimeException("Duplicate fine record request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         sendKafkaMessage("fine_record_" + action, idempotencyKey, fineRecord);
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(fineRecord.getFineId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, fineRecord.getFineId());
     }
 
     @Transactional
@@ -106,6 +97,46 @@ public class FineRecordService {
         return fineRecord;
     }
 
+    /**
+     * Kafka batch create: one multi-row insert and, after commit, one bulk index request.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
+    public List<FineRecord> createFineRecords(List<FineRecord> fineRecords) {
+        if (fineRecords == null || fineRecords.isEmpty()) {
+            return List.of();
+        }
+        fineRecords.forEach(this::validateFineRecord);
+        fineRecordMapper.insertBatch(fineRecords);
+        if (!cdcIndexCoverage.covers(FineRecordDocument.class)) {
+            syncBatchToIndexAfterCommit(fineRecords);
+        }
+        return fineRecords;
+    }
+
+    /**
+     * Kafka batch update: all rows are updated in one transaction and indexed with one bulk request.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
+    public List<FineRecord> updateFineRecords(List<FineRecord> fineRecords) {
+        if (fineRecords == null || fineRecords.isEmpty()) {
+            return List.of();
+        }
+        for (FineRecord fineRecord : fineRecords) {
+            validateFineRecord(fineRecord);
+            requirePositive(fineRecord.getFineId(), "Fine ID");
+            int rows = fineRecordMapper.updateById(fineRecord);
+            if (rows == 0) {
+                throw new IllegalStateException("No FineRecord updated for id=" + fineRecord.getFineId());
+            }
+        }
+        if (!cdcIndexCoverage.covers(FineRecordDocument.class)) {
+            syncBatchToIndexAfterCommit(fineRecords);
+        }
+        return fineRecords;
+    }
+
     @Transactional
     @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public void deleteFineRecord(Long fineId) {
@@ -114,6 +145,9 @@ public class FineRecordService {
         if (rows == 0) {
             throw new IllegalStateException("No FineRecord deleted for id=" + fineId);
         }
+        if (cdcIndexCoverage.covers(FineRecordDocument.class)) {
+            return;
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
@@ -246,35 +280,15 @@ public class FineRecordService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long fineId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(fineId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, fineId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, FineRecord fineRecord) {
@@ -288,7 +302,7 @@ public class FineRecordService {
     }
 
     private void syncToIndexAfterCommit(FineRecord fineRecord) {
-        if (fineRecord == null) {
+        if (fineRecord == null || cdcIndexCoverage.covers(FineRecordDocument.class)) {
             return;
         }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -387,11 +401,4 @@ public class FineRecordService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
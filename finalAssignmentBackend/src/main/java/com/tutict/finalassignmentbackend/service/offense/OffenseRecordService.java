@@ -4,13 +4,14 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.statemachine.states.OffenseProcessState;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import com.tutict.finalassignmentbackend.entity.elastic.OffenseRecordDocument;
 import com.tutict.finalassignmentbackend.mapper.offense.OffenseRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import com.tutict.finalassignmentbackend.offense.cache.OffenseQueryCacheIndex;
+import com.tutict.finalassignmentbackend.offense.cache.OffenseQueryDimension;
 import com.tutict.finalassignmentbackend.offense.governance.AfterCommitBoundary;
 import com.tutict.finalassignmentbackend.offense.governance.FullUpdateCompatibilityMode;
 import com.tutict.finalassignmentbackend.offense.governance.FullUpdateMergePolicy;
@@ -28,8 +29,7 @@ import com.tutict.finalassignmentbackend.offense.governance.rollout.GovernanceRo
 import com.tutict.finalassignmentbackend.offense.governance.rollout.GovernanceSourceType;
 import com.tutict.finalassignmentbackend.exception.BusinessException;
 import com.tutict.finalassignmentbackend.repository.OffenseInformationSearchRepository;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
@@ -38,8 +38,12 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -52,7 +56,7 @@ public class OffenseRecordService {
     private static final String CACHE_NAME = "offenseRecordCache";
 
     private final OffenseRecordMapper offenseRecordMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final OffenseInformationSearchRepository offenseInformationSearchRepository;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
@@ -62,15 +66,18 @@ public class OffenseRecordService {
     private final OffenseUpdateFreshnessEvaluator updateFreshnessEvaluator;
     private final FullUpdateMergePolicy fullUpdateMergePolicy;
     private final GovernanceRolloutPolicy governanceRolloutPolicy;
+    private final OffenseQueryCacheIndex queryCacheIndex;
+    private final CdcIndexCoverage cdcIndexCoverage;
 
-    @Autowired
     public OffenseRecordService(OffenseRecordMapper offenseRecordMapper,
-                                SysRequestHistoryMapper sysRequestHistoryMapper,
+                                IdempotencyStore idempotencyStore,
                                 OffenseInformationSearchRepository offenseInformationSearchRepository,
                                 KafkaTemplate<String, String> kafkaTemplate,
-                                ObjectMapper objectMapper) {
+                                ObjectMapper objectMapper,
+                                OffenseQueryCacheIndex queryCacheIndex,
+                                CdcIndexCoverage cdcIndexCoverage) {
         this.offenseRecordMapper = offenseRecordMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.offenseInformationSearchRepository = offenseInformationSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
@@ -80,76 +87,122 @@ public class OffenseRecordService {
         this.updateFreshnessEvaluator = new OffenseUpdateFreshnessEvaluator();
         this.fullUpdateMergePolicy = new FullUpdateMergePolicy();
         this.governanceRolloutPolicy = new GovernanceRolloutPolicy();
+        this.queryCacheIndex = queryCacheIndex;
+        this.cdcIndexCoverage = cdcIndexCoverage;
     }
 
     @Transactional
-    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     @WsAction(service = "OffenseRecordService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN", "TRAFFIC_POLICE", "APPEAL_REVIEWER"})
     public void checkAndInsertIdempotency(String idempotencyKey, OffenseRecord offenseRecord, String action) {
         Objects.requireNonNull(offenseRecord, "OffenseRecord must not be null");
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        if (!idempotencyStore.claim(idempotencyKey)) {
             throw new RuntimeException("Duplicate offense record request detected");
         }
 
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.insert(history);
-
         if (!"create".equalsIgnoreCase(action)) {
             MutationSideEffectPolicy policy = semanticIntentClassifier.classifyIdempotencyPublish(action);
             sideEffectCoordinator.publishKafkaLegacy(policy, () -> sendKafkaMessage("offense_record_" + action, idempotencyKey, offenseRecord));
         }
 
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(offenseRecord.getOffenseId());
-        history.setRequestParams("PENDING");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markPending(idempotencyKey, offenseRecord.getOffenseId());
     }
 
     @Transactional
-    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public OffenseRecord createOffenseRecord(OffenseRecord offenseRecord) {
         MutationSideEffectPolicy policy = semanticIntentClassifier.classifyCreate();
         validateOffenseRecord(offenseRecord);
         // 同步写库，成功后再异步刷新 ES
         offenseRecordMapper.insert(offenseRecord);
+        queryCacheIndex.evictFor(null, offenseRecord);
         syncToIndexAfterCommit(policy, offenseRecord);
         return offenseRecord;
     }
 
     @Transactional
-    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public OffenseRecord updateOffenseRecord(OffenseRecord offenseRecord) {
         MutationSideEffectPolicy policy = semanticIntentClassifier.classifyUpdate();
-        shadowCompareControllerFullUpdate(offenseRecord);
+        OffenseRecord previous = shadowCompareControllerFullUpdate(offenseRecord);
         validateOffenseRecord(offenseRecord);
         requirePositive(offenseRecord.getOffenseId(), "Offense ID");
         int rows = offenseRecordMapper.updateById(offenseRecord);
         if (rows == 0) {
             throw new IllegalStateException("No OffenseRecord updated for id=" + offenseRecord.getOffenseId());
         }
+        evictQueryCache(previous, offenseRecord);
         syncToIndexAfterCommit(policy, offenseRecord);
         return offenseRecord;
     }
 
     @Transactional
-    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public OffenseRecord updateKafkaFullUpdate(OffenseRecord incoming) {
         MutationSideEffectPolicy policy = semanticIntentClassifier.classifyUpdate();
         Objects.requireNonNull(incoming, "OffenseRecord must not be null");
         requirePositive(incoming.getOffenseId(), "Offense ID");
-        OffenseRecord current = offenseRecordMapper.selectById(incoming.getOffenseId());
+        OffenseRecord updated = applyKafkaFullUpdate(incoming, offenseRecordMapper.selectById(incoming.getOffenseId()));
+        syncToIndexAfterCommit(policy, updated);
+        return updated;
+    }
+
+    /**
+     * Kafka batch create: one multi-row insert and, after commit, one bulk index request.
+     */
+    @Transactional
+    public List<OffenseRecord> createOffenseRecords(List<OffenseRecord> offenseRecords) {
+        if (offenseRecords == null || offenseRecords.isEmpty()) {
+            return List.of();
+        }
+        MutationSideEffectPolicy policy = semanticIntentClassifier.classifyCreate();
+        offenseRecords.forEach(this::validateOffenseRecord);
+        offenseRecordMapper.insertBatch(offenseRecords);
+        offenseRecords.forEach(offenseRecord -> queryCacheIndex.evictFor(null, offenseRecord));
+        if (!cdcIndexCoverage.covers(OffenseRecordDocument.class)) {
+            syncBatchToIndexAfterCommit(policy, offenseRecords);
+        }
+        return offenseRecords;
+    }
+
+    /**
+     * Kafka batch form of {@link #updateKafkaFullUpdate}: current rows are loaded with one query and
+     * all updates share one transaction. A stale update rejects the whole batch.
+     */
+    @Transactional
+    public List<OffenseRecord> updateKafkaFullUpdates(List<OffenseRecord> incomingRecords) {
+        if (incomingRecords == null || incomingRecords.isEmpty()) {
+            return List.of();
+        }
+        MutationSideEffectPolicy policy = semanticIntentClassifier.classifyUpdate();
+        Set<Long> offenseIds = new LinkedHashSet<>();
+        for (OffenseRecord incoming : incomingRecords) {
+            Objects.requireNonNull(incoming, "OffenseRecord must not be null");
+            requirePositive(incoming.getOffenseId(), "Offense ID");
+            offenseIds.add(incoming.getOffenseId());
+        }
+        Map<Long, OffenseRecord> currentById = new HashMap<>();
+        for (OffenseRecord current : offenseRecordMapper.selectBatchIds(offenseIds)) {
+            currentById.put(current.getOffenseId(), current);
+        }
+        List<OffenseRecord> updated = new ArrayList<>(incomingRecords.size());
+        for (OffenseRecord incoming : incomingRecords) {
+            OffenseRecord applied = applyKafkaFullUpdate(incoming, currentById.get(incoming.getOffenseId()));
+            // 同一批内对同一记录的后续更新以本次结果为基准
+            currentById.put(applied.getOffenseId(), applied);
+            updated.add(applied);
+        }
+        if (!cdcIndexCoverage.covers(OffenseRecordDocument.class)) {
+            syncBatchToIndexAfterCommit(policy, updated);
+        }
+        return updated;
+    }
+
+    private OffenseRecord applyKafkaFullUpdate(OffenseRecord incoming, OffenseRecord current) {
         if (current == null) {
             validateOffenseRecord(incoming);
             int rows = offenseRecordMapper.updateById(incoming);
             if (rows == 0) {
                 throw new IllegalStateException("No OffenseRecord updated for id=" + incoming.getOffenseId());
             }
-            syncToIndexAfterCommit(policy, incoming);
+            // 读取之后才出现的记录没有更新前的状态，由 evictQueryCache 退回整体清空
+            evictQueryCache(null, incoming);
             return incoming;
         }
 
@@ -181,12 +234,11 @@ public class OffenseRecordService {
         if (rows == 0) {
             throw new IllegalStateException("No OffenseRecord updated for id=" + guarded.getOffenseId());
         }
-        syncToIndexAfterCommit(policy, guarded);
+        queryCacheIndex.evictFor(current, guarded);
         return guarded;
     }
 
     @Transactional(rollbackFor = Exception.class)
-    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public OffenseRecord updateProcessStatus(Long offenseId, OffenseProcessState newState) {
         MutationSideEffectPolicy policy = semanticIntentClassifier.classifyWorkflow();
         requirePositive(offenseId, "Offense ID");
@@ -225,6 +277,7 @@ public class OffenseRecordService {
         if (rows == 0) {
             throw new BusinessException("CONFLICT", "该记录已被处理，无法重复操作");
         }
+        queryCacheIndex.evictFor(existing, merged);
         syncToIndexAfterCommit(policy, merged);
         return merged;
     }
@@ -281,14 +334,18 @@ public class OffenseRecordService {
         }
     }
 
-    private void shadowCompareControllerFullUpdate(OffenseRecord incoming) {
+    /**
+     * 影子比较控制器全量更新，顺带返回更新前的记录供缓存失效使用；读取失败时返回 null
+     */
+    private OffenseRecord shadowCompareControllerFullUpdate(OffenseRecord incoming) {
         if (incoming == null || incoming.getOffenseId() == null) {
-            return;
+            return null;
         }
+        OffenseRecord current = null;
         try {
-            OffenseRecord current = offenseRecordMapper.selectById(incoming.getOffenseId());
+            current = offenseRecordMapper.selectById(incoming.getOffenseId());
             if (current == null) {
-                return;
+                return null;
             }
             OffenseStaleUpdatePolicy.Decision freshness =
                     updateFreshnessEvaluator.evaluate(current, incoming, SemanticEventType.FULL_UPDATE);
@@ -307,6 +364,7 @@ public class OffenseRecordService {
         } catch (Exception ex) {
             log.log(Level.WARNING, "Offense controller update shadow comparison failed", ex);
         }
+        return current;
     }
 
     @Transactional
@@ -318,14 +376,18 @@ public class OffenseRecordService {
     }
 
     @Transactional
-    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public void deleteOffenseRecord(Long offenseId) {
         MutationSideEffectPolicy policy = semanticIntentClassifier.classifyDelete();
         requirePositive(offenseId, "Offense ID");
+        OffenseRecord existing = offenseRecordMapper.selectById(offenseId);
         int rows = offenseRecordMapper.deleteById(offenseId);
         if (rows == 0) {
             throw new IllegalStateException("No OffenseRecord deleted for id=" + offenseId);
         }
+        evictQueryCache(existing, null);
+        if (cdcIndexCoverage.covers(OffenseRecordDocument.class)) {
+            return;
+        }
         sideEffectCoordinator.indexAfterCommit(policy, () -> offenseInformationSearchRepository.deleteById(offenseId));
     }
 
@@ -382,12 +444,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.findByDriverId(driverId, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.DRIVER, List.of(driverId), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.eq("driver_id", driverId)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.DRIVER, List.of(driverId), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'vehicle:' + #vehicleId + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -396,12 +459,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.findByVehicleId(vehicleId, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.VEHICLE, List.of(vehicleId), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.eq("vehicle_id", vehicleId)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.VEHICLE, List.of(vehicleId), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'code:' + #offenseCode + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -412,12 +476,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByOffenseCode(offenseCode, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.CODE, List.of(offenseCode), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.like("offense_code", offenseCode)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.CODE, List.of(offenseCode), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'status:' + #processStatus + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -428,12 +493,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByProcessStatus(processStatus, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.STATUS, List.of(processStatus), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.eq("process_status", processStatus)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.STATUS, List.of(processStatus), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'timeRange:' + #startTime + ':' + #endTime + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -446,12 +512,13 @@ public class OffenseRecordService {
         }
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByOffenseTimeRange(startTime, endTime, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.TIME_RANGE, List.of(startTime, endTime), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.between("offense_time", start, end)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.TIME_RANGE, List.of(startTime, endTime), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'number:' + #offenseNumber + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -462,12 +529,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByOffenseNumber(offenseNumber, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.NUMBER, List.of(offenseNumber), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.like("offense_number", offenseNumber)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.NUMBER, List.of(offenseNumber), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'location:' + #offenseLocation + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -478,12 +546,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByOffenseLocation(offenseLocation, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.LOCATION, List.of(offenseLocation), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.like("offense_location", offenseLocation)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.LOCATION, List.of(offenseLocation), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'province:' + #offenseProvince + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -494,12 +563,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByOffenseProvince(offenseProvince, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.PROVINCE, List.of(offenseProvince), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.eq("offense_province", offenseProvince)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.PROVINCE, List.of(offenseProvince), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'city:' + #offenseCity + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -510,12 +580,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByOffenseCity(offenseCity, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.CITY, List.of(offenseCity), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.eq("offense_city", offenseCity)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.CITY, List.of(offenseCity), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'notification:' + #notificationStatus + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -526,12 +597,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByNotificationStatus(notificationStatus, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.NOTIFICATION, List.of(notificationStatus), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.eq("notification_status", notificationStatus)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.NOTIFICATION, List.of(notificationStatus), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'agency:' + #enforcementAgency + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -542,12 +614,13 @@ public class OffenseRecordService {
         validatePagination(page, size);
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByEnforcementAgency(enforcementAgency, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.AGENCY, List.of(enforcementAgency), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.like("enforcement_agency", enforcementAgency)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.AGENCY, List.of(enforcementAgency), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'fineRange:' + #minAmount + ':' + #maxAmount + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -558,44 +631,25 @@ public class OffenseRecordService {
         }
         List<OffenseRecord> index = mapHits(offenseInformationSearchRepository.searchByFineAmountRange(minAmount, maxAmount, pageable(page, size)));
         if (!index.isEmpty()) {
-            return index;
+            return queryCacheIndex.track(OffenseQueryDimension.FINE_RANGE, List.of(minAmount, maxAmount), page, size, index);
         }
         QueryWrapper<OffenseRecord> wrapper = new QueryWrapper<>();
         wrapper.between("fine_amount", minAmount, maxAmount)
                 .orderByDesc("offense_time");
-        return fetchFromDatabase(wrapper, page, size);
+        return queryCacheIndex.track(OffenseQueryDimension.FINE_RANGE, List.of(minAmount, maxAmount), page, size,
+                fetchFromDatabase(wrapper, page, size));
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long offenseId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(offenseId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, offenseId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void sendKafkaMessage(String topic, String idempotencyKey, OffenseRecord offenseRecord) {
@@ -608,8 +662,17 @@ public class OffenseRecordService {
         }
     }
 
+    private void evictQueryCache(OffenseRecord previous, OffenseRecord current) {
+        // 取不到更新前的记录时无法判断旧条件命中的页，退回整体清空
+        if (previous == null && current != null && current.getOffenseId() != null) {
+            queryCacheIndex.evictAll();
+            return;
+        }
+        queryCacheIndex.evictFor(previous, current);
+    }
+
     private void syncToIndexAfterCommit(MutationSideEffectPolicy policy, OffenseRecord offenseRecord) {
-        if (offenseRecord == null) {
+        if (offenseRecord == null || cdcIndexCoverage.covers(OffenseRecordDocument.class)) {
             return;
         }
         sideEffectCoordinator.indexAfterCommit(policy, () -> saveToIndex(offenseRecord));
@@ -783,11 +846,4 @@ public class OffenseRecordService {
     private boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
 }
@@ -2,6 +2,9 @@ package com.tutict.finalassignmentbackend.service.payment;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.tutict.finalassignmentbackend.common.export.ExportScanner;
+import com.tutict.finalassignmentbackend.common.export.ExportSource;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.statemachine.states.PaymentState;
 import com.tutict.finalassignmentbackend.entity.offense.FineRecord;
 import com.tutict.finalassignmentbackend.config.websocket.WsAction;
@@ -11,7 +14,6 @@ import com.tutict.finalassignmentbackend.entity.elastic.PaymentRecordDocument;
 import com.tutict.finalassignmentbackend.exception.EntityNotFoundException;
 import com.tutict.finalassignmentbackend.mapper.offense.FineRecordMapper;
 import com.tutict.finalassignmentbackend.mapper.payment.PaymentRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
 import com.tutict.finalassignmentbackend.payment.governance.PaymentGovernanceClassifier;
 import com.tutict.finalassignmentbackend.payment.governance.PaymentGovernanceLogFactory;
 import com.tutict.finalassignmentbackend.payment.exception.PaymentDuplicateRequestException;
@@ -19,12 +21,12 @@ import com.tutict.finalassignmentbackend.payment.exception.PaymentOptimisticLock
 import com.tutict.finalassignmentbackend.payment.messaging.PaymentRecordKafkaEvent;
 import com.tutict.finalassignmentbackend.service.events.PaymentStatusChangedEvent;
 import com.tutict.finalassignmentbackend.repository.PaymentRecordSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.security.crypto.SensitiveDataPersistenceService;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -32,12 +34,13 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Service
 public class PaymentRecordService {
@@ -47,8 +50,10 @@ public class PaymentRecordService {
 
     private final PaymentRecordMapper paymentRecordMapper;
     private final FineRecordMapper fineRecordMapper;
-    private final SysRequestHistoryMapper sysRequestHistoryMapper;
+    private final IdempotencyStore idempotencyStore;
     private final PaymentRecordSearchRepository paymentRecordSearchRepository;
+    private final ExportScanner exportScanner;
+    private final CdcIndexCoverage cdcIndexCoverage;
     private final ApplicationEventPublisher applicationEventPublisher;
     private final PaymentGovernanceClassifier paymentGovernanceClassifier;
     private final SensitiveDataPersistenceService sensitiveDataPersistenceService;
@@ -56,17 +61,21 @@ public class PaymentRecordService {
     @Autowired
     public PaymentRecordService(PaymentRecordMapper paymentRecordMapper,
                                 FineRecordMapper fineRecordMapper,
-                                SysRequestHistoryMapper sysRequestHistoryMapper,
+                                IdempotencyStore idempotencyStore,
                                 PaymentRecordSearchRepository paymentRecordSearchRepository,
                                 ApplicationEventPublisher applicationEventPublisher,
-                                SensitiveDataPersistenceService sensitiveDataPersistenceService) {
+                                SensitiveDataPersistenceService sensitiveDataPersistenceService,
+                                CdcIndexCoverage cdcIndexCoverage,
+                                ExportScanner exportScanner) {
         this.paymentRecordMapper = paymentRecordMapper;
         this.fineRecordMapper = fineRecordMapper;
-        this.sysRequestHistoryMapper = sysRequestHistoryMapper;
+        this.idempotencyStore = idempotencyStore;
         this.paymentRecordSearchRepository = paymentRecordSearchRepository;
         this.applicationEventPublisher = applicationEventPublisher;
         this.paymentGovernanceClassifier = new PaymentGovernanceClassifier();
         this.sensitiveDataPersistenceService = sensitiveDataPersistenceService;
+        this.cdcIndexCoverage = cdcIndexCoverage;
+        this.exportScanner = exportScanner;
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -74,7 +83,7 @@ public class PaymentRecordService {
     @WsAction(service = "PaymentRecordService", action = "checkAndInsertIdempotency", roles = {"SUPER_ADMIN", "ADMIN", "FINANCE"})
     public void checkAndInsertIdempotency(String idempotencyKey, PaymentRecord paymentRecord, String action) {
         Objects.requireNonNull(paymentRecord, "PaymentRecord must not be null");
-        insertProcessingHistory(
+        claimProcessingHistory(
                 idempotencyKey,
                 "PAYMENT_" + normalizeAction(action),
                 "POST",
@@ -98,7 +107,7 @@ public class PaymentRecordService {
     @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public PaymentRecord createPaymentRecord(PaymentRecord paymentRecord, String idempotencyKey) {
         validatePaymentRecord(paymentRecord);
-        SysRequestHistory history = insertProcessingHistory(
+        claimProcessingHistory(
                 idempotencyKey,
                 "PAYMENT_CREATE",
                 "POST",
@@ -111,7 +120,7 @@ public class PaymentRecordService {
         applicationEventPublisher.publishEvent(
                 new PaymentRecordKafkaEvent("payment_record_create", idempotencyKey, paymentRecord)
         );
-        markHistorySuccess(history, paymentRecord.getPaymentId());
+        idempotencyStore.markSuccess(idempotencyKey, paymentRecord.getPaymentId());
         syncToIndexAfterCommit(paymentRecord);
         return paymentRecord;
     }
@@ -136,7 +145,7 @@ public class PaymentRecordService {
     public PaymentRecord updatePaymentRecord(PaymentRecord paymentRecord, String idempotencyKey) {
         validatePaymentRecord(paymentRecord);
         requirePositive(paymentRecord.getPaymentId(), "Payment ID");
-        SysRequestHistory history = insertProcessingHistory(
+        claimProcessingHistory(
                 idempotencyKey,
                 "PAYMENT_UPDATE",
                 "PUT",
@@ -152,12 +161,58 @@ public class PaymentRecordService {
         applicationEventPublisher.publishEvent(
                 new PaymentRecordKafkaEvent("payment_record_update", idempotencyKey, paymentRecord)
         );
-        markHistorySuccess(history, paymentRecord.getPaymentId());
+        idempotencyStore.markSuccess(idempotencyKey, paymentRecord.getPaymentId());
         syncToIndexAfterCommit(paymentRecord);
         publishPaymentStatusChanged(paymentRecord);
         return paymentRecord;
     }
 
+    /**
+     * Kafka batch create: one multi-row insert and, after commit, one bulk index request.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
+    public List<PaymentRecord> createPaymentRecords(List<PaymentRecord> paymentRecords) {
+        if (paymentRecords == null || paymentRecords.isEmpty()) {
+            return List.of();
+        }
+        for (PaymentRecord paymentRecord : paymentRecords) {
+            validatePaymentRecord(paymentRecord);
+            sensitiveDataPersistenceService.prepare(paymentRecord);
+        }
+        paymentRecordMapper.insertBatch(paymentRecords);
+        if (!cdcIndexCoverage.covers(PaymentRecordDocument.class)) {
+            syncBatchToIndexAfterCommit(paymentRecords);
+        }
+        return paymentRecords;
+    }
+
+    /**
+     * Kafka batch update: all rows are updated in one transaction and indexed with one bulk request;
+     * a version conflict on any row rejects the whole batch.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
+    public List<PaymentRecord> updatePaymentRecords(List<PaymentRecord> paymentRecords) {
+        if (paymentRecords == null || paymentRecords.isEmpty()) {
+            return List.of();
+        }
+        for (PaymentRecord paymentRecord : paymentRecords) {
+            validatePaymentRecord(paymentRecord);
+            requirePositive(paymentRecord.getPaymentId(), "Payment ID");
+            sensitiveDataPersistenceService.prepare(paymentRecord);
+            int rows = paymentRecordMapper.updateById(paymentRecord);
+            if (rows == 0) {
+                throw new PaymentOptimisticLockException("Payment record was updated concurrently; refresh and retry");
+            }
+        }
+        if (!cdcIndexCoverage.covers(PaymentRecordDocument.class)) {
+            syncBatchToIndexAfterCommit(paymentRecords);
+        }
+        paymentRecords.forEach(this::publishPaymentStatusChanged);
+        return paymentRecords;
+    }
+
     @Transactional(rollbackFor = Exception.class)
     @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public PaymentRecord updatePaymentStatus(Long paymentId, PaymentState newState) {
@@ -167,7 +222,7 @@ public class PaymentRecordService {
     @Transactional(rollbackFor = Exception.class)
     @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public PaymentRecord updatePaymentStatus(Long paymentId, PaymentState newState, String idempotencyKey) {
-        SysRequestHistory history = insertProcessingHistory(
+        claimProcessingHistory(
                 idempotencyKey,
                 "PAYMENT_STATUS_UPDATE",
                 "PUT",
@@ -176,7 +231,7 @@ public class PaymentRecordService {
                 "PROCESSING"
         );
         PaymentRecord updated = updatePaymentStatusInCurrentTransaction(paymentId, newState);
-        markHistorySuccess(history, paymentId);
+        idempotencyStore.markSuccess(idempotencyKey, paymentId);
         return updated;
     }
 
@@ -213,6 +268,9 @@ public class PaymentRecordService {
         if (rows == 0) {
             throw new IllegalStateException("No PaymentRecord deleted for id=" + paymentId);
         }
+        if (cdcIndexCoverage.covers(PaymentRecordDocument.class)) {
+            return;
+        }
         runAfterCommitOrNow(() -> paymentRecordSearchRepository.deleteById(paymentId));
     }
 
@@ -245,22 +303,27 @@ public class PaymentRecordService {
                 });
     }
 
+    /**
+     * @deprecated materializes the whole table; use {@link #exportAll} instead.
+     */
+    @Deprecated
     @Transactional(readOnly = true)
-    @Cacheable(cacheNames = CACHE_NAME, key = "'all'", unless = "#result == null || #result.isEmpty()")
     public List<PaymentRecord> findAll() {
-        List<PaymentRecord> fromIndex = StreamSupport.stream(paymentRecordSearchRepository.findAll().spliterator(), false)
-                .map(PaymentRecordDocument::toEntity)
-                .collect(Collectors.toList());
-        if (!fromIndex.isEmpty()) {
-            return fromIndex;
+        List<PaymentRecord> all = new ArrayList<>();
+        exportAll(ExportSource.DATABASE, all::addAll);
+        return all;
+    }
+
+    /**
+     * Streams every row page by page; see {@link ExportScanner}.
+     */
+    public void exportAll(ExportSource source, Consumer<List<PaymentRecord>> sink) {
+        if (source == ExportSource.INDEX) {
+            exportScanner.scanIndex(PaymentRecordDocument.class,
+                    page -> sink.accept(page.stream().map(PaymentRecordDocument::toEntity).toList()));
+            return;
         }
-        List<PaymentRecord> fromDb = paymentRecordMapper.selectList(null);
-        logReadRepairGovernance(null, fromDb == null ? 0 : fromDb.size());
-        fromDb.stream()
-                .map(PaymentRecordDocument::fromEntity)
-                .filter(Objects::nonNull)
-                .forEach(paymentRecordSearchRepository::save);
-        return fromDb;
+        exportScanner.scanTable(paymentRecordMapper, PaymentRecord.class, sink);
     }
 
     @Cacheable(cacheNames = CACHE_NAME, key = "'fine:' + #fineId + ':' + #page + ':' + #size", unless = "#result == null || #result.isEmpty()")
@@ -428,43 +491,23 @@ public class PaymentRecordService {
     }
 
     public boolean shouldSkipProcessing(String idempotencyKey) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        return history != null
-                && "SUCCESS".equalsIgnoreCase(history.getBusinessStatus())
-                && "DONE".equalsIgnoreCase(history.getRequestParams());
+        return idempotencyStore.isCompleted(idempotencyKey);
     }
 
     public boolean isDuplicateIdempotencyKey(String idempotencyKey) {
-        return !isBlank(idempotencyKey) && sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null;
+        return !isBlank(idempotencyKey) && idempotencyStore.isClaimed(idempotencyKey);
     }
 
     public void markHistorySuccess(String idempotencyKey, Long paymentId) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark success for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(paymentId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markSuccess(idempotencyKey, paymentId);
     }
 
     public void markHistoryFailure(String idempotencyKey, String reason) {
-        SysRequestHistory history = sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey);
-        if (history == null) {
-            log.log(Level.WARNING, "Cannot mark failure for missing idempotency key {0}", idempotencyKey);
-            return;
-        }
-        history.setBusinessStatus("FAILED");
-        history.setRequestParams(truncate(reason));
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
+        idempotencyStore.markFailure(idempotencyKey, reason);
     }
 
     private void syncToIndexAfterCommit(PaymentRecord paymentRecord) {
-        if (paymentRecord == null) {
+        if (paymentRecord == null || cdcIndexCoverage.covers(PaymentRecordDocument.class)) {
             return;
         }
         runAfterCommitOrNow(() -> {
@@ -484,42 +527,24 @@ public class PaymentRecordService {
         return records;
     }
 
-    private SysRequestHistory insertProcessingHistory(String idempotencyKey,
-                                                      String businessType,
-                                                      String requestMethod,
-                                                      String requestUrl,
-                                                      Long businessId,
-                                                      String requestParams) {
+    private void claimProcessingHistory(String idempotencyKey,
+                                        String businessType,
+                                        String requestMethod,
+                                        String requestUrl,
+                                        Long businessId,
+                                        String requestParams) {
         if (isBlank(idempotencyKey)) {
             throw new IllegalArgumentException("Idempotency-Key must not be blank");
         }
-        if (sysRequestHistoryMapper.selectByIdempotencyKey(idempotencyKey) != null) {
+        SysRequestHistory details = new SysRequestHistory();
+        details.setRequestMethod(requestMethod);
+        details.setRequestUrl(requestUrl);
+        details.setRequestParams(requestParams);
+        details.setBusinessType(businessType);
+        details.setBusinessId(businessId);
+        if (!idempotencyStore.claim(idempotencyKey, details)) {
             throw new PaymentDuplicateRequestException("Duplicate payment request detected");
         }
-        SysRequestHistory history = new SysRequestHistory();
-        history.setIdempotencyKey(idempotencyKey);
-        history.setRequestMethod(requestMethod);
-        history.setRequestUrl(requestUrl);
-        history.setRequestParams(requestParams);
-        history.setBusinessType(businessType);
-        history.setBusinessId(businessId);
-        history.setBusinessStatus("PROCESSING");
-        history.setCreatedAt(LocalDateTime.now());
-        history.setUpdatedAt(LocalDateTime.now());
-        try {
-            sysRequestHistoryMapper.insert(history);
-        } catch (DataIntegrityViolationException ex) {
-            throw new PaymentDuplicateRequestException("Duplicate payment request detected", ex);
-        }
-        return history;
-    }
-
-    private void markHistorySuccess(SysRequestHistory history, Long paymentId) {
-        history.setBusinessStatus("SUCCESS");
-        history.setBusinessId(paymentId);
-        history.setRequestParams("DONE");
-        history.setUpdatedAt(LocalDateTime.now());
-        sysRequestHistoryMapper.updateById(history);
     }
 
     private void validatePaymentRecord(PaymentRecord paymentRecord) {
@@ -580,13 +605,6 @@ public class PaymentRecordService {
         return isBlank(action) ? "UNKNOWN" : action.trim().toUpperCase();
     }
 
-    private String truncate(String value) {
-        if (value == null) {
-            return null;
-        }
-        return value.length() <= 500 ? value : value.substring(0, 500);
-    }
-
     private void logReadRepairGovernance(Long paymentId, int recordCount) {
         if (recordCount <= 0) {
             return;
@@ -0,0 +1,83 @@
+package com.tutict.finalassignmentbackend.service.statemachine;
+
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.transition.Transition;
+import org.springframework.statemachine.transition.TransitionKind;
+
+import java.lang.reflect.Array;
+
+/**
+ * {@code (state, event) -> state} lookup compiled once from a flat Spring {@link StateMachine}'s
+ * transitions, indexed by enum ordinals. Cells with a guard, or with more than one candidate
+ * transition, are marked as requiring the Spring machine so their result stays identical.
+ */
+public final class CompiledTransitionTable<S extends Enum<S>, E extends Enum<E>> {
+
+    private static final byte NONE = 0;
+    private static final byte DIRECT = 1;
+    private static final byte DELEGATE = 2;
+
+    private final S initialState;
+    private final int eventCount;
+    private final byte[] kinds;
+    private final S[] targets;
+
+    private CompiledTransitionTable(S initialState, int eventCount, byte[] kinds, S[] targets) {
+        this.initialState = initialState;
+        this.eventCount = eventCount;
+        this.kinds = kinds;
+        this.targets = targets;
+    }
+
+    public static <S extends Enum<S>, E extends Enum<E>> CompiledTransitionTable<S, E> compile(
+            StateMachine<S, E> stateMachine, Class<S> stateType, Class<E> eventType) {
+        int eventCount = eventType.getEnumConstants().length;
+        byte[] kinds = new byte[stateType.getEnumConstants().length * eventCount];
+        @SuppressWarnings("unchecked")
+        S[] targets = (S[]) Array.newInstance(stateType, kinds.length);
+        for (Transition<S, E> transition : stateMachine.getTransitions()) {
+            if (transition.getKind() == TransitionKind.INITIAL
+                    || transition.getTrigger() == null
+                    || transition.getTrigger().getEvent() == null
+                    || transition.getSource() == null) {
+                continue;
+            }
+            int cell = transition.getSource().getId().ordinal() * eventCount
+                    + transition.getTrigger().getEvent().ordinal();
+            S target = transition.getKind() == TransitionKind.INTERNAL || transition.getTarget() == null
+                    ? transition.getSource().getId()
+                    : transition.getTarget().getId();
+            if (kinds[cell] == NONE && transition.getGuard() == null) {
+                kinds[cell] = DIRECT;
+                targets[cell] = target;
+            } else {
+                // 守卫或同一 (状态, 事件) 的多条候选转换交给 Spring 状态机求值
+                kinds[cell] = DELEGATE;
+                targets[cell] = null;
+            }
+        }
+        S initialState = stateMachine.getInitialState() == null ? null : stateMachine.getInitialState().getId();
+        return new CompiledTransitionTable<>(initialState, eventCount, kinds, targets);
+    }
+
+    /**
+     * @return true when the cell carries a guard or several candidates and must be evaluated by Spring
+     */
+    public boolean requiresStateMachine(S state, E event) {
+        return kinds[cell(state, event)] == DELEGATE;
+    }
+
+    /**
+     * @return the target state, or null when no transition accepts {@code event} in {@code state}
+     */
+    public S target(S state, E event) {
+        int cell = cell(state, event);
+        return kinds[cell] == DIRECT ? targets[cell] : null;
+    }
+
+    private int cell(S state, E event) {
+        // 与 Spring 重置为空上下文时一致：没有当前状态时从初始状态出发
+        S source = state == null ? initialState : state;
+        return source.ordinal() * eventCount + event.ordinal();
+    }
+}
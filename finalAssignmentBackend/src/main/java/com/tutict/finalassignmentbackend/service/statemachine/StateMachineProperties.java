@@ -0,0 +1,28 @@
+package com.tutict.finalassignmentbackend.service.statemachine;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "app.statemachine")
+public class StateMachineProperties {
+
+    // compiled: transition tables compiled from the *StateMachineConfig classes at startup.
+    // spring: a fresh Spring StateMachine per transition (previous behaviour).
+    // verify: run both, log any disagreement and return the Spring result.
+    private Mode mode = Mode.COMPILED;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode == null ? Mode.COMPILED : mode;
+    }
+
+    public enum Mode {
+        COMPILED,
+        SPRING,
+        VERIFY
+    }
+}
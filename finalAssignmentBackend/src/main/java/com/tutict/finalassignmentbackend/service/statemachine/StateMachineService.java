@@ -14,17 +14,25 @@ import org.springframework.statemachine.support.DefaultStateMachineContext;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Workflow transitions for offenses, payments and appeals. By default each transition is a lookup
+ * in a {@link CompiledTransitionTable} built once from the {@code *StateMachineConfig} factories;
+ * {@link StateMachineProperties.Mode#SPRING} and {@link StateMachineProperties.Mode#VERIFY} keep the
+ * per-call Spring machine available.
+ */
 @Service
 public class StateMachineService {
 
     private static final Logger LOG = Logger.getLogger(StateMachineService.class.getName());
 
-    private final StateMachineFactory<OffenseProcessState, OffenseProcessEvent> offenseProcessStateMachineFactory;
-    private final StateMachineFactory<PaymentState, PaymentEvent> paymentStateMachineFactory;
-    private final StateMachineFactory<AppealProcessState, AppealProcessEvent> appealProcessStateMachineFactory;
+    private final Workflow<OffenseProcessState, OffenseProcessEvent> offenseWorkflow;
+    private final Workflow<PaymentState, PaymentEvent> paymentWorkflow;
+    private final Workflow<AppealProcessState, AppealProcessEvent> appealWorkflow;
+    private final StateMachineProperties properties;
 
     public StateMachineService(
             @Qualifier("offenseProcessStateMachineFactory")
@@ -32,11 +40,16 @@ public class StateMachineService {
             @Qualifier("paymentStateMachineFactory")
             StateMachineFactory<PaymentState, PaymentEvent> paymentStateMachineFactory,
             @Qualifier("appealProcessStateMachineFactory")
-            StateMachineFactory<AppealProcessState, AppealProcessEvent> appealProcessStateMachineFactory
+            StateMachineFactory<AppealProcessState, AppealProcessEvent> appealProcessStateMachineFactory,
+            StateMachineProperties properties
     ) {
-        this.offenseProcessStateMachineFactory = offenseProcessStateMachineFactory;
-        this.paymentStateMachineFactory = paymentStateMachineFactory;
-        this.appealProcessStateMachineFactory = appealProcessStateMachineFactory;
+        this.offenseWorkflow = new Workflow<>("Offense", offenseProcessStateMachineFactory,
+                OffenseProcessState.class, OffenseProcessEvent.class);
+        this.paymentWorkflow = new Workflow<>("Payment", paymentStateMachineFactory,
+                PaymentState.class, PaymentEvent.class);
+        this.appealWorkflow = new Workflow<>("Appeal", appealProcessStateMachineFactory,
+                AppealProcessState.class, AppealProcessEvent.class);
+        this.properties = properties;
     }
 
     public OffenseProcessState processOffenseState(
@@ -44,27 +57,7 @@ public class StateMachineService {
             OffenseProcessState currentState,
             OffenseProcessEvent event
     ) {
-        try {
-            StateMachine<OffenseProcessState, OffenseProcessEvent> stateMachine =
-                    offenseProcessStateMachineFactory.getStateMachine();
-            stateMachine.getStateMachineAccessor().doWithAllRegions(access ->
-                    access.resetStateMachineReactively(buildContext(currentState)).block(Duration.ofSeconds(10))
-            );
-
-            boolean result = stateMachine.sendEvent(event);
-            if (result) {
-                OffenseProcessState newState = stateMachine.getState().getId();
-                LOG.log(Level.INFO, "Offense {0} workflow transitioned: {1} -> {2} by {3}",
-                        new Object[]{offenseId, currentState, newState, event});
-                return newState;
-            }
-            LOG.log(Level.WARNING, "Offense {0} workflow transition rejected: {1} by {2}",
-                    new Object[]{offenseId, currentState, event});
-            return currentState;
-        } catch (Exception e) {
-            LOG.log(Level.SEVERE, "Failed to process offense workflow event: " + e.getMessage(), e);
-            return currentState;
-        }
+        return process(offenseWorkflow, offenseId, currentState, event);
     }
 
     public PaymentState processPaymentState(
@@ -72,27 +65,7 @@ public class StateMachineService {
             PaymentState currentState,
             PaymentEvent event
     ) {
-        try {
-            StateMachine<PaymentState, PaymentEvent> stateMachine =
-                    paymentStateMachineFactory.getStateMachine();
-            stateMachine.getStateMachineAccessor().doWithAllRegions(access ->
-                    access.resetStateMachineReactively(buildContext(currentState)).block(Duration.ofSeconds(10))
-            );
-
-            boolean result = stateMachine.sendEvent(event);
-            if (result) {
-                PaymentState newState = stateMachine.getState().getId();
-                LOG.log(Level.INFO, "Payment {0} workflow transitioned: {1} -> {2} by {3}",
-                        new Object[]{fineId, currentState, newState, event});
-                return newState;
-            }
-            LOG.log(Level.WARNING, "Payment {0} workflow transition rejected: {1} by {2}",
-                    new Object[]{fineId, currentState, event});
-            return currentState;
-        } catch (Exception e) {
-            LOG.log(Level.SEVERE, "Failed to process payment workflow event: " + e.getMessage(), e);
-            return currentState;
-        }
+        return process(paymentWorkflow, fineId, currentState, event);
     }
 
     public AppealProcessState processAppealState(
@@ -100,30 +73,69 @@ public class StateMachineService {
             AppealProcessState currentState,
             AppealProcessEvent event
     ) {
+        return process(appealWorkflow, appealId, currentState, event);
+    }
+
+    private <S extends Enum<S>, E extends Enum<E>> S process(Workflow<S, E> workflow, Long id, S currentState, E event) {
         try {
-            StateMachine<AppealProcessState, AppealProcessEvent> stateMachine =
-                    appealProcessStateMachineFactory.getStateMachine();
-            stateMachine.getStateMachineAccessor().doWithAllRegions(access ->
-                    access.resetStateMachineReactively(buildContext(currentState)).block(Duration.ofSeconds(10))
-            );
-
-            boolean result = stateMachine.sendEvent(event);
-            if (result) {
-                AppealProcessState newState = stateMachine.getState().getId();
-                LOG.log(Level.INFO, "Appeal {0} workflow transitioned: {1} -> {2} by {3}",
-                        new Object[]{appealId, currentState, newState, event});
+            S newState = switch (properties.getMode()) {
+                case COMPILED -> workflow.table.requiresStateMachine(currentState, event)
+                        ? sendEvent(workflow, currentState, event)
+                        : workflow.table.target(currentState, event);
+                case SPRING -> sendEvent(workflow, currentState, event);
+                case VERIFY -> verify(workflow, id, currentState, event);
+            };
+            if (newState != null) {
+                LOG.log(Level.INFO, workflow.name + " {0} workflow transitioned: {1} -> {2} by {3}",
+                        new Object[]{id, currentState, newState, event});
                 return newState;
             }
-            LOG.log(Level.WARNING, "Appeal {0} workflow transition rejected: {1} by {2}",
-                    new Object[]{appealId, currentState, event});
+            LOG.log(Level.WARNING, workflow.name + " {0} workflow transition rejected: {1} by {2}",
+                    new Object[]{id, currentState, event});
             return currentState;
         } catch (Exception e) {
-            LOG.log(Level.SEVERE, "Failed to process appeal workflow event: " + e.getMessage(), e);
+            LOG.log(Level.SEVERE, "Failed to process " + workflow.name.toLowerCase() + " workflow event: " + e.getMessage(), e);
             return currentState;
         }
     }
 
+    private <S extends Enum<S>, E extends Enum<E>> S verify(Workflow<S, E> workflow, Long id, S currentState, E event) {
+        S expected = sendEvent(workflow, currentState, event);
+        S compiled = workflow.table.requiresStateMachine(currentState, event)
+                ? expected
+                : workflow.table.target(currentState, event);
+        if (!Objects.equals(expected, compiled)) {
+            LOG.log(Level.SEVERE, workflow.name + " {0} compiled transition disagrees with state machine: {1} by {2} -> {3}, expected {4}",
+                    new Object[]{id, currentState, event, compiled, expected});
+        }
+        return expected;
+    }
+
+    /**
+     * @return the state after a Spring machine accepted {@code event}, or null when it was rejected
+     */
+    private <S extends Enum<S>, E extends Enum<E>> S sendEvent(Workflow<S, E> workflow, S currentState, E event) {
+        StateMachine<S, E> stateMachine = workflow.factory.getStateMachine();
+        stateMachine.getStateMachineAccessor().doWithAllRegions(access ->
+                access.resetStateMachineReactively(buildContext(currentState)).block(Duration.ofSeconds(10))
+        );
+        return stateMachine.sendEvent(event) ? stateMachine.getState().getId() : null;
+    }
+
     private <S, E> StateMachineContext<S, E> buildContext(S state) {
         return new DefaultStateMachineContext<>(state, null, null, null);
     }
+
+    private static final class Workflow<S extends Enum<S>, E extends Enum<E>> {
+
+        private final String name;
+        private final StateMachineFactory<S, E> factory;
+        private final CompiledTransitionTable<S, E> table;
+
+        private Workflow(String name, StateMachineFactory<S, E> factory, Class<S> stateType, Class<E> eventType) {
+            this.name = name;
+            this.factory = factory;
+            this.table = CompiledTransitionTable.compile(factory.getStateMachine(), stateType, eventType);
+        }
+    }
 }
@@ -0,0 +1,7 @@
+-- 迁移：rag_embedding_task 增加租约列，多实例通过 SELECT ... FOR UPDATE SKIP LOCKED 认领任务。
+-- 需要 MySQL 8.0+；升级前遗留的 RUNNING 任务在 updated_at 超过租约时长后会被重新认领。
+ALTER TABLE rag_embedding_task
+    ADD COLUMN lease_owner VARCHAR(128) NULL AFTER next_retry_at,
+    ADD COLUMN lease_expires_at DATETIME NULL AFTER lease_owner,
+    ADD KEY idx_rag_embedding_task_lease (status, lease_expires_at),
+    ADD KEY idx_rag_embedding_task_lease_owner (lease_owner);
@@ -0,0 +1,4 @@
+-- 迁移：rag_embedding_task 增加重跑标志。文档字段在任务 RUNNING 期间变更时置位，
+-- 持有租约的实例释放租约时把任务放回 PENDING，而不是按旧内容记为 SUCCEEDED。
+ALTER TABLE rag_embedding_task
+    ADD COLUMN rerun_requested TINYINT(1) NOT NULL DEFAULT 0 AFTER lease_expires_at;
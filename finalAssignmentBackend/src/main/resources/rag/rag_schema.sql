@@ -47,11 +47,16 @@ CREATE TABLE IF NOT EXISTS rag_embedding_task (
     status VARCHAR(32) NOT NULL,
     attempt_count INT NOT NULL DEFAULT 0,
     next_retry_at DATETIME NULL,
+    lease_owner VARCHAR(128) NULL,
+    lease_expires_at DATETIME NULL,
+    rerun_requested TINYINT(1) NOT NULL DEFAULT 0,
     last_error TEXT NULL,
     created_at DATETIME NOT NULL,
     updated_at DATETIME NOT NULL,
     UNIQUE KEY uk_rag_embedding_task_key (task_key),
     KEY idx_rag_embedding_task_status_retry (status, next_retry_at),
     KEY idx_rag_embedding_task_chunk_id (chunk_id),
+    KEY idx_rag_embedding_task_lease (status, lease_expires_at),
+    KEY idx_rag_embedding_task_lease_owner (lease_owner),
     CONSTRAINT fk_rag_embedding_task_chunk FOREIGN KEY (chunk_id) REFERENCES rag_chunk (id)
 );
@@ -2,8 +2,11 @@ package com.tutict.finalassignmentbackend.ai.provider;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.health.contributor.Health;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -13,11 +16,14 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class MockAiProviderTest {
 
@@ -90,10 +96,50 @@ class OllamaAiProviderTest {
             assertThat(tokens).extracting(AiToken::text).containsExactly("he", "llo", "");
             assertThat(tokens.getLast().finished()).isTrue();
             assertThat(health.status()).isEqualTo("UP");
+            provider.shutdown();
         } finally {
             server.stop(0);
         }
     }
+
+    @Test
+    void decodesObjectsSplitAtEveryByteBoundary() {
+        byte[] body = """
+                {"model":"m","message":{"role":"assistant","content":"交通","images":[{"x":"content"}]},"done":false}
+                {"message":{"content":"违法\\n"},"context":[1,2],"done":false}
+                {"response":"ok","done":true}
+                """.getBytes(StandardCharsets.UTF_8);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DistributionSummary allocation = DistributionSummary.builder("ai.stream.token.allocation")
+                .register(meterRegistry);
+        DefaultDataBufferFactory buffers = DefaultDataBufferFactory.sharedInstance;
+
+        for (int split = 0; split <= body.length; split++) {
+            List<AiToken> tokens = new ArrayList<>();
+            try (OllamaNdjsonDecoder decoder = new OllamaNdjsonDecoder(new ObjectMapper().getFactory(), allocation)) {
+                tokens.addAll(decoder.decode(buffers.wrap(Arrays.copyOfRange(body, 0, split))));
+                tokens.addAll(decoder.decode(buffers.wrap(Arrays.copyOfRange(body, split, body.length))));
+                tokens.addAll(decoder.finish());
+            }
+
+            assertThat(tokens).extracting(AiToken::text).containsExactly("交通", "违法\n", "ok");
+            assertThat(tokens).extracting(AiToken::finished).containsExactly(false, false, true);
+        }
+    }
+
+    @Test
+    void failsOnOllamaErrorObjectAndTruncatedBody() {
+        DefaultDataBufferFactory buffers = DefaultDataBufferFactory.sharedInstance;
+        try (OllamaNdjsonDecoder decoder = new OllamaNdjsonDecoder(new ObjectMapper().getFactory(), null)) {
+            assertThatThrownBy(() -> decoder.decode(buffers.wrap(
+                    "{\"error\":\"model not found\"}\n".getBytes(StandardCharsets.UTF_8))))
+                    .hasMessageContaining("model not found");
+        }
+        try (OllamaNdjsonDecoder decoder = new OllamaNdjsonDecoder(new ObjectMapper().getFactory(), null)) {
+            decoder.decode(buffers.wrap("{\"message\":{\"content\":\"he".getBytes(StandardCharsets.UTF_8)));
+            assertThatThrownBy(decoder::finish).isInstanceOf(IllegalStateException.class);
+        }
+    }
 }
 
 class AiProviderRegistryTest {
@@ -136,6 +182,27 @@ class AiProviderRegistryTest {
 
         assertThat(healthCalls).hasValue(1);
     }
+
+    @Test
+    void recordsTimeToFirstNonEmptyToken() {
+        AiProvider primary = ProviderLayerTestSupport.provider("primary", Flux.just(
+                new AiToken("", false, Map.of()),
+                new AiToken("a", false, Map.of()),
+                new AiToken("b", true, Map.of())
+        ));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AiProviderRegistry registry = new AiProviderRegistry(
+                List.of(primary, new NoopAiProvider()),
+                ProviderLayerTestSupport.properties("primary", "noop", Duration.ofSeconds(1)),
+                meterRegistry
+        );
+
+        registry.stream("hello", Map.of()).collectList().block(Duration.ofSeconds(1));
+
+        assertThat(meterRegistry.get("ai.stream.first_token").tag("provider", "primary").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("ai.request").tag("mode", "stream").timer().count()).isEqualTo(1);
+    }
 }
 
 class ProviderFallbackTest {
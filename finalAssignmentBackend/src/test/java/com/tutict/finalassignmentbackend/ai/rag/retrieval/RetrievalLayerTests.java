@@ -3,10 +3,17 @@ package com.tutict.finalassignmentbackend.ai.rag.retrieval;
 import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
 import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
 import com.tutict.finalassignmentbackend.ai.rag.rerank.LightweightRerankProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -30,7 +37,7 @@ class HybridRetrieverTest {
         );
 
         List<RetrievalResult> results = retriever.retrieve(
-                new RetrievalQuery("query", new AclFilterService.AccessContext("u1", java.util.Set.of(), null), 2)
+                new RetrievalQuery("query", new AclFilterService.AccessContext("u1", Set.of(), null), 2)
         );
 
         assertThat(results).extracting(RetrievalResult::chunkId).containsExactly("a", "c");
@@ -53,12 +60,133 @@ class HybridRetrieverTest {
         );
 
         List<RetrievalResult> results = retriever.retrieve(
-                new RetrievalQuery("query", new AclFilterService.AccessContext("u1", java.util.Set.of(), null), 5)
+                new RetrievalQuery("query", new AclFilterService.AccessContext("u1", Set.of(), null), 5)
         );
 
         assertThat(results).extracting(RetrievalResult::chunkId).containsExactly("bm25");
     }
 
+    @Test
+    void lateVectorLegIsDroppedAndQueryEmbeddingsAreCached() {
+        RagRetrievalProperties properties = properties();
+        properties.setVectorTimeout(Duration.ofMillis(50));
+        AtomicInteger embeddings = new AtomicInteger();
+        EmbeddingProvider countingProvider = new EmbeddingProvider() {
+            @Override
+            public int dimensions() {
+                return 3;
+            }
+
+            @Override
+            public float[] embed(String text) {
+                embeddings.incrementAndGet();
+                return vector();
+            }
+        };
+        RagSearchBackend backend = new FakeBackend(List.of(result("bm25", 1, 0, "PUBLIC")), List.of(result("v", 0, 1, "PUBLIC")));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HybridRetriever retriever = new HybridRetriever(
+                new EmbeddingSearchService(countingProvider, new SlowVectorBackend(backend, 1000)),
+                new AclFilterService(),
+                new LightweightRerankProvider(properties),
+                properties,
+                meterRegistry
+        );
+        RetrievalQuery query = new RetrievalQuery("query", new AclFilterService.AccessContext("u1", Set.of(), null), 5);
+
+        long started = System.nanoTime();
+        assertThat(retriever.retrieve(query)).extracting(RetrievalResult::chunkId).containsExactly("bm25");
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(900));
+        retriever.retrieve(query);
+
+        assertThat(embeddings).hasValue(1);
+        assertThat(meterRegistry.counter("rag.retrieval.leg.dropped", "leg", "vector", "outcome", "timeout").count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.timer("rag.retrieval.latency", "stage", "bm25").count()).isEqualTo(2);
+        retriever.shutdown();
+    }
+
+    @Test
+    void slowQueryEmbeddingStillFillsTheCacheAfterTheVectorLegTimesOut() throws InterruptedException {
+        RagRetrievalProperties properties = properties();
+        properties.setVectorTimeout(Duration.ofMillis(50));
+        AtomicInteger embeddings = new AtomicInteger();
+        CountDownLatch embedded = new CountDownLatch(1);
+        EmbeddingProvider slowProvider = new EmbeddingProvider() {
+            @Override
+            public int dimensions() {
+                return 3;
+            }
+
+            @Override
+            public float[] embed(String text) {
+                embeddings.incrementAndGet();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("embedding was cancelled", interrupted);
+                }
+                embedded.countDown();
+                return vector();
+            }
+        };
+        RagSearchBackend backend = new FakeBackend(List.of(result("bm25", 1, 0, "PUBLIC")), List.of(result("v", 0, 1, "PUBLIC")));
+        HybridRetriever retriever = new HybridRetriever(
+                new EmbeddingSearchService(slowProvider, backend),
+                new AclFilterService(),
+                new LightweightRerankProvider(properties),
+                properties,
+                new SimpleMeterRegistry()
+        );
+        RetrievalQuery query = new RetrievalQuery("query", new AclFilterService.AccessContext("u1", Set.of(), null), 5);
+
+        assertThat(retriever.retrieve(query)).extracting(RetrievalResult::chunkId).containsExactly("bm25");
+        assertThat(embedded.await(2, TimeUnit.SECONDS)).isTrue();
+        // 缓存在嵌入返回后写入，稍等后台任务收尾
+        Thread.sleep(50);
+
+        assertThat(retriever.retrieve(query)).extracting(RetrievalResult::chunkId).contains("v");
+        assertThat(embeddings).hasValue(1);
+        retriever.shutdown();
+    }
+
+    @Test
+    void timedOutLegIsInterrupted() throws InterruptedException {
+        RagRetrievalProperties properties = properties();
+        properties.setBm25Timeout(Duration.ofMillis(50));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        RagSearchBackend hangingBm25 = new RagSearchBackend() {
+            @Override
+            public List<RetrievalResult> bm25Search(String normalizedQuery, AclFilterService.AclFilter aclFilter, int limit) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException cancelled) {
+                    interrupted.countDown();
+                }
+                return List.of();
+            }
+
+            @Override
+            public List<RetrievalResult> vectorSearch(float[] queryVector, AclFilterService.AclFilter aclFilter, int limit) {
+                return List.of(result("v", 0, 1, "PUBLIC"));
+            }
+        };
+        HybridRetriever retriever = new HybridRetriever(
+                new EmbeddingSearchService(new StaticEmbeddingProvider(vector()), hangingBm25),
+                new AclFilterService(),
+                new LightweightRerankProvider(properties),
+                properties,
+                new SimpleMeterRegistry()
+        );
+
+        assertThat(retriever.retrieve(new RetrievalQuery("query",
+                new AclFilterService.AccessContext("u1", Set.of(), null), 5)))
+                .extracting(RetrievalResult::chunkId).containsExactly("v");
+        assertThat(interrupted.await(2, TimeUnit.SECONDS)).isTrue();
+        retriever.shutdown();
+    }
+
     private static float[] vector() {
         return new float[]{1, 0, 0};
     }
@@ -108,7 +236,7 @@ class AclFilterServiceTest {
     }
 
     private static RetrievalResult result(String scope, Map<String, Object> metadata) {
-        java.util.Map<String, Object> values = new java.util.LinkedHashMap<>(metadata);
+        Map<String, Object> values = new LinkedHashMap<>(metadata);
         values.put("aclScope", scope);
         return new RetrievalResult("c", "d", "content", "title", "BUSINESS", "t", "1",
                 "content", "/r", 0, 0, 0, values);
@@ -133,7 +261,7 @@ class ScoreFusionTest {
         List<RetrievalResult> results = retriever.fuseResults(
                 List.of(result("c1", 0.5, 0)),
                 List.of(result("c1", 0, 0.9)),
-                new AclFilterService.AccessContext(null, java.util.Set.of(), null),
+                new AclFilterService.AccessContext(null, Set.of(), null),
                 10
         );
 
@@ -188,7 +316,7 @@ class EmbeddingSearchServiceTest {
                 List.of(result("vector", 0, 1))
         );
         EmbeddingSearchService service = new EmbeddingSearchService(embeddingProvider, backend);
-        AclFilterService.AclFilter filter = new AclFilterService.AclFilter("u1", java.util.Set.of(), null);
+        AclFilterService.AclFilter filter = new AclFilterService.AclFilter("u1", Set.of(), null);
 
         float[] vector = service.embedQuery("hello");
         List<RetrievalResult> bm25 = service.bm25Search("hello", filter, 5);
@@ -205,7 +333,7 @@ class EmbeddingSearchServiceTest {
                 new FakeEmbeddingProvider(),
                 new ThrowingSearchBackend()
         );
-        AclFilterService.AclFilter filter = new AclFilterService.AclFilter("u1", java.util.Set.of(), null);
+        AclFilterService.AclFilter filter = new AclFilterService.AclFilter("u1", Set.of(), null);
 
         assertThat(service.bm25Search("hello", filter, 5)).isEmpty();
         assertThat(service.vectorSearch(new float[]{1, 0, 0}, filter, 5)).isEmpty();
@@ -286,6 +414,32 @@ record FakeBackend(
     }
 }
 
+record SlowVectorBackend(RagSearchBackend delegate, long delayMillis) implements RagSearchBackend {
+
+    @Override
+    public List<RetrievalResult> bm25Search(
+            String normalizedQuery,
+            AclFilterService.AclFilter aclFilter,
+            int limit
+    ) {
+        return delegate.bm25Search(normalizedQuery, aclFilter, limit);
+    }
+
+    @Override
+    public List<RetrievalResult> vectorSearch(
+            float[] queryVector,
+            AclFilterService.AclFilter aclFilter,
+            int limit
+    ) {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return delegate.vectorSearch(queryVector, aclFilter, limit);
+    }
+}
+
 final class ThrowingSearchBackend implements RagSearchBackend {
 
     @Override
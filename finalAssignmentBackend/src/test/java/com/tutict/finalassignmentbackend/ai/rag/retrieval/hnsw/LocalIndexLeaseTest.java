@@ -0,0 +1,86 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LocalIndexLeaseTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+
+    @Test
+    void secondNodeFailsToStartWhileLeaseIsHeld() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(LocalIndexLease.KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(LocalIndexLease.KEY)).thenReturn("node-a");
+
+        assertThatThrownBy(() -> lease().acquire())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("node-a")
+                .hasMessageContaining("single application node");
+    }
+
+    @Test
+    void leaseExpiringWithinOneTtlIsTakenOver() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(LocalIndexLease.KEY), anyString(), any(Duration.class)))
+                .thenReturn(false, true);
+
+        assertThatCode(() -> lease().acquire()).doesNotThrowAnyException();
+    }
+
+    @Test
+    void leaseLostToAnotherNodeIsRefusedImmediately() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(LocalIndexLease.KEY), anyString(), any(Duration.class)))
+                .thenReturn(true, false);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(0L);
+        LocalIndexLease lease = lease();
+        lease.acquire();
+        assertThatCode(lease::checkHeld).doesNotThrowAnyException();
+
+        lease.renew();
+
+        assertThat(lease.isHeld()).isFalse();
+        assertThatThrownBy(lease::checkHeld).isInstanceOf(IllegalStateException.class);
+        lease.release();
+    }
+
+    @Test
+    void nodeStartedWithoutRedisServesNothingUntilItHoldsTheLease() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(LocalIndexLease.KEY), anyString(), any(Duration.class)))
+                .thenThrow(new IllegalStateException("redis down"))
+                .thenReturn(true);
+        LocalIndexLease lease = lease();
+
+        lease.acquire();
+        assertThat(lease.isHeld()).isFalse();
+
+        lease.renew();
+        assertThat(lease.isHeld()).isTrue();
+        lease.release();
+    }
+
+    private LocalIndexLease lease() {
+        RagRetrievalProperties properties = new RagRetrievalProperties();
+        properties.getLocal().setLeaseTtlMs(1000);
+        return new LocalIndexLease(redisTemplate, properties);
+    }
+}
@@ -0,0 +1,154 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
+import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.AclFilterService;
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-k latency of {@link LocalVectorIndex#search} against an exact scan of the same vectors, which is
+ * what the Elasticsearch {@code script_score} fallback computes. Recall@k of the graph walk against
+ * the exact result is printed once per trial. {@code visibleShare} is the fraction of chunks the
+ * query's ACL filter admits. Comparing with the Elasticsearch knn path needs a live cluster and is
+ * not part of this benchmark. Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalVectorIndexBenchmark {
+
+    private static final int QUERIES = 200;
+
+    @Param({"10000", "50000"})
+    public int chunks;
+
+    @Param({"384"})
+    public int dimensions;
+
+    @Param({"1.0", "0.1"})
+    public double visibleShare;
+
+    @Param({"10"})
+    public int k;
+
+    private LocalVectorIndex index;
+    private RagRetrievalProperties.Local settings;
+    private final AclFilterService.AclFilter filter = new AclFilterService.AclFilter("u1", Set.of(), null);
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        RagRetrievalProperties retrieval = new RagRetrievalProperties();
+        retrieval.setBackend("local");
+        RagProperties rag = new RagProperties();
+        rag.getEmbedding().setDimensions(dimensions);
+        settings = retrieval.getLocal();
+        index = new LocalVectorIndex(retrieval, rag, new ObjectMapper());
+
+        Random random = new Random(17);
+        List<LocalVectorIndex.Entry> entries = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            Set<String> grants = random.nextDouble() < visibleShare ? Set.of("scope:PUBLIC") : Set.of("role:OTHER");
+            RetrievalResult result = new RetrievalResult("chunk-" + i, "doc", "", "", "MANUAL", "", "", "", "",
+                    0, 0, 0, Map.of());
+            entries.add(new LocalVectorIndex.Entry(result, grants, randomVector(random)));
+        }
+        index.upsert(entries);
+        queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = randomVector(random);
+        }
+        System.out.printf("%nchunks=%d visibleShare=%.2f recall@%d=%.3f%n", chunks, visibleShare, k, recall());
+    }
+
+    @TearDown
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public List<RetrievalResult> hnswSearch() {
+        return index.search(nextQuery(), filter, k);
+    }
+
+    @Benchmark
+    public List<RetrievalResult> exactScan() {
+        return exact(nextQuery());
+    }
+
+    private List<RetrievalResult> exact(float[] query) {
+        // 阈值调到最大即强制走精确扫描
+        int threshold = settings.getExactSearchThreshold();
+        settings.setExactSearchThreshold(Integer.MAX_VALUE);
+        try {
+            return index.search(query, filter, k);
+        } finally {
+            settings.setExactSearchThreshold(threshold);
+        }
+    }
+
+    private double recall() {
+        int found = 0;
+        int expected = 0;
+        for (float[] query : queries) {
+            Set<String> exact = chunkIds(exact(query));
+            expected += exact.size();
+            exact.retainAll(chunkIds(index.search(query, filter, k)));
+            found += exact.size();
+        }
+        return expected == 0 ? 1 : (double) found / expected;
+    }
+
+    private float[] nextQuery() {
+        next = (next + 1) % QUERIES;
+        return queries[next];
+    }
+
+    private static Set<String> chunkIds(List<RetrievalResult> results) {
+        Set<String> ids = new HashSet<>();
+        results.forEach(result -> ids.add(result.chunkId()));
+        return ids;
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LocalVectorIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,145 @@
+package com.tutict.finalassignmentbackend.ai.rag.retrieval.hnsw;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.ai.rag.config.RagRetrievalProperties;
+import com.tutict.finalassignmentbackend.ai.rag.dto.RetrievalResult;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.AclFilterService;
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LocalVectorIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    void graphSearchRecallsMostOfTheExactTopK() {
+        Random random = new Random(7);
+        HnswGraph graph = new HnswGraph(VectorStore.inMemory(DIMENSIONS, 64), 16, 200, 1L);
+        for (int i = 0; i < 3000; i++) {
+            graph.add(randomVector(random));
+        }
+        BitSet all = new BitSet();
+        all.set(0, graph.size());
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            Set<Integer> exact = nodes(graph.exactSearch(query, 10, all));
+            Set<Integer> approximate = nodes(graph.search(query, 10, 100, null));
+            expected += exact.size();
+            exact.retainAll(approximate);
+            found += exact.size();
+        }
+
+        assertThat((double) found / expected).isGreaterThan(0.9);
+    }
+
+    @Test
+    void aclBitsetsFilterBeforeRankingAndReplacedChunksDisappear(@TempDir Path directory) {
+        LocalVectorIndex index = index(directory.toString());
+        float[] closest = unit(0);
+        index.upsert(List.of(
+                entry("secret", "ROLE", Set.of("role:ADMIN"), closest),
+                entry("public", "PUBLIC", Set.of("scope:PUBLIC"), unit(1)),
+                entry("mine", "USER", Set.of("user:u1"), unit(2))
+        ));
+        AclFilterService.AclFilter anonymous = new AclFilterService.AclFilter(null, Set.of(), null);
+        AclFilterService.AclFilter admin = new AclFilterService.AclFilter("u1", Set.of("ADMIN"), null);
+
+        assertThat(index.search(closest, anonymous, 5)).extracting(RetrievalResult::chunkId)
+                .containsExactly("public");
+        assertThat(index.search(closest, admin, 1)).singleElement().satisfies(result -> {
+            assertThat(result.chunkId()).isEqualTo("secret");
+            assertThat(result.vectorScore()).isCloseTo(1.0, within(1e-5));
+        });
+
+        index.upsert(List.of(entry("secret", "PUBLIC", Set.of("scope:PUBLIC"), unit(3))));
+        index.close();
+        LocalVectorIndex reopened = index(directory.toString());
+
+        assertThat(reopened.size()).isEqualTo(3);
+        assertThat(reopened.search(unit(3), anonymous, 5)).extracting(RetrievalResult::chunkId)
+                .containsExactly("secret", "public");
+        assertThat(reopened.search(closest, admin, 5)).extracting(RetrievalResult::chunkId)
+                .containsExactlyInAnyOrder("secret", "public", "mine");
+        reopened.close();
+    }
+
+    @Test
+    void compactionDropsTombstonesAndKeepsLiveChunksAcrossRestart(@TempDir Path directory) {
+        LocalVectorIndex index = index(directory.toString());
+        for (int round = 0; round < 3; round++) {
+            index.upsert(List.of(
+                    entry("a", "PUBLIC", Set.of("scope:PUBLIC"), unit(round)),
+                    entry("b", "PUBLIC", Set.of("scope:PUBLIC"), unit(round + 10))
+            ));
+        }
+        index.delete(List.of("b"));
+        AclFilterService.AclFilter anonymous = new AclFilterService.AclFilter(null, Set.of(), null);
+        assertThat(index.nodes()).isEqualTo(6);
+
+        index.compact();
+
+        assertThat(index.nodes()).isEqualTo(1);
+        assertThat(index.search(unit(2), anonymous, 5)).extracting(RetrievalResult::chunkId).containsExactly("a");
+        index.upsert(List.of(entry("c", "PUBLIC", Set.of("scope:PUBLIC"), unit(20))));
+        index.close();
+
+        LocalVectorIndex reopened = index(directory.toString());
+        assertThat(reopened.nodes()).isEqualTo(2);
+        assertThat(reopened.search(unit(20), anonymous, 1)).extracting(RetrievalResult::chunkId).containsExactly("c");
+        assertThat(reopened.search(unit(2), anonymous, 1)).singleElement()
+                .satisfies(result -> assertThat(result.vectorScore()).isCloseTo(1.0, within(1e-5)));
+        reopened.close();
+    }
+
+    private static LocalVectorIndex index(String directory) {
+        RagRetrievalProperties retrieval = new RagRetrievalProperties();
+        retrieval.setBackend("local");
+        retrieval.getLocal().setDirectory(directory);
+        retrieval.getLocal().setInitialCapacity(2);
+        retrieval.getLocal().setCompactMinTombstones(1);
+        RagProperties rag = new RagProperties();
+        rag.getEmbedding().setDimensions(DIMENSIONS);
+        return new LocalVectorIndex(retrieval, rag, new ObjectMapper());
+    }
+
+    private static LocalVectorIndex.Entry entry(String chunkId, String scope, Set<String> grantKeys, float[] vector) {
+        RetrievalResult result = new RetrievalResult(chunkId, "doc", "content " + chunkId, "title", "MANUAL",
+                "", "", "", "", 0, 0, 0, Map.of("acl_scope", scope));
+        return new LocalVectorIndex.Entry(result, grantKeys, vector);
+    }
+
+    private static float[] unit(int axis) {
+        float[] vector = new float[DIMENSIONS];
+        vector[axis] = 1;
+        return vector;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static Set<Integer> nodes(List<HnswGraph.Neighbor> neighbors) {
+        Set<Integer> nodes = new HashSet<>();
+        neighbors.forEach(neighbor -> nodes.add(neighbor.node()));
+        return nodes;
+    }
+}
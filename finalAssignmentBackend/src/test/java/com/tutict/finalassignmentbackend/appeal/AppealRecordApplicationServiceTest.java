@@ -10,13 +10,13 @@ import com.tutict.finalassignmentbackend.appeal.domain.idempotency.AppealIdempot
 import com.tutict.finalassignmentbackend.appeal.domain.policy.AppealEventIntentPolicy;
 import com.tutict.finalassignmentbackend.appeal.domain.policy.AppealEventMetadata;
 import com.tutict.finalassignmentbackend.appeal.domain.policy.AppealEventType;
-import com.tutict.finalassignmentbackend.appeal.domain.policy.AppealBusinessPolicy;
 import com.tutict.finalassignmentbackend.appeal.domain.policy.AppealWorkflowDecisionPolicy;
 import com.tutict.finalassignmentbackend.appeal.infrastructure.cache.AppealRecordCacheService;
 import com.tutict.finalassignmentbackend.appeal.infrastructure.messaging.AppealRecordEventPublisher;
 import com.tutict.finalassignmentbackend.appeal.infrastructure.messaging.TransactionalDomainEventPublisher;
 import com.tutict.finalassignmentbackend.appeal.infrastructure.search.AppealRecordSearchIndexer;
 import com.tutict.finalassignmentbackend.appeal.infrastructure.transaction.AfterCommitExecutor;
+import com.tutict.finalassignmentbackend.common.idempotency.DatabaseIdempotencyStore;
 import com.tutict.finalassignmentbackend.config.statemachine.states.AppealProcessState;
 import com.tutict.finalassignmentbackend.entity.appeal.AppealRecord;
 import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
@@ -410,7 +410,7 @@ class AppealRecordApplicationServiceTest {
     @Test
     void idempotencyServiceKeepsExistingHistorySemantics() {
         SysRequestHistoryMapper mapper = mock(SysRequestHistoryMapper.class);
-        AppealIdempotencyService service = new AppealIdempotencyService(mapper, new AppealBusinessPolicy());
+        AppealIdempotencyService service = new AppealIdempotencyService(new DatabaseIdempotencyStore(mapper));
         SysRequestHistory history = new SysRequestHistory();
         history.setBusinessStatus("SUCCESS");
         history.setRequestParams("DONE");
@@ -2,7 +2,6 @@ package com.tutict.finalassignmentbackend.appeal.domain.policy;
 
 import com.tutict.finalassignmentbackend.config.statemachine.states.AppealProcessState;
 import com.tutict.finalassignmentbackend.entity.appeal.AppealRecord;
-import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
@@ -15,32 +14,6 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class AppealPolicyTest {
 
-    @Test
-    void businessPolicyCapturesIdempotencyRules() {
-        AppealBusinessPolicy policy = new AppealBusinessPolicy();
-        SysRequestHistory done = history("SUCCESS", "DONE");
-        SysRequestHistory pending = history("SUCCESS", "PENDING");
-
-        assertThat(policy.isDuplicateRequest(done)).isTrue();
-        assertThat(policy.isDuplicateRequest(null)).isFalse();
-        assertThat(policy.shouldSkipProcessedRequest(done)).isTrue();
-        assertThat(policy.shouldSkipProcessedRequest(pending)).isFalse();
-        assertThat(policy.shouldSkipProcessedRequest(null)).isFalse();
-        assertThat(policy.canUpdateHistory(done)).isTrue();
-        assertThat(policy.canUpdateHistory(null)).isFalse();
-    }
-
-    @Test
-    void businessPolicyTruncatesFailureReasonWithoutChangingNullOrShortValues() {
-        AppealBusinessPolicy policy = new AppealBusinessPolicy();
-        String shortReason = "failed";
-        String longReason = "x".repeat(501);
-
-        assertThat(policy.truncateFailureReason(null)).isNull();
-        assertThat(policy.truncateFailureReason(shortReason)).isEqualTo(shortReason);
-        assertThat(policy.truncateFailureReason(longReason)).hasSize(500);
-    }
-
     @Test
     void workflowPolicyCapturesMutationAndStatusDecisionRules() {
         AppealWorkflowDecisionPolicy policy = new AppealWorkflowDecisionPolicy();
@@ -164,13 +137,6 @@ class AppealPolicyTest {
         assertThat(policy.shouldReturnEmptyForTimeRange(start, end)).isFalse();
     }
 
-    private static SysRequestHistory history(String businessStatus, String requestParams) {
-        SysRequestHistory history = new SysRequestHistory();
-        history.setBusinessStatus(businessStatus);
-        history.setRequestParams(requestParams);
-        return history;
-    }
-
     private static AppealRecord appealRecord(Long appealId, Long offenseId, LocalDateTime deletedAt) {
         AppealRecord record = new AppealRecord();
         record.setAppealId(appealId);
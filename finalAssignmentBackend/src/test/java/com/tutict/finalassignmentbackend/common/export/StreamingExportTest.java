@@ -0,0 +1,118 @@
+package com.tutict.finalassignmentbackend.common.export;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.entity.audit.AuditLoginLog;
+import com.tutict.finalassignmentbackend.mapper.audit.AuditLoginLogMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamingExportTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tableScanContinuesFromLastKeyUntilShortPage() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), AuditLoginLog.class);
+        ExportProperties properties = new ExportProperties();
+        properties.setPageSize(2);
+        ExportScanner scanner = new ExportScanner(properties, mock(ObjectProvider.class));
+        AuditLoginLogMapper mapper = mock(AuditLoginLogMapper.class);
+        when(mapper.selectList(any(QueryWrapper.class)))
+                .thenReturn(List.of(log(1L), log(2L)), List.of(log(3L)));
+
+        List<List<AuditLoginLog>> pages = new ArrayList<>();
+        scanner.scanTable(mapper, AuditLoginLog.class, pages::add);
+
+        assertThat(pages).hasSize(2);
+        assertThat(pages.get(1)).extracting(AuditLoginLog::getLogId).containsExactly(3L);
+        ArgumentCaptor<QueryWrapper<AuditLoginLog>> wrappers = ArgumentCaptor.forClass(QueryWrapper.class);
+        verify(mapper, times(2)).selectList(wrappers.capture());
+        assertThat(wrappers.getAllValues().get(0).getParamNameValuePairs()).isEmpty();
+        assertThat(wrappers.getAllValues().get(1).getParamNameValuePairs()).containsValue(2L);
+        assertThat(wrappers.getAllValues().get(1).getSqlSegment()).contains("log_id >").contains("ORDER BY log_id ASC");
+    }
+
+    @Test
+    void csvExportQuotesCellsAndNeutralizesFormulas() throws Exception {
+        StreamingExportResponses responses = new StreamingExportResponses(new ObjectMapper());
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("name", "Zhang, San");
+        first.put("note", "=HYPERLINK(\"x\")");
+        first.put("amount", -5);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("name", "Li");
+        second.put("note", null);
+        second.put("amount", 7);
+
+        ResponseEntity<StreamingResponseBody> response = responses.<Map<String, Object>>stream("rows", ExportFormat.CSV,
+                sink -> {
+                    sink.accept(List.of(first));
+                    sink.accept(List.of(second));
+                },
+                Function.identity());
+
+        assertThat(response.getHeaders().getContentDisposition().getFilename()).startsWith("rows-").endsWith(".csv");
+        assertThat(render(response)).isEqualTo("name,note,amount\r\n"
+                + "\"Zhang, San\",\"'=HYPERLINK(\"\"x\"\")\",-5\r\n"
+                + "Li,,7\r\n");
+    }
+
+    @Test
+    void ndjsonExportWritesOneLinePerRow() throws Exception {
+        StreamingExportResponses responses = new StreamingExportResponses(new ObjectMapper());
+
+        ResponseEntity<StreamingResponseBody> response = responses.<Map<String, Object>>stream("rows", ExportFormat.NDJSON,
+                sink -> sink.accept(List.of(Map.of("id", 1), Map.of("id", 2))),
+                Function.identity());
+
+        assertThat(response.getHeaders().getContentType()).hasToString("application/x-ndjson");
+        assertThat(render(response)).isEqualTo("{\"id\":1}\n{\"id\":2}\n");
+    }
+
+    @Test
+    void listResponseKeepsApiResponseShapeAcrossPages() throws Exception {
+        StreamingExportResponses responses = new StreamingExportResponses(new ObjectMapper());
+
+        ResponseEntity<StreamingResponseBody> response = responses.<Integer>streamList(
+                sink -> {
+                    sink.accept(List.of(1, 2));
+                    sink.accept(List.of(3));
+                },
+                page -> page.stream().map(id -> Map.of("id", id)).toList());
+
+        assertThat(render(response)).isEqualTo("{\"success\":true,\"data\":[{\"id\":1},{\"id\":2},{\"id\":3}]}");
+    }
+
+    private String render(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private AuditLoginLog log(Long id) {
+        AuditLoginLog log = new AuditLoginLog();
+        log.setLogId(id);
+        return log;
+    }
+}
@@ -0,0 +1,182 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchKafkaMessageProcessorTest {
+
+    private static final String TOPIC = "offense_record_create";
+
+    private final IdempotencyStore store = mock(IdempotencyStore.class);
+    private final ConsumerRecordRecoverer deadLetters = mock(ConsumerRecordRecoverer.class);
+    private final Acknowledgment acknowledgment = mock(Acknowledgment.class);
+    private final BatchKafkaMessageProcessor processor = new BatchKafkaMessageProcessor(
+            store, new IdempotentKafkaMessageProcessor(new ObjectMapper()), deadLetters);
+    private long offset;
+
+    @Test
+    void completedKeysAreDroppedWithOneLookupAndTheRestIsWrittenOnce() {
+        when(store.findCompleted(anyCollection())).thenReturn(Set.of("k2"));
+        List<List<Event>> batches = new ArrayList<>();
+
+        processor.process(List.of(
+                        record("k1", "{\"id\":1}"),
+                        record("k2", "{\"id\":2}"),
+                        record("k1", "{\"id\":1}"),
+                        record("k3", "{\"id\":3}")
+                ), acknowledgment, "Event", "create", Event.class,
+                payloads -> {
+                    batches.add(payloads);
+                    return payloads;
+                },
+                (key, payload) -> {
+                    throw new AssertionError("record handler must not run");
+                },
+                Event::id,
+                null);
+
+        verify(store, times(1)).findCompleted(argThat(keys -> keys.size() == 3));
+        assertThat(batches).singleElement().satisfies(batch ->
+                assertThat(batch).extracting(Event::id).containsExactly(1L, 3L));
+        verify(store).markSuccess("k1", 1L);
+        verify(store).markSuccess("k3", 3L);
+        verify(store, never()).markSuccess(eq("k2"), anyLong());
+        verify(acknowledgment, times(1)).acknowledge();
+    }
+
+    @Test
+    void failedGroupedWriteFallsBackToSingleWritesAndDeadLettersOnlyFailures() {
+        when(store.findCompleted(anyCollection())).thenReturn(Set.of());
+        ConsumerRecord<String, String> bad = record("k2", "{\"id\":2}");
+
+        processor.process(List.of(record("k1", "{\"id\":1}"), bad, record("k3", "{\"id\":3}")),
+                acknowledgment, "Event", "create", Event.class,
+                payloads -> {
+                    throw new IllegalStateException("constraint violation");
+                },
+                (key, payload) -> {
+                    if (payload.id() == 2L) {
+                        throw new IllegalArgumentException("invalid event");
+                    }
+                    return payload;
+                },
+                Event::id,
+                null);
+
+        verify(store).markSuccess("k1", 1L);
+        verify(store).markSuccess("k3", 3L);
+        verify(store).markFailure("k2", "invalid event");
+        verify(deadLetters).accept(eq(bad), any(IllegalArgumentException.class));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void undecodableRecordsAreDeadLetteredAndLeftOutOfTheBatch() {
+        when(store.findCompleted(anyCollection())).thenReturn(Set.of());
+        ConsumerRecord<String, String> broken = record("k1", "{not json");
+        List<List<Event>> batches = new ArrayList<>();
+
+        processor.process(List.of(broken, record("k2", "{\"id\":2}")),
+                acknowledgment, "Event", "update", Event.class,
+                payloads -> {
+                    batches.add(payloads);
+                    return payloads;
+                },
+                (key, payload) -> payload,
+                Event::id,
+                null);
+
+        verify(deadLetters).accept(eq(broken), any(IllegalArgumentException.class));
+        assertThat(batches).singleElement().satisfies(batch ->
+                assertThat(batch).extracting(Event::id).containsExactly(2L));
+        verify(store, never()).markFailure(anyString(), any());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void databaseOutageMidwayFailsAtThatRecordWithoutDeadLetteringLaterOnes() {
+        when(store.findCompleted(anyCollection())).thenReturn(Set.of());
+        ConsumerRecord<String, String> broken = record("k0", "{not json");
+        ConsumerRecord<String, String> invalid = record("k1", "{\"id\":1}");
+        ConsumerRecord<String, String> laterBroken = record("k3", "{not json");
+        List<ConsumerRecord<String, String>> records = List.of(
+                broken, invalid, record("k2", "{\"id\":2}"), laterBroken, record("k4", "{\"id\":4}"));
+
+        assertThatThrownBy(() -> processor.process(records, acknowledgment, "Event", "create", Event.class,
+                payloads -> {
+                    throw new IllegalStateException("constraint violation");
+                },
+                (key, payload) -> {
+                    if (payload.id() == 1L) {
+                        throw new IllegalArgumentException("invalid event");
+                    }
+                    throw new TransientDataAccessResourceException("connection reset");
+                },
+                Event::id,
+                null))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                        ex -> assertThat(ex.getIndex()).isEqualTo(2));
+
+        // 位于失败记录之前的都已进入 DLT，之后的留给重投处理
+        InOrder order = inOrder(deadLetters);
+        order.verify(deadLetters).accept(eq(broken), any(IllegalArgumentException.class));
+        order.verify(deadLetters).accept(eq(invalid), any(IllegalArgumentException.class));
+        verify(deadLetters, never()).accept(eq(laterBroken), any());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void failedDeadLetterPublishFailsAtThatRecord() {
+        when(store.findCompleted(anyCollection())).thenReturn(Set.of());
+        ConsumerRecord<String, String> first = record("k1", "{not json");
+        ConsumerRecord<String, String> second = record("k2", "{not json");
+        doThrow(new KafkaException("broker unavailable")).when(deadLetters).accept(eq(second), any());
+
+        assertThatThrownBy(() -> processor.process(List.of(first, second, record("k3", "{\"id\":3}")),
+                acknowledgment, "Event", "create", Event.class,
+                payloads -> payloads,
+                (key, payload) -> payload,
+                Event::id,
+                null))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                        ex -> assertThat(ex.getIndex()).isEqualTo(1));
+
+        verify(deadLetters).accept(eq(first), any());
+        verify(store).markSuccess("k3", 3L);
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    private ConsumerRecord<String, String> record(String key, String value) {
+        return new ConsumerRecord<>(TOPIC, 0, offset++, key, value);
+    }
+
+    record Event(Long id) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
+import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import org.mockito.ArgumentMatchers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Idempotent writes/sec through the full key lifecycle: claim, markPending, the consumer's isCompleted,
+ * markSuccess, then a redelivery (isCompleted and a duplicate claim). Round trips are simulated with
+ * fixed latencies, so the score tracks how many of them each store needs: 9 database calls for
+ * {@code DATABASE}, 3 database and 4 Redis calls for {@code REDIS}.
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class IdempotencyStoreBenchmark {
+
+    private static final long DATABASE_RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long REDIS_RTT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Param({"DATABASE", "REDIS"})
+    public IdempotencyProperties.Store store;
+
+    // 保持强引用，避免日志级别被 LogManager 回收后恢复
+    private final Logger idempotencyLogger = Logger.getLogger(IdempotencyStore.class.getPackageName());
+    private final AtomicLong sequence = new AtomicLong();
+    private IdempotencyStore idempotencyStore;
+
+    @Setup
+    public void setup() {
+        idempotencyLogger.setLevel(Level.SEVERE);
+        DatabaseIdempotencyStore databaseStore = new DatabaseIdempotencyStore(simulatedMapper());
+        idempotencyStore = store == IdempotencyProperties.Store.DATABASE
+                ? databaseStore
+                : new RedisIdempotencyStore(simulatedRedis(), databaseStore, new IdempotencyProperties());
+    }
+
+    @Benchmark
+    public boolean lifecycle() {
+        String key = "bench-" + sequence.incrementAndGet();
+        idempotencyStore.claim(key);
+        idempotencyStore.markPending(key, 1L);
+        boolean unexpected = idempotencyStore.isCompleted(key);
+        idempotencyStore.markSuccess(key, 1L);
+        // Kafka 重投与客户端重放
+        unexpected |= !idempotencyStore.isCompleted(key);
+        unexpected |= idempotencyStore.claim(key);
+        return unexpected;
+    }
+
+    private static SysRequestHistoryMapper simulatedMapper() {
+        Map<String, SysRequestHistory> rows = new ConcurrentHashMap<>();
+        return (SysRequestHistoryMapper) Proxy.newProxyInstance(
+                SysRequestHistoryMapper.class.getClassLoader(),
+                new Class<?>[]{SysRequestHistoryMapper.class},
+                (proxy, method, args) -> {
+                    LockSupport.parkNanos(DATABASE_RTT_NANOS);
+                    switch (method.getName()) {
+                        case "selectByIdempotencyKey" -> {
+                            return rows.get((String) args[0]);
+                        }
+                        case "insert" -> {
+                            SysRequestHistory row = (SysRequestHistory) args[0];
+                            if (rows.putIfAbsent(row.getIdempotencyKey(), row) != null) {
+                                throw new DuplicateKeyException(row.getIdempotencyKey());
+                            }
+                            return 1;
+                        }
+                        case "updateById" -> {
+                            SysRequestHistory row = (SysRequestHistory) args[0];
+                            rows.put(row.getIdempotencyKey(), row);
+                            return 1;
+                        }
+                        case "advanceState" -> {
+                            SysRequestHistory row = rows.get((String) args[0]);
+                            if (row == null) {
+                                return 0;
+                            }
+                            row.setBusinessStatus((String) args[1]);
+                            row.setRequestParams((String) args[3]);
+                            return 1;
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate simulatedRedis() {
+        Map<String, String> values = new ConcurrentHashMap<>();
+        // stubOnly：不记录调用，避免长时间运行时内存持续增长
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class, withSettings().stubOnly());
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class, withSettings().stubOnly());
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenAnswer(invocation -> {
+            LockSupport.parkNanos(REDIS_RTT_NANOS);
+            return values.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null;
+        });
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(REDIS_RTT_NANOS);
+            return values.get((String) invocation.getArgument(0));
+        });
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), ArgumentMatchers.<String>anyList(), any(), any()))
+                .thenAnswer(invocation -> {
+                    LockSupport.parkNanos(REDIS_RTT_NANOS);
+                    List<String> keys = invocation.getArgument(1);
+                    values.put(keys.get(0), invocation.getArgument(2));
+                    return 1L;
+                });
+        return redisTemplate;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IdempotencyStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
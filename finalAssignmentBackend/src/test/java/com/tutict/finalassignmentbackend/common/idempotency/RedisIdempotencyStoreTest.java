@@ -0,0 +1,118 @@
+package com.tutict.finalassignmentbackend.common.idempotency;
+
+import com.tutict.finalassignmentbackend.entity.system.SysRequestHistory;
+import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisIdempotencyStoreTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    private final SysRequestHistoryMapper mapper = mock(SysRequestHistoryMapper.class);
+    private RedisIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        store = new RedisIdempotencyStore(redisTemplate, new DatabaseIdempotencyStore(mapper), new IdempotencyProperties());
+    }
+
+    @Test
+    void claimInsertsHistoryRowAndDuplicateIsRejectedByRedis() {
+        when(valueOperations.setIfAbsent(eq("idempotency:k1"), eq("PROCESSING"), any(Duration.class)))
+                .thenReturn(true, false);
+
+        assertThat(store.claim("k1")).isTrue();
+        assertThat(store.claim("k1")).isFalse();
+
+        ArgumentCaptor<SysRequestHistory> row = ArgumentCaptor.forClass(SysRequestHistory.class);
+        verify(mapper, times(1)).insert(row.capture());
+        assertThat(row.getValue().getBusinessStatus()).isEqualTo("PROCESSING");
+        verify(mapper, never()).selectByIdempotencyKey(anyString());
+    }
+
+    @Test
+    void replayAfterRedisExpiryIsRejectedByUniqueKey() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        doThrow(new DuplicateKeyException("uk_idempotency_key")).when(mapper).insert(any(SysRequestHistory.class));
+
+        assertThat(store.claim("k2")).isFalse();
+
+        // 重新放出 Redis 键，状态查询回到数据库
+        verify(redisTemplate).delete("idempotency:k2");
+    }
+
+    @Test
+    void redisOutageStillClaimsThroughDatabase() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new IllegalStateException("redis down"));
+
+        assertThat(store.claim("k3")).isTrue();
+        verify(mapper).insert(any(SysRequestHistory.class));
+
+        doThrow(new DuplicateKeyException("uk_idempotency_key")).when(mapper).insert(any(SysRequestHistory.class));
+        assertThat(store.claim("k3")).isFalse();
+    }
+
+    @Test
+    void markSuccessUpdatesRowThenSkipsRedisForCompletedKey() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        when(mapper.advanceState(anyString(), anyString(), any(), anyString())).thenReturn(1);
+
+        store.claim("k4");
+        store.markPending("k4", 42L);
+        store.markSuccess("k4", 42L);
+
+        verify(mapper).advanceState("k4", "SUCCESS", 42L, "PENDING");
+        verify(mapper).advanceState("k4", "SUCCESS", 42L, "DONE");
+        verify(redisTemplate, times(2)).execute(ArgumentMatchers.<RedisScript<Long>>any(),
+                ArgumentMatchers.<String>anyList(), any(), any());
+
+        assertThat(store.isCompleted("k4")).isTrue();
+        assertThat(store.claim("k4")).isFalse();
+        verify(valueOperations, never()).get(anyString());
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void markingUnknownKeyIsOnlyLogged() {
+        store.markFailure("missing", "boom");
+
+        verify(mapper).advanceState(eq("missing"), eq("FAILED"), isNull(), eq("boom"));
+        verify(redisTemplate, never()).execute(ArgumentMatchers.<RedisScript<Long>>any(),
+                ArgumentMatchers.<String>anyList(), any(), any());
+    }
+
+    @Test
+    void expiredRedisStateFallsBackToHistoryRow() {
+        SysRequestHistory done = new SysRequestHistory();
+        done.setIdempotencyKey("k5");
+        done.setBusinessStatus("SUCCESS");
+        done.setRequestParams("DONE");
+        when(mapper.selectByIdempotencyKey("k5")).thenReturn(done);
+
+        assertThat(store.isCompleted("k5")).isTrue();
+    }
+}
@@ -0,0 +1,53 @@
+package com.tutict.finalassignmentbackend.config.login.jwt;
+
+import com.tutict.finalassignmentbackend.enums.DataScope;
+import com.tutict.finalassignmentbackend.enums.RoleType;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenProviderVerifiedCacheTest {
+
+    @Test
+    void verifyReturnsAllClaimsFromOneVerificationAndReusesCachedPrincipal() {
+        TokenProvider tokenProvider = tokenProvider();
+        String token = tokenProvider.createEnhancedToken("officer", "TRAFFIC_POLICE", "Business", "Department");
+
+        TokenPrincipal principal = tokenProvider.verify(token).orElseThrow();
+
+        assertThat(principal.username()).isEqualTo("officer");
+        assertThat(principal.roles()).containsExactly("ROLE_TRAFFIC_POLICE");
+        assertThat(principal.roleTypes()).containsExactly(RoleType.BUSINESS);
+        assertThat(principal.dataScope()).isEqualTo(DataScope.DEPARTMENT);
+        assertThat(principal.expiresAt()).isAfter(Instant.now());
+        assertThat(tokenProvider.verify(token)).containsSame(principal);
+        assertThat(tokenProvider.getUsernameFromToken(token)).isEqualTo("officer");
+    }
+
+    @Test
+    void tamperedTokenIsNotServedFromCache() {
+        TokenProvider tokenProvider = tokenProvider();
+        String token = tokenProvider.createToken("admin", "ADMIN");
+        assertThat(tokenProvider.verify(token)).isPresent();
+
+        int signatureStart = token.lastIndexOf('.') + 1;
+        char replacement = token.charAt(signatureStart) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, signatureStart) + replacement + token.substring(signatureStart + 1);
+
+        assertThat(tokenProvider.verify(tampered)).isEmpty();
+        assertThat(tokenProvider.validateToken(tampered)).isFalse();
+    }
+
+    private TokenProvider tokenProvider() {
+        TokenProvider tokenProvider = new TokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "secret",
+                "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(tokenProvider, "configuredAlgorithm", "HS256");
+        ReflectionTestUtils.setField(tokenProvider, "accessTokenExpirationSeconds", 3600L);
+        tokenProvider.init();
+        return tokenProvider;
+    }
+}
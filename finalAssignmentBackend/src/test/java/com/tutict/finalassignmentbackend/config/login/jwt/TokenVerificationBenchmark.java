@@ -0,0 +1,92 @@
+package com.tutict.finalassignmentbackend.config.login.jwt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request authentication cost before (validate + username + roles, three verifications)
+ * and after (one cached {@link TokenProvider#verify(String)}) for each signing algorithm.
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenVerificationBenchmark {
+
+    @Param({"HS256", "RS256", "ML-DSA-65"})
+    public String algorithm;
+
+    private TokenProvider tokenProvider;
+    private String token;
+
+    @Setup
+    public void setup() throws Exception {
+        tokenProvider = new TokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "configuredAlgorithm", algorithm);
+        ReflectionTestUtils.setField(tokenProvider, "accessTokenExpirationSeconds", 3600L);
+        if ("HS256".equals(algorithm)) {
+            ReflectionTestUtils.setField(tokenProvider, "secret", "0123456789abcdef0123456789abcdef");
+        } else if ("RS256".equals(algorithm)) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair keyPair = generator.generateKeyPair();
+            ReflectionTestUtils.setField(tokenProvider, "privateKeyPem",
+                    pem("PRIVATE KEY", keyPair.getPrivate().getEncoded()));
+            ReflectionTestUtils.setField(tokenProvider, "publicKeyPem",
+                    pem("PUBLIC KEY", keyPair.getPublic().getEncoded()));
+        }
+        tokenProvider.init();
+        token = tokenProvider.createEnhancedToken("officer", "TRAFFIC_POLICE", "Business", "Department");
+    }
+
+    @Benchmark
+    public void tripleVerificationPerRequest(Blackhole blackhole) {
+        blackhole.consume(tokenProvider.parsePrincipal(token));
+        blackhole.consume(tokenProvider.parsePrincipal(token).username());
+        blackhole.consume(tokenProvider.parsePrincipal(token).roles());
+    }
+
+    @Benchmark
+    public void singleUncachedVerification(Blackhole blackhole) {
+        blackhole.consume(tokenProvider.parsePrincipal(token));
+    }
+
+    @Benchmark
+    public void cachedVerify(Blackhole blackhole) {
+        blackhole.consume(tokenProvider.verify(token));
+    }
+
+    private static String pem(String type, byte[] encoded) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes()).encodeToString(encoded)
+                + "\n-----END " + type + "-----";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TokenVerificationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.tutict.finalassignmentbackend.config.redis;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TieredCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrentMapCache l2 = new ConcurrentMapCache("offenseRecordCache", false);
+    private final CacheInvalidationBroadcaster broadcaster = mock(CacheInvalidationBroadcaster.class);
+    private final TieredCache cache = new TieredCache("offenseRecordCache",
+            Caffeine.newBuilder().maximumSize(100).recordStats(), null, l2, broadcaster, meterRegistry);
+
+    @Test
+    void l2HitBackfillsL1SoSecondReadStaysLocal() {
+        l2.put("42", "offense-42");
+
+        assertThat(cache.get(42L).get()).isEqualTo("offense-42");
+        l2.clear();
+        assertThat(cache.get(42L).get()).isEqualTo("offense-42");
+
+        assertThat(meterRegistry.counter("cache.tiered.gets",
+                "cache", "offenseRecordCache", "level", "l2", "result", "hit").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void loaderRunsOnceAndWritesThroughToL2() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("7", () -> "loaded-" + loads.incrementAndGet())).isEqualTo("loaded-1");
+        assertThat(cache.get("7", () -> "loaded-" + loads.incrementAndGet())).isEqualTo("loaded-1");
+
+        assertThat(loads).hasValue(1);
+        assertThat(l2.get("7").get()).isEqualTo("loaded-1");
+    }
+
+    @Test
+    void evictClearsBothLevelsAndBroadcasts() {
+        l2.put("9", "offense-9");
+        assertThat(cache.get("9")).isNotNull();
+
+        cache.evict("9");
+
+        assertThat(cache.get("9")).isNull();
+        assertThat(l2.get("9")).isNull();
+        verify(broadcaster).publishEvict("offenseRecordCache", "9");
+    }
+
+    @Test
+    void numericAndStringKeysAddressTheSameEntryInBothLevels() {
+        cache.put(42L, "offense-42");
+
+        assertThat(l2.get("42").get()).isEqualTo("offense-42");
+        assertThat(cache.get("42").get()).isEqualTo("offense-42");
+
+        cache.evict("42");
+
+        assertThat(l2.get("42")).isNull();
+        assertThat(cache.get(42L)).isNull();
+    }
+
+    @Test
+    void putAlwaysBroadcastsWithoutReadingL2First() {
+        cache.put("3", "offense-3");
+        cache.put("3", "offense-3");
+        l2.put("4", "offense-4");
+        cache.put(4L, "offense-4");
+
+        verify(broadcaster, times(2)).publishEvict("offenseRecordCache", "3");
+        verify(broadcaster, times(1)).publishEvict("offenseRecordCache", "4");
+        assertThat(meterRegistry.timer("cache.tiered.load", "cache", "offenseRecordCache", "level", "l2").count())
+                .isZero();
+    }
+
+    @Test
+    void remoteEvictDropsOnlyL1() {
+        cache.put("5", "stale");
+        l2.put("5", "fresh");
+
+        cache.evictLocal("5");
+
+        assertThat(cache.get("5").get()).isEqualTo("fresh");
+    }
+}
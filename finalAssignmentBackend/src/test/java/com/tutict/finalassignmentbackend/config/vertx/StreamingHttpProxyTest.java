@@ -0,0 +1,164 @@
+package com.tutict.finalassignmentbackend.config.vertx;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.RequestOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingHttpProxyTest {
+
+    private Vertx vertx;
+    private HttpClient testClient;
+    private int proxyPort;
+    private final CountDownLatch upstreamAborted = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        HttpServer upstream = await(vertx.createHttpServer().requestHandler(this::upstream).listen(0));
+        int upstreamPort = upstream.actualPort();
+
+        NetworkProxyProperties properties = new NetworkProxyProperties();
+        properties.setConnectTimeout(Duration.ofSeconds(2));
+        StreamingHttpProxy proxy = new StreamingHttpProxy(StreamingHttpProxy.createClient(vertx, properties));
+        HttpServer front = await(vertx.createHttpServer()
+                .requestHandler(request -> proxy.forward(
+                        request,
+                        "http://localhost:" + upstreamPort + request.uri(),
+                        request.headers(),
+                        "test"))
+                .listen(0));
+        proxyPort = front.actualPort();
+        testClient = vertx.createHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        await(vertx.close());
+    }
+
+    @Test
+    void passesChunkedUpstreamBodyThroughInOrder() throws Exception {
+        ProxiedResponse response = send(new RequestOptions().setMethod(HttpMethod.GET).setURI("/chunked"), null);
+
+        assertThat(response.status()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("first-second-third");
+        assertThat(response.response().getHeader("Content-Type")).isEqualTo("text/plain; charset=utf-8");
+    }
+
+    @Test
+    void streamsRequestBodyAndForwardsEndToEndHeadersOnly() throws Exception {
+        String payload = "x".repeat(256 * 1024);
+        RequestOptions options = new RequestOptions()
+                .setMethod(HttpMethod.POST)
+                .setURI("/echo?q=1")
+                .putHeader("X-Custom", "custom-value")
+                .putHeader("Proxy-Authorization", "Basic secret")
+                .putHeader("Content-Type", "application/octet-stream");
+
+        ProxiedResponse response = send(options, payload);
+
+        assertThat(response.status()).isEqualTo(200);
+        assertThat(response.body()).hasSize(payload.length()).isEqualTo(payload);
+        assertThat(response.response().getHeader("X-Seen-Custom")).isEqualTo("custom-value");
+        assertThat(response.response().getHeader("X-Seen-Proxy-Authorization")).isEqualTo("none");
+        assertThat(response.response().getHeader("X-Seen-Query")).isEqualTo("q=1");
+        assertThat(response.response().getHeader("X-Upstream")).isEqualTo("yes");
+        assertThat(response.response().getHeader("Proxy-Authenticate")).isNull();
+    }
+
+    @Test
+    void keepsUpstreamErrorStatusAndBody() throws Exception {
+        ProxiedResponse response = send(new RequestOptions().setMethod(HttpMethod.GET).setURI("/error"), null);
+
+        assertThat(response.status()).isEqualTo(503);
+        assertThat(response.response().statusMessage()).isEqualTo("Backend Down");
+        assertThat(response.body()).isEqualTo("{\"error\":\"down\"}");
+        assertThat(response.response().getHeader("Content-Type")).isEqualTo("application/json");
+    }
+
+    @Test
+    void clientAbortResetsUpstreamRequest() throws Exception {
+        try (Socket socket = new Socket("localhost", proxyPort)) {
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /endless HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            InputStream input = socket.getInputStream();
+            // 读到响应开头后再断开，确保已进入管道转发阶段
+            byte[] head = new byte[64];
+            assertThat(input.read(head)).isPositive();
+        }
+
+        assertThat(upstreamAborted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void upstream(HttpServerRequest request) {
+        switch (request.path()) {
+            case "/chunked" -> {
+                var response = request.response().setChunked(true).putHeader("Content-Type", "text/plain; charset=utf-8");
+                response.write("first-");
+                vertx.setTimer(20, ignored -> response.write("second-")
+                        .onSuccess(done -> vertx.setTimer(20, ignoredAgain -> response.end("third"))));
+            }
+            case "/echo" -> request.body().onSuccess(body -> request.response()
+                    .putHeader("X-Seen-Custom", String.valueOf(request.getHeader("X-Custom")))
+                    .putHeader("X-Seen-Proxy-Authorization",
+                            request.getHeader("Proxy-Authorization") == null ? "none" : "present")
+                    .putHeader("X-Seen-Query", String.valueOf(request.query()))
+                    .putHeader("X-Upstream", "yes")
+                    .putHeader("Proxy-Authenticate", "Basic")
+                    .end(body));
+            case "/error" -> request.response()
+                    .setStatusCode(503)
+                    .setStatusMessage("Backend Down")
+                    .putHeader("Content-Type", "application/json")
+                    .end("{\"error\":\"down\"}");
+            case "/endless" -> {
+                var response = request.response().setChunked(true);
+                long timer = vertx.setPeriodic(10, ignored -> {
+                    if (!response.closed()) {
+                        response.write("tick\n");
+                    }
+                });
+                response.closeHandler(ignored -> {
+                    vertx.cancelTimer(timer);
+                    upstreamAborted.countDown();
+                });
+            }
+            default -> request.response().setStatusCode(404).end();
+        }
+    }
+
+    private ProxiedResponse send(RequestOptions options, String body) throws Exception {
+        options.setHost("localhost").setPort(proxyPort);
+        Future<ProxiedResponse> result = testClient.request(options)
+                .compose(request -> body == null ? request.send() : request.send(body))
+                .compose(response -> response.body()
+                        .map(buffer -> new ProxiedResponse(response, response.statusCode(), buffer.toString(StandardCharsets.UTF_8))));
+        return await(result);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    private record ProxiedResponse(HttpClientResponse response, int status, String body) {
+    }
+}
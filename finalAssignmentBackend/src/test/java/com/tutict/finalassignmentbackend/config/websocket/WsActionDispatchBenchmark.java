@@ -0,0 +1,124 @@
+package com.tutict.finalassignmentbackend.config.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the legacy readTree + reflective dispatch with the precompiled MethodHandle invoker
+ * and per-parameter ObjectReaders on a typical OffenseRecord create frame.
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WsActionDispatchBenchmark {
+
+    private ObjectMapper objectMapper;
+    private OffenseActions bean;
+    private Method method;
+    private WsFrameDecoder decoder;
+    private String frame;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        bean = new OffenseActions();
+        method = OffenseActions.class.getMethod("checkAndInsertIdempotency", String.class, OffenseRecord.class, String.class);
+
+        WsActionRegistry registry = new WsActionRegistry(null, objectMapper);
+        registry.register(WsActionRegistry.HandlerMethod.compile(
+                bean, method, method.getAnnotation(WsAction.class), objectMapper));
+        decoder = new WsFrameDecoder(objectMapper, registry);
+
+        OffenseRecord record = new OffenseRecord();
+        record.setOffenseCode("1625");
+        record.setOffenseNumber("OFF-20260101-000123");
+        record.setOffenseTime(LocalDateTime.of(2026, 1, 1, 8, 30));
+        record.setOffenseLocation("Zhongshan Road / Renmin Road intersection");
+        record.setOffenseProvince("Guangdong");
+        record.setOffenseCity("Guangzhou");
+        record.setDriverId(1024L);
+        record.setVehicleId(2048L);
+        record.setFineAmount(new BigDecimal("200.00"));
+        record.setDeductedPoints(6);
+        record.setProcessStatus("Unprocessed");
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("requestId", "req-1");
+        payload.put("service", "OffenseRecordService");
+        payload.put("action", "checkAndInsertIdempotency");
+        payload.put("idempotencyKey", "idem-1");
+        payload.put("args", List.of("idem-1", record, "create"));
+        frame = objectMapper.writeValueAsString(payload);
+    }
+
+    @Benchmark
+    public Object legacyReflectiveDispatch() throws Exception {
+        JsonNode root = objectMapper.readTree(frame);
+        JsonNode args = root.path("args");
+        Class<?>[] paramTypes = method.getParameterTypes();
+        Object[] invokeArgs = new Object[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            invokeArgs[i] = legacyConvert(args.get(i), paramTypes[i]);
+        }
+        return method.invoke(bean, invokeArgs);
+    }
+
+    @Benchmark
+    public Object precompiledDispatch() throws Exception {
+        WsFrameDecoder.WsFrame request = decoder.decode(frame, handler -> true);
+        return request.handler().invoke(request.args());
+    }
+
+    private Object legacyConvert(JsonNode node, Class<?> targetType) throws Exception {
+        if (targetType == String.class) {
+            return node.asText();
+        } else if (targetType == int.class || targetType == Integer.class) {
+            return node.asInt();
+        } else if (targetType == long.class || targetType == Long.class) {
+            return node.asLong();
+        } else if (targetType == boolean.class || targetType == Boolean.class) {
+            return node.asBoolean();
+        }
+        return objectMapper.treeToValue(node, targetType);
+    }
+
+    public static class OffenseActions {
+
+        @WsAction(service = "OffenseRecordService", action = "checkAndInsertIdempotency", roles = {"ADMIN"})
+        public OffenseRecord checkAndInsertIdempotency(String idempotencyKey, OffenseRecord offenseRecord, String action) {
+            return offenseRecord;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WsActionDispatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.tutict.finalassignmentbackend.config.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WsActionDispatcherTest {
+
+    private final Vertx vertx = Vertx.vertx();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void closeVertx() {
+        vertx.close().await();
+    }
+
+    @Test
+    void runsHandlerOffEventLoopAndCompletesOnCallerContext() throws Exception {
+        WsActionDispatcher dispatcher = new WsActionDispatcher(properties(WsDispatchProperties.Mode.VIRTUAL, 2, 2),
+                meterRegistry);
+        Context context = vertx.getOrCreateContext();
+        CompletableFuture<Boolean> handlerOnEventLoop = new CompletableFuture<>();
+        CompletableFuture<Boolean> completedOnContext = new CompletableFuture<>();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+
+        context.runOnContext(v -> dispatcher.dispatch(context, "offense", "create", () -> {
+                    handlerOnEventLoop.complete(Context.isOnEventLoopThread());
+                    return "done";
+                })
+                .onComplete(ar -> {
+                    completedOnContext.complete(Vertx.currentContext() == context);
+                    result.complete(ar.result());
+                }));
+
+        assertThat(handlerOnEventLoop.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(completedOnContext.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(meterRegistry.get("ws.action.latency")
+                .tags("service", "offense", "action", "create", "outcome", "success")
+                .timer()
+                .count()).isEqualTo(1);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void rejectsWhenServiceLaneIsFull() throws Exception {
+        WsActionDispatcher dispatcher = new WsActionDispatcher(properties(WsDispatchProperties.Mode.POOL, 1, 1),
+                meterRegistry);
+        Context context = vertx.getOrCreateContext();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Object> running = dispatcher.dispatch(context, "payment", "pay", () -> release.await(5, TimeUnit.SECONDS));
+        Future<Object> queued = dispatcher.dispatch(context, "payment", "pay", () -> "queued");
+        Future<Object> rejected = dispatcher.dispatch(context, "payment", "pay", () -> "rejected");
+
+        assertThat(rejected.failed()).isTrue();
+        assertThat(rejected.cause()).isInstanceOf(RejectedExecutionException.class);
+        assertThat(meterRegistry.get("ws.action.rejected").tags("service", "payment", "action", "pay")
+                .counter()
+                .count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS)).isEqualTo(true);
+        assertThat(queued.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+        dispatcher.shutdown();
+    }
+
+    private WsDispatchProperties properties(WsDispatchProperties.Mode mode, int concurrency, int queueCapacity) {
+        WsDispatchProperties properties = new WsDispatchProperties();
+        properties.setMode(mode);
+        properties.setMaxConcurrencyPerService(concurrency);
+        properties.setQueueCapacityPerService(queueCapacity);
+        return properties;
+    }
+}
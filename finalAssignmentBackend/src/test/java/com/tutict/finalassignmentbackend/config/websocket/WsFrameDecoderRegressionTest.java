@@ -0,0 +1,149 @@
+package com.tutict.finalassignmentbackend.config.websocket;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WsFrameDecoderRegressionTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WsFrameDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        WsActionRegistry registry = new WsActionRegistry(null, objectMapper);
+        TestActions bean = new TestActions();
+        for (Method method : TestActions.class.getMethods()) {
+            WsAction anno = method.getAnnotation(WsAction.class);
+            if (anno != null) {
+                registry.register(WsActionRegistry.HandlerMethod.compile(bean, method, anno, objectMapper));
+            }
+        }
+        decoder = new WsFrameDecoder(objectMapper, registry);
+    }
+
+    @Test
+    void decodesArgsSentBeforeServiceAndAction() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"args":[7,{"name":"n1","tags":["a","b"]}],"requestId":"r1",
+                 "service":"TestService","action":"update","idempotencyKey":"k1"}""", handler -> true);
+
+        assertThat(frame.rejection()).isNull();
+        assertThat(frame.requestId()).isEqualTo("r1");
+        assertThat(frame.idempotencyKey()).isEqualTo("k1");
+        assertThat(frame.argCount()).isEqualTo(2);
+        assertThat(frame.args()[0]).isEqualTo(7L);
+        assertThat(frame.args()[1]).isEqualTo(new Payload("n1", List.of("a", "b")));
+        assertThat(frame.handler().invoke(frame.args())).isEqualTo("7:n1");
+    }
+
+    @Test
+    void decodesArgsSentAfterServiceAndActionTheSameWay() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"service":"TestService","action":"update","args":[7,{"name":"n1","tags":[]}]}""",
+                handler -> true);
+
+        assertThat(frame.rejection()).isNull();
+        assertThat(frame.args()).containsExactly(7L, new Payload("n1", List.of()));
+    }
+
+    @Test
+    void keepsLenientScalarCoercionOfTheReflectivePath() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"service":"TestService","action":"scalars","args":["123",456,"42","true"]}""", handler -> true);
+
+        assertThat(frame.rejection()).isNull();
+        assertThat(frame.args()).containsExactly(123L, "456", 42, true);
+    }
+
+    @Test
+    void unparsableScalarsFallBackToDefaultsLikeBefore() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"service":"TestService","action":"scalars","args":["abc",null,"x",1]}""", handler -> true);
+
+        assertThat(frame.rejection()).isNull();
+        assertThat(frame.args()).containsExactly(0L, "null", 0, true);
+    }
+
+    @Test
+    void rejectsUnknownActionWithoutDecodingArgs() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"args":[{"not":"decoded"}],"service":"TestService","action":"missing"}""", handler -> true);
+
+        assertThat(frame.rejection()).isEqualTo(WsFrameDecoder.Rejection.UNKNOWN_ACTION);
+        assertThat(frame.handler()).isNull();
+        assertThat(frame.args()).isNull();
+    }
+
+    @Test
+    void rejectsForbiddenAction() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"service":"TestService","action":"update","args":[1,{}]}""", handler -> false);
+
+        assertThat(frame.rejection()).isEqualTo(WsFrameDecoder.Rejection.FORBIDDEN);
+        assertThat(frame.handler()).isNotNull();
+        assertThat(frame.args()).isNull();
+    }
+
+    @Test
+    void rejectsArgumentCountMismatch() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"service":"TestService","action":"update","args":[1,{},"extra"]}""", handler -> true);
+
+        assertThat(frame.rejection()).isEqualTo(WsFrameDecoder.Rejection.PARAM_MISMATCH);
+        assertThat(frame.argCount()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsMissingOrNonArrayArgs() throws Exception {
+        assertThat(decoder.decode("""
+                {"service":"TestService","action":"update"}""", handler -> true).rejection())
+                .isEqualTo(WsFrameDecoder.Rejection.INVALID_ARGS);
+        assertThat(decoder.decode("""
+                {"service":"TestService","action":"update","args":{"0":1}}""", handler -> true).rejection())
+                .isEqualTo(WsFrameDecoder.Rejection.INVALID_ARGS);
+    }
+
+    @Test
+    void rejectsMalformedFrames() {
+        assertThatThrownBy(() -> decoder.decode("[1,2]", handler -> true))
+                .isInstanceOf(JsonParseException.class);
+        assertThatThrownBy(() -> decoder.decode("{\"service\":\"TestService\",\"args\":[1,", handler -> true))
+                .isInstanceOf(JsonParseException.class);
+    }
+
+    @Test
+    void ignoresUnknownFieldsAndNonScalarMetadata() throws Exception {
+        WsFrameDecoder.WsFrame frame = decoder.decode("""
+                {"extra":{"a":[1,2]},"requestId":{"x":1},"service":"TestService","action":"scalars",
+                 "args":[1,"s",2,false]}""", handler -> true);
+
+        assertThat(frame.rejection()).isNull();
+        assertThat(frame.requestId()).isEmpty();
+        assertThat(frame.args()).containsExactly(1L, "s", 2, false);
+    }
+
+    public record Payload(String name, List<String> tags) {
+    }
+
+    public static class TestActions {
+
+        @WsAction(service = "TestService", action = "update", roles = {"ADMIN"})
+        public String update(Long id, Payload payload) {
+            return id + ":" + payload.name();
+        }
+
+        @WsAction(service = "TestService", action = "scalars", allowAuthenticated = true)
+        public Map<String, Object> scalars(long id, String name, Integer count, boolean flag) {
+            return Map.of("id", id, "name", name, "count", count, "flag", flag);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.tutict.finalassignmentbackend.offense.cache;
+
+import com.tutict.finalassignmentbackend.config.caffeine.TieredCacheProperties;
+import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffenseQueryCacheIndexTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    @Test
+    void statusUpdateEvictsOnlyMatchingPages() {
+        Workload workload = new Workload(true, 7);
+        OffenseRecord row = workload.db.get(1L);
+        workload.read(OffenseQueryDimension.VEHICLE, row.getVehicleId(), 1);
+        Long otherVehicle = workload.db.values().stream()
+                .map(OffenseRecord::getVehicleId)
+                .filter(vehicleId -> !vehicleId.equals(row.getVehicleId()))
+                .findFirst()
+                .orElseThrow();
+        workload.read(OffenseQueryDimension.VEHICLE, otherVehicle, 1);
+        workload.read(OffenseQueryDimension.STATUS, row.getProcessStatus(), 1);
+
+        workload.flipStatus(1L);
+
+        Cache cache = workload.cache;
+        assertThat(cache.get(OffenseQueryDimension.VEHICLE.pageKey(List.of(otherVehicle), 1, PAGE_SIZE))).isNotNull();
+        assertThat(cache.get(OffenseQueryDimension.STATUS.pageKey(List.of(row.getProcessStatus()), 1, PAGE_SIZE))).isNull();
+    }
+
+    @Test
+    void textAndRangePredicatesMatchConservatively() {
+        OffenseRecord row = new OffenseRecord();
+        row.setOffenseCode("TR-1208");
+        row.setOffenseTime(LocalDateTime.parse("2025-03-01T10:00:00"));
+        row.setFineAmount(new BigDecimal("200"));
+
+        assertThat(OffenseQueryDimension.CODE.matches(List.of("tr12"), row)).isTrue();
+        assertThat(OffenseQueryDimension.CODE.matches(List.of("TR-99"), row)).isFalse();
+        assertThat(OffenseQueryDimension.TIME_RANGE.matches(
+                List.of("2025-03-01T00:00", "2025-03-02T00:00"), row)).isTrue();
+        assertThat(OffenseQueryDimension.TIME_RANGE.matches(
+                List.of("2025-04-01T00:00", "2025-04-02T00:00"), row)).isFalse();
+        assertThat(OffenseQueryDimension.FINE_RANGE.matches(List.of("100.0", "150.0"), row)).isFalse();
+        assertThat(OffenseQueryDimension.FINE_RANGE.matches(List.of("oops", "150.0"), row)).isTrue();
+    }
+
+    @Test
+    void concurrentNodesKeepEachOthersRegistrations() throws Exception {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(OffenseQueryCacheIndex.CACHE_NAME);
+        Cache cache = cacheManager.getCache(OffenseQueryCacheIndex.CACHE_NAME);
+        InMemoryDependencyStore store = new InMemoryDependencyStore();
+        // 两个节点共享同一份 L2 与登记存储，但各自持有索引实例
+        List<OffenseQueryCacheIndex> nodes = List.of(
+                new OffenseQueryCacheIndex(cacheManager, store, new TieredCacheProperties()),
+                new OffenseQueryCacheIndex(cacheManager, store, new TieredCacheProperties()));
+        OffenseRecord row = new OffenseRecord();
+        row.setOffenseId(1L);
+        row.setOffenseCode("TR-1208");
+        row.setOffenseTime(LocalDateTime.parse("2025-03-01T10:00:00"));
+
+        int pages = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<String> pageKeys = new ArrayList<>();
+        for (int page = 1; page <= pages; page++) {
+            int current = page;
+            // 两种过滤串的首字符落在不同分片
+            String filter = page % 3 == 0 ? "12" : "tr";
+            String pageKey = OffenseQueryDimension.CODE.pageKey(List.of(filter), current, PAGE_SIZE);
+            pageKeys.add(pageKey);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                nodes.get(current % 2).track(OffenseQueryDimension.CODE, List.of(filter), current, PAGE_SIZE, List.of(row));
+                cache.put(pageKey, List.of(row));
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        OffenseRecord renamed = new OffenseRecord();
+        renamed.setOffenseId(1L);
+        renamed.setOffenseCode("XX-0001");
+        renamed.setOffenseTime(row.getOffenseTime());
+        nodes.get(0).evictFor(row, renamed);
+
+        assertThat(pageKeys).allSatisfy(pageKey -> assertThat(cache.get(pageKey)).as(pageKey).isNull());
+        // TEXT 维度的页面按过滤串分散在多个分片中，且失效后登记项已清空
+        assertThat(store.registryKeys()).isEmpty();
+        assertThat(store.registriesSeen()).isGreaterThan(1);
+    }
+
+    @Test
+    void registryTtlFollowsPageLifetimeAndExpiredPagesArePruned() {
+        TieredCacheProperties properties = new TieredCacheProperties();
+        TieredCacheProperties.Spec spec = new TieredCacheProperties.Spec();
+        spec.setL1Ttl(Duration.ofMinutes(2));
+        spec.setL2Ttl(Duration.ofMinutes(10));
+        spec.setL2TtlJitter(Duration.ofMinutes(3));
+        properties.setCaches(Map.of(OffenseQueryCacheIndex.CACHE_NAME, spec));
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(OffenseQueryCacheIndex.CACHE_NAME);
+        InMemoryDependencyStore store = new InMemoryDependencyStore();
+        OffenseQueryCacheIndex index = new OffenseQueryCacheIndex(cacheManager, store, properties);
+        OffenseRecord row = new OffenseRecord();
+        row.setOffenseId(5L);
+        row.setVehicleId(9L);
+
+        index.track(OffenseQueryDimension.VEHICLE, List.of(9L), 1, PAGE_SIZE, List.of(row));
+        String registryKey = OffenseQueryDimension.VEHICLE.registryKeysForPage(List.of("9")).get(0);
+        assertThat(store.ttls.get(registryKey)).isEqualTo(Duration.ofMinutes(15));
+
+        store.register(registryKey, "vehicle:9:2:10",
+                new OffenseQueryCacheIndex.QueryDependency(List.of("9"), List.of(6L), 1L), Duration.ofMinutes(15));
+        OffenseRecord other = new OffenseRecord();
+        other.setOffenseId(7L);
+        other.setVehicleId(9L);
+        index.evictFor(other, other);
+
+        assertThat(store.registries(List.of(registryKey)).get(0)).containsOnlyKeys("vehicle:9:1:10");
+    }
+
+    @Test
+    void writeReadsOnlyTheShardsTheRecordValuesFallInto() {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(OffenseQueryCacheIndex.CACHE_NAME);
+        Cache cache = cacheManager.getCache(OffenseQueryCacheIndex.CACHE_NAME);
+        InMemoryDependencyStore store = new InMemoryDependencyStore();
+        OffenseQueryCacheIndex index = new OffenseQueryCacheIndex(cacheManager, store, new TieredCacheProperties());
+        OffenseRecord row = new OffenseRecord();
+        row.setOffenseId(1L);
+        row.setOffenseCode("16");
+        row.setOffenseTime(LocalDateTime.parse("2025-03-01T10:00:00"));
+        row.setFineAmount(new BigDecimal("200"));
+        List<Object> marchToApril = List.of("2025-03-01T00:00", "2025-04-30T00:00");
+        List<Object> mayOnly = List.of("2025-05-01T00:00", "2025-05-31T00:00");
+        index.track(OffenseQueryDimension.TIME_RANGE, marchToApril, 1, PAGE_SIZE, List.of(row));
+        index.track(OffenseQueryDimension.TIME_RANGE, mayOnly, 1, PAGE_SIZE, List.of(row));
+        cache.put(OffenseQueryDimension.TIME_RANGE.pageKey(marchToApril, 1, PAGE_SIZE), List.of(row));
+        cache.put(OffenseQueryDimension.TIME_RANGE.pageKey(mayOnly, 1, PAGE_SIZE), List.of(row));
+
+        OffenseRecord moved = new OffenseRecord();
+        moved.setOffenseId(2L);
+        moved.setOffenseCode("16");
+        moved.setOffenseTime(LocalDateTime.parse("2025-04-15T10:00:00"));
+        moved.setFineAmount(new BigDecimal("200"));
+        index.evictFor(null, moved);
+
+        // 等值维度无取值；代码两个字符各一个分片，时间与罚款各一个分片，另加三个维度的通配登记
+        assertThat(store.lastRead).hasSize(7);
+        assertThat(cache.get(OffenseQueryDimension.TIME_RANGE.pageKey(marchToApril, 1, PAGE_SIZE))).isNull();
+        assertThat(cache.get(OffenseQueryDimension.TIME_RANGE.pageKey(mayOnly, 1, PAGE_SIZE))).isNotNull();
+        // 跨两个月的页面在两个分片中的登记项都已清理
+        assertThat(store.registryKeys()).containsExactlyElementsOf(
+                OffenseQueryDimension.TIME_RANGE.registryKeysForPage(List.of("2025-05-01T00:00", "2025-05-31T00:00")));
+    }
+
+    @Test
+    void targetedEvictionKeepsHitRateUnderMixedWorkloadWithoutServingStalePages() {
+        Workload clearAll = new Workload(false, 42);
+        Workload targeted = new Workload(true, 42);
+
+        clearAll.run(5_000);
+        targeted.run(5_000);
+
+        // run() 在每次命中时都与实时查询结果比对，能走到这里说明没有返回过期页
+        assertThat(clearAll.hitRate()).isLessThan(0.25);
+        assertThat(targeted.hitRate()).isGreaterThan(0.5);
+        assertThat(targeted.hitRate()).isGreaterThan(clearAll.hitRate() * 3);
+    }
+
+    /**
+     * In-memory offense table plus an emulation of the {@code @Cacheable} read path in OffenseRecordService.
+     */
+    private static final class Workload {
+        private final boolean targeted;
+        private final Random random;
+        private final Map<Long, OffenseRecord> db = new LinkedHashMap<>();
+        private final Cache cache;
+        private final OffenseQueryCacheIndex index;
+        private long nextId = 1;
+        private int hits;
+        private int misses;
+
+        Workload(boolean targeted, long seed) {
+            this.targeted = targeted;
+            this.random = new Random(seed);
+            ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(OffenseQueryCacheIndex.CACHE_NAME);
+            this.cache = cacheManager.getCache(OffenseQueryCacheIndex.CACHE_NAME);
+            this.index = new OffenseQueryCacheIndex(cacheManager, new InMemoryDependencyStore(), new TieredCacheProperties());
+            for (int i = 0; i < 400; i++) {
+                OffenseRecord row = newRow();
+                db.put(row.getOffenseId(), row);
+            }
+        }
+
+        void run(int operations) {
+            for (int i = 0; i < operations; i++) {
+                if (random.nextDouble() < 0.8) {
+                    double choice = random.nextDouble();
+                    if (choice < 0.5) {
+                        read(OffenseQueryDimension.VEHICLE, (long) (1 + random.nextInt(40)), 1);
+                    } else if (choice < 0.85) {
+                        read(OffenseQueryDimension.CITY, "city-" + random.nextInt(8), 1 + random.nextInt(2));
+                    } else {
+                        read(OffenseQueryDimension.STATUS, random.nextBoolean() ? "Pending" : "Processed", 1);
+                    }
+                } else if (random.nextDouble() < 0.1) {
+                    OffenseRecord row = newRow();
+                    db.put(row.getOffenseId(), row);
+                    write(null, row);
+                } else {
+                    List<Long> ids = new ArrayList<>(db.keySet());
+                    flipStatus(ids.get(random.nextInt(ids.size())));
+                }
+            }
+        }
+
+        void read(OffenseQueryDimension dimension, Object arg, int page) {
+            String key = dimension.pageKey(List.of(arg), page, PAGE_SIZE);
+            List<OffenseRecord> fresh = query(dimension, arg, page);
+            Cache.ValueWrapper cached = cache.get(key);
+            if (cached != null) {
+                hits++;
+                assertThat(cached.get()).as("cached page %s", key).isEqualTo(fresh);
+                return;
+            }
+            misses++;
+            List<OffenseRecord> result = index.track(dimension, List.of(arg), page, PAGE_SIZE, fresh);
+            if (!result.isEmpty()) {
+                cache.put(key, result);
+            }
+        }
+
+        void flipStatus(Long offenseId) {
+            OffenseRecord before = db.get(offenseId);
+            OffenseRecord after = copy(before);
+            after.setProcessStatus("Pending".equals(before.getProcessStatus()) ? "Processed" : "Pending");
+            db.put(offenseId, after);
+            write(before, after);
+        }
+
+        double hitRate() {
+            return hits / (double) (hits + misses);
+        }
+
+        private void write(OffenseRecord before, OffenseRecord after) {
+            if (targeted) {
+                index.evictFor(before, after);
+            } else {
+                cache.clear();
+            }
+        }
+
+        private List<OffenseRecord> query(OffenseQueryDimension dimension, Object arg, int page) {
+            return db.values().stream()
+                    .filter(row -> Objects.equals(dimension.valueOf(row), arg))
+                    .sorted(Comparator.comparing(OffenseRecord::getOffenseTime).reversed()
+                            .thenComparing(OffenseRecord::getOffenseId))
+                    .skip((long) (page - 1) * PAGE_SIZE)
+                    .limit(PAGE_SIZE)
+                    .map(this::copy)
+                    .toList();
+        }
+
+        private OffenseRecord newRow() {
+            OffenseRecord row = new OffenseRecord();
+            row.setOffenseId(nextId++);
+            row.setVehicleId((long) (1 + random.nextInt(40)));
+            row.setOffenseCity("city-" + random.nextInt(8));
+            row.setProcessStatus(random.nextBoolean() ? "Pending" : "Processed");
+            row.setOffenseTime(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(random.nextInt(1_000_000)));
+            return row;
+        }
+
+        private OffenseRecord copy(OffenseRecord source) {
+            OffenseRecord copy = new OffenseRecord();
+            copy.setOffenseId(source.getOffenseId());
+            copy.setVehicleId(source.getVehicleId());
+            copy.setOffenseCity(source.getOffenseCity());
+            copy.setProcessStatus(source.getProcessStatus());
+            copy.setOffenseTime(source.getOffenseTime());
+            return copy;
+        }
+    }
+
+    /**
+     * Per-page atomic operations over a shared map, standing in for the Redis hashes.
+     */
+    private static final class InMemoryDependencyStore implements QueryDependencyStore {
+        private final Map<String, Map<String, OffenseQueryCacheIndex.QueryDependency>> registries = new ConcurrentHashMap<>();
+        private final Map<String, Duration> ttls = new ConcurrentHashMap<>();
+        private final Map<String, Boolean> shardsSeen = new ConcurrentHashMap<>();
+        private volatile List<String> lastRead = List.of();
+
+        @Override
+        public void register(String registryKey, String pageKey, OffenseQueryCacheIndex.QueryDependency dependency,
+                             Duration ttl) {
+            registries.computeIfAbsent(registryKey, ignored -> new ConcurrentHashMap<>()).put(pageKey, dependency);
+            ttls.put(registryKey, ttl);
+            shardsSeen.put(registryKey, Boolean.TRUE);
+        }
+
+        @Override
+        public List<Map<String, OffenseQueryCacheIndex.QueryDependency>> registries(List<String> registryKeys) {
+            lastRead = List.copyOf(registryKeys);
+            return registryKeys.stream()
+                    .map(key -> (Map<String, OffenseQueryCacheIndex.QueryDependency>)
+                            new HashMap<>(registries.getOrDefault(key, Map.of())))
+                    .toList();
+        }
+
+        @Override
+        public void unregister(String registryKey, Collection<String> pageKeys) {
+            registries.computeIfPresent(registryKey, (key, registry) -> {
+                pageKeys.forEach(registry::remove);
+                return registry.isEmpty() ? null : registry;
+            });
+        }
+
+        List<String> registryKeys() {
+            return List.copyOf(registries.keySet());
+        }
+
+        int registriesSeen() {
+            return shardsSeen.size();
+        }
+    }
+}
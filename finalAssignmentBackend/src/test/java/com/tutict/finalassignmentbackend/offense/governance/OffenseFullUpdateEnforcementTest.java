@@ -1,13 +1,16 @@
 package com.tutict.finalassignmentbackend.offense.governance;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.BatchKafkaMessageProcessor;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.common.idempotency.IdempotentKafkaMessageProcessor;
 import com.tutict.finalassignmentbackend.config.statemachine.states.OffenseProcessState;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
 import com.tutict.finalassignmentbackend.kafkaListener.OffenseRecordKafkaListener;
 import com.tutict.finalassignmentbackend.mapper.offense.OffenseRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import com.tutict.finalassignmentbackend.offense.cache.OffenseQueryCacheIndex;
 import com.tutict.finalassignmentbackend.repository.OffenseInformationSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.service.offense.OffenseRecordService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -151,7 +154,8 @@ class OffenseFullUpdateEnforcementTest {
         OffenseRecordService service = mock(OffenseRecordService.class);
         ObjectMapper objectMapper = mock(ObjectMapper.class);
         IdempotentKafkaMessageProcessor messageProcessor = new IdempotentKafkaMessageProcessor(objectMapper);
-        OffenseRecordKafkaListener listener = new OffenseRecordKafkaListener(service, messageProcessor);
+        OffenseRecordKafkaListener listener = new OffenseRecordKafkaListener(service, messageProcessor,
+                mock(BatchKafkaMessageProcessor.class));
         OffenseRecord payload = baseRecord(50L);
         when(objectMapper.readValue("{}", OffenseRecord.class)).thenReturn(payload);
         when(service.shouldSkipProcessing("stale-key")).thenReturn(false);
@@ -187,10 +191,12 @@ class OffenseFullUpdateEnforcementTest {
                                          OffenseInformationSearchRepository searchRepository) {
         return new OffenseRecordService(
                 offenseRecordMapper,
-                mock(SysRequestHistoryMapper.class),
+                mock(IdempotencyStore.class),
                 searchRepository,
                 mock(KafkaTemplate.class),
-                mock(ObjectMapper.class)
+                mock(ObjectMapper.class),
+                mock(OffenseQueryCacheIndex.class),
+                CdcIndexCoverage.disabled()
         );
     }
 
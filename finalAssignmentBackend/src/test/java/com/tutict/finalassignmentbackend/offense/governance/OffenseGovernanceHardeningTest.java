@@ -1,13 +1,15 @@
 package com.tutict.finalassignmentbackend.offense.governance;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.statemachine.states.OffenseProcessState;
 import com.tutict.finalassignmentbackend.controller.business.OffenseInformationController;
 import com.tutict.finalassignmentbackend.dto.request.OffenseCreateRequest;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
 import com.tutict.finalassignmentbackend.mapper.offense.OffenseRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import com.tutict.finalassignmentbackend.offense.cache.OffenseQueryCacheIndex;
 import com.tutict.finalassignmentbackend.repository.OffenseInformationSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.service.offense.OffenseRecordService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -62,16 +64,18 @@ class OffenseGovernanceHardeningTest {
     void createKafkaPublishIsDeferredUntilAfterCommitBoundary() throws Exception {
         TransactionSynchronizationManager.initSynchronization();
         OffenseRecordMapper offenseRecordMapper = mock(OffenseRecordMapper.class);
-        SysRequestHistoryMapper historyMapper = mock(SysRequestHistoryMapper.class);
+        IdempotencyStore idempotencyStore = mock(IdempotencyStore.class);
         OffenseInformationSearchRepository searchRepository = mock(OffenseInformationSearchRepository.class);
         KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
         ObjectMapper objectMapper = mock(ObjectMapper.class);
         OffenseRecordService service = new OffenseRecordService(
                 offenseRecordMapper,
-                historyMapper,
+                idempotencyStore,
                 searchRepository,
                 kafkaTemplate,
-                objectMapper
+                objectMapper,
+                mock(OffenseQueryCacheIndex.class),
+                CdcIndexCoverage.disabled()
         );
         OffenseRecord offenseRecord = new OffenseRecord();
         when(objectMapper.writeValueAsString(offenseRecord)).thenReturn("{\"offenseId\":10}");
@@ -136,16 +140,18 @@ class OffenseGovernanceHardeningTest {
         assertThat(workflow.has(MutationSideEffect.ES_INDEX)).isTrue();
 
         OffenseRecordMapper offenseRecordMapper = mock(OffenseRecordMapper.class);
-        SysRequestHistoryMapper historyMapper = mock(SysRequestHistoryMapper.class);
+        IdempotencyStore idempotencyStore = mock(IdempotencyStore.class);
         OffenseInformationSearchRepository searchRepository = mock(OffenseInformationSearchRepository.class);
         KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
         ObjectMapper objectMapper = mock(ObjectMapper.class);
         OffenseRecordService service = new OffenseRecordService(
                 offenseRecordMapper,
-                historyMapper,
+                idempotencyStore,
                 searchRepository,
                 kafkaTemplate,
-                objectMapper
+                objectMapper,
+                mock(OffenseQueryCacheIndex.class),
+                CdcIndexCoverage.disabled()
         );
         OffenseRecord existing = new OffenseRecord();
         existing.setOffenseId(20L);
@@ -172,16 +178,18 @@ class OffenseGovernanceHardeningTest {
     @Test
     void kafkaUpdateShadowComparisonDoesNotEnforceMergeYet() {
         OffenseRecordMapper offenseRecordMapper = mock(OffenseRecordMapper.class);
-        SysRequestHistoryMapper historyMapper = mock(SysRequestHistoryMapper.class);
+        IdempotencyStore idempotencyStore = mock(IdempotencyStore.class);
         OffenseInformationSearchRepository searchRepository = mock(OffenseInformationSearchRepository.class);
         KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
         ObjectMapper objectMapper = mock(ObjectMapper.class);
         OffenseRecordService service = new OffenseRecordService(
                 offenseRecordMapper,
-                historyMapper,
+                idempotencyStore,
                 searchRepository,
                 kafkaTemplate,
-                objectMapper
+                objectMapper,
+                mock(OffenseQueryCacheIndex.class),
+                CdcIndexCoverage.disabled()
         );
         OffenseRecord current = new OffenseRecord();
         current.setOffenseId(30L);
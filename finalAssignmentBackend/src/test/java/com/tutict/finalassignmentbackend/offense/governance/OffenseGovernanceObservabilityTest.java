@@ -1,10 +1,12 @@
 package com.tutict.finalassignmentbackend.offense.governance;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
 import com.tutict.finalassignmentbackend.mapper.offense.OffenseRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import com.tutict.finalassignmentbackend.offense.cache.OffenseQueryCacheIndex;
 import com.tutict.finalassignmentbackend.repository.OffenseInformationSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.service.offense.OffenseRecordService;
 import org.junit.jupiter.api.Test;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -93,10 +95,12 @@ class OffenseGovernanceObservabilityTest {
         OffenseRecordMapper offenseRecordMapper = mock(OffenseRecordMapper.class);
         OffenseRecordService service = new OffenseRecordService(
                 offenseRecordMapper,
-                mock(SysRequestHistoryMapper.class),
+                mock(IdempotencyStore.class),
                 mock(OffenseInformationSearchRepository.class),
                 mock(KafkaTemplate.class),
-                mock(ObjectMapper.class)
+                mock(ObjectMapper.class),
+                mock(OffenseQueryCacheIndex.class),
+                CdcIndexCoverage.disabled()
         );
         OffenseRecord current = record(70L, LocalDateTime.of(2026, 5, 8, 12, 0));
         OffenseRecord incoming = record(70L, LocalDateTime.of(2026, 5, 8, 11, 0));
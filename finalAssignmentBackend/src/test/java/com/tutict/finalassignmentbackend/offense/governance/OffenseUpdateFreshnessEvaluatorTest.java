@@ -1,11 +1,13 @@
 package com.tutict.finalassignmentbackend.offense.governance;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.common.idempotency.IdempotencyStore;
 import com.tutict.finalassignmentbackend.config.statemachine.states.OffenseProcessState;
 import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
 import com.tutict.finalassignmentbackend.mapper.offense.OffenseRecordMapper;
-import com.tutict.finalassignmentbackend.mapper.system.SysRequestHistoryMapper;
+import com.tutict.finalassignmentbackend.offense.cache.OffenseQueryCacheIndex;
 import com.tutict.finalassignmentbackend.repository.OffenseInformationSearchRepository;
+import com.tutict.finalassignmentbackend.search.cdc.CdcIndexCoverage;
 import com.tutict.finalassignmentbackend.service.offense.OffenseRecordService;
 import org.junit.jupiter.api.Test;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -42,16 +44,18 @@ class OffenseUpdateFreshnessEvaluatorTest {
     @Test
     void staleWorkflowIsRejectedBeforePersistenceWhenStatusDowngrades() {
         OffenseRecordMapper offenseRecordMapper = mock(OffenseRecordMapper.class);
-        SysRequestHistoryMapper historyMapper = mock(SysRequestHistoryMapper.class);
+        IdempotencyStore idempotencyStore = mock(IdempotencyStore.class);
         OffenseInformationSearchRepository searchRepository = mock(OffenseInformationSearchRepository.class);
         KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
         ObjectMapper objectMapper = mock(ObjectMapper.class);
         OffenseRecordService service = new OffenseRecordService(
                 offenseRecordMapper,
-                historyMapper,
+                idempotencyStore,
                 searchRepository,
                 kafkaTemplate,
-                objectMapper
+                objectMapper,
+                mock(OffenseQueryCacheIndex.class),
+                CdcIndexCoverage.disabled()
         );
         OffenseRecord current = record(20L);
         current.setProcessStatus(OffenseProcessState.PROCESSED.getCode());
@@ -0,0 +1,86 @@
+package com.tutict.finalassignmentbackend.rag.chunk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalize-and-chunk time of {@link ChineseTextChunker} against the previous regex/{@code int[]}
+ * implementation ({@link LegacyChineseTextChunker}) on 10 KB to 10 MB of mixed Chinese text with
+ * irregular whitespace. Setup asserts both produce identical chunks; {@link ChineseTextChunkerRegressionTest}
+ * checks the same on seeded random inputs under surefire. {@code sentenceTolerance} only
+ * applies to the new chunker. Run {@link #main(String[])} from the test classpath, ideally with
+ * {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChineseTextChunkerBenchmark {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int OVERLAP = 100;
+
+    @Param({"10240", "1048576", "10485760"})
+    public int inputChars;
+
+    @Param({"0", "50"})
+    public int sentenceTolerance;
+
+    private String content;
+    private ChineseTextChunker chunker;
+
+    @Setup
+    public void setup() {
+        content = sampleText(inputChars, new Random(11));
+        chunker = new ChineseTextChunker(CHUNK_SIZE, OVERLAP, sentenceTolerance);
+        if (sentenceTolerance == 0
+                && !LegacyChineseTextChunker.chunk(content, CHUNK_SIZE, OVERLAP).equals(chunker.chunk(content, "content"))) {
+            throw new IllegalStateException("single-pass chunker diverged from the legacy chunker");
+        }
+    }
+
+    @Benchmark
+    public List<Chunker.Chunk> singlePass() {
+        return chunker.chunk(content, "content");
+    }
+
+    @Benchmark
+    public List<Chunker.Chunk> legacy() {
+        return LegacyChineseTextChunker.chunk(content, CHUNK_SIZE, OVERLAP);
+    }
+
+    private static String sampleText(int length, Random random) {
+        String[] pieces = {"交通违法", "处罚决定书", "机动车", "驾驶证", "罚款", "ABC-123", "2026年", "，", "。", "！", "？", "；",
+                " ", "  ", "　", "\t", "\r\n", "\n\n\n", "Ｆｕｌｌｗｉｄｔｈ"};
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(pieces[random.nextInt(pieces.length)]);
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChineseTextChunkerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
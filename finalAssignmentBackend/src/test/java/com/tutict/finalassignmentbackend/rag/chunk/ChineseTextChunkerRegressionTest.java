@@ -0,0 +1,41 @@
+package com.tutict.finalassignmentbackend.rag.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChineseTextChunkerRegressionTest {
+
+    // 覆盖 NFKC 折叠、各类空白与换行组合以及代理对字符
+    private static final String[] PIECES = {"交通违法", "处罚决定书", "机动车", "罚款", "ABC-123", "2026年", "，", "。", "！",
+            "？", "；", " ", "  ", "　", " ", "\t", "\f", "\u000B", "\r", "\r\n", "\n", "\n\n\n", "Ｆｕｌｌ", "①", "ﬁ",
+            "𠮷野家", "😀", "é"};
+
+    @Test
+    void singlePassChunkerMatchesTheLegacyChunkerOnRandomInputs() {
+        for (long seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            int chunkSize = 1 + random.nextInt(64);
+            int overlap = random.nextInt(chunkSize);
+            String content = sampleText(random.nextInt(3000), random);
+
+            List<Chunker.Chunk> expected = LegacyChineseTextChunker.chunk(content, chunkSize, overlap);
+            List<Chunker.Chunk> actual = new ChineseTextChunker(chunkSize, overlap).chunk(content, "content");
+
+            assertThat(actual)
+                    .as("seed %d, chunkSize %d, overlap %d", seed, chunkSize, overlap)
+                    .isEqualTo(expected);
+        }
+    }
+
+    private static String sampleText(int pieces, Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.tutict.finalassignmentbackend.rag.chunk;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * The regex/{@code int[]} chunker that {@link ChineseTextChunker} replaced, kept as the reference for
+ * {@link ChineseTextChunkerRegressionTest} and {@link ChineseTextChunkerBenchmark}. It has no sentence
+ * tolerance, so it only matches the new chunker with {@code sentenceTolerance} 0.
+ */
+final class LegacyChineseTextChunker {
+
+    private LegacyChineseTextChunker() {
+    }
+
+    static List<Chunker.Chunk> chunk(String raw, int chunkSize, int overlap) {
+        String normalized = normalize(raw);
+        if (normalized.isBlank()) {
+            return List.of();
+        }
+        int[] codePoints = normalized.codePoints().toArray();
+        List<Chunker.Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        int chunkNo = 0;
+        while (start < codePoints.length) {
+            int end = Math.min(start + chunkSize, codePoints.length);
+            String text = new String(codePoints, start, end - start);
+            chunks.add(new Chunker.Chunk(
+                    chunkNo++,
+                    text,
+                    sha256(normalize(text)),
+                    tokenCount(text),
+                    text.codePointCount(0, text.length()),
+                    "content"
+            ));
+            if (end == codePoints.length) {
+                break;
+            }
+            start = Math.max(start + 1, end - overlap);
+        }
+        return chunks;
+    }
+
+    private static String normalize(String content) {
+        return Normalizer.normalize(content, Normalizer.Form.NFKC)
+                .replace("\r\n", "\n")
+                .replace('\r', '\n')
+                .replace('\u000B', ' ')
+                .replaceAll("[\\p{Zs}\\t\\f]+", " ")
+                .replaceAll(" *\\n *", "\n")
+                .replaceAll("\\n{3,}", "\n\n")
+                .trim();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException("SHA-256 is not available", error);
+        }
+    }
+
+    private static int tokenCount(String value) {
+        int count = 0;
+        boolean inAsciiWord = false;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint)) {
+                inAsciiWord = false;
+            } else if (codePoint < 128 && Character.isLetterOrDigit(codePoint)) {
+                if (!inAsciiWord) {
+                    count++;
+                }
+                inAsciiWord = true;
+            } else {
+                count++;
+                inAsciiWord = false;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,187 @@
+package com.tutict.finalassignmentbackend.rag.embedding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.ai.rag.config.RagChunkIndexMapping;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.DeterministicEmbeddingProvider;
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import com.tutict.finalassignmentbackend.rag.entity.RagChunk;
+import com.tutict.finalassignmentbackend.rag.entity.RagDocument;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk indexing throughput of {@link RagChunkVectorIndexService#indexAll} with embeddings from the
+ * deterministic provider. Elasticsearch is a fake that only measures the {@code _source} payload, so
+ * the {@code chunks} counter reports chunks/sec of request building and {@code sourceBytes} the JSON
+ * sent. {@link #main(String[])} prints the payload and an estimate of vector storage per million
+ * chunks for each {@code rag.index.vector-index-type}. Run it from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RagChunkVectorIndexBenchmark {
+
+    private static final long MILLION = 1_000_000L;
+
+    @Param({"500"})
+    public int batchSize;
+
+    @Param({"384", "768"})
+    public int dimensions;
+
+    private RagChunkVectorIndexService service;
+    private List<RagChunkVectorIndexService.VectorEntry> entries = List.of();
+    private long lastBatchBytes;
+
+    @Setup
+    public void setup() {
+        RagProperties properties = new RagProperties();
+        properties.getEmbedding().setDimensions(dimensions);
+        DeterministicEmbeddingProvider provider = new DeterministicEmbeddingProvider(properties);
+        RagDocument document = new RagDocument();
+        document.setId("doc-1");
+        document.setTitle("benchmark");
+        document.setSourceType("MANUAL");
+        document.setAclScope("PUBLIC");
+        document.setMetadataJson("{\"acl_roles\":[\"ADMIN\",\"TRAFFIC_POLICE\"],\"category\":\"appeal\"}");
+        entries = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            RagChunk chunk = new RagChunk();
+            chunk.setId("chunk-" + i);
+            chunk.setDocumentId(document.getId());
+            chunk.setSourceField("content");
+            chunk.setContent("交通违法申诉材料 " + i);
+            entries.add(new RagChunkVectorIndexService.VectorEntry(document, chunk, provider.embed(chunk.getContent())));
+        }
+
+        IndexOperations indexOperations = fake(IndexOperations.class, (method, args) -> switch (method) {
+            case "exists" -> true;
+            case "getAliases" -> Map.of(properties.getIndex().getName(), Set.of());
+            default -> null;
+        });
+        ElasticsearchOperations operations = fake(ElasticsearchOperations.class, (method, args) -> switch (method) {
+            case "indexOps" -> indexOperations;
+            case "bulkIndex" -> {
+                long bytes = 0;
+                for (Object query : (Collection<?>) args[0]) {
+                    bytes += ((IndexQuery) query).getSource().getBytes(StandardCharsets.UTF_8).length;
+                }
+                lastBatchBytes = bytes;
+                yield List.of();
+            }
+            default -> null;
+        });
+        @SuppressWarnings("unchecked")
+        ObjectProvider<ElasticsearchOperations> operationsProvider = fake(ObjectProvider.class,
+                (method, args) -> "getIfAvailable".equals(method) ? operations : null);
+        service = new RagChunkVectorIndexService(operationsProvider, new RagChunkIndexMapping(properties), new ObjectMapper());
+    }
+
+    @Benchmark
+    public int indexBatch(IndexCounter counter) {
+        int failures = service.indexAll(entries, "deterministic", "benchmark").size();
+        counter.chunks += entries.size() - failures;
+        counter.sourceBytes += lastBatchBytes;
+        return failures;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<?> type, Call call) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName();
+                };
+            }
+            return call.apply(method.getName(), args);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object apply(String method, Object[] args);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class IndexCounter {
+
+        public long chunks;
+        public long sourceBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            chunks = 0;
+            sourceBytes = 0;
+        }
+    }
+
+    /**
+     * Approximate per-vector bytes held by the HNSW/flat structures. Quantized types keep the raw
+     * floats for rescoring on top of the quantized copy; the graph links are the same for all types.
+     */
+    static long vectorBytes(String indexType, int dimensions) {
+        long raw = 4L * dimensions;
+        return switch (indexType) {
+            case "int8_hnsw", "int8_flat" -> raw + dimensions + 4;
+            case "int4_hnsw", "int4_flat" -> raw + dimensions / 2 + 4;
+            case "bbq_hnsw", "bbq_flat" -> raw + (dimensions + 7) / 8 + 14;
+            default -> raw;
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(RagChunkVectorIndexBenchmark.class.getSimpleName())
+                .build()).run();
+        for (RunResult result : results) {
+            int dimensions = Integer.parseInt(result.getParams().getParam("dimensions"));
+            Map<String, Result> counters = result.getSecondaryResults();
+            double chunksPerSecond = counters.get("chunks").getScore();
+            double bytesPerChunk = counters.get("sourceBytes").getScore() / Math.max(chunksPerSecond, 1);
+            System.out.printf("dims=%d: %.0f chunks/s, _source %.1f MiB per million chunks%n",
+                    dimensions, chunksPerSecond, bytesPerChunk * MILLION / (1024 * 1024));
+            for (String type : List.of("hnsw", "int8_hnsw", "int4_hnsw", "bbq_hnsw")) {
+                long quantizedOnly = vectorBytes(type, dimensions) - ("hnsw".equals(type) ? 0 : 4L * dimensions);
+                System.out.printf("  %-10s vectors %.1f MiB per million chunks (searched in memory: %.1f MiB)%n",
+                        type,
+                        vectorBytes(type, dimensions) * (double) MILLION / (1024 * 1024),
+                        quantizedOnly * (double) MILLION / (1024 * 1024));
+            }
+        }
+    }
+}
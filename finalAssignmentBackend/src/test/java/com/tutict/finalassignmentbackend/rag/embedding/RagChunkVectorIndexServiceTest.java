@@ -0,0 +1,98 @@
+package com.tutict.finalassignmentbackend.rag.embedding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.ai.rag.config.RagChunkIndexMapping;
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import com.tutict.finalassignmentbackend.rag.entity.RagChunk;
+import com.tutict.finalassignmentbackend.rag.entity.RagDocument;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RagChunkVectorIndexServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchIsWrittenInOneBulkRequestWithStreamedSources() throws Exception {
+        ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+        IndexOperations indexOperations = mock(IndexOperations.class);
+        ObjectProvider<ElasticsearchOperations> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(operations);
+        when(operations.indexOps(any(IndexCoordinates.class))).thenReturn(indexOperations);
+        when(indexOperations.exists()).thenReturn(true);
+        when(indexOperations.getAliases("rag_chunk_current")).thenReturn(Map.of("rag_chunk_v1", Set.of()));
+        RagChunkVectorIndexService service = new RagChunkVectorIndexService(
+                provider, new RagChunkIndexMapping(new RagProperties()), objectMapper);
+        RagDocument document = new RagDocument();
+        document.setId("doc-1");
+        document.setTitle("Appeal material");
+        document.setMetadataJson("{\"roles\":[\"ADMIN\",\"\"],\"aclDepartments\":\"traffic\"}");
+
+        Map<String, String> failures = service.indexAll(List.of(
+                new RagChunkVectorIndexService.VectorEntry(document, chunk("chunk-1"), new float[] {0.1f, -0.25f}),
+                new RagChunkVectorIndexService.VectorEntry(document, chunk("chunk-2"), new float[] {1f, 0f})
+        ), "test", "test-embed");
+
+        assertThat(failures).isEmpty();
+        ArgumentCaptor<List<IndexQuery>> queries = ArgumentCaptor.forClass(List.class);
+        verify(operations).bulkIndex(queries.capture(), eq(IndexCoordinates.of("rag_chunk_current")));
+        verify(indexOperations, never()).create(any(Map.class), any());
+        assertThat(queries.getValue()).extracting(IndexQuery::getId).containsExactly("chunk-1", "chunk-2");
+        JsonNode source = objectMapper.readTree(queries.getValue().get(0).getSource());
+        assertThat(source.get("embedding").toString()).isEqualTo("[0.1,-0.25]");
+        assertThat(source.get("acl_roles").toString()).isEqualTo("[\"ADMIN\"]");
+        assertThat(source.get("acl_departments").toString()).isEqualTo("[\"traffic\"]");
+        assertThat(source.get("acl_user_ids").isEmpty()).isTrue();
+        assertThat(source.get("metadata").get("aclDepartments").asText()).isEqualTo("traffic");
+        assertThat(source.get("embedding_model").asText()).isEqualTo("test-embed");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mappingUsesConfiguredQuantizationAndCanDropVectorsFromSource() {
+        RagProperties properties = new RagProperties();
+        properties.getIndex().setVectorIndexType("INT8_HNSW");
+        properties.getIndex().setVectorInSource(false);
+
+        Map<String, Object> mapping = new RagChunkIndexMapping(properties).mapping();
+
+        Map<String, Object> embedding = (Map<String, Object>) ((Map<String, Object>) mapping.get("properties")).get("embedding");
+        assertThat(embedding.get("index_options")).isEqualTo(Map.of("type", "int8_hnsw"));
+        assertThat(mapping.get("_source")).isEqualTo(Map.of("excludes", List.of("embedding")));
+
+        properties.getEmbedding().setDimensions(32);
+        properties.getIndex().setVectorIndexType("bbq_hnsw");
+        assertThatThrownBy(() -> new RagChunkIndexMapping(properties).mapping())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("64");
+    }
+
+    private static RagChunk chunk(String id) {
+        RagChunk chunk = new RagChunk();
+        chunk.setId(id);
+        chunk.setDocumentId("doc-1");
+        chunk.setContent("content " + id);
+        chunk.setSourceField("content");
+        return chunk;
+    }
+}
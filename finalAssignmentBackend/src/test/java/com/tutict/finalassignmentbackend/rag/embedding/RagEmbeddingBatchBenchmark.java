@@ -0,0 +1,189 @@
+package com.tutict.finalassignmentbackend.rag.embedding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.ai.rag.config.RagChunkIndexMapping;
+import com.tutict.finalassignmentbackend.ai.rag.retrieval.DeterministicEmbeddingProvider;
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import com.tutict.finalassignmentbackend.rag.entity.RagChunk;
+import com.tutict.finalassignmentbackend.rag.entity.RagDocument;
+import com.tutict.finalassignmentbackend.rag.entity.RagEmbeddingTask;
+import com.tutict.finalassignmentbackend.rag.mapper.RagChunkMapper;
+import com.tutict.finalassignmentbackend.rag.mapper.RagDocumentMapper;
+import com.tutict.finalassignmentbackend.rag.mapper.RagEmbeddingTaskMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Embedding throughput of {@link RagEmbeddingService#processPendingBatch(int)} with the deterministic
+ * provider. Mappers and the vector index are in-memory fakes that charge {@code roundTripMicros} per
+ * call; the {@code tasks} counter reports tasks/sec. {@code providerBatchSize=1, concurrency=1}
+ * approximates the old one-call-per-task provider path. Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RagEmbeddingBatchBenchmark {
+
+    @Param({"500"})
+    public int batchSize;
+
+    @Param({"0", "500"})
+    public int roundTripMicros;
+
+    @Param({"1", "16"})
+    public int providerBatchSize;
+
+    @Param({"1", "4"})
+    public int concurrency;
+
+    private static final String WORKER = "benchmark";
+
+    private RagEmbeddingService service;
+    private List<RagEmbeddingTask> tasks = List.of();
+
+    @Setup
+    public void setup() {
+        RagProperties properties = new RagProperties();
+        properties.setEnabled(true);
+        properties.getEmbedding().setEnabled(true);
+        properties.getEmbedding().setDimensions(768);
+        properties.getEmbedding().setProviderBatchSize(providerBatchSize);
+        properties.getEmbedding().setConcurrency(concurrency);
+        properties.getEmbedding().setWorkerId(WORKER);
+        RagDocument document = new RagDocument();
+        document.setId("doc-1");
+        document.setTitle("benchmark");
+        document.setMetadataJson("{}");
+
+        RagEmbeddingTaskMapper taskMapper = fakeMapper(RagEmbeddingTaskMapper.class, (method, args) -> switch (method) {
+            case "selectObjs" -> (tasks = newTasks()).stream().map(RagEmbeddingTask::getId).toList();
+            case "selectBatchIds" -> tasks;
+            default -> null;
+        });
+        RagChunkMapper chunkMapper = fakeMapper(RagChunkMapper.class, (method, args) -> {
+            if (!"selectBatchIds".equals(method)) {
+                return null;
+            }
+            List<RagChunk> chunks = new ArrayList<>();
+            for (Object id : (Collection<?>) args[0]) {
+                RagChunk chunk = new RagChunk();
+                chunk.setId(id.toString());
+                chunk.setDocumentId(document.getId());
+                chunk.setContent("交通违法申诉材料 " + id);
+                chunk.setContentHash(id.toString());
+                chunks.add(chunk);
+            }
+            return chunks;
+        });
+        RagDocumentMapper documentMapper = fakeMapper(RagDocumentMapper.class,
+                (method, args) -> "selectBatchIds".equals(method) ? List.of(document) : null);
+        RagChunkVectorIndexService vectorIndex = new RagChunkVectorIndexService(
+                null, new RagChunkIndexMapping(properties), new ObjectMapper()) {
+            @Override
+            public Map<String, String> indexAll(List<VectorEntry> entries, String provider, String model) {
+                roundTrip();
+                return Map.of();
+            }
+        };
+        service = new RagEmbeddingService(taskMapper, chunkMapper, documentMapper,
+                new DeterministicEmbeddingProvider(properties), vectorIndex, properties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public int processBatch(TaskCounter counter) {
+        int succeeded = service.processPendingBatch(batchSize).succeededTasks();
+        counter.tasks += succeeded;
+        return succeeded;
+    }
+
+    private List<RagEmbeddingTask> newTasks() {
+        List<RagEmbeddingTask> created = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            RagEmbeddingTask task = new RagEmbeddingTask();
+            task.setId("task-" + i);
+            task.setChunkId("chunk-" + i);
+            task.setStatus("RUNNING");
+            task.setLeaseOwner(WORKER);
+            task.setAttemptCount(1);
+            task.setCreatedAt(LocalDateTime.now());
+            created.add(task);
+        }
+        return created;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <M> M fakeMapper(Class<M> type, MapperCall call) {
+        return (M) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName();
+                };
+            }
+            roundTrip();
+            return call.apply(method.getName(), args);
+        });
+    }
+
+    private void roundTrip() {
+        if (roundTripMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+        }
+    }
+
+    @FunctionalInterface
+    private interface MapperCall {
+        Object apply(String method, Object[] args);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class TaskCounter {
+
+        public long tasks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tasks = 0;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RagEmbeddingBatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -19,22 +19,29 @@ import org.mockito.ArgumentCaptor;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
-import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class RagEmbeddingServiceTest {
 
     private static final String CHUNK_CONTENT = "traffic appeal source material";
+    private static final String WORKER = "worker-a";
 
     @Test
+    @SuppressWarnings("unchecked")
     void embedsPendingChunkIndexesVectorAndMarksTaskSucceeded() {
         RagEmbeddingTaskMapper taskMapper = mock(RagEmbeddingTaskMapper.class);
         RagChunkMapper chunkMapper = mock(RagChunkMapper.class);
@@ -45,14 +52,15 @@ class RagEmbeddingServiceTest {
         properties.setEnabled(true);
         properties.getEmbedding().setEnabled(true);
         properties.getEmbedding().setDimensions(3);
+        properties.getEmbedding().setWorkerId(WORKER);
 
         RagEmbeddingTask task = task();
         RagChunk chunk = chunk();
         RagDocument document = document();
-        when(taskMapper.selectList(any(QueryWrapper.class))).thenReturn(List.of(task));
-        when(taskMapper.selectById(any(Serializable.class))).thenReturn(task);
-        when(chunkMapper.selectById(any(Serializable.class))).thenReturn(chunk);
-        when(documentMapper.selectById(any(Serializable.class))).thenReturn(document);
+        when(taskMapper.selectObjs(any(QueryWrapper.class))).thenReturn(List.of("task-1"));
+        when(taskMapper.selectBatchIds(anyCollection())).thenReturn(List.of(task));
+        when(chunkMapper.selectBatchIds(anyCollection())).thenReturn(List.of(chunk));
+        when(documentMapper.selectBatchIds(anyCollection())).thenReturn(List.of(document));
         when(embeddingProvider.providerName()).thenReturn("test");
         when(embeddingProvider.modelName()).thenReturn("test-embed");
         when(embeddingProvider.embed(CHUNK_CONTENT)).thenReturn(new float[] {1, 0, 0});
@@ -70,19 +78,208 @@ class RagEmbeddingServiceTest {
 
         assertThat(result.selectedTasks()).isEqualTo(1);
         assertThat(result.succeededTasks()).isEqualTo(1);
-        ArgumentCaptor<float[]> vectorCaptor = ArgumentCaptor.forClass(float[].class);
-        verify(vectorIndexService).index(eq(document), eq(chunk), vectorCaptor.capture(), eq("test"), eq("test-embed"));
-        assertThat(vectorCaptor.getValue()).containsExactly(1.0f, 0.0f, 0.0f);
+        ArgumentCaptor<List<RagChunkVectorIndexService.VectorEntry>> entryCaptor = ArgumentCaptor.forClass(List.class);
+        verify(vectorIndexService).indexAll(entryCaptor.capture(), eq("test"), eq("test-embed"));
+        assertThat(entryCaptor.getValue()).hasSize(1);
+        assertThat(entryCaptor.getValue().get(0).document()).isSameAs(document);
+        assertThat(entryCaptor.getValue().get(0).chunk()).isSameAs(chunk);
+        assertThat(entryCaptor.getValue().get(0).embedding()).containsExactly(1.0f, 0.0f, 0.0f);
 
-        ArgumentCaptor<RagChunk> chunkCaptor = ArgumentCaptor.forClass(RagChunk.class);
+        ArgumentCaptor<Collection<RagChunk>> chunkCaptor = ArgumentCaptor.forClass(Collection.class);
         verify(chunkMapper).updateById(chunkCaptor.capture());
-        assertThat(chunkCaptor.getValue().getStatus()).isEqualTo("EMBEDDED");
-        assertThat(chunkCaptor.getValue().getEmbeddingModel()).isEqualTo("test-embed");
-        assertThat(chunkCaptor.getValue().getEmbeddingHash()).hasSize(64);
+        RagChunk updatedChunk = chunkCaptor.getValue().iterator().next();
+        assertThat(updatedChunk.getStatus()).isEqualTo("EMBEDDED");
+        assertThat(updatedChunk.getEmbeddingModel()).isEqualTo("test-embed");
+        assertThat(updatedChunk.getEmbeddingHash()).hasSize(64);
 
-        ArgumentCaptor<RagEmbeddingTask> taskCaptor = ArgumentCaptor.forClass(RagEmbeddingTask.class);
-        verify(taskMapper, atLeastOnce()).updateById(taskCaptor.capture());
-        assertThat(taskCaptor.getAllValues().get(taskCaptor.getAllValues().size() - 1).getStatus()).isEqualTo("SUCCEEDED");
+        assertThat(task.getStatus()).isEqualTo("SUCCEEDED");
+        ArgumentCaptor<UpdateWrapper<RagEmbeddingTask>> updateCaptor = ArgumentCaptor.forClass(UpdateWrapper.class);
+        verify(taskMapper, times(2)).update(isNull(), updateCaptor.capture());
+        UpdateWrapper<RagEmbeddingTask> release = updateCaptor.getAllValues().get(1);
+        assertThat(release.getSqlSegment()).contains("lease_owner");
+        assertThat(release.getSqlSet())
+                .containsSubsequence("status = CASE WHEN rerun_requested = 1 THEN 'PENDING'", "updated_at=", "rerun_requested=");
+        assertThat(release.getParamNameValuePairs()).containsValues(WORKER, "SUCCEEDED");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pipelinesBatchWithGroupedEmbeddingOneBulkRequestAndBatchedWrites() {
+        RagEmbeddingTaskMapper taskMapper = mock(RagEmbeddingTaskMapper.class);
+        RagChunkMapper chunkMapper = mock(RagChunkMapper.class);
+        RagDocumentMapper documentMapper = mock(RagDocumentMapper.class);
+        EmbeddingProvider embeddingProvider = mock(EmbeddingProvider.class);
+        RagChunkVectorIndexService vectorIndexService = mock(RagChunkVectorIndexService.class);
+        RagProperties properties = new RagProperties();
+        properties.setEnabled(true);
+        properties.getEmbedding().setEnabled(true);
+        properties.getEmbedding().setProviderBatchSize(2);
+        properties.getEmbedding().setConcurrency(2);
+        properties.getEmbedding().setWorkerId(WORKER);
+
+        List<RagEmbeddingTask> tasks = List.of(task("task-1", "chunk-1"), task("task-2", "chunk-2"),
+                task("task-3", "chunk-3"), task("task-4", "chunk-missing"));
+        when(taskMapper.selectObjs(any(QueryWrapper.class))).thenReturn(List.of("task-1", "task-2", "task-3", "task-4"));
+        when(taskMapper.selectBatchIds(anyCollection())).thenReturn(tasks);
+        when(chunkMapper.selectBatchIds(anyCollection())).thenReturn(List.of(
+                chunk("chunk-1", "a"), chunk("chunk-2", "b"), chunk("chunk-3", "c")));
+        when(documentMapper.selectBatchIds(anyCollection())).thenReturn(List.of(document()));
+        when(embeddingProvider.providerName()).thenReturn("test");
+        when(embeddingProvider.modelName()).thenReturn("test-embed");
+        when(embeddingProvider.embedAll(List.of("a", "b"))).thenReturn(List.of(new float[] {1, 0}, new float[] {0, 1}));
+        when(embeddingProvider.embed("c")).thenReturn(new float[] {1, 1});
+        when(vectorIndexService.indexAll(anyList(), eq("test"), eq("test-embed")))
+                .thenReturn(Map.of("chunk-2", "mapper_parsing_exception"));
+
+        RagEmbeddingService service = new RagEmbeddingService(
+                taskMapper, chunkMapper, documentMapper, embeddingProvider, vectorIndexService, properties);
+        try {
+            RagEmbeddingService.RagEmbeddingBatchResult result = service.processPendingBatch(10);
+
+            assertThat(result.selectedTasks()).isEqualTo(4);
+            assertThat(result.succeededTasks()).isEqualTo(2);
+            assertThat(result.failedTasks()).isEqualTo(2);
+        } finally {
+            service.shutdown();
+        }
+
+        verify(embeddingProvider).embedAll(List.of("a", "b"));
+        verify(vectorIndexService).indexAll(anyList(), eq("test"), eq("test-embed"));
+        verify(chunkMapper, never()).selectById(any(Serializable.class));
+        verify(taskMapper, never()).updateById(any(RagEmbeddingTask.class));
+        verify(taskMapper, never()).updateById(anyCollection());
+        // 认领一次，外加 SUCCEEDED / FAILED / POISONED 三种结果各一次
+        verify(taskMapper, times(4)).update(isNull(), any(UpdateWrapper.class));
+        ArgumentCaptor<Collection<RagChunk>> chunkCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(chunkMapper).updateById(chunkCaptor.capture());
+        assertThat(chunkCaptor.getValue()).extracting(RagChunk::getId).containsExactly("chunk-1", "chunk-3");
+        assertThat(tasks).extracting(RagEmbeddingTask::getStatus)
+                .containsExactly("SUCCEEDED", "FAILED", "SUCCEEDED", "POISONED");
+        assertThat(tasks.get(1).getLastError()).isEqualTo("mapper_parsing_exception");
+    }
+
+    @Test
+    void vectorOfTaskDeletedDuringTheBatchIsRemovedAgain() {
+        RagEmbeddingTaskMapper taskMapper = mock(RagEmbeddingTaskMapper.class);
+        RagChunkMapper chunkMapper = mock(RagChunkMapper.class);
+        RagDocumentMapper documentMapper = mock(RagDocumentMapper.class);
+        EmbeddingProvider embeddingProvider = mock(EmbeddingProvider.class);
+        RagChunkVectorIndexService vectorIndexService = mock(RagChunkVectorIndexService.class);
+        RagProperties properties = new RagProperties();
+        properties.setEnabled(true);
+        properties.getEmbedding().setEnabled(true);
+        properties.getEmbedding().setWorkerId(WORKER);
+
+        when(taskMapper.selectObjs(any(QueryWrapper.class))).thenReturn(List.of("task-1"));
+        // 认领后重新索引删除了孤儿分块及其任务
+        when(taskMapper.selectBatchIds(anyCollection())).thenReturn(List.of(task()), List.of());
+        when(chunkMapper.selectBatchIds(anyCollection())).thenReturn(List.of(chunk()));
+        when(documentMapper.selectBatchIds(anyCollection())).thenReturn(List.of(document()));
+        when(embeddingProvider.providerName()).thenReturn("test");
+        when(embeddingProvider.modelName()).thenReturn("test-embed");
+        when(embeddingProvider.embed(CHUNK_CONTENT)).thenReturn(new float[] {1, 0, 0});
+
+        RagEmbeddingService service = new RagEmbeddingService(
+                taskMapper, chunkMapper, documentMapper, embeddingProvider, vectorIndexService, properties);
+        RagEmbeddingService.RagEmbeddingBatchResult result;
+        try {
+            result = service.processPendingBatch(10);
+        } finally {
+            service.shutdown();
+        }
+
+        assertThat(result.succeededTasks()).isZero();
+        verify(vectorIndexService).indexAll(anyList(), eq("test"), eq("test-embed"));
+        verify(vectorIndexService).deleteAll(List.of("chunk-1"));
+        verify(chunkMapper, never()).updateById(anyCollection());
+    }
+
+    @Test
+    void errorEscapingAnEmbeddingGroupFailsThatGroupsTasks() {
+        RagEmbeddingTaskMapper taskMapper = mock(RagEmbeddingTaskMapper.class);
+        RagChunkMapper chunkMapper = mock(RagChunkMapper.class);
+        RagDocumentMapper documentMapper = mock(RagDocumentMapper.class);
+        EmbeddingProvider embeddingProvider = mock(EmbeddingProvider.class);
+        RagChunkVectorIndexService vectorIndexService = mock(RagChunkVectorIndexService.class);
+        RagProperties properties = new RagProperties();
+        properties.setEnabled(true);
+        properties.getEmbedding().setEnabled(true);
+        properties.getEmbedding().setProviderBatchSize(1);
+        properties.getEmbedding().setConcurrency(2);
+        properties.getEmbedding().setWorkerId(WORKER);
+
+        List<RagEmbeddingTask> tasks = List.of(task("task-1", "chunk-1"), task("task-2", "chunk-2"));
+        when(taskMapper.selectObjs(any(QueryWrapper.class))).thenReturn(List.of("task-1", "task-2"));
+        when(taskMapper.selectBatchIds(anyCollection())).thenReturn(tasks);
+        when(chunkMapper.selectBatchIds(anyCollection())).thenReturn(List.of(chunk("chunk-1", "a"), chunk("chunk-2", "b")));
+        when(documentMapper.selectBatchIds(anyCollection())).thenReturn(List.of(document()));
+        when(embeddingProvider.providerName()).thenReturn("test");
+        when(embeddingProvider.modelName()).thenReturn("test-embed");
+        when(embeddingProvider.embed("a")).thenThrow(new AssertionError("model crashed"));
+        when(embeddingProvider.embed("b")).thenReturn(new float[] {0, 1});
+
+        RagEmbeddingService service = new RagEmbeddingService(
+                taskMapper, chunkMapper, documentMapper, embeddingProvider, vectorIndexService, properties);
+        try {
+            RagEmbeddingService.RagEmbeddingBatchResult result = service.processPendingBatch(10);
+
+            assertThat(result.succeededTasks()).isEqualTo(1);
+            assertThat(result.failedTasks()).isEqualTo(1);
+        } finally {
+            service.shutdown();
+        }
+
+        assertThat(tasks).extracting(RagEmbeddingTask::getStatus).containsExactly("FAILED", "SUCCEEDED");
+        assertThat(tasks.get(0).getLastError()).contains("model crashed").doesNotContain("interrupted");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void claimsWithSkipLockedAndSkipsRowsLeasedByAnotherWorker() {
+        RagEmbeddingTaskMapper taskMapper = mock(RagEmbeddingTaskMapper.class);
+        RagChunkMapper chunkMapper = mock(RagChunkMapper.class);
+        RagDocumentMapper documentMapper = mock(RagDocumentMapper.class);
+        EmbeddingProvider embeddingProvider = mock(EmbeddingProvider.class);
+        RagChunkVectorIndexService vectorIndexService = mock(RagChunkVectorIndexService.class);
+        RagProperties properties = new RagProperties();
+        properties.setEnabled(true);
+        properties.getEmbedding().setEnabled(true);
+        properties.getEmbedding().setWorkerId(WORKER);
+
+        RagEmbeddingTask mine = task("task-1", "chunk-1");
+        RagEmbeddingTask stolen = task("task-2", "chunk-2");
+        stolen.setLeaseOwner("worker-b");
+        when(taskMapper.selectObjs(any(QueryWrapper.class))).thenReturn(List.of("task-1", "task-2"));
+        when(taskMapper.selectBatchIds(anyCollection())).thenReturn(List.of(mine, stolen));
+        when(chunkMapper.selectBatchIds(anyCollection())).thenReturn(List.of(chunk()));
+        when(documentMapper.selectBatchIds(anyCollection())).thenReturn(List.of(document()));
+        when(embeddingProvider.providerName()).thenReturn("test");
+        when(embeddingProvider.modelName()).thenReturn("test-embed");
+        when(embeddingProvider.embed(CHUNK_CONTENT)).thenReturn(new float[] {1, 0, 0});
+
+        RagEmbeddingService service = new RagEmbeddingService(
+                taskMapper, chunkMapper, documentMapper, embeddingProvider, vectorIndexService, properties);
+        RagEmbeddingService.RagEmbeddingBatchResult result;
+        try {
+            result = service.processPendingBatch(10);
+        } finally {
+            service.shutdown();
+        }
+
+        assertThat(result.selectedTasks()).isEqualTo(1);
+        assertThat(result.succeededTasks()).isEqualTo(1);
+        assertThat(stolen.getStatus()).isEqualTo("RUNNING");
+
+        ArgumentCaptor<QueryWrapper<RagEmbeddingTask>> claimQuery = ArgumentCaptor.forClass(QueryWrapper.class);
+        verify(taskMapper).selectObjs(claimQuery.capture());
+        assertThat(claimQuery.getValue().getSqlSegment())
+                .contains("lease_expires_at")
+                .endsWith("LIMIT 10 FOR UPDATE SKIP LOCKED");
+        ArgumentCaptor<UpdateWrapper<RagEmbeddingTask>> updateCaptor = ArgumentCaptor.forClass(UpdateWrapper.class);
+        verify(taskMapper, times(2)).update(isNull(), updateCaptor.capture());
+        UpdateWrapper<RagEmbeddingTask> claim = updateCaptor.getAllValues().get(0);
+        assertThat(claim.getSqlSet()).contains("lease_owner", "lease_expires_at", "attempt_count = attempt_count + 1");
+        assertThat(claim.getParamNameValuePairs()).containsValues(WORKER, "RUNNING");
     }
 
     @Test
@@ -120,24 +317,34 @@ class RagEmbeddingServiceTest {
     }
 
     private static RagEmbeddingTask task() {
+        return task("task-1", "chunk-1");
+    }
+
+    private static RagEmbeddingTask task(String id, String chunkId) {
         RagEmbeddingTask task = new RagEmbeddingTask();
-        task.setId("task-1");
-        task.setChunkId("chunk-1");
-        task.setTaskKey("task-1");
+        task.setId(id);
+        task.setChunkId(chunkId);
+        task.setTaskKey(id);
         task.setProvider("test");
         task.setModel("test-embed");
-        task.setStatus("PENDING");
-        task.setAttemptCount(0);
+        task.setStatus("RUNNING");
+        task.setLeaseOwner(WORKER);
+        task.setLeaseExpiresAt(LocalDateTime.now().plusMinutes(5));
+        task.setAttemptCount(1);
         task.setCreatedAt(LocalDateTime.now());
         task.setUpdatedAt(LocalDateTime.now());
         return task;
     }
 
     private static RagChunk chunk() {
+        return chunk("chunk-1", CHUNK_CONTENT);
+    }
+
+    private static RagChunk chunk(String id, String content) {
         RagChunk chunk = new RagChunk();
-        chunk.setId("chunk-1");
+        chunk.setId(id);
         chunk.setDocumentId("doc-1");
-        chunk.setContent(CHUNK_CONTENT);
+        chunk.setContent(content);
         chunk.setContentHash("hash");
         chunk.setSourceField("content");
         chunk.setStatus("PENDING_EMBEDDING");
@@ -0,0 +1,76 @@
+package com.tutict.finalassignmentbackend.rag.ingestion;
+
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse time of {@link RagUploadedFileParser#parse} over a synthetic corpus; {@code count} is lines,
+ * rows, paragraphs or pages depending on {@code format}, and the file size is printed per trial so
+ * MB/s follows from the score. Run with {@code -prof gc}: {@code gc.alloc.rate.norm} is the heap
+ * allocated per upload and should flatten once extraction hits {@code maxContentChars}.
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RagUploadedFileParserBenchmark {
+
+    @Param({"csv", "docx", "xlsx", "pdf"})
+    public String format;
+
+    @Param({"200", "2000"})
+    public int count;
+
+    @Param({"1", "4"})
+    public int pdfParallelism;
+
+    private RagUploadedFileParser parser;
+    private MockMultipartFile upload;
+
+    @Setup
+    public void setup() {
+        RagProperties properties = new RagProperties();
+        properties.getUpload().setPdfParallelism(pdfParallelism);
+        parser = new RagUploadedFileParser(properties);
+        upload = SampleUploads.upload(format, count);
+        System.out.printf("%nformat=%s count=%d size=%.2fMB%n", format, count, upload.getSize() / 1048576.0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.shutdown();
+    }
+
+    @Benchmark
+    public RagUploadedFileParser.ParsedRagFile parse() throws IOException {
+        return parser.parse(upload);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RagUploadedFileParserBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.tutict.finalassignmentbackend.rag.ingestion;
+
+import com.tutict.finalassignmentbackend.rag.config.RagProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RagUploadedFileParserTest {
+
+    private final RagProperties properties = new RagProperties();
+    private RagUploadedFileParser parser;
+
+    @AfterEach
+    void shutdown() {
+        if (parser != null) {
+            parser.shutdown();
+        }
+    }
+
+    @Test
+    void officeFilesAreStreamedWithRowCountsBeyondTheIndexedRows() throws Exception {
+        parser = new RagUploadedFileParser(properties);
+
+        RagUploadedFileParser.ParsedRagFile sheet = parser.parse(SampleUploads.upload("xlsx", 400));
+        RagUploadedFileParser.ParsedRagFile document = parser.parse(SampleUploads.upload("docx", 3));
+
+        assertThat(sheet.rowCount()).isEqualTo(400);
+        assertThat(sheet.sheetCount()).isEqualTo(1);
+        assertThat(sheet.content())
+                .startsWith("## Sheet 1\nSource: xl/worksheets/sheet1.xml\nRows: 400")
+                .contains("| 1 | plate | row 1 |\n| --- | --- | --- |")
+                .contains("remaining 150 rows were omitted")
+                .doesNotContain("row 251 |");
+        assertThat(document.rowCount()).isEqualTo(3);
+        assertThat(document.content().lines()).hasSize(3).allMatch(line -> line.contains("Traffic offense record"));
+        assertThat(sheet.truncated()).isFalse();
+    }
+
+    @Test
+    void sharedStringsAreReadOnlyUpToTheLastIndexedRow() throws Exception {
+        parser = new RagUploadedFileParser(properties);
+        // 前 250 行只引用下标 0..249，之后的共享字符串（包括结尾的非法 XML）不应被解析
+        MockMultipartFile upload = new MockMultipartFile("file", "sample.xlsx", "application/octet-stream",
+                SampleUploads.xlsxWithTruncatedSharedStrings(300));
+
+        RagUploadedFileParser.ParsedRagFile sheet = parser.parse(upload);
+
+        assertThat(sheet.rowCount()).isEqualTo(300);
+        assertThat(sheet.content())
+                .contains("| shared 0 |\n| --- |")
+                .contains("| shared 249 |")
+                .doesNotContain("shared 250")
+                .doesNotContain("unterminated");
+    }
+
+    @Test
+    void pdfRangesExtractedInParallelKeepPageOrder() throws Exception {
+        properties.getUpload().setPdfParallelism(3);
+        properties.getUpload().setPdfPagesPerTask(2);
+        parser = new RagUploadedFileParser(properties);
+
+        RagUploadedFileParser.ParsedRagFile parsed = parser.parse(SampleUploads.upload("pdf", 11));
+
+        assertThat(parsed.sheetCount()).isEqualTo(11);
+        assertThat(parsed.content()).startsWith("PDF file: sample.pdf\nPages: 11");
+        int previous = -1;
+        for (int page = 1; page <= 11; page++) {
+            int position = parsed.content().indexOf("Page " + page + "\n");
+            assertThat(position).isGreaterThan(previous);
+            previous = position;
+        }
+    }
+
+    @Test
+    void extractedTextStopsAtTheContentBudget() throws Exception {
+        properties.getUpload().setMaxContentChars(1000);
+        parser = new RagUploadedFileParser(properties);
+
+        RagUploadedFileParser.ParsedRagFile text = parser.parse(SampleUploads.upload("txt", 10_000));
+        RagUploadedFileParser.ParsedRagFile pdf = parser.parse(SampleUploads.upload("pdf", 40));
+
+        assertThat(text.truncated()).isTrue();
+        assertThat(text.content().length()).isLessThanOrEqualTo(1000);
+        assertThat(pdf.truncated()).isTrue();
+        assertThat(pdf.content().length()).isLessThanOrEqualTo(1000);
+        assertThat(pdf.sheetCount()).isEqualTo(40);
+    }
+
+    @Test
+    void oversizedParagraphCellAndLineAreCappedWhileReading() throws Exception {
+        properties.getUpload().setMaxContentChars(1000);
+        parser = new RagUploadedFileParser(properties);
+
+        RagUploadedFileParser.ParsedRagFile csv = parser.parse(SampleUploads.oversizedFirstUnit("csv", 200_000, 5));
+        RagUploadedFileParser.ParsedRagFile docx = parser.parse(SampleUploads.oversizedFirstUnit("docx", 200_000, 5));
+        RagUploadedFileParser.ParsedRagFile xlsx = parser.parse(SampleUploads.oversizedFirstUnit("xlsx", 200_000, 5));
+
+        assertThat(List.of(csv, docx, xlsx)).allSatisfy(parsed -> {
+            assertThat(parsed.truncated()).isTrue();
+            assertThat(parsed.content().length()).isLessThanOrEqualTo(1000);
+        });
+        // 截断只影响正文，行数仍按完整文件统计
+        assertThat(csv.rowCount()).isEqualTo(6);
+        assertThat(xlsx.rowCount()).isEqualTo(6);
+        assertThat(docx.content()).startsWith("xxxx");
+    }
+}
@@ -0,0 +1,176 @@
+package com.tutict.finalassignmentbackend.rag.ingestion;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Synthetic upload corpus for the parser test and benchmark; sizes scale with the requested count.
+ */
+final class SampleUploads {
+
+    private static final String LINE = "Traffic offense record with plate, location and fine amount details.";
+
+    private SampleUploads() {
+    }
+
+    static MockMultipartFile upload(String format, int count) {
+        byte[] bytes = switch (format) {
+            case "txt" -> text(count);
+            case "csv" -> csv(count);
+            case "docx" -> docx(count);
+            case "xlsx" -> xlsx(count);
+            case "pdf" -> pdf(count);
+            default -> throw new IllegalArgumentException("unknown sample format " + format);
+        };
+        return new MockMultipartFile("file", "sample." + format, "application/octet-stream", bytes);
+    }
+
+    static byte[] text(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(i).append(' ').append(LINE).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] csv(int rows) {
+        StringBuilder csv = new StringBuilder("id,plate,note\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(",A").append(10000 + i).append(",\"").append(LINE).append("\"\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] docx(int paragraphs) {
+        StringBuilder xml = new StringBuilder("<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>");
+        for (int i = 0; i < paragraphs; i++) {
+            xml.append("<w:p><w:r><w:t>").append(i).append(' ').append(LINE).append("</w:t></w:r></w:p>");
+        }
+        xml.append("</w:body></w:document>");
+        return zip("word/document.xml", xml.toString(), null, null);
+    }
+
+    static byte[] xlsx(int rows) {
+        String main = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+        String sharedStrings = "<sst xmlns=\"" + main + "\"><si><t>plate</t></si><si><t>" + LINE + "</t></si></sst>";
+        StringBuilder sheet = new StringBuilder("<worksheet xmlns=\"" + main + "\"><sheetData>");
+        for (int i = 1; i <= rows; i++) {
+            sheet.append("<row r=\"").append(i).append("\">")
+                    .append("<c r=\"A").append(i).append("\"><v>").append(i).append("</v></c>")
+                    .append("<c r=\"B").append(i).append("\" t=\"s\"><v>").append(i == 1 ? 0 : 1).append("</v></c>")
+                    .append("<c r=\"C").append(i).append("\" t=\"inlineStr\"><is><t>row ").append(i).append("</t></is></c>")
+                    .append("</row>");
+        }
+        sheet.append("</sheetData></worksheet>");
+        return zip("xl/worksheets/sheet1.xml", sheet.toString(), "xl/sharedStrings.xml", sharedStrings);
+    }
+
+    /**
+     * Sheet whose row {@code i} references shared string {@code i - 1}; the table ends in malformed XML
+     * right after the last entry, so only a parser that stops early can read it.
+     */
+    static byte[] xlsxWithTruncatedSharedStrings(int rows) {
+        String main = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+        StringBuilder sharedStrings = new StringBuilder("<sst xmlns=\"" + main + "\">");
+        StringBuilder sheet = new StringBuilder("<worksheet xmlns=\"" + main + "\"><sheetData>");
+        for (int i = 1; i <= rows; i++) {
+            sharedStrings.append("<si><t>shared ").append(i - 1).append("</t></si>");
+            sheet.append("<row r=\"").append(i).append("\">")
+                    .append("<c r=\"A").append(i).append("\" t=\"s\"><v>").append(i - 1).append("</v></c>")
+                    .append("</row>");
+        }
+        sharedStrings.append("<si><t>unterminated");
+        sheet.append("</sheetData></worksheet>");
+        return zip("xl/worksheets/sheet1.xml", sheet.toString(), "xl/sharedStrings.xml", sharedStrings.toString());
+    }
+
+    /**
+     * Upload whose first paragraph, cell or line holds {@code chars} characters without a break,
+     * followed by {@code rows} ordinary ones.
+     */
+    static MockMultipartFile oversizedFirstUnit(String format, int chars, int rows) {
+        String huge = "x".repeat(chars);
+        String main = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+        byte[] bytes = switch (format) {
+            case "csv" -> {
+                StringBuilder csv = new StringBuilder(huge).append('\n');
+                for (int i = 0; i < rows; i++) {
+                    csv.append(i).append(",\"").append(LINE).append("\"\n");
+                }
+                yield csv.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            case "docx" -> {
+                StringBuilder xml = new StringBuilder("<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>");
+                xml.append("<w:p><w:r><w:t>").append(huge).append("</w:t></w:r></w:p>");
+                for (int i = 0; i < rows; i++) {
+                    xml.append("<w:p><w:r><w:t>").append(LINE).append("</w:t></w:r></w:p>");
+                }
+                yield zip("word/document.xml", xml.append("</w:body></w:document>").toString(), null, null);
+            }
+            case "xlsx" -> {
+                StringBuilder sheet = new StringBuilder("<worksheet xmlns=\"" + main + "\"><sheetData>");
+                sheet.append("<row r=\"1\"><c r=\"A1\" t=\"inlineStr\"><is><t>").append(huge).append("</t></is></c></row>");
+                for (int i = 2; i <= rows + 1; i++) {
+                    sheet.append("<row r=\"").append(i).append("\"><c r=\"A").append(i).append("\"><v>")
+                            .append(i).append("</v></c></row>");
+                }
+                yield zip("xl/worksheets/sheet1.xml", sheet.append("</sheetData></worksheet>").toString(), null, null);
+            }
+            default -> throw new IllegalArgumentException("unknown sample format " + format);
+        };
+        return new MockMultipartFile("file", "oversized." + format, "application/octet-stream", bytes);
+    }
+
+    static byte[] pdf(int pages) {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 11);
+                    content.newLineAtOffset(50, 700);
+                    content.showText("Page " + i);
+                    for (int line = 0; line < 20; line++) {
+                        content.newLineAtOffset(0, -14);
+                        content.showText(LINE);
+                    }
+                    content.endText();
+                }
+            }
+            document.save(output);
+            return output.toByteArray();
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private static byte[] zip(String name, String xml, String extraName, String extraXml) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(output)) {
+            if (extraName != null) {
+                zip.putNextEntry(new ZipEntry(extraName));
+                zip.write(extraXml.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(xml.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        return output.toByteArray();
+    }
+}
@@ -23,13 +23,18 @@ import com.tutict.finalassignmentbackend.rag.mapper.RagEmbeddingTaskMapper;
 import org.junit.jupiter.api.Test;
 
 import java.io.Serializable;
+import java.text.Normalizer;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -57,6 +62,37 @@ class ChineseTextChunkerTest {
         assertThat(chunks.get(0).content()).isEqualTo("\u4e00\u4e8c\u4e09\u56db\u4e94");
         assertThat(chunks.get(1).content()).startsWith("\u56db\u4e94");
     }
+
+    @Test
+    void singlePassNormalizationMatchesTheRegexRules() {
+        String raw = "\u3000 A\u00a0\u00a0b\t\u000B c \r\n \r\r\n\n d\f\n\u3000e\uff01 ";
+
+        String expected = Normalizer.normalize(raw, Normalizer.Form.NFKC)
+                .replace("\r\n", "\n")
+                .replace('\r', '\n')
+                .replace('\u000B', ' ')
+                .replaceAll("[\\p{Zs}\\t\\f]+", " ")
+                .replaceAll(" *\\n *", "\n")
+                .replaceAll("\\n{3,}", "\n\n")
+                .trim();
+
+        assertThat(ChineseTextChunker.normalizeContent(raw)).isEqualTo(expected).isEqualTo("A b c\n\nd\ne!");
+    }
+
+    @Test
+    void sentenceToleranceSnapsChunkEndsToSentencePunctuation() {
+        String text = "\u4e00\u4e8c\u4e09\u56db\u4e94\u516d\u4e03\u3002\u516b\u4e5d\u5341\uff1f\u4e00\u4e8c\u4e09";
+
+        List<Chunker.Chunk> fixed = new ChineseTextChunker(10, 2).chunk(text, "content");
+        List<Chunker.Chunk> snapped = new ChineseTextChunker(10, 2, 4).chunk(text, "content");
+
+        assertThat(fixed.getFirst().content()).hasSize(10);
+        assertThat(snapped.getFirst().content()).endsWith("\u3002").hasSize(8);
+        assertThat(snapped.getFirst().charCount()).isEqualTo(8);
+        assertThat(snapped.get(1).content()).startsWith("\u4e03\u3002\u516b");
+        assertThat(snapped.getFirst().contentHash())
+                .isEqualTo(ChineseTextChunker.normalizedContentSha256Of(snapped.getFirst().content()));
+    }
 }
 
 class RagChunkHashTest {
@@ -108,6 +144,73 @@ class RagDocumentLifecycleTest {
         assertThat(first.document().getAclScope()).isEqualTo("ROLE");
         assertThat(mappers.tasks.values()).extracting(RagEmbeddingTask::getStatus).containsOnly("PENDING");
     }
+
+    @Test
+    void reindexingNewVersionKeepsUnchangedChunksAndDropsOrphans() {
+        InMemoryRagMappers mappers = new InMemoryRagMappers();
+        RagIndexingService service = new RagIndexingService(
+                new RagDocumentService(mappers.documentMapper),
+                new RagChunkService(mappers.chunkMapper),
+                new RagEmbeddingTaskService(mappers.taskMapper),
+                new ChineseTextChunker(5, 1)
+        );
+
+        RagIndexingService.RagIndexingResult first = service.index(source("v1", "\u4e00\u4e8c\u4e09\u56db\u4e94\u516d"));
+        first.tasks().forEach(task -> task.setStatus("SUCCEEDED"));
+        RagIndexingService.RagIndexingResult second = service.index(source("v2", "\u4e00\u4e8c\u4e09\u56db\u4e94\u4e03"));
+
+        assertThat(second.document().getId()).isEqualTo(first.document().getId());
+        assertThat(second.document().getSourceVersion()).isEqualTo("v2");
+        assertThat(mappers.documents).hasSize(1);
+        assertThat(second.chunks().getFirst()).isSameAs(first.chunks().getFirst());
+        assertThat(mappers.chunks.keySet())
+                .containsExactlyInAnyOrder(second.chunks().get(0).getId(), second.chunks().get(1).getId())
+                .doesNotContain(first.chunks().get(1).getId());
+        assertThat(mappers.tasks.values()).extracting(RagEmbeddingTask::getStatus)
+                .containsExactlyInAnyOrder("SUCCEEDED", "PENDING");
+    }
+
+    @Test
+    void changedIndexFieldsFlagRunningTasksForRerun() {
+        InMemoryRagMappers mappers = new InMemoryRagMappers();
+        RagIndexingService service = new RagIndexingService(
+                new RagDocumentService(mappers.documentMapper),
+                new RagChunkService(mappers.chunkMapper),
+                new RagEmbeddingTaskService(mappers.taskMapper),
+                new ChineseTextChunker(5, 1)
+        );
+
+        RagIndexingService.RagIndexingResult first = service.index(source("v1", "title", "\u4e00\u4e8c\u4e09\u56db\u4e94\u516d"));
+        first.tasks().get(0).setStatus("RUNNING");
+        first.tasks().get(1).setStatus("SUCCEEDED");
+        service.index(source("v1", "renamed", "\u4e00\u4e8c\u4e09\u56db\u4e94\u516d"));
+
+        RagEmbeddingTask running = mappers.tasks.get(first.tasks().get(0).getId());
+        assertThat(running.getStatus()).isEqualTo("RUNNING");
+        assertThat(running.getRerunRequested()).isTrue();
+        RagEmbeddingTask finished = mappers.tasks.get(first.tasks().get(1).getId());
+        assertThat(finished.getStatus()).isEqualTo("PENDING");
+        assertThat(finished.getRerunRequested()).isFalse();
+    }
+
+    private static RagSourceDocument source(String version, String content) {
+        return source(version, "title", content);
+    }
+
+    private static RagSourceDocument source(String version, String title, String content) {
+        return new RagSourceDocument(
+                "BUSINESS",
+                "offense_type_dict",
+                "42",
+                version,
+                title,
+                content,
+                "ROLE",
+                "/route",
+                "{}",
+                "description"
+        );
+    }
 }
 
 class RagBackfillJobTest {
@@ -200,5 +303,51 @@ final class InMemoryRagMappers {
             tasks.put(task.getId(), task);
             return 1;
         });
+        when(documentMapper.selectBySource(anyString(), anyString())).thenAnswer(invocation -> documents.values().stream()
+                .filter(document -> invocation.getArgument(0).equals(document.getSourceTable())
+                        && invocation.getArgument(1).equals(document.getSourceId()))
+                .toList());
+        when(documentMapper.deleteBatchIds(anyCollection())).thenAnswer(invocation -> removeAll(documents, invocation.getArgument(0)));
+        when(chunkMapper.selectByDocumentIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> documentIds = invocation.getArgument(0);
+            return chunks.values().stream().filter(chunk -> documentIds.contains(chunk.getDocumentId())).toList();
+        });
+        when(chunkMapper.insertBatch(anyCollection())).thenAnswer(invocation -> {
+            Collection<RagChunk> inserted = invocation.getArgument(0);
+            inserted.forEach(chunk -> chunks.put(chunk.getId(), chunk));
+            return inserted.size();
+        });
+        when(chunkMapper.deleteBatchIds(anyCollection())).thenAnswer(invocation -> removeAll(chunks, invocation.getArgument(0)));
+        when(taskMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return ids.stream().map(tasks::get).filter(Objects::nonNull).toList();
+        });
+        when(taskMapper.insertBatch(anyCollection())).thenAnswer(invocation -> {
+            Collection<RagEmbeddingTask> inserted = invocation.getArgument(0);
+            inserted.forEach(task -> tasks.put(task.getId(), task));
+            return inserted.size();
+        });
+        when(taskMapper.requeue(anyCollection(), any(LocalDateTime.class))).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            ids.stream().map(tasks::get).filter(Objects::nonNull).forEach(task -> {
+                boolean running = "RUNNING".equals(task.getStatus());
+                task.setRerunRequested(running);
+                task.setStatus(running ? "RUNNING" : "PENDING");
+                task.setNextRetryAt(null);
+            });
+            return ids.size();
+        });
+        when(taskMapper.deleteByChunkIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> chunkIds = invocation.getArgument(0);
+            int before = tasks.size();
+            tasks.values().removeIf(task -> chunkIds.contains(task.getChunkId()));
+            return before - tasks.size();
+        });
+    }
+
+    private static int removeAll(Map<String, ?> rows, Collection<?> ids) {
+        int before = rows.size();
+        rows.keySet().removeAll(ids);
+        return before - rows.size();
     }
 }
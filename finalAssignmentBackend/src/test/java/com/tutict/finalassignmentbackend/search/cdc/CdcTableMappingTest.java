@@ -0,0 +1,74 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.entity.elastic.DriverInformationDocument;
+import com.tutict.finalassignmentbackend.entity.elastic.FineRecordDocument;
+import com.tutict.finalassignmentbackend.entity.elastic.SysUserDocument;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CdcTableMappingTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CdcTableMappings mappings = CdcTableMappings.of(objectMapper,
+            DriverInformationDocument.class, FineRecordDocument.class, SysUserDocument.class);
+
+    @Test
+    void resolvesTablesAndKeysFromEntityMetadata() {
+        assertThat(mappings.tables()).containsExactlyInAnyOrder("driver_information", "fine_record", "sys_user");
+        assertThat(mappings.forTable("driver_information").keyColumn()).isEqualTo("driver_id");
+        assertThat(mappings.forDocument(SysUserDocument.class).table()).isEqualTo("sys_user");
+        assertThat(mappings.forTable("unknown_table")).isNull();
+    }
+
+    @Test
+    void decodesDebeziumEncodedColumnsThroughCompiledSetters() throws Exception {
+        CdcTableMapping mapping = mappings.forTable("driver_information");
+        JsonNode row = objectMapper.readTree("""
+                {"driver_id":"42","name":"张三","current_points":"12","birthdate":0,
+                 "created_at":86400000,"updated_at":"2024-05-01T08:30:00Z","deleted_at":null,"unmapped":"x"}
+                """);
+
+        DriverInformationDocument document = (DriverInformationDocument) mapping.toDocument(row);
+
+        assertThat(mapping.id(row)).isEqualTo("42");
+        assertThat(document.getDriverId()).isEqualTo(42L);
+        assertThat(document.getName()).isEqualTo("张三");
+        assertThat(document.getCurrentPoints()).isEqualTo(12);
+        assertThat(document.getBirthdate()).isEqualTo(LocalDate.of(1970, 1, 1));
+        assertThat(document.getCreatedAt()).isEqualTo(LocalDateTime.of(1970, 1, 2, 0, 0));
+        assertThat(document.getUpdatedAt()).isEqualTo(LocalDateTime.of(2024, 5, 1, 8, 30));
+    }
+
+    @Test
+    void decodesDecimalColumnsForTablesThatWereNeverHandCoded() throws Exception {
+        CdcTableMapping mapping = mappings.forTable("fine_record");
+        JsonNode row = objectMapper.readTree("""
+                {"fine_id":7,"fine_amount":"200.50","total_amount":250.5,"fine_date":19723,"payment_status":"UNPAID"}
+                """);
+
+        FineRecordDocument document = (FineRecordDocument) mapping.toDocument(row);
+
+        assertThat(document.getFineId()).isEqualTo(7L);
+        assertThat(document.getFineAmount()).isEqualByComparingTo(new BigDecimal("200.50"));
+        assertThat(document.getTotalAmount()).isEqualByComparingTo(new BigDecimal("250.5"));
+        assertThat(document.getFineDate()).isEqualTo(LocalDate.of(2024, 1, 1));
+    }
+
+    @Test
+    void logicallyDeletedRowDecodesAsDelete() throws Exception {
+        CdcTableMapping mapping = mappings.forTable("sys_user");
+        JsonNode row = objectMapper.readTree("""
+                {"user_id":9,"username":"officer","deleted_at":1714552200000}
+                """);
+
+        assertThat(mapping.id(row)).isEqualTo("9");
+        assertThat(mapping.toDocument(row)).isNull();
+    }
+}
@@ -0,0 +1,199 @@
+package com.tutict.finalassignmentbackend.search.cdc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tutict.finalassignmentbackend.entity.elastic.DriverInformationDocument;
+import com.tutict.finalassignmentbackend.entity.elastic.SysUserDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MysqlCdcElasticsearchIndexerTest {
+
+    private static final String DRIVER_TOPIC = "traffic.traffic.driver_information";
+    private static final String USER_TOPIC = "traffic.traffic.sys_user";
+
+    private final CdcBulkIndexer bulkIndexer = mock(CdcBulkIndexer.class);
+    private final ConsumerRecordRecoverer deadLetters = mock(ConsumerRecordRecoverer.class);
+    private final Acknowledgment acknowledgment = mock(Acknowledgment.class);
+    private MysqlCdcElasticsearchIndexer indexer;
+    private long offset;
+
+    @BeforeEach
+    void setUp() {
+        CdcElasticsearchProperties properties = new CdcElasticsearchProperties();
+        properties.setMaxItemAttempts(2);
+        properties.setRetryBackoff(Duration.ZERO);
+        properties.setEnabled(true);
+        ObjectMapper objectMapper = new ObjectMapper();
+        CdcTableMappings mappings = CdcTableMappings.of(objectMapper,
+                DriverInformationDocument.class, SysUserDocument.class);
+        indexer = new MysqlCdcElasticsearchIndexer(objectMapper, mappings, bulkIndexer, properties, deadLetters,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void collapsesChangesPerPrimaryKeyAndIssuesOneBulkPerTable() throws Exception {
+        when(bulkIndexer.bulk(any(), anyList())).thenReturn(Map.of());
+
+        indexer.index(List.of(
+                record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "first")),
+                record(DRIVER_TOPIC, upsert("driver_id", 2, "name", "other")),
+                record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "second")),
+                record(USER_TOPIC, upsert("user_id", 9, "username", "officer")),
+                record(DRIVER_TOPIC, delete("driver_id", 2))
+        ), acknowledgment);
+
+        ArgumentCaptor<List<CdcChange>> drivers = ArgumentCaptor.forClass(List.class);
+        verify(bulkIndexer).bulk(eq(DriverInformationDocument.class), drivers.capture());
+        verify(bulkIndexer).bulk(eq(SysUserDocument.class), anyList());
+        assertThat(drivers.getValue()).extracting(CdcChange::id).containsExactly("1", "2");
+        assertThat(((DriverInformationDocument) drivers.getValue().get(0).document()).getName()).isEqualTo("second");
+        assertThat(drivers.getValue().get(1).isDelete()).isTrue();
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriesOnlyFailedItemsThenDeadLettersThem() throws Exception {
+        when(bulkIndexer.bulk(any(), anyList()))
+                .thenReturn(Map.of("2", new CdcBulkIndexer.ItemFailure("es_rejected_execution_exception", true)))
+                .thenReturn(Map.of("2", new CdcBulkIndexer.ItemFailure("es_rejected_execution_exception", true)));
+        ConsumerRecord<String, String> failing = record(DRIVER_TOPIC, upsert("driver_id", 2, "name", "b"));
+
+        indexer.index(List.of(record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "a")), failing), acknowledgment);
+
+        ArgumentCaptor<List<CdcChange>> batches = ArgumentCaptor.forClass(List.class);
+        verify(bulkIndexer, times(2)).bulk(eq(DriverInformationDocument.class), batches.capture());
+        List<List<CdcChange>> calls = new ArrayList<>(batches.getAllValues());
+        assertThat(calls.get(1)).extracting(CdcChange::id).containsExactly("2");
+        verify(deadLetters).accept(eq(failing), any(Exception.class));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void nonRetryableItemGoesStraightToDeadLetter() throws Exception {
+        when(bulkIndexer.bulk(any(), anyList()))
+                .thenReturn(Map.of("1", new CdcBulkIndexer.ItemFailure("mapper_parsing_exception", false)));
+        ConsumerRecord<String, String> failing = record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "a"));
+
+        indexer.index(List.of(failing), acknowledgment);
+
+        verify(bulkIndexer, times(1)).bulk(any(), anyList());
+        verify(deadLetters).accept(eq(failing), any(Exception.class));
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void failedBulkRequestIsNotAcknowledged() throws Exception {
+        when(bulkIndexer.bulk(any(), anyList())).thenThrow(new java.io.IOException("connection refused"));
+
+        assertThatThrownBy(() -> indexer.index(
+                List.of(record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "a"))), acknowledgment))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(bulkIndexer, times(2)).bulk(any(), anyList());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void failedBulkOfALaterTableDeadLettersNothingBeforeRedelivery() throws Exception {
+        when(bulkIndexer.bulk(eq(DriverInformationDocument.class), anyList()))
+                .thenReturn(Map.of("1", new CdcBulkIndexer.ItemFailure("mapper_parsing_exception", false)));
+        when(bulkIndexer.bulk(eq(SysUserDocument.class), anyList())).thenThrow(new java.io.IOException("timeout"));
+
+        assertThatThrownBy(() -> indexer.index(List.of(
+                record(DRIVER_TOPIC, "{not json"),
+                record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "a")),
+                record(USER_TOPIC, upsert("user_id", 9, "username", "officer"))), acknowledgment))
+                .isInstanceOf(IllegalStateException.class);
+
+        // 整批重投时这些记录会再次失败，此前不能已经进入 DLT
+        verify(deadLetters, never()).accept(any(), any());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void failedDeadLetterPublishFailsAtThatRecordInBatchOrder() throws Exception {
+        when(bulkIndexer.bulk(any(), anyList()))
+                .thenReturn(Map.of("2", new CdcBulkIndexer.ItemFailure("mapper_parsing_exception", false)));
+        ConsumerRecord<String, String> broken = record(DRIVER_TOPIC, "{not json");
+        ConsumerRecord<String, String> rejected = record(DRIVER_TOPIC, upsert("driver_id", 2, "name", "b"));
+        ConsumerRecord<String, String> laterBroken = record(DRIVER_TOPIC, "{still not json");
+        doThrow(new KafkaException("broker unavailable")).when(deadLetters).accept(eq(rejected), any());
+
+        assertThatThrownBy(() -> indexer.index(List.of(
+                record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "a")), broken, rejected, laterBroken),
+                acknowledgment))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                        ex -> assertThat(ex.getIndex()).isEqualTo(2));
+
+        verify(deadLetters).accept(eq(broken), any(Exception.class));
+        verify(deadLetters, never()).accept(eq(laterBroken), any());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    @Test
+    void tablesOutsideTheConfiguredSetAreIgnored() throws Exception {
+        CdcElasticsearchProperties properties = new CdcElasticsearchProperties();
+        properties.setEnabled(true);
+        properties.setTables(Set.of("sys_user"));
+        ObjectMapper objectMapper = new ObjectMapper();
+        MysqlCdcElasticsearchIndexer restricted = new MysqlCdcElasticsearchIndexer(objectMapper,
+                CdcTableMappings.of(objectMapper, DriverInformationDocument.class, SysUserDocument.class),
+                bulkIndexer, properties, deadLetters, new SimpleMeterRegistry());
+
+        restricted.index(List.of(record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "a"))), acknowledgment);
+
+        verify(bulkIndexer, never()).bulk(any(), anyList());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void undecodableMessageIsDeadLetteredWithoutBlockingTheBatch() throws Exception {
+        when(bulkIndexer.bulk(any(), anyList())).thenReturn(Map.of());
+        ConsumerRecord<String, String> broken = record(DRIVER_TOPIC, "{not json");
+
+        indexer.index(List.of(broken, record(DRIVER_TOPIC, upsert("driver_id", 1, "name", "a"))), acknowledgment);
+
+        verify(deadLetters).accept(eq(broken), any(Exception.class));
+        verify(bulkIndexer).bulk(eq(DriverInformationDocument.class), anyList());
+        verify(acknowledgment).acknowledge();
+    }
+
+    private ConsumerRecord<String, String> record(String topic, String value) {
+        return new ConsumerRecord<>(topic, 0, offset++, null, value);
+    }
+
+    private static String upsert(String idColumn, long id, String field, String value) {
+        return "{\"payload\":{\"op\":\"u\",\"after\":{\"" + idColumn + "\":" + id + ",\"" + field + "\":\"" + value + "\"}}}";
+    }
+
+    private static String delete(String idColumn, long id) {
+        return "{\"payload\":{\"op\":\"d\",\"before\":{\"" + idColumn + "\":" + id + "},\"after\":null}}";
+    }
+}
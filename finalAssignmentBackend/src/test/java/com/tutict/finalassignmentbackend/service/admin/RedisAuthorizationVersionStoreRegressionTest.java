@@ -0,0 +1,72 @@
+package com.tutict.finalassignmentbackend.service.admin;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RedisAuthorizationVersionStoreRegressionTest {
+
+    private final Map<String, String> values = new HashMap<>();
+    private final Set<String> expiring = new HashSet<>();
+    private final StringRedisTemplate redisTemplate = fakeRedis();
+    private final RedisAuthorizationVersionStore store = new RedisAuthorizationVersionStore(redisTemplate);
+
+    @Test
+    void bumpAfterAnIdlePeriodNeverReturnsToACachedSnapshotVersion() {
+        store.bumpUser(7L);
+        AuthorizationVersionStore.Versions snapshotVersions = store.current(7L);
+
+        // 快照仍在缓存期内时，所有设置了过期时间的键都已过期
+        expireAll();
+        store.bumpUser(7L);
+
+        assertThat(store.current(7L)).isNotEqualTo(snapshotVersions);
+    }
+
+    @Test
+    void missingCountersReadAsZero() {
+        assertThat(store.current(9L)).isEqualTo(new AuthorizationVersionStore.Versions(0, 0));
+        store.bumpRoles();
+        assertThat(store.current(9L)).isEqualTo(new AuthorizationVersionStore.Versions(1, 0));
+    }
+
+    private void expireAll() {
+        values.keySet().removeAll(expiring);
+        expiring.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate fakeRedis() {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> operations = mock(ValueOperations.class);
+        when(template.opsForValue()).thenReturn(operations);
+        when(operations.increment(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            long next = Long.parseLong(values.getOrDefault(key, "0")) + 1;
+            values.put(key, Long.toString(next));
+            return next;
+        });
+        when(operations.multiGet(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            return keys.stream().map(values::get).toList();
+        });
+        when(template.expire(anyString(), any(Duration.class))).thenAnswer(invocation -> expiring.add(invocation.getArgument(0)));
+        when(template.expire(anyString(), anyLong(), any())).thenAnswer(invocation -> expiring.add(invocation.getArgument(0)));
+        return template;
+    }
+}
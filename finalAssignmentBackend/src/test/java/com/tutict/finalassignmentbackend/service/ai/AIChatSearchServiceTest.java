@@ -0,0 +1,142 @@
+package com.tutict.finalassignmentbackend.service.ai;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AIChatSearchServiceTest {
+
+    private static final String RESULT_JSON = "[{\"title\":\"交通违法处理\",\"url\":\"https://example.com\"}]";
+
+    private AIChatSearchService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentSearchesRunInParallelUpToPoolSize() throws Exception {
+        StubCrawler crawler = new StubCrawler(Duration.ofMillis(200));
+        service = new AIChatSearchService(crawler::newWorker, () -> true, 10, 4, 100, Duration.ZERO, 0);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Map<String, String>>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String query = "query " + i;
+                results.add(callers.submit(() -> service.search(query)));
+            }
+            for (Future<List<Map<String, String>>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).hasSize(1);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertThat(crawler.maxInFlight.get()).isGreaterThan(1).isLessThanOrEqualTo(4);
+        assertThat(crawler.created.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void repeatedQueryIsServedFromCache() {
+        StubCrawler crawler = new StubCrawler(Duration.ZERO);
+        service = new AIChatSearchService(crawler::newWorker, () -> true, 10, 1, 100, Duration.ofMinutes(5), 100);
+
+        List<Map<String, String>> first = service.search("  交通  违法 ");
+        List<Map<String, String>> second = service.search("交通 违法");
+
+        assertThat(second).isEqualTo(first).hasSize(1);
+        assertThat(crawler.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void timedOutContextIsRecycled() throws Exception {
+        StubCrawler crawler = new StubCrawler(Duration.ofSeconds(5));
+        service = new AIChatSearchService(crawler::newWorker, () -> true, 1, 1, 100, Duration.ZERO, 0);
+
+        assertThat(service.search("slow query")).isEmpty();
+
+        assertThat(crawler.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        crawler.delay = Duration.ZERO;
+        assertThat(service.search("fast query")).hasSize(1);
+        assertThat(crawler.created.get()).isEqualTo(2);
+    }
+
+    @Test
+    void contextIsRecycledAfterMaxCalls() {
+        StubCrawler crawler = new StubCrawler(Duration.ZERO);
+        service = new AIChatSearchService(crawler::newWorker, () -> true, 10, 1, 2, Duration.ZERO, 0);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.search("query " + i)).hasSize(1);
+        }
+
+        assertThat(crawler.created.get()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void unavailablePythonReturnsEmptyWithoutCreatingContexts() {
+        StubCrawler crawler = new StubCrawler(Duration.ZERO);
+        service = new AIChatSearchService(crawler::newWorker, () -> false, 10, 2, 100, Duration.ZERO, 0);
+
+        assertThat(service.search("query")).isEmpty();
+        assertThat(crawler.created.get()).isZero();
+    }
+
+    /**
+     * Stands in for {@code baidu_crawler}: sleeps for {@code delay} and returns one result, tracking
+     * how many searches overlap.
+     */
+    private static final class StubCrawler {
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile Duration delay;
+
+        private StubCrawler(Duration delay) {
+            this.delay = delay;
+        }
+
+        AIChatSearchService.SearchWorker newWorker() {
+            created.incrementAndGet();
+            return new AIChatSearchService.SearchWorker() {
+                @Override
+                public String search(String query, int numResults) {
+                    calls.incrementAndGet();
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("cancelled", e);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                    return RESULT_JSON;
+                }
+
+                @Override
+                public void close() {
+                    closed.countDown();
+                }
+            };
+        }
+    }
+}
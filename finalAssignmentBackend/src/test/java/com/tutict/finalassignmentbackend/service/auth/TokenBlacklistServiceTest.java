@@ -0,0 +1,131 @@
+package com.tutict.finalassignmentbackend.service.auth;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenBlacklistServiceTest {
+
+    private static final byte[] CHANNEL = "token-revocations".getBytes(StandardCharsets.UTF_8);
+
+    private RedisTemplate<String, Object> redisTemplate;
+    private StringRedisTemplate publisher;
+    private TokenBlacklistService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        publisher = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+        ObjectProvider<StringRedisTemplate> publisherProvider = mock(ObjectProvider.class);
+        when(publisherProvider.getIfAvailable()).thenReturn(publisher);
+        service = new TokenBlacklistService(redisTemplate, false, true, "token-revocations", publisherProvider);
+    }
+
+    @Test
+    void fallsBackToRedisUntilTheLocalFilterIsSynced() {
+        when(redisTemplate.hasKey("blacklist:" + sha256("revoked-elsewhere"))).thenReturn(true);
+
+        assertThat(service.isBlacklisted("revoked-elsewhere")).isTrue();
+        assertThat(service.isBlacklisted("valid")).isFalse();
+        verify(redisTemplate).hasKey("blacklist:" + sha256("valid"));
+    }
+
+    @Test
+    void syncedFilterAnswersWithoutRedis() {
+        when(redisTemplate.scan(any(ScanOptions.class)))
+                .thenAnswer(invocation -> cursorOf("blacklist:" + sha256("revoked-elsewhere")));
+        when(redisTemplate.getExpire(anyString(), eq(TimeUnit.MILLISECONDS))).thenReturn(60_000L);
+
+        service.onChannelSubscribed(CHANNEL, 1);
+        service.resync();
+
+        assertThat(service.isBlacklisted("revoked-elsewhere")).isTrue();
+        assertThat(service.isBlacklisted("valid")).isFalse();
+        verify(redisTemplate, never()).hasKey(anyString());
+    }
+
+    @Test
+    void revocationsArrivingOverPubSubAreVisibleAndExpireWithTheToken() {
+        when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> cursorOf());
+        service.onChannelSubscribed(CHANNEL, 1);
+        service.resync();
+
+        long now = System.currentTimeMillis();
+        service.onMessage(message(sha256("live") + ":" + (now + 60_000)), null);
+        service.onMessage(message(sha256("expired") + ":" + (now - 1)), null);
+
+        assertThat(service.isBlacklisted("live")).isTrue();
+        assertThat(service.isBlacklisted("expired")).isFalse();
+        verify(redisTemplate, never()).hasKey(anyString());
+    }
+
+    @Test
+    void blacklistAppliesLocallyAndPublishesTheDigest() {
+        service.blacklist("logged-out", 30_000);
+
+        verify(publisher).convertAndSend(eq("token-revocations"), startsWith(sha256("logged-out") + ":"));
+        assertThat(service.isBlacklisted("logged-out")).isTrue();
+    }
+
+    @Test
+    void unsubscribingFallsBackToRedis() {
+        when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> cursorOf());
+        service.onChannelSubscribed(CHANNEL, 1);
+        service.resync();
+
+        service.onChannelUnsubscribed(CHANNEL, 0);
+        service.isBlacklisted("valid");
+
+        verify(redisTemplate).hasKey("blacklist:" + sha256("valid"));
+        verify(redisTemplate.opsForValue(), never()).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+    }
+
+    // 订阅回调会在后台再做一次 resync，每次 SCAN 都返回独立的游标
+    @SuppressWarnings("unchecked")
+    private static Cursor<String> cursorOf(String... keys) {
+        Iterator<String> iterator = List.of(keys).iterator();
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(CHANNEL, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
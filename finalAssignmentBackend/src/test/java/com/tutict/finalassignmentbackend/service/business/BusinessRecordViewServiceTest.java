@@ -0,0 +1,117 @@
+package com.tutict.finalassignmentbackend.service.business;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.tutict.finalassignmentbackend.entity.driver.DriverInformation;
+import com.tutict.finalassignmentbackend.entity.driver.VehicleInformation;
+import com.tutict.finalassignmentbackend.entity.offense.OffenseRecord;
+import com.tutict.finalassignmentbackend.mapper.admin.SysUserMapper;
+import com.tutict.finalassignmentbackend.mapper.appeal.AppealRecordMapper;
+import com.tutict.finalassignmentbackend.mapper.driver.DriverInformationMapper;
+import com.tutict.finalassignmentbackend.mapper.driver.VehicleInformationMapper;
+import com.tutict.finalassignmentbackend.mapper.offense.DeductionRecordMapper;
+import com.tutict.finalassignmentbackend.mapper.offense.FineRecordMapper;
+import com.tutict.finalassignmentbackend.mapper.offense.OffenseRecordMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BusinessRecordViewServiceTest {
+
+    private final DriverInformationMapper driverMapper = mock(DriverInformationMapper.class);
+    private final VehicleInformationMapper vehicleMapper = mock(VehicleInformationMapper.class);
+    private final OffenseRecordMapper offenseMapper = mock(OffenseRecordMapper.class);
+    private final FineRecordMapper fineMapper = mock(FineRecordMapper.class);
+    private final AppealRecordMapper appealMapper = mock(AppealRecordMapper.class);
+    private final BusinessRecordViewService service = new BusinessRecordViewService(
+            driverMapper, vehicleMapper, offenseMapper, fineMapper,
+            mock(DeductionRecordMapper.class), appealMapper, mock(SysUserMapper.class));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void driverPageCountsEachRelationWithOneGroupedQuery() {
+        List<DriverInformation> drivers = LongStream.rangeClosed(1, 100).mapToObj(this::driver).toList();
+        when(vehicleMapper.selectMaps(any(Wrapper.class))).thenReturn(List.of(row(1L, 2L), row(2L, 1L)));
+        when(offenseMapper.selectMaps(any(Wrapper.class))).thenReturn(List.of(row(1L, 5L)));
+        // H2 等数据库返回大写列标签
+        when(fineMapper.selectMaps(any(Wrapper.class))).thenReturn(List.of(Map.of("GID", 1L, "CNT", 3)));
+        when(appealMapper.selectMaps(any(Wrapper.class))).thenReturn(List.of(row(2L, 1L)));
+
+        service.enrichDrivers(drivers);
+
+        assertThat(drivers.get(0).getVehicleCount()).isEqualTo(2L);
+        assertThat(drivers.get(0).getOffenseCount()).isEqualTo(5L);
+        assertThat(drivers.get(0).getUnpaidFineCount()).isEqualTo(3L);
+        assertThat(drivers.get(0).getAppealCount()).isZero();
+        assertThat(drivers.get(1).getAppealCount()).isEqualTo(1L);
+        assertThat(drivers.get(99).getVehicleCount()).isZero();
+
+        verify(vehicleMapper, times(1)).selectMaps(any(Wrapper.class));
+        verify(offenseMapper, times(1)).selectMaps(any(Wrapper.class));
+        verify(fineMapper, times(1)).selectMaps(any(Wrapper.class));
+        verify(appealMapper, times(1)).selectMaps(any(Wrapper.class));
+        verify(vehicleMapper, never()).selectCount(any(Wrapper.class));
+        verify(offenseMapper, never()).selectCount(any(Wrapper.class));
+        verify(fineMapper, never()).selectCount(any(Wrapper.class));
+        verify(appealMapper, never()).selectCount(any(Wrapper.class));
+
+        ArgumentCaptor<QueryWrapper<?>> fineQuery = ArgumentCaptor.forClass(QueryWrapper.class);
+        verify(fineMapper).selectMaps(fineQuery.capture());
+        assertThat(fineQuery.getValue().getSqlSelect()).contains("COUNT(*)");
+        assertThat(fineQuery.getValue().getSqlSegment()).contains("payment_status").contains("GROUP BY");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void vehiclePageRollsOffenseLevelCountsUpToVehicles() {
+        List<VehicleInformation> vehicles = List.of(vehicle(10L), vehicle(20L), vehicle(30L));
+        when(offenseMapper.selectList(any(Wrapper.class))).thenReturn(List.of(
+                offense(100L, 10L), offense(101L, 10L), offense(200L, 20L)));
+        when(fineMapper.selectMaps(any(Wrapper.class))).thenReturn(List.of(row(100L, 1L), row(101L, 2L)));
+        when(appealMapper.selectMaps(any(Wrapper.class))).thenReturn(List.of(row(200L, 1L)));
+
+        service.enrichVehicles(vehicles);
+
+        assertThat(vehicles).extracting(VehicleInformation::getOffenseCount).containsExactly(2L, 1L, 0L);
+        assertThat(vehicles).extracting(VehicleInformation::getUnpaidFineCount).containsExactly(3L, 0L, 0L);
+        assertThat(vehicles).extracting(VehicleInformation::getAppealCount).containsExactly(0L, 1L, 0L);
+        verify(offenseMapper, times(1)).selectList(any(Wrapper.class));
+        verify(fineMapper, times(1)).selectMaps(any(Wrapper.class));
+        verify(appealMapper, times(1)).selectMaps(any(Wrapper.class));
+        verify(offenseMapper, never()).selectCount(any(Wrapper.class));
+    }
+
+    private static Map<String, Object> row(long id, long count) {
+        return Map.of("gid", id, "cnt", count);
+    }
+
+    private DriverInformation driver(long id) {
+        DriverInformation driver = new DriverInformation();
+        driver.setDriverId(id);
+        return driver;
+    }
+
+    private static VehicleInformation vehicle(long id) {
+        VehicleInformation vehicle = new VehicleInformation();
+        vehicle.setVehicleId(id);
+        return vehicle;
+    }
+
+    private static OffenseRecord offense(long offenseId, long vehicleId) {
+        OffenseRecord offense = new OffenseRecord();
+        offense.setOffenseId(offenseId);
+        offense.setVehicleId(vehicleId);
+        return offense;
+    }
+}
@@ -0,0 +1,128 @@
+package com.tutict.finalassignmentbackend.service.statemachine;
+
+import com.tutict.finalassignmentbackend.config.statemachine.configs.AppealProcessStateMachineConfig;
+import com.tutict.finalassignmentbackend.config.statemachine.configs.OffenseProcessStateMachineConfig;
+import com.tutict.finalassignmentbackend.config.statemachine.configs.PaymentStateMachineConfig;
+import com.tutict.finalassignmentbackend.config.statemachine.events.AppealProcessEvent;
+import com.tutict.finalassignmentbackend.config.statemachine.events.OffenseProcessEvent;
+import com.tutict.finalassignmentbackend.config.statemachine.events.PaymentEvent;
+import com.tutict.finalassignmentbackend.config.statemachine.states.AppealProcessState;
+import com.tutict.finalassignmentbackend.config.statemachine.states.OffenseProcessState;
+import com.tutict.finalassignmentbackend.config.statemachine.states.PaymentState;
+import org.junit.jupiter.api.Test;
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.config.StateMachineBuilder;
+import org.springframework.statemachine.config.StateMachineConfigurerAdapter;
+import org.springframework.statemachine.config.StateMachineFactory;
+
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StateMachineServiceTest {
+
+    @Test
+    void compiledTablesMatchSpringStateMachinesForEveryStateAndEvent() {
+        StateMachineService compiled = service(StateMachineProperties.Mode.COMPILED);
+        StateMachineService spring = service(StateMachineProperties.Mode.SPRING);
+
+        for (OffenseProcessState state : OffenseProcessState.values()) {
+            for (OffenseProcessEvent event : OffenseProcessEvent.values()) {
+                assertThat(compiled.processOffenseState(1L, state, event))
+                        .as("offense %s by %s", state, event)
+                        .isEqualTo(spring.processOffenseState(1L, state, event));
+            }
+        }
+        for (PaymentState state : PaymentState.values()) {
+            for (PaymentEvent event : PaymentEvent.values()) {
+                assertThat(compiled.processPaymentState(1L, state, event))
+                        .as("payment %s by %s", state, event)
+                        .isEqualTo(spring.processPaymentState(1L, state, event));
+            }
+        }
+        for (AppealProcessState state : AppealProcessState.values()) {
+            for (AppealProcessEvent event : AppealProcessEvent.values()) {
+                assertThat(compiled.processAppealState(1L, state, event))
+                        .as("appeal %s by %s", state, event)
+                        .isEqualTo(spring.processAppealState(1L, state, event));
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void compiledModeBuildsEachMachineOnceAndLooksTransitionsUp() {
+        StateMachineFactory<PaymentState, PaymentEvent> paymentFactory = factory(new PaymentStateMachineConfig());
+        StateMachineService service = new StateMachineService(
+                factory(new OffenseProcessStateMachineConfig()),
+                paymentFactory,
+                factory(new AppealProcessStateMachineConfig()),
+                properties(StateMachineProperties.Mode.COMPILED));
+
+        assertThat(service.processPaymentState(7L, PaymentState.UNPAID, PaymentEvent.PARTIAL_PAY))
+                .isEqualTo(PaymentState.PARTIAL);
+        assertThat(service.processPaymentState(7L, PaymentState.PAID, PaymentEvent.PARTIAL_PAY))
+                .isEqualTo(PaymentState.PAID);
+        assertThat(service.processOffenseState(7L, OffenseProcessState.APPEALING, OffenseProcessEvent.WITHDRAW_APPEAL))
+                .isEqualTo(OffenseProcessState.PROCESSED);
+
+        verify(paymentFactory, times(1)).getStateMachine();
+    }
+
+    @Test
+    void guardedTransitionsAreLeftToTheStateMachine() throws Exception {
+        StateMachineBuilder.Builder<PaymentState, PaymentEvent> builder = StateMachineBuilder.builder();
+        builder.configureStates().withStates()
+                .initial(PaymentState.UNPAID)
+                .states(EnumSet.allOf(PaymentState.class));
+        builder.configureTransitions()
+                .withExternal()
+                .source(PaymentState.UNPAID).target(PaymentState.PAID).event(PaymentEvent.COMPLETE_PAYMENT)
+                .guard(context -> true)
+                .and()
+                .withExternal()
+                .source(PaymentState.UNPAID).target(PaymentState.OVERDUE).event(PaymentEvent.MARK_OVERDUE);
+
+        CompiledTransitionTable<PaymentState, PaymentEvent> table =
+                CompiledTransitionTable.compile(builder.build(), PaymentState.class, PaymentEvent.class);
+
+        assertThat(table.requiresStateMachine(PaymentState.UNPAID, PaymentEvent.COMPLETE_PAYMENT)).isTrue();
+        assertThat(table.target(PaymentState.UNPAID, PaymentEvent.COMPLETE_PAYMENT)).isNull();
+        assertThat(table.requiresStateMachine(PaymentState.UNPAID, PaymentEvent.MARK_OVERDUE)).isFalse();
+        assertThat(table.target(PaymentState.UNPAID, PaymentEvent.MARK_OVERDUE)).isEqualTo(PaymentState.OVERDUE);
+        assertThat(table.target(PaymentState.PAID, PaymentEvent.MARK_OVERDUE)).isNull();
+    }
+
+    static StateMachineService service(StateMachineProperties.Mode mode) {
+        return new StateMachineService(
+                factory(new OffenseProcessStateMachineConfig()),
+                factory(new PaymentStateMachineConfig()),
+                factory(new AppealProcessStateMachineConfig()),
+                properties(mode));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <S, E> StateMachineFactory<S, E> factory(StateMachineConfigurerAdapter<S, E> config) {
+        StateMachineFactory<S, E> factory = mock(StateMachineFactory.class);
+        when(factory.getStateMachine()).thenAnswer(invocation -> build(config));
+        return factory;
+    }
+
+    private static <S, E> StateMachine<S, E> build(StateMachineConfigurerAdapter<S, E> config) throws Exception {
+        StateMachineBuilder.Builder<S, E> builder = StateMachineBuilder.builder();
+        config.configure(builder.configureConfiguration());
+        config.configure(builder.configureStates());
+        config.configure(builder.configureTransitions());
+        return builder.build();
+    }
+
+    private static StateMachineProperties properties(StateMachineProperties.Mode mode) {
+        StateMachineProperties properties = new StateMachineProperties();
+        properties.setMode(mode);
+        return properties;
+    }
+}
@@ -0,0 +1,88 @@
+package com.tutict.finalassignmentbackend.service.statemachine;
+
+import com.tutict.finalassignmentbackend.config.statemachine.events.AppealProcessEvent;
+import com.tutict.finalassignmentbackend.config.statemachine.events.OffenseProcessEvent;
+import com.tutict.finalassignmentbackend.config.statemachine.events.PaymentEvent;
+import com.tutict.finalassignmentbackend.config.statemachine.states.AppealProcessState;
+import com.tutict.finalassignmentbackend.config.statemachine.states.OffenseProcessState;
+import com.tutict.finalassignmentbackend.config.statemachine.states.PaymentState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Transitions/sec for the offense, payment and appeal flows, compiled table versus a fresh Spring
+ * StateMachine per transition. Each invocation walks one full flow; scores are per transition.
+ * Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateMachineTransitionBenchmark {
+
+    @Param({"COMPILED", "SPRING"})
+    public StateMachineProperties.Mode mode;
+
+    // 保持强引用，避免日志级别被 LogManager 回收后恢复为 INFO
+    private final Logger appLogger = Logger.getLogger("com.tutict.finalassignmentbackend");
+    private StateMachineService service;
+
+    @Setup
+    public void setup() {
+        // 每次转换的 INFO 日志会淹没被测开销
+        appLogger.setLevel(Level.WARNING);
+        service = StateMachineServiceTest.service(mode);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public OffenseProcessState offenseFlow() {
+        OffenseProcessState state = OffenseProcessState.UNPROCESSED;
+        state = service.processOffenseState(1L, state, OffenseProcessEvent.START_PROCESSING);
+        state = service.processOffenseState(1L, state, OffenseProcessEvent.COMPLETE_PROCESSING);
+        state = service.processOffenseState(1L, state, OffenseProcessEvent.SUBMIT_APPEAL);
+        return service.processOffenseState(1L, state, OffenseProcessEvent.APPROVE_APPEAL);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public PaymentState paymentFlow() {
+        PaymentState state = service.processPaymentState(1L, PaymentState.UNPAID, PaymentEvent.PARTIAL_PAY);
+        return service.processPaymentState(1L, state, PaymentEvent.CONTINUE_PAYMENT);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public AppealProcessState appealFlow() {
+        AppealProcessState state = AppealProcessState.UNPROCESSED;
+        state = service.processAppealState(1L, state, AppealProcessEvent.START_REVIEW);
+        state = service.processAppealState(1L, state, AppealProcessEvent.REJECT);
+        state = service.processAppealState(1L, state, AppealProcessEvent.REOPEN_REVIEW);
+        return service.processAppealState(1L, state, AppealProcessEvent.APPROVE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StateMachineTransitionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
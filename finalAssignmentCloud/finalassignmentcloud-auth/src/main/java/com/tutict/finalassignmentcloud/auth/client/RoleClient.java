@@ -11,9 +11,6 @@ import org.springframework.web.bind.annotation.RequestHeader;
 @FeignClient(name = "finalassignmentcloud-user")
 public interface RoleClient {
 
-    @GetMapping("/api/roles/{roleId}")
-    SysRole getById(@PathVariable("roleId") Long roleId);
-
     @GetMapping("/api/roles/by-code/{roleCode}")
     SysRole getByCode(@PathVariable("roleCode") String roleCode);
 
@@ -1,5 +1,6 @@
 package com.tutict.finalassignmentcloud.auth.client;
 
+import com.tutict.finalassignmentcloud.dto.response.AuthorizationSnapshot;
 import com.tutict.finalassignmentcloud.entity.SysUser;
 import com.tutict.finalassignmentcloud.entity.SysUserRole;
 import org.springframework.cloud.openfeign.FeignClient;
@@ -38,6 +39,12 @@ public interface UserClient {
                        @RequestBody SysUser request,
                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey);
 
+    /**
+     * 一次返回用户全部角色编码、角色类型与合并后的数据范围，替代逐个角色查询。
+     */
+    @GetMapping("/api/users/internal/{userId}/authorization-snapshot")
+    AuthorizationSnapshot getAuthorizationSnapshot(@PathVariable("userId") Long userId);
+
     @GetMapping("/api/users/{userId}/roles")
     List<SysUserRole> listUserRoles(@PathVariable("userId") Long userId,
                                     @RequestParam(value = "page", defaultValue = "1") int page,
@@ -7,13 +7,13 @@ import com.tutict.finalassignmentcloud.auth.client.UserClient;
 import com.tutict.finalassignmentcloud.auth.config.login.jwt.TokenProvider;
 import com.tutict.finalassignmentcloud.config.websocket.WsAction;
 import com.tutict.finalassignmentcloud.entity.AuditLoginLog;
+import com.tutict.finalassignmentcloud.dto.response.AuthorizationSnapshot;
 import com.tutict.finalassignmentcloud.dto.response.UserProfileResponse;
 import com.tutict.finalassignmentcloud.entity.DriverInformation;
 import com.tutict.finalassignmentcloud.entity.SysRole;
 import com.tutict.finalassignmentcloud.entity.SysUser;
 import com.tutict.finalassignmentcloud.entity.SysUserRole;
 import com.tutict.finalassignmentcloud.enums.DataScope;
-import com.tutict.finalassignmentcloud.enums.RoleType;
 import feign.FeignException;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,7 +27,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -35,13 +34,11 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 public class AuthWsService {
 
     private static final Logger logger = Logger.getLogger(AuthWsService.class.getName());
-    private static final int MAX_ROLE_PAGE_SIZE = 100;
     private static final Set<String> DRIVER_PROFILE_ROLES = Set.of("USER");
     private static final Set<String> STAFF_ROLES = Set.of(
             "SUPER_ADMIN",
@@ -373,43 +370,15 @@ public class AuthWsService {
             return RoleAggregation.empty();
         }
         try {
-            List<SysUserRole> relations = safeListUserRoles(userId);
-            if (relations == null || relations.isEmpty()) {
+            AuthorizationSnapshot snapshot = safeGetAuthorizationSnapshot(userId);
+            if (snapshot == null) {
                 return RoleAggregation.empty();
             }
-            List<String> roleNames = new ArrayList<>();
-            List<String> roleCodes = new ArrayList<>();
-            List<String> roleTypes = new ArrayList<>();
-            DataScope aggregatedScope = DataScope.SELF;
-
-            for (SysUserRole relation : relations) {
-                if (relation == null || relation.getRoleId() == null) {
-                    continue;
-                }
-                SysRole role = safeGetRoleById(relation.getRoleId().longValue());
-                if (role == null) {
-                    continue;
-                }
-                if (StringUtils.hasText(role.getRoleName())) {
-                    roleNames.add(role.getRoleName());
-                }
-                String roleCode = resolveRoleCode(role);
-                if (StringUtils.hasText(roleCode)) {
-                    roleCodes.add(roleCode);
-                }
-                String roleType = resolveRoleType(role);
-                if (StringUtils.hasText(roleType)) {
-                    roleTypes.add(roleType);
-                }
-                DataScope requiredScope = resolveDataScope(role);
-                aggregatedScope = widenScope(aggregatedScope, requiredScope);
-            }
-
             return new RoleAggregation(
-                    roleNames.stream().distinct().collect(Collectors.toList()),
-                    roleCodes.stream().distinct().collect(Collectors.toList()),
-                    roleTypes.stream().distinct().collect(Collectors.toList()),
-                    aggregatedScope
+                    snapshot.roleNames(),
+                    snapshot.roleCodes(),
+                    snapshot.roleTypes(),
+                    snapshot.dataScope()
             );
         } catch (Exception ex) {
             logger.log(Level.WARNING, "Failed to aggregate roles for userId=" + userId, ex);
@@ -417,17 +386,6 @@ public class AuthWsService {
         }
     }
 
-    private String resolveRoleCode(SysRole role) {
-        if (role == null) {
-            return null;
-        }
-        String code = StringUtils.hasText(role.getRoleCode()) ? role.getRoleCode() : role.getRoleName();
-        if (!StringUtils.hasText(code)) {
-            return null;
-        }
-        return normalizeRoleCode(code);
-    }
-
     private static String normalizeRoleCode(String roleCode) {
         if (!StringUtils.hasText(roleCode)) {
             return "";
@@ -439,45 +397,6 @@ public class AuthWsService {
         return normalized;
     }
 
-    private String resolveRoleType(SysRole role) {
-        if (role == null || !StringUtils.hasText(role.getRoleType())) {
-            return RoleType.BUSINESS.getCode();
-        }
-        RoleType type = RoleType.fromCode(role.getRoleType());
-        return type != null ? type.getCode() : RoleType.BUSINESS.getCode();
-    }
-
-    private DataScope resolveDataScope(SysRole role) {
-        if (role == null) {
-            return DataScope.SELF;
-        }
-        DataScope scope = DataScope.fromCode(role.getDataScope());
-        return scope != null ? scope : DataScope.SELF;
-    }
-
-    private DataScope widenScope(DataScope current, DataScope candidate) {
-        if (candidate == null) {
-            return current;
-        }
-        if (current == null) {
-            return candidate;
-        }
-        return scopeRank(candidate) > scopeRank(current) ? candidate : current;
-    }
-
-    private int scopeRank(DataScope scope) {
-        if (scope == null) {
-            return 0;
-        }
-        return switch (scope) {
-            case CUSTOM -> 1;
-            case SELF -> 2;
-            case DEPARTMENT -> 3;
-            case DEPARTMENT_AND_SUB -> 4;
-            case ALL -> 5;
-        };
-    }
-
     private SysUser safeGetByUsername(String username) {
         if (!StringUtils.hasText(username)) {
             return null;
@@ -492,20 +411,6 @@ public class AuthWsService {
         }
     }
 
-    private SysRole safeGetRoleById(Long roleId) {
-        if (roleId == null) {
-            return null;
-        }
-        try {
-            return roleClient.getById(roleId);
-        } catch (FeignException.NotFound ex) {
-            return null;
-        } catch (FeignException ex) {
-            logger.log(Level.WARNING, "Failed to fetch role by id=" + roleId, ex);
-            return null;
-        }
-    }
-
     private SysRole safeGetRoleByCode(String roleCode) {
         if (!StringUtils.hasText(roleCode)) {
             return null;
@@ -520,17 +425,14 @@ public class AuthWsService {
         }
     }
 
-    private List<SysUserRole> safeListUserRoles(Long userId) {
-        if (userId == null) {
-            return List.of();
-        }
+    private AuthorizationSnapshot safeGetAuthorizationSnapshot(Long userId) {
         try {
-            return userClient.listUserRoles(userId, 1, AuthWsService.MAX_ROLE_PAGE_SIZE);
+            return userClient.getAuthorizationSnapshot(userId);
         } catch (FeignException.NotFound ex) {
-            return List.of();
+            return null;
         } catch (FeignException ex) {
-            logger.log(Level.WARNING, "Failed to fetch user roles for userId=" + userId, ex);
-            return List.of();
+            logger.log(Level.WARNING, "Failed to fetch authorization snapshot for userId=" + userId, ex);
+            return null;
         }
     }
 
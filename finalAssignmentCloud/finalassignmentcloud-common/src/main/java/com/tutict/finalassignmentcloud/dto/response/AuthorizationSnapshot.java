@@ -0,0 +1,29 @@
+package com.tutict.finalassignmentcloud.dto.response;
+
+import com.tutict.finalassignmentcloud.enums.DataScope;
+
+import java.util.List;
+
+/**
+ * 用户在某一角色表版本下的授权快照：角色名称、角色编码、角色类型与合并后的数据范围。
+ *
+ * @param version 构建快照时的角色表版本，角色表变更后旧快照失效
+ */
+public record AuthorizationSnapshot(Long userId,
+                                    long version,
+                                    List<String> roleNames,
+                                    List<String> roleCodes,
+                                    List<String> roleTypes,
+                                    DataScope dataScope) {
+
+    public AuthorizationSnapshot {
+        roleNames = roleNames == null ? List.of() : List.copyOf(roleNames);
+        roleCodes = roleCodes == null ? List.of() : List.copyOf(roleCodes);
+        roleTypes = roleTypes == null ? List.of() : List.copyOf(roleTypes);
+        dataScope = dataScope == null ? DataScope.SELF : dataScope;
+    }
+
+    public static AuthorizationSnapshot empty(Long userId, long version) {
+        return new AuthorizationSnapshot(userId, version, List.of(), List.of(), List.of(), DataScope.SELF);
+    }
+}
@@ -1,6 +1,8 @@
 package com.tutict.finalassignmentcloud.user.controller;
 
+import com.tutict.finalassignmentcloud.dto.response.AuthorizationSnapshot;
 import com.tutict.finalassignmentcloud.entity.SysUser;
+import com.tutict.finalassignmentcloud.user.service.AuthorizationSnapshotService;
 import com.tutict.finalassignmentcloud.user.service.SysUserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -30,9 +32,12 @@ public class InternalUserManagementController {
     private static final Logger LOG = Logger.getLogger(InternalUserManagementController.class.getName());
 
     private final SysUserService sysUserService;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
 
-    public InternalUserManagementController(SysUserService sysUserService) {
+    public InternalUserManagementController(SysUserService sysUserService,
+                                            AuthorizationSnapshotService authorizationSnapshotService) {
         this.sysUserService = sysUserService;
+        this.authorizationSnapshotService = authorizationSnapshotService;
     }
 
     @GetMapping("/search/username/{username}")
@@ -48,4 +53,15 @@ public class InternalUserManagementController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    @GetMapping("/{userId}/authorization-snapshot")
+    @Operation(summary = "一次返回用户全部角色、角色类型与数据范围（内部调用）")
+    public ResponseEntity<AuthorizationSnapshot> getAuthorizationSnapshot(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(authorizationSnapshotService.getSnapshot(userId));
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Internal get authorization snapshot failed: " + userId, ex);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
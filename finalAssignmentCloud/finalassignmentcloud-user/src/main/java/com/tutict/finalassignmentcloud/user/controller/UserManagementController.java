@@ -1,8 +1,10 @@
 package com.tutict.finalassignmentcloud.user.controller;
 
 import com.tutict.finalassignmentcloud.config.security.SecurityRoleUtils;
+import com.tutict.finalassignmentcloud.dto.response.AuthorizationSnapshot;
 import com.tutict.finalassignmentcloud.entity.SysUser;
 import com.tutict.finalassignmentcloud.entity.SysUserRole;
+import com.tutict.finalassignmentcloud.user.service.AuthorizationSnapshotService;
 import com.tutict.finalassignmentcloud.user.service.SysUserRoleService;
 import com.tutict.finalassignmentcloud.user.service.SysUserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -41,11 +43,14 @@ public class UserManagementController {
 
     private final SysUserService sysUserService;
     private final SysUserRoleService sysUserRoleService;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
 
     public UserManagementController(SysUserService sysUserService,
-                                    SysUserRoleService sysUserRoleService) {
+                                    SysUserRoleService sysUserRoleService,
+                                    AuthorizationSnapshotService authorizationSnapshotService) {
         this.sysUserService = sysUserService;
         this.sysUserRoleService = sysUserRoleService;
+        this.authorizationSnapshotService = authorizationSnapshotService;
     }
 
     @PostMapping
@@ -314,6 +319,22 @@ public class UserManagementController {
         }
     }
 
+    @GetMapping("/{userId}/authorization-snapshot")
+    @RolesAllowed({"SUPER_ADMIN", "ADMIN", "USER"})
+    @Operation(summary = "查询用户授权快照（角色、角色类型与数据范围）")
+    public ResponseEntity<AuthorizationSnapshot> getAuthorizationSnapshot(@PathVariable Long userId,
+                                                                          Authentication authentication) {
+        try {
+            if (!canAccessUser(authentication, userId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            return ResponseEntity.ok(authorizationSnapshotService.getSnapshot(userId));
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Get authorization snapshot failed", ex);
+            return ResponseEntity.status(resolveStatus(ex)).build();
+        }
+    }
+
     @PutMapping("/role-bindings/{relationId}")
     @Operation(summary = "更新用户角色关联")
     public ResponseEntity<SysUserRole> updateUserRole(@PathVariable Long relationId,
@@ -0,0 +1,213 @@
+package com.tutict.finalassignmentcloud.user.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tutict.finalassignmentcloud.dto.response.AuthorizationSnapshot;
+import com.tutict.finalassignmentcloud.entity.SysRole;
+import com.tutict.finalassignmentcloud.entity.SysUserRole;
+import com.tutict.finalassignmentcloud.enums.DataScope;
+import com.tutict.finalassignmentcloud.enums.RoleType;
+import com.tutict.finalassignmentcloud.user.mapper.SysRoleMapper;
+import com.tutict.finalassignmentcloud.user.mapper.SysUserRoleMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Builds a user's roles, role types and widest data scope with two queries (relations, then roles
+ * by id) and caches the result per user. Each snapshot is stamped with the cluster-wide role-table
+ * and per-user versions from {@link AuthorizationVersionStore}: role writes bump the first, user-role
+ * writes the second, both after commit, so a write on any node invalidates the snapshots on all nodes.
+ */
+@Service
+public class AuthorizationSnapshotService {
+
+    private static final Logger log = Logger.getLogger(AuthorizationSnapshotService.class.getName());
+
+    private final SysUserRoleMapper sysUserRoleMapper;
+    private final SysRoleMapper sysRoleMapper;
+    private final AuthorizationVersionStore versionStore;
+    private final Duration versionRetention;
+    private final Cache<Long, StampedSnapshot> snapshots;
+
+    public AuthorizationSnapshotService(SysUserRoleMapper sysUserRoleMapper,
+                                        SysRoleMapper sysRoleMapper,
+                                        AuthorizationVersionStore versionStore,
+                                        @Value("${app.security.authorization-snapshot.ttl:PT5M}") Duration ttl,
+                                        @Value("${app.security.authorization-snapshot.max-size:50000}") long maxSize) {
+        this.sysUserRoleMapper = sysUserRoleMapper;
+        this.sysRoleMapper = sysRoleMapper;
+        this.versionStore = versionStore;
+        Duration expiry = ttl == null || ttl.isNegative() || ttl.isZero() ? Duration.ofMinutes(5) : ttl;
+        this.versionRetention = expiry.multipliedBy(2);
+        this.snapshots = Caffeine.newBuilder()
+                .expireAfterWrite(expiry.toMillis(), TimeUnit.MILLISECONDS)
+                .maximumSize(Math.max(1, maxSize))
+                .build();
+    }
+
+    public AuthorizationSnapshot getSnapshot(Long userId) {
+        if (userId == null || userId <= 0) {
+            return AuthorizationSnapshot.empty(userId, 0);
+        }
+        AuthorizationVersionStore.Versions versions;
+        try {
+            versions = versionStore.current(userId);
+        } catch (RuntimeException e) {
+            // 读不到版本就无法判断缓存是否过期，本次直接查库且不缓存
+            log.log(Level.WARNING, "Authorization version lookup failed, loading snapshot uncached", e);
+            return load(userId, -1);
+        }
+        StampedSnapshot cached = snapshots.getIfPresent(userId);
+        if (cached != null) {
+            if (cached.versions().equals(versions)) {
+                return cached.snapshot();
+            }
+            snapshots.asMap().remove(userId, cached);
+        }
+        // 版本在查库前读取，查库期间发生的写入会让这份快照在下次读取时失效
+        return snapshots.get(userId, id -> new StampedSnapshot(load(id, versions.roles()), versions)).snapshot();
+    }
+
+    /**
+     * Invalidates the user's snapshot on every node once the surrounding transaction commits
+     * (immediately without one).
+     */
+    public void invalidateUser(Long userId) {
+        if (userId != null) {
+            afterCommit(() -> {
+                snapshots.invalidate(userId);
+                bump(() -> versionStore.bumpUser(userId, versionRetention));
+            });
+        }
+    }
+
+    /**
+     * Invalidates every snapshot on every node after a role row changes; stale entries are rebuilt lazily.
+     */
+    public void invalidateRoles() {
+        afterCommit(() -> {
+            snapshots.invalidateAll();
+            bump(versionStore::bumpRoles);
+        });
+    }
+
+    private void bump(Runnable bump) {
+        try {
+            bump.run();
+        } catch (RuntimeException e) {
+            // 写入已提交，不能再失败；其他节点最迟在快照 TTL 后看到变更
+            log.log(Level.WARNING, "Failed to publish authorization snapshot invalidation", e);
+        }
+    }
+
+    private AuthorizationSnapshot load(Long userId, long version) {
+        List<Integer> roleIds = sysUserRoleMapper.selectObjs(new QueryWrapper<SysUserRole>()
+                        .select("role_id")
+                        .eq("user_id", userId)
+                        .orderByDesc("created_at"))
+                .stream()
+                .filter(Number.class::isInstance)
+                .map(id -> ((Number) id).intValue())
+                .distinct()
+                .toList();
+        if (roleIds.isEmpty()) {
+            return AuthorizationSnapshot.empty(userId, version);
+        }
+        Map<Integer, SysRole> roles = sysRoleMapper.selectBatchIds(roleIds).stream()
+                .filter(role -> role != null && role.getRoleId() != null)
+                .collect(Collectors.toMap(SysRole::getRoleId, Function.identity(), (left, right) -> left));
+
+        Set<String> roleNames = new LinkedHashSet<>();
+        Set<String> roleCodes = new LinkedHashSet<>();
+        Set<String> roleTypes = new LinkedHashSet<>();
+        DataScope scope = DataScope.SELF;
+        // 按关联创建时间倒序输出，与逐条查询时的角色顺序一致
+        for (Integer roleId : roleIds) {
+            SysRole role = roles.get(roleId);
+            if (role == null) {
+                continue;
+            }
+            if (StringUtils.hasText(role.getRoleName())) {
+                roleNames.add(role.getRoleName());
+            }
+            String roleCode = resolveRoleCode(role);
+            if (roleCode != null) {
+                roleCodes.add(roleCode);
+            }
+            roleTypes.add(resolveRoleType(role));
+            scope = widenScope(scope, DataScope.fromCode(role.getDataScope()));
+        }
+        return new AuthorizationSnapshot(userId, version,
+                new ArrayList<>(roleNames), new ArrayList<>(roleCodes), new ArrayList<>(roleTypes), scope);
+    }
+
+    public static String normalizeRoleCode(String roleCode) {
+        if (!StringUtils.hasText(roleCode)) {
+            return null;
+        }
+        String normalized = roleCode.trim().toUpperCase(Locale.ROOT);
+        if (normalized.startsWith("ROLE_")) {
+            return normalized.substring("ROLE_".length());
+        }
+        return normalized;
+    }
+
+    private static String resolveRoleCode(SysRole role) {
+        String code = StringUtils.hasText(role.getRoleCode()) ? role.getRoleCode() : role.getRoleName();
+        return normalizeRoleCode(code);
+    }
+
+    private static String resolveRoleType(SysRole role) {
+        RoleType type = StringUtils.hasText(role.getRoleType()) ? RoleType.fromCode(role.getRoleType()) : null;
+        return type != null ? type.getCode() : RoleType.BUSINESS.getCode();
+    }
+
+    private static DataScope widenScope(DataScope current, DataScope candidate) {
+        // 无法识别的数据范围按 SELF 处理
+        DataScope effective = candidate != null ? candidate : DataScope.SELF;
+        return scopeRank(effective) > scopeRank(current) ? effective : current;
+    }
+
+    private static int scopeRank(DataScope scope) {
+        return switch (scope) {
+            case CUSTOM -> 1;
+            case SELF -> 2;
+            case DEPARTMENT -> 3;
+            case DEPARTMENT_AND_SUB -> 4;
+            case ALL -> 5;
+        };
+    }
+
+    private record StampedSnapshot(AuthorizationSnapshot snapshot, AuthorizationVersionStore.Versions versions) {
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
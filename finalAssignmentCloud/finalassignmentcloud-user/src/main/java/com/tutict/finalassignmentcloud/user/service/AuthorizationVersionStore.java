@@ -0,0 +1,23 @@
+package com.tutict.finalassignmentcloud.user.service;
+
+import java.time.Duration;
+
+/**
+ * Cluster-wide change counters for authorization snapshots: one for the role table and one per user.
+ * A cached snapshot is only served while both counters still match the ones it was built with.
+ */
+public interface AuthorizationVersionStore {
+
+    Versions current(Long userId);
+
+    /**
+     * Bumps the user's counter; it must outlive any snapshot built before the bump, so
+     * {@code retention} should be at least the snapshot TTL.
+     */
+    void bumpUser(Long userId, Duration retention);
+
+    void bumpRoles();
+
+    record Versions(long roles, long user) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.tutict.finalassignmentcloud.user.service;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+public class RedisAuthorizationVersionStore implements AuthorizationVersionStore {
+
+    static final String ROLES_KEY = "auth:snapshot:roles-version";
+    static final String USER_KEY_PREFIX = "auth:snapshot:user-version:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisAuthorizationVersionStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Versions current(Long userId) {
+        List<String> values = redisTemplate.opsForValue().multiGet(List.of(ROLES_KEY, USER_KEY_PREFIX + userId));
+        if (values == null || values.size() < 2) {
+            return new Versions(0, 0);
+        }
+        return new Versions(parse(values.get(0)), parse(values.get(1)));
+    }
+
+    @Override
+    public void bumpUser(Long userId, Duration retention) {
+        String key = USER_KEY_PREFIX + userId;
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                operations.opsForValue().increment(key);
+                // 计数器过期后从 0 重新计数；保留时间不短于快照 TTL，旧快照不会与新计数值碰巧相等
+                operations.expire(key, retention);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void bumpRoles() {
+        redisTemplate.opsForValue().increment(ROLES_KEY);
+    }
+
+    private static long parse(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -39,18 +39,21 @@ public class SysRoleService {
     private final SysRoleSearchRepository sysRoleSearchRepository;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
 
     @Autowired
     public SysRoleService(SysRoleMapper sysRoleMapper,
                           SysRequestHistoryMapper sysRequestHistoryMapper,
                           SysRoleSearchRepository sysRoleSearchRepository,
                           KafkaTemplate<String, String> kafkaTemplate,
-                          ObjectMapper objectMapper) {
+                          ObjectMapper objectMapper,
+                          AuthorizationSnapshotService authorizationSnapshotService) {
         this.sysRoleMapper = sysRoleMapper;
         this.sysRequestHistoryMapper = sysRequestHistoryMapper;
         this.sysRoleSearchRepository = sysRoleSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.authorizationSnapshotService = authorizationSnapshotService;
     }
 
     @Transactional
@@ -98,6 +101,7 @@ public class SysRoleService {
         if (rows == 0) {
             throw new IllegalStateException("SysRole not found for id=" + sysRole.getRoleId());
         }
+        authorizationSnapshotService.invalidateRoles();
         syncToIndexAfterCommit(sysRole);
         return sysRole;
     }
@@ -110,6 +114,7 @@ public class SysRoleService {
         if (rows == 0) {
             throw new IllegalStateException("SysRole not found for id=" + roleId);
         }
+        authorizationSnapshotService.invalidateRoles();
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
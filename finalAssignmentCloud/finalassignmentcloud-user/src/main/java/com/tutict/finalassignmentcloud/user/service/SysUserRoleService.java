@@ -37,18 +37,21 @@ public class SysUserRoleService {
     private final SysUserRoleSearchRepository sysUserRoleSearchRepository;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final AuthorizationSnapshotService authorizationSnapshotService;
 
     @Autowired
     public SysUserRoleService(SysUserRoleMapper sysUserRoleMapper,
                               SysRequestHistoryMapper sysRequestHistoryMapper,
                               SysUserRoleSearchRepository sysUserRoleSearchRepository,
                               KafkaTemplate<String, String> kafkaTemplate,
-                              ObjectMapper objectMapper) {
+                              ObjectMapper objectMapper,
+                              AuthorizationSnapshotService authorizationSnapshotService) {
         this.sysUserRoleMapper = sysUserRoleMapper;
         this.sysRequestHistoryMapper = sysRequestHistoryMapper;
         this.sysUserRoleSearchRepository = sysUserRoleSearchRepository;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.authorizationSnapshotService = authorizationSnapshotService;
     }
 
     @Transactional
@@ -83,6 +86,7 @@ public class SysUserRoleService {
     public SysUserRole createRelation(SysUserRole relation) {
         validateRelation(relation);
         sysUserRoleMapper.insert(relation);
+        authorizationSnapshotService.invalidateUser(relation.getUserId());
         syncToIndexAfterCommit(relation);
         return relation;
     }
@@ -92,10 +96,16 @@ public class SysUserRoleService {
     public SysUserRole updateRelation(SysUserRole relation) {
         validateRelation(relation);
         requirePositive(relation.getId(), "Relation ID");
+        SysUserRole previous = sysUserRoleMapper.selectById(relation.getId());
         int rows = sysUserRoleMapper.updateById(relation);
         if (rows == 0) {
             throw new IllegalStateException("SysUserRole not found for id=" + relation.getId());
         }
+        // 关联可能被改到另一个用户名下，新旧用户的快照都要失效
+        if (previous != null && !Objects.equals(previous.getUserId(), relation.getUserId())) {
+            authorizationSnapshotService.invalidateUser(previous.getUserId());
+        }
+        authorizationSnapshotService.invalidateUser(relation.getUserId());
         syncToIndexAfterCommit(relation);
         return relation;
     }
@@ -104,10 +114,14 @@ public class SysUserRoleService {
     @CacheEvict(cacheNames = CACHE_NAME, allEntries = true)
     public void deleteRelation(Long relationId) {
         requirePositive(relationId, "Relation ID");
+        SysUserRole existing = sysUserRoleMapper.selectById(relationId);
         int rows = sysUserRoleMapper.deleteById(relationId);
         if (rows == 0) {
             throw new IllegalStateException("SysUserRole not found for id=" + relationId);
         }
+        if (existing != null) {
+            authorizationSnapshotService.invalidateUser(existing.getUserId());
+        }
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
             public void afterCommit() {
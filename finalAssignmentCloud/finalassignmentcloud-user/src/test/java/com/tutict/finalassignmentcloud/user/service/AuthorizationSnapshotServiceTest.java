@@ -0,0 +1,152 @@
+package com.tutict.finalassignmentcloud.user.service;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.tutict.finalassignmentcloud.dto.response.AuthorizationSnapshot;
+import com.tutict.finalassignmentcloud.entity.SysRole;
+import com.tutict.finalassignmentcloud.enums.DataScope;
+import com.tutict.finalassignmentcloud.user.mapper.SysRoleMapper;
+import com.tutict.finalassignmentcloud.user.mapper.SysUserRoleMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthorizationSnapshotServiceTest {
+
+    private final SysUserRoleMapper userRoleMapper = mock(SysUserRoleMapper.class);
+    private final SysRoleMapper roleMapper = mock(SysRoleMapper.class);
+    private final InMemoryVersionStore versionStore = new InMemoryVersionStore();
+    private final AuthorizationSnapshotService service = newNode();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aggregatesAllRolesWithTwoQueries() {
+        when(userRoleMapper.selectObjs(any(Wrapper.class))).thenReturn(List.of(3, 1, 3));
+        when(roleMapper.selectBatchIds(anyCollection())).thenReturn(List.of(
+                role(1, "ROLE_user", "Business", "Self"),
+                role(3, "traffic_police", "System", "Department")));
+
+        AuthorizationSnapshot snapshot = service.getSnapshot(7L);
+
+        assertThat(snapshot.roleCodes()).containsExactly("TRAFFIC_POLICE", "USER");
+        assertThat(snapshot.roleNames()).containsExactly("traffic_police", "ROLE_user");
+        assertThat(snapshot.roleTypes()).containsExactly("System", "Business");
+        assertThat(snapshot.dataScope()).isEqualTo(DataScope.DEPARTMENT);
+        verify(userRoleMapper, times(1)).selectObjs(any(Wrapper.class));
+        verify(roleMapper, times(1)).selectBatchIds(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void servesFromCacheUntilUserOrRoleTableChanges() {
+        when(userRoleMapper.selectObjs(any(Wrapper.class))).thenReturn(List.of(1));
+        when(roleMapper.selectBatchIds(anyCollection())).thenReturn(List.of(role(1, "ADMIN", "System", "All")));
+
+        service.getSnapshot(7L);
+        service.getSnapshot(7L);
+        verify(roleMapper, times(1)).selectBatchIds(anyCollection());
+
+        service.invalidateUser(7L);
+        service.getSnapshot(7L);
+        verify(roleMapper, times(2)).selectBatchIds(anyCollection());
+
+        long before = versionStore.roles.get();
+        service.invalidateRoles();
+        AuthorizationSnapshot rebuilt = service.getSnapshot(7L);
+        assertThat(rebuilt.version()).isEqualTo(before + 1);
+        verify(roleMapper, times(3)).selectBatchIds(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writesOnOneNodeInvalidateSnapshotsCachedOnAnother() {
+        AuthorizationSnapshotService otherNode = newNode();
+        when(userRoleMapper.selectObjs(any(Wrapper.class))).thenReturn(List.of(1));
+        when(roleMapper.selectBatchIds(anyCollection())).thenReturn(List.of(role(1, "USER", "Business", "Self")));
+        assertThat(otherNode.getSnapshot(7L).roleCodes()).containsExactly("USER");
+
+        when(userRoleMapper.selectObjs(any(Wrapper.class))).thenReturn(List.of(2));
+        when(roleMapper.selectBatchIds(anyCollection())).thenReturn(List.of(role(2, "ADMIN", "System", "All")));
+        service.invalidateUser(7L);
+        assertThat(otherNode.getSnapshot(7L).roleCodes()).containsExactly("ADMIN");
+
+        when(roleMapper.selectBatchIds(anyCollection())).thenReturn(List.of(role(2, "ADMIN", "System", "Department")));
+        service.invalidateRoles();
+        assertThat(otherNode.getSnapshot(7L).dataScope()).isEqualTo(DataScope.DEPARTMENT);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loadsUncachedWhenVersionsAreUnavailable() {
+        AuthorizationVersionStore broken = mock(AuthorizationVersionStore.class);
+        when(broken.current(7L)).thenThrow(new IllegalStateException("redis down"));
+        AuthorizationSnapshotService node =
+                new AuthorizationSnapshotService(userRoleMapper, roleMapper, broken, Duration.ofMinutes(5), 1000);
+        when(userRoleMapper.selectObjs(any(Wrapper.class))).thenReturn(List.of(1));
+        when(roleMapper.selectBatchIds(anyCollection())).thenReturn(List.of(role(1, "USER", "Business", "Self")));
+
+        node.getSnapshot(7L);
+        node.getSnapshot(7L);
+
+        verify(roleMapper, times(2)).selectBatchIds(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void userWithoutRolesGetsEmptySelfScopedSnapshot() {
+        when(userRoleMapper.selectObjs(any(Wrapper.class))).thenReturn(List.of());
+
+        AuthorizationSnapshot snapshot = service.getSnapshot(9L);
+
+        assertThat(snapshot.roleCodes()).isEmpty();
+        assertThat(snapshot.dataScope()).isEqualTo(DataScope.SELF);
+    }
+
+    private AuthorizationSnapshotService newNode() {
+        return new AuthorizationSnapshotService(userRoleMapper, roleMapper, versionStore, Duration.ofMinutes(5), 1000);
+    }
+
+    private SysRole role(int id, String code, String type, String scope) {
+        SysRole role = new SysRole();
+        role.setRoleId(id);
+        role.setRoleCode(code);
+        role.setRoleName(code);
+        role.setRoleType(type);
+        role.setDataScope(scope);
+        return role;
+    }
+
+    /**
+     * Shared counters standing in for Redis, so several service instances behave like cluster nodes.
+     */
+    private static final class InMemoryVersionStore implements AuthorizationVersionStore {
+        private final AtomicLong roles = new AtomicLong();
+        private final Map<Long, AtomicLong> users = new ConcurrentHashMap<>();
+
+        @Override
+        public Versions current(Long userId) {
+            return new Versions(roles.get(), users.getOrDefault(userId, new AtomicLong()).get());
+        }
+
+        @Override
+        public void bumpUser(Long userId, Duration retention) {
+            users.computeIfAbsent(userId, ignored -> new AtomicLong()).incrementAndGet();
+        }
+
+        @Override
+        public void bumpRoles() {
+            roles.incrementAndGet();
+        }
+    }
+}